@@ -80,6 +80,14 @@ public class JsonUtils {
       }
    }
 
+   /**
+    * Converts a java object to a JSON tree without writing it out, with the
+    * same field visibility and null handling as {@link #toJson(Object, boolean)}.
+    */
+   public static JsonNode toJsonNode(Object o, boolean verbose) {
+      return verbose ? mapper.valueToTree(o) : mapper_noNulls.valueToTree(o);
+   }
+
    public static Object fromJson(String s, Class<?> clazz) {
       try {
          return jacksonFromJson(s, clazz);
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2018 572682
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package us.dot.its.jpo.ode.util;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Converts XML to a Jackson tree in one pass over a StAX reader, giving the
+ * tree org.json's XML.toJSONObject(xml, true) gives:
+ * <ul>
+ * <li>an element becomes a field named after it, qualified names and
+ * attributes, namespace declarations included, kept as they are written</li>
+ * <li>an element repeated under the same parent becomes an array</li>
+ * <li>text, attribute values and empty elements become strings, never
+ * numbers or booleans</li>
+ * <li>text is trimmed, and kept under "content" when the element also has
+ * attributes or children</li>
+ * </ul>
+ * Only the field order differs, it follows the document instead of being
+ * unspecified.
+ */
+public class XmlTreeConverter {
+
+   public static final String CONTENT_FIELD = "content";
+
+   private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+   private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+   static {
+      // names as written, like org.json
+      inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+      inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+   }
+
+   private XmlTreeConverter() {
+   }
+
+   public static ObjectNode toObjectNode(String xml) throws XMLStreamException {
+      ObjectNode root = nodes.objectNode();
+      Deque<ObjectNode> open = new ArrayDeque<>();
+      Deque<String> names = new ArrayDeque<>();
+      StringBuilder text = new StringBuilder();
+      ObjectNode current = root;
+
+      XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(xml));
+      try {
+         while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+               text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+               break;
+            case XMLStreamConstants.CDATA:
+               addText(current, text);
+               // kept untrimmed, like org.json
+               if (reader.getTextLength() > 0) {
+                  accumulate(current, CONTENT_FIELD, nodes.textNode(reader.getText()));
+               }
+               break;
+            case XMLStreamConstants.START_ELEMENT:
+               addText(current, text);
+               open.push(current);
+               names.push(reader.getLocalName());
+               current = nodes.objectNode();
+               for (int i = 0; i < reader.getAttributeCount(); i++) {
+                  current.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+               }
+               break;
+            case XMLStreamConstants.END_ELEMENT:
+               addText(current, text);
+               ObjectNode parent = open.pop();
+               accumulate(parent, names.pop(), valueOf(current));
+               current = parent;
+               break;
+            case XMLStreamConstants.COMMENT:
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+               // ends a run of text, like any other tag
+               addText(current, text);
+               break;
+            default:
+               break;
+            }
+         }
+      } finally {
+         reader.close();
+      }
+      return root;
+   }
+
+   private static void addText(ObjectNode element, StringBuilder text) {
+      if (text.length() == 0) {
+         return;
+      }
+      String trimmed = text.toString().trim();
+      text.setLength(0);
+      if (!trimmed.isEmpty()) {
+         accumulate(element, CONTENT_FIELD, nodes.textNode(trimmed));
+      }
+   }
+
+   /*
+    * An element without attributes or children is its text, or an empty string.
+    */
+   private static JsonNode valueOf(ObjectNode element) {
+      if (element.isEmpty()) {
+         return nodes.textNode("");
+      }
+      if (element.size() == 1 && element.has(CONTENT_FIELD)) {
+         return element.get(CONTENT_FIELD);
+      }
+      return element;
+   }
+
+   private static void accumulate(ObjectNode element, String name, JsonNode value) {
+      JsonNode existing = element.get(name);
+      if (existing == null) {
+         element.set(name, value.isArray() ? nodes.arrayNode().add(value) : value);
+      } else if (existing.isArray()) {
+         ((ArrayNode) existing).add(value);
+      } else {
+         element.set(name, nodes.arrayNode().add(existing).add(value));
+      }
+   }
+}
@@ -122,20 +122,19 @@ public class XmlUtils {
       }
    }
 
+   /**
+    * Converts XML to a tree the way {@link #toJSONObject(String)} does, with
+    * every value a string and repeated elements as arrays, in one pass. See
+    * {@link XmlTreeConverter}.
+    */
    public static ObjectNode toObjectNode(String xml) throws XmlUtilsException {
       try {
-         JSONObject jsonObject = XML.toJSONObject(xml, true);
-         String jsonString = jsonObject.toString();
-         return JsonUtils.toObjectNode(jsonString);
-
          /*
-          * Due to issues with XmlMapper converting "xml arrays" to a valid DOM
-          * collection we could not use it in this context. Hence the above workaround
-          * was adopted. See:
+          * XmlMapper does not convert "xml arrays" to a valid DOM collection, see:
           * https://github.com/FasterXML/jackson-dataformat-xml/issues/187
           * https://github.com/FasterXML/jackson-dataformat-xml/issues/205
           */
-         // return (ObjectNode) staticXmlMapper.readTree(xml);
+         return XmlTreeConverter.toObjectNode(xml);
       } catch (Exception e) {
          throw new XmlUtilsException("Error decoding " + xml + "to ObjectNode", e);
       }
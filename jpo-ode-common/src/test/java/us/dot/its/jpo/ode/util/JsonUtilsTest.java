@@ -117,6 +117,12 @@ public class JsonUtilsTest {
         assertEquals(a2Verbose, aj2Verbose);
     }
 
+    @Test
+    public void testToJsonNode() {
+        assertEquals(a2Compact, JsonUtils.toJsonNode(a2, false).toString());
+        assertEquals(a2Verbose, JsonUtils.toJsonNode(a2, true).toString());
+    }
+
     @Test
     public void testNewJson() {
         String j = JsonUtils.newJson("key", "value");
@@ -0,0 +1,74 @@
+package us.dot.its.jpo.ode.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.json.XML;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class XmlTreeConverterTest {
+
+   private static final String DECODED_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+         + "<OdeAsn1Data><metadata><recordType>rxMsg</recordType><securityResultCode>success</securityResultCode>"
+         + "<receivedMessageDetails><locationData><latitude>40.5657</latitude><elevation/></locationData>"
+         + "<rxSource>RSU</rxSource></receivedMessageDetails><payloadType>us.dot.its.jpo.ode.model.OdeAsn1Payload</payloadType>"
+         + "<serialId><streamId>6c33f802-418d-4b67-89d1-326b4fc8b1e3</streamId><bundleSize>1</bundleSize></serialId>"
+         + "<odeReceivedAt>2023-10-18T16:38:26.123Z</odeReceivedAt><schemaVersion>6</schemaVersion></metadata>"
+         + "<payload><dataType>MessageFrame</dataType><data><MessageFrame><messageId>20</messageId><value>"
+         + "<BasicSafetyMessage><coreData><msgCnt>102</msgCnt><id>5651E543</id><secMark>36799</secMark>"
+         + "<transmission><neutral/></transmission><brakes><wheelBrakes>00000</wheelBrakes>"
+         + "<traction><unavailable/></traction></brakes></coreData><partII><BSMpartIIExtension>"
+         + "<partII-Id>0</partII-Id><partII-Value><VehicleSafetyExtensions><pathHistory><crumbData>"
+         + "<PathHistoryPoint><latOffset>9</latOffset><lonOffset>-17</lonOffset></PathHistoryPoint>"
+         + "<PathHistoryPoint><latOffset>-113</latOffset><lonOffset>-223</lonOffset></PathHistoryPoint>"
+         + "</crumbData></pathHistory></VehicleSafetyExtensions></partII-Value></BSMpartIIExtension>"
+         + "</partII></BasicSafetyMessage></value></MessageFrame></data></payload></OdeAsn1Data>";
+
+   private static JsonNode orgJsonTree(String xml) throws Exception {
+      return JsonUtils.toObjectNode(XML.toJSONObject(xml, true).toString());
+   }
+
+   @Test
+   public void shouldBuildTheTreeOrgJsonBuilds() throws Exception {
+      assertEquals(orgJsonTree(DECODED_XML), XmlTreeConverter.toObjectNode(DECODED_XML));
+   }
+
+   @Test
+   public void shouldKeepValuesAsStringsAndRepeatedElementsAsArrays() throws Exception {
+      ObjectNode tree = XmlTreeConverter.toObjectNode(DECODED_XML);
+      JsonNode coreData = tree.at("/OdeAsn1Data/payload/data/MessageFrame/value/BasicSafetyMessage/coreData");
+
+      assertTrue(coreData.get("id").isTextual());
+      assertEquals("5651E543", coreData.get("id").asText());
+      assertTrue(coreData.get("msgCnt").isTextual());
+      assertEquals("", coreData.get("transmission").get("neutral").asText());
+      JsonNode points = tree.at("/OdeAsn1Data/payload/data/MessageFrame/value/BasicSafetyMessage/partII"
+            + "/BSMpartIIExtension/partII-Value/VehicleSafetyExtensions/pathHistory/crumbData/PathHistoryPoint");
+      assertTrue(points.isArray());
+      assertEquals("-223", points.get(1).get("lonOffset").asText());
+   }
+
+   @Test
+   public void shouldMatchOrgJsonOnAttributesTextAndMarkup() throws Exception {
+      String[] samples = {
+            "<a x=\"1\" xmlns:xsi=\"urn:x\" xsi:type=\"t\">  text  </a>",
+            "<a><b>1</b>mixed<b>2</b><c/><c></c><c>  </c></a>",
+            "<a>x &amp; y &lt; z<!-- comment -->more</a>",
+            "<a><![CDATA[ <raw> ]]></a>",
+            "<a><b><c>1</c></b><b>plain</b><b x=\"y\"/></a>",
+            "<ns:a xmlns:ns=\"urn:ns\"><ns:b>true</ns:b><ns:b>null</ns:b></ns:a>"
+      };
+      for (String xml : samples) {
+         assertEquals(xml, orgJsonTree(xml), XmlTreeConverter.toObjectNode(xml));
+      }
+   }
+
+   @Test
+   public void shouldFailOnMalformedXml() {
+      assertThrows(XmlUtils.XmlUtilsException.class, () -> XmlUtils.toObjectNode("<a><b></a>"));
+   }
+}
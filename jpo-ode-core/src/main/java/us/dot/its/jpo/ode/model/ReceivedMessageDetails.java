@@ -15,12 +15,20 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.model;
 
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
 public class ReceivedMessageDetails extends OdeObject {
 
    private static final long serialVersionUID = -122988228561853841L;
 
    private OdeLogMsgMetadataLocation locationData;
    private RxSource rxSource;
+   // every RSU that forwarded the message when duplicate copies were merged
+   // a single IP survives the XML round trip through the codec as a plain value
+   @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+   private List<String> rxSourceIps;
 
    public ReceivedMessageDetails() {
       super();
@@ -47,4 +55,12 @@ public class ReceivedMessageDetails extends OdeObject {
    public void setRxSource(RxSource rxSource) {
       this.rxSource = rxSource;
    }
+
+   public List<String> getRxSourceIps() {
+      return rxSourceIps;
+   }
+
+   public void setRxSourceIps(List<String> rxSourceIps) {
+      this.rxSourceIps = rxSourceIps;
+   }
 }
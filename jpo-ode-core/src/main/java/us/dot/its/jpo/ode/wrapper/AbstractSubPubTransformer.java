@@ -15,6 +15,12 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.wrapper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
 /**
  * @author 572682
  *
@@ -28,7 +34,8 @@ package us.dot.its.jpo.ode.wrapper;
  */
 public abstract class AbstractSubPubTransformer<K, S, P> extends AbstractSubscriberProcessor<K, S> {
 
-    protected int messagesPublished = 0;
+    // counted by every worker thread of the consumer
+    protected final LongAdder messagesPublished = new LongAdder();
     protected MessageProducer<K, P> producer;
     protected String outputTopic;
 
@@ -38,6 +45,44 @@ public abstract class AbstractSubPubTransformer<K, S, P> extends AbstractSubscri
         this.outputTopic = outputTopic;
     }
 
+    /**
+     * Transforms the records of one partition and publishes the results as one
+     * batch, each under the key of the record it came from. Records that
+     * transform to null are not published. When a record fails, the results
+     * of the records before it are still published before the failure is
+     * thrown.
+     */
+    @Override
+    public List<Object> processBatch(List<ConsumerRecord<K, S>> records) throws Exception {
+       List<Object> results = new ArrayList<>(records.size());
+       List<K> keys = new ArrayList<>(records.size());
+       List<P> toBePublished = new ArrayList<>(records.size());
+       try {
+          for (ConsumerRecord<K, S> consumerRecord : records) {
+             Object result = withRecord(consumerRecord, super::call);
+             results.add(result);
+             if (null != result) {
+                @SuppressWarnings("unchecked")
+                P published = (P) result;
+                keys.add(consumerRecord.key());
+                toBePublished.add(published);
+             }
+          }
+       } catch (Exception e) {
+          publish(keys, toBePublished);
+          throw e;
+       }
+       publish(keys, toBePublished);
+       return results;
+    }
+
+    private void publish(List<K> keys, List<P> toBePublished) {
+       if (!toBePublished.isEmpty()) {
+          producer.sendKeyedBatch(outputTopic, keys, toBePublished, null);
+          messagesPublished.add(toBePublished.size());
+       }
+    }
+
     @Override
     public Object call() {
        @SuppressWarnings("unchecked")
@@ -45,11 +90,24 @@ public abstract class AbstractSubPubTransformer<K, S, P> extends AbstractSubscri
 
        if (null != toBePublished) {
           producer.send(outputTopic, getRecord().key(), toBePublished);
+          messagesPublished.increment();
        }
         
        return toBePublished;
     }
 
+    /**
+     * Saturated while the producer has its maximum of records in flight.
+     */
+    @Override
+    public boolean isSaturated() {
+       return !producer.canSend();
+    }
+
+   public long getMessagesPublished() {
+      return messagesPublished.sum();
+   }
+
    public MessageProducer<K, P> getProducer() {
       return producer;
    }
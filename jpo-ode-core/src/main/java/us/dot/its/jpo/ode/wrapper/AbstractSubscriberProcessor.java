@@ -17,6 +17,7 @@ package us.dot.its.jpo.ode.wrapper;
 
 import java.util.Arrays;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,7 +27,9 @@ import org.slf4j.LoggerFactory;
  *
  *         This abstract class provides a basic service that subscribes to one
  *         or more topics and process the received messages in the derived
- *         classes.
+ *         classes. Batches are processed a record at a time through
+ *         {@link #process(Object)} unless a subclass overrides
+ *         {@link #processBatch(java.util.List)}.
  * 
  * @param <K>
  *           Message Key type
@@ -36,7 +39,8 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractSubscriberProcessor<K, S> extends MessageProcessor<K, S> {
 
    private Logger logger = LoggerFactory.getLogger(this.getClass());
-   protected int messagesConsumed = 0;
+   // counted by every worker thread of the consumer
+   protected final LongAdder messagesConsumed = new LongAdder();
 
    /**
     * Starts a Kafka listener that runs call() every time a new msg arrives
@@ -57,7 +61,7 @@ public abstract class AbstractSubscriberProcessor<K, S> extends MessageProcessor
 
    @Override
    public Object call() {
-      messagesConsumed++;
+      messagesConsumed.increment();
 
       S consumedData = getRecord().value();
 
@@ -66,4 +70,8 @@ public abstract class AbstractSubscriberProcessor<K, S> extends MessageProcessor
 
    protected abstract Object process(S consumedData);
 
+   public long getMessagesConsumed() {
+      return messagesConsumed.sum();
+   }
+
 }
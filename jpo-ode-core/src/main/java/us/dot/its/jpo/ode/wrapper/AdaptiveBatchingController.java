@@ -0,0 +1,371 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Picks the {@link BatchingProfile} of every topic a shared producer sends
+ * to from the traffic observed on it, so firehose topics batch and compress
+ * while rare ones are sent at once, without tuning per deployment. One
+ * producer is kept per profile in use and every topic is sent through the
+ * producer of its current profile.
+ * <p>
+ * Every evaluation interval a topic moves one profile towards the one its
+ * bytes per second call for. Whenever the 99th percentile of its send latency
+ * in the interval exceeds its target, the topic drops one profile below its
+ * current one and may not move above it again until the percentile is back
+ * under half the target. A topic switches producers once none of its records
+ * is in flight on the old one, so the records of a topic stay in order. When a
+ * topic has still not been idle an interval later, the old producer is flushed
+ * on a background thread so its records complete sooner. Senders keep using
+ * the old producer until then and are never held up.
+ */
+public class AdaptiveBatchingController {
+
+    /**
+     * Limits the controller works within.
+     */
+    public static class Settings {
+        private long evaluationIntervalMs = 10000;
+        private long balancedBytesPerSecond = 64 * 1024L;
+        private long highThroughputBytesPerSecond = 1024 * 1024L;
+        private long latencyTargetMs = 250;
+        private long latencySensitiveTargetMs = 50;
+        private Set<String> latencySensitiveTopics = Collections.emptySet();
+
+        public long getEvaluationIntervalMs() {
+            return evaluationIntervalMs;
+        }
+
+        public Settings setEvaluationIntervalMs(long evaluationIntervalMs) {
+            this.evaluationIntervalMs = evaluationIntervalMs;
+            return this;
+        }
+
+        /**
+         * Bytes per second from which a topic is sent with
+         * {@link BatchingProfile#BALANCED}.
+         */
+        public long getBalancedBytesPerSecond() {
+            return balancedBytesPerSecond;
+        }
+
+        public Settings setBalancedBytesPerSecond(long balancedBytesPerSecond) {
+            this.balancedBytesPerSecond = balancedBytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Bytes per second from which a topic is sent with
+         * {@link BatchingProfile#HIGH_THROUGHPUT}.
+         */
+        public long getHighThroughputBytesPerSecond() {
+            return highThroughputBytesPerSecond;
+        }
+
+        public Settings setHighThroughputBytesPerSecond(long highThroughputBytesPerSecond) {
+            this.highThroughputBytesPerSecond = highThroughputBytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Highest 99th percentile send latency of a topic before it batches
+         * less.
+         */
+        public long getLatencyTargetMs() {
+            return latencyTargetMs;
+        }
+
+        public Settings setLatencyTargetMs(long latencyTargetMs) {
+            this.latencyTargetMs = latencyTargetMs;
+            return this;
+        }
+
+        /**
+         * The latency target of the latency sensitive topics, such as those
+         * carrying safety messages.
+         */
+        public long getLatencySensitiveTargetMs() {
+            return latencySensitiveTargetMs;
+        }
+
+        public Settings setLatencySensitiveTargetMs(long latencySensitiveTargetMs) {
+            this.latencySensitiveTargetMs = latencySensitiveTargetMs;
+            return this;
+        }
+
+        public Set<String> getLatencySensitiveTopics() {
+            return latencySensitiveTopics;
+        }
+
+        public Settings setLatencySensitiveTopics(Set<String> latencySensitiveTopics) {
+            this.latencySensitiveTopics = new HashSet<>(latencySensitiveTopics);
+            return this;
+        }
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchingController.class);
+
+    // upper bounds of the latency buckets the percentile is taken from
+    private static final long[] LATENCY_BUCKETS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000,
+            10000, Long.MAX_VALUE };
+
+    private final Properties baseProperties;
+    private final Function<Properties, Producer<?, ?>> producerFactory;
+    private final Settings settings;
+    private final LongSupplier clock;
+    // flushes the producer a topic is switching away from
+    private final Executor flusher;
+    // guarded by itself
+    private final Map<BatchingProfile, Producer<?, ?>> producers = new EnumMap<>(BatchingProfile.class);
+    private final Map<String, TopicState> topics = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseProperties  producer properties every profile is applied to
+     * @param producerFactory creates the producer of a profile
+     */
+    public AdaptiveBatchingController(Properties baseProperties, Function<Properties, Producer<?, ?>> producerFactory,
+            Settings settings) {
+        this(baseProperties, producerFactory, settings, System::currentTimeMillis,
+                Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "AdaptiveBatchingFlusher");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    AdaptiveBatchingController(Properties baseProperties, Function<Properties, Producer<?, ?>> producerFactory,
+            Settings settings, LongSupplier clock, Executor flusher) {
+        this.baseProperties = baseProperties;
+        this.producerFactory = producerFactory;
+        this.settings = settings;
+        this.clock = clock;
+        this.flusher = flusher;
+    }
+
+    /**
+     * The producer of the given profile, created on first use.
+     */
+    public Producer<?, ?> producerFor(BatchingProfile profile) {
+        synchronized (producers) {
+            return producers.computeIfAbsent(profile, p -> {
+                Properties props = new Properties();
+                props.putAll(baseProperties);
+                logger.info("Creating producer with {} batching", p);
+                return producerFactory.apply(p.applyTo(props));
+            });
+        }
+    }
+
+    /**
+     * Counts a record of the topic in flight and returns the profile it is to
+     * be sent with. Every record acquired must be {@link #completed}.
+     */
+    BatchingProfile acquire(String topic) {
+        long now = clock.getAsLong();
+        TopicState state = topics.computeIfAbsent(topic, t -> new TopicState(now));
+        BatchingProfile draining = null;
+        BatchingProfile profile;
+        synchronized (state) {
+            if (now - state.windowStartMs >= settings.evaluationIntervalMs) {
+                evaluate(topic, state, now);
+            }
+            if (state.pending != null && state.inFlight == 0) {
+                switchTo(topic, state);
+            } else if (state.pending != null && !state.flushing
+                    && now - state.pendingSinceMs >= settings.evaluationIntervalMs) {
+                // never idle, complete the records on the old producer sooner
+                state.flushing = true;
+                draining = state.current;
+            }
+            state.inFlight++;
+            profile = state.current;
+        }
+        if (draining != null) {
+            flushInBackground(topic, state, draining);
+        }
+        return profile;
+    }
+
+    private void flushInBackground(String topic, TopicState state, BatchingProfile draining) {
+        logger.debug("Flushing the {} producer so {} can switch off it", draining, topic);
+        flusher.execute(() -> {
+            try {
+                producerFor(draining).flush();
+            } catch (RuntimeException e) {
+                logger.warn("Error flushing the {} producer", draining, e);
+            } finally {
+                synchronized (state) {
+                    state.flushing = false;
+                    // flushed again an interval later if the topic is still not idle
+                    state.pendingSinceMs = clock.getAsLong();
+                }
+            }
+        });
+    }
+
+    private static void switchTo(String topic, TopicState state) {
+        logger.info("Sending {} with {} batching instead of {}", topic, state.pending, state.current);
+        state.current = state.pending;
+        state.pending = null;
+    }
+
+    /**
+     * Records the outcome of a record acquired for the topic.
+     *
+     * @param metadata metadata of the record, null if it was rejected before
+     *                 it was queued
+     */
+    void completed(String topic, long latencyNanos, RecordMetadata metadata) {
+        TopicState state = topics.get(topic);
+        if (state == null) {
+            return;
+        }
+        long bytes = metadata == null ? 0
+                : Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize());
+        long latencyMs = latencyNanos / 1_000_000L;
+        int bucket = 0;
+        while (latencyMs > LATENCY_BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+        synchronized (state) {
+            state.inFlight--;
+            state.windowRecords++;
+            state.windowBytes += bytes;
+            state.latency[bucket]++;
+        }
+    }
+
+    /**
+     * Records of the topic acquired and not yet completed.
+     */
+    int getInFlight(String topic) {
+        TopicState state = topics.get(topic);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.inFlight;
+        }
+    }
+
+    private void evaluate(String topic, TopicState state, long now) {
+        double seconds = Math.max(1, now - state.windowStartMs) / 1000.0;
+        double bytesPerSecond = state.windowBytes / seconds;
+        long target = settings.latencySensitiveTopics.contains(topic) ? settings.latencySensitiveTargetMs
+                : settings.latencyTargetMs;
+
+        if (state.windowRecords > 0) {
+            long p99 = percentile(state.latency, state.windowRecords, 0.99);
+            if (p99 > target) {
+                BatchingProfile lowered = state.current.smaller();
+                if (lowered.compareTo(state.ceiling) < 0) {
+                    logger.info("{} p99 send latency {} ms over its {} ms target, batching at most {}", topic, p99,
+                            target, lowered);
+                }
+                state.ceiling = lowered.compareTo(state.ceiling) < 0 ? lowered : state.ceiling;
+            } else if (p99 * 2 <= target) {
+                state.ceiling = state.ceiling.larger();
+            }
+        }
+
+        BatchingProfile wanted = bytesPerSecond >= settings.highThroughputBytesPerSecond
+                ? BatchingProfile.HIGH_THROUGHPUT
+                : bytesPerSecond >= settings.balancedBytesPerSecond ? BatchingProfile.BALANCED
+                        : BatchingProfile.LOW_LATENCY;
+        if (wanted.compareTo(state.ceiling) > 0) {
+            wanted = state.ceiling;
+        }
+        BatchingProfile next = wanted.compareTo(state.current) > 0 ? state.current.larger()
+                : wanted.compareTo(state.current) < 0 ? state.current.smaller() : state.current;
+        if (next == state.current) {
+            state.pending = null;
+        } else if (next != state.pending) {
+            state.pending = next;
+            state.pendingSinceMs = now;
+        }
+
+        state.windowStartMs = now;
+        state.windowRecords = 0;
+        state.windowBytes = 0;
+        Arrays.fill(state.latency, 0);
+    }
+
+    private static long percentile(long[] buckets, long count, double fraction) {
+        long rank = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return LATENCY_BUCKETS_MS[i];
+            }
+        }
+        return LATENCY_BUCKETS_MS[buckets.length - 1];
+    }
+
+    /**
+     * The profile every topic is sent with.
+     */
+    public Map<String, BatchingProfile> getProfiles() {
+        Map<String, BatchingProfile> profiles = new TreeMap<>();
+        topics.forEach((topic, state) -> {
+            synchronized (state) {
+                profiles.put(topic, state.current);
+            }
+        });
+        return profiles;
+    }
+
+    public void flush() {
+        synchronized (producers) {
+            producers.values().forEach(Producer::flush);
+        }
+    }
+
+    public void close() {
+        if (flusher instanceof ExecutorService) {
+            ((ExecutorService) flusher).shutdown();
+        }
+        synchronized (producers) {
+            producers.values().forEach(Producer::close);
+            producers.clear();
+        }
+    }
+
+    private static class TopicState {
+        BatchingProfile current = BatchingProfile.LOW_LATENCY;
+        // switch waiting for the records in flight on the current producer
+        BatchingProfile pending;
+        long pendingSinceMs;
+        // set while the producer of the current profile is flushed
+        boolean flushing;
+        // highest profile the latency target allows
+        BatchingProfile ceiling = BatchingProfile.HIGH_THROUGHPUT;
+        int inFlight;
+        long windowStartMs;
+        long windowRecords;
+        long windowBytes;
+        final long[] latency = new long[LATENCY_BUCKETS_MS.length];
+
+        TopicState(long now) {
+            this.windowStartMs = now;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.Properties;
+
+/**
+ * Batching settings a producer is created with, from sending every record
+ * at once to filling large compressed batches. Kafka cannot change them on a
+ * live producer, so {@link AdaptiveBatchingController} keeps one producer per
+ * profile.
+ */
+public enum BatchingProfile {
+    // rare or latency sensitive records, sent as soon as they arrive
+    LOW_LATENCY(0, 16384, "none"),
+    BALANCED(5, 65536, "lz4"),
+    // firehose topics, where batches fill long before the linger passes
+    HIGH_THROUGHPUT(25, 262144, "lz4");
+
+    private final int lingerMs;
+    private final int batchSizeBytes;
+    private final String compressionType;
+
+    BatchingProfile(int lingerMs, int batchSizeBytes, String compressionType) {
+        this.lingerMs = lingerMs;
+        this.batchSizeBytes = batchSizeBytes;
+        this.compressionType = compressionType;
+    }
+
+    public int getLingerMs() {
+        return lingerMs;
+    }
+
+    public int getBatchSizeBytes() {
+        return batchSizeBytes;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    /**
+     * The next profile batching more, or this one if there is none.
+     */
+    public BatchingProfile larger() {
+        return this == values()[values().length - 1] ? this : values()[ordinal() + 1];
+    }
+
+    /**
+     * The next profile batching less, or this one if there is none.
+     */
+    public BatchingProfile smaller() {
+        return this == values()[0] ? this : values()[ordinal() - 1];
+    }
+
+    Properties applyTo(Properties props) {
+        props.put("linger.ms", lingerMs);
+        props.put("batch.size", batchSizeBytes);
+        props.put("compression.type", compressionType);
+        return props;
+    }
+}
@@ -0,0 +1,209 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Throughput, processing time and lag of one {@link MessageConsumer}. The
+ * counters are updated by the polling and worker threads without locking;
+ * readers get a best effort view. Every subscribed consumer is listed in
+ * {@link #byConsumer()} under its name until it closes.
+ */
+public class ConsumerMetrics {
+
+    // records per second are measured over windows of this length
+    static final long RATE_WINDOW_MS = 10000;
+
+    private static final Map<String, ConsumerMetrics> registry = new ConcurrentHashMap<>();
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder processCalls = new LongAdder();
+    private final LongAdder processNanos = new LongAdder();
+    private final AtomicLong maxProcessNanos = new AtomicLong();
+    private final LongAdder pollToProcessNanos = new LongAdder();
+    private final AtomicLong maxPollToProcessNanos = new AtomicLong();
+    private final Map<TopicPartition, Long> lag = new ConcurrentHashMap<>();
+
+    // written by the polling thread only
+    private volatile long windowStartMs = System.currentTimeMillis();
+    private final LongAdder windowRecords = new LongAdder();
+    private volatile double lastRate = 0;
+
+    private volatile boolean paused = false;
+    private String registeredName;
+
+    /**
+     * The metrics of every subscribed consumer, by name. Consumers sharing a
+     * name are told apart by a numeric suffix.
+     */
+    public static Map<String, ConsumerMetrics> byConsumer() {
+        return Collections.unmodifiableMap(new TreeMap<>(registry));
+    }
+
+    synchronized void register(String name) {
+        unregister();
+        String key = name;
+        for (int n = 2; registry.putIfAbsent(key, this) != null; n++) {
+            key = name + "-" + n;
+        }
+        registeredName = key;
+    }
+
+    synchronized void unregister() {
+        if (registeredName != null) {
+            registry.remove(registeredName, this);
+            registeredName = null;
+        }
+    }
+
+    void polled(int count) {
+        long now = System.currentTimeMillis();
+        long elapsed = now - windowStartMs;
+        if (elapsed >= RATE_WINDOW_MS) {
+            lastRate = windowRecords.sumThenReset() * 1000.0 / elapsed;
+            windowStartMs = now;
+        }
+        records.add(count);
+        windowRecords.add(count);
+    }
+
+    /**
+     * Records one call of the processor, on the polling thread or a worker.
+     */
+    void processed(long nanos) {
+        processCalls.increment();
+        processNanos.add(nanos);
+        maxProcessNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Records a polled batch handled, successfully or not, the given time
+     * after the poll returned it.
+     */
+    void batchDone(long sincePollNanos) {
+        batches.increment();
+        pollToProcessNanos.add(sincePollNanos);
+        maxPollToProcessNanos.accumulateAndGet(sincePollNanos, Math::max);
+    }
+
+    void batchFailed() {
+        failedBatches.increment();
+    }
+
+    /*
+     * Takes the lag of every assigned partition from the consumer. Must run on
+     * the polling thread, the consumer is not thread safe.
+     */
+    void updateLag(Consumer<?, ?> consumer) {
+        Set<TopicPartition> assigned = consumer.assignment();
+        lag.keySet().retainAll(assigned);
+        for (TopicPartition partition : assigned) {
+            OptionalLong partitionLag = consumer.currentLag(partition);
+            if (partitionLag.isPresent()) {
+                lag.put(partition, partitionLag.getAsLong());
+            }
+        }
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public long getRecordsConsumed() {
+        return records.sum();
+    }
+
+    /**
+     * Records polled per second over the last complete window, or over the
+     * current one once it has run longer than a window without a poll.
+     */
+    public double getRecordsPerSecond() {
+        long elapsed = System.currentTimeMillis() - windowStartMs;
+        return elapsed >= RATE_WINDOW_MS ? windowRecords.sum() * 1000.0 / elapsed : lastRate;
+    }
+
+    /**
+     * Polled batches handed to the processor.
+     */
+    public long getBatchesProcessed() {
+        return batches.sum();
+    }
+
+    /**
+     * Batches, or partitions of a batch with worker threads, the processor
+     * failed on.
+     */
+    public long getBatchesFailed() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * Mean time spent in one call of the processor, in milliseconds.
+     */
+    public double getAverageProcessTimeMs() {
+        long count = processCalls.sum();
+        return count == 0 ? 0 : processNanos.sum() / (count * 1_000_000.0);
+    }
+
+    public double getMaxProcessTimeMs() {
+        return maxProcessNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Mean time from a poll returning a batch to the batch being processed,
+     * including the wait for worker threads, in milliseconds.
+     */
+    public double getAveragePollToProcessMs() {
+        long count = batches.sum();
+        return count == 0 ? 0 : pollToProcessNanos.sum() / (count * 1_000_000.0);
+    }
+
+    public double getMaxPollToProcessMs() {
+        return maxPollToProcessNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Records behind the end of every assigned partition, as of the last poll.
+     * Partitions whose end offset is not known yet are left out.
+     */
+    public Map<TopicPartition, Long> getLag() {
+        return new HashMap<>(lag);
+    }
+
+    public long getTotalLag() {
+        return lag.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Whether the consumer has paused its partitions for a saturated processor.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void reset() {
+        records.reset();
+        batches.reset();
+        failedBatches.reset();
+        processCalls.reset();
+        processNanos.reset();
+        maxProcessNanos.set(0);
+        pollToProcessNanos.reset();
+        maxPollToProcessNanos.set(0);
+        windowRecords.reset();
+        windowStartMs = System.currentTimeMillis();
+        lastRate = 0;
+    }
+}
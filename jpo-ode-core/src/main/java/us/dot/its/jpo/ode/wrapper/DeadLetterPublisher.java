@@ -0,0 +1,211 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import us.dot.its.jpo.ode.util.CodecUtils;
+import us.dot.its.jpo.ode.util.JsonUtils;
+
+/**
+ * Handles the records a processor fails on without letting them slow down
+ * the good ones. Every failure is published to the processor's dead-letter
+ * topic as a small JSON record that points at the original by topic,
+ * partition and offset and carries the error class, the stage and a truncated
+ * excerpt of the payload. The payload itself is never logged: the first
+ * failure of every interval is logged with its stack trace, the rest are
+ * counted by error class and summed up along with the next one logged.
+ */
+public class DeadLetterPublisher {
+
+    public static final int DEFAULT_EXCERPT_LENGTH = 256;
+    public static final long DEFAULT_LOG_INTERVAL_MS = 60000;
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterPublisher.class);
+
+    private final MessageProducer<String, String> producer;
+    private final String topic;
+    private final String stage;
+    private int excerptLength = DEFAULT_EXCERPT_LENGTH;
+    private long logIntervalMs = DEFAULT_LOG_INTERVAL_MS;
+
+    private final LongAdder failures = new LongAdder();
+    // guarded by this
+    private long nextLogMs = 0;
+    private final Map<String, Integer> suppressed = new TreeMap<>();
+
+    /**
+     * @param producer producer of the dead-letter records, may be null to
+     *                 only log
+     * @param topic    dead-letter topic, null or empty to only log
+     * @param stage    name of the processor the failures happen in
+     */
+    public DeadLetterPublisher(MessageProducer<String, String> producer, String topic, String stage) {
+        this.producer = producer;
+        this.topic = topic == null || topic.isEmpty() ? null : topic;
+        this.stage = stage;
+    }
+
+    /**
+     * Publishes and logs a failure to process a record.
+     *
+     * @param consumerRecord the record that failed, or null if unknown
+     * @param payload        the payload that failed, a String or byte[], only
+     *                       an excerpt of which is kept
+     */
+    public void failed(ConsumerRecord<?, ?> consumerRecord, Object payload, Throwable error) {
+        failures.increment();
+        String excerpt = excerpt(payload, excerptLength);
+        if (producer != null && topic != null) {
+            try {
+                Object key = consumerRecord == null ? null : consumerRecord.key();
+                producer.send(topic, key == null ? null : key.toString(),
+                        deadLetter(consumerRecord, payload, error, excerpt).toString());
+            } catch (Exception e) {
+                logger.warn("{} failed to publish a dead letter to {}: {}", stage, topic, e.toString());
+            }
+        }
+        log(consumerRecord == null ? null : coordinates(consumerRecord.topic(), consumerRecord.partition(),
+                consumerRecord.offset()), error, excerpt);
+    }
+
+    /**
+     * Counts and logs a failure like {@link #failed} but returns the dead
+     * letter instead of publishing it, for callers that write it themselves,
+     * such as a streams topology writing it in the transaction of the record.
+     *
+     * @param sourceTopic topic of the record that failed, null if unknown
+     */
+    public String deadLetter(String sourceTopic, int partition, long offset, long timestamp, Object payload,
+            Throwable error) {
+        failures.increment();
+        String excerpt = excerpt(payload, excerptLength);
+        ObjectNode deadLetter = deadLetter(payload, error, excerpt);
+        if (sourceTopic != null) {
+            source(deadLetter, sourceTopic, partition, offset, timestamp);
+        }
+        log(sourceTopic == null ? null : coordinates(sourceTopic, partition, offset), error, excerpt);
+        return deadLetter.toString();
+    }
+
+    ObjectNode deadLetter(ConsumerRecord<?, ?> consumerRecord, Object payload, Throwable error, String excerpt) {
+        ObjectNode deadLetter = deadLetter(payload, error, excerpt);
+        if (consumerRecord != null) {
+            source(deadLetter, consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset(),
+                    consumerRecord.timestamp());
+        }
+        return deadLetter;
+    }
+
+    private ObjectNode deadLetter(Object payload, Throwable error, String excerpt) {
+        ObjectNode deadLetter = JsonUtils.newNode();
+        deadLetter.put("stage", stage);
+        deadLetter.put("errorClass", error.getClass().getName());
+        deadLetter.put("errorMessage", excerpt(error.getMessage(), excerptLength));
+        deadLetter.put("payloadLength", length(payload));
+        deadLetter.put("excerpt", excerpt);
+        deadLetter.put("failedAt", System.currentTimeMillis());
+        return deadLetter;
+    }
+
+    private static void source(ObjectNode deadLetter, String topic, int partition, long offset, long timestamp) {
+        ObjectNode source = deadLetter.putObject("source");
+        source.put("topic", topic);
+        source.put("partition", partition);
+        source.put("offset", offset);
+        source.put("timestamp", timestamp);
+    }
+
+    private static String coordinates(String topic, int partition, long offset) {
+        return topic + "-" + partition + "@" + offset;
+    }
+
+    private void log(String coordinates, Throwable error, String excerpt) {
+        String errorClass = error.getClass().getSimpleName();
+        Map<String, Integer> summary = null;
+        boolean logThis;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            logThis = now >= nextLogMs;
+            if (logThis) {
+                nextLogMs = now + logIntervalMs;
+                if (!suppressed.isEmpty()) {
+                    summary = new TreeMap<>(suppressed);
+                    suppressed.clear();
+                }
+            } else {
+                suppressed.merge(errorClass, 1, Integer::sum);
+            }
+        }
+        if (summary != null) {
+            logger.error("{} failed on {} more records in the last {} seconds: {}", stage,
+                    summary.values().stream().mapToInt(Integer::intValue).sum(), logIntervalMs / 1000, summary);
+        }
+        if (logThis) {
+            logger.error("{} failed on record {}, further failures are summed up for {} seconds. Excerpt: {}", stage,
+                    coordinates == null ? "unknown" : coordinates, logIntervalMs / 1000, excerpt, error);
+        }
+    }
+
+    /**
+     * The start of a String, or of the hex form of a byte[], no longer than
+     * the given length.
+     */
+    public static String excerpt(Object payload, int maxLength) {
+        if (payload == null) {
+            return null;
+        }
+        String text;
+        if (payload instanceof byte[]) {
+            byte[] bytes = (byte[]) payload;
+            byte[] start = new byte[Math.min(bytes.length, maxLength / 2)];
+            System.arraycopy(bytes, 0, start, 0, start.length);
+            text = CodecUtils.toHex(start);
+            return start.length < bytes.length ? text + "..." : text;
+        }
+        text = payload instanceof String ? (String) payload : payload.getClass().getName();
+        return text.length() > maxLength ? text.substring(0, maxLength) + "..." : text;
+    }
+
+    private static int length(Object payload) {
+        if (payload instanceof byte[]) {
+            return ((byte[]) payload).length;
+        }
+        return payload instanceof String ? ((String) payload).length() : -1;
+    }
+
+    /**
+     * Failures handled since this publisher was created.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public int getExcerptLength() {
+        return excerptLength;
+    }
+
+    public DeadLetterPublisher setExcerptLength(int excerptLength) {
+        this.excerptLength = Math.max(0, excerptLength);
+        return this;
+    }
+
+    public long getLogIntervalMs() {
+        return logIntervalMs;
+    }
+
+    public DeadLetterPublisher setLogIntervalMs(long logIntervalMs) {
+        this.logIntervalMs = logIntervalMs;
+        return this;
+    }
+}
@@ -0,0 +1,88 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records in flight on one Kafka producer, that is handed to it and not yet
+ * acknowledged or rejected. Shared by every {@link MessageProducer} handle on
+ * the producer, so the in-flight limit of a handle counts the records of all
+ * of them.
+ */
+class InFlightWindow {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // threads blocked in reserve, so release only takes the lock when needed
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    int get() {
+        return inFlight.get();
+    }
+
+    /**
+     * Counts a record in flight if fewer than limit are, or always when limit
+     * is 0 or less.
+     */
+    boolean tryReserve(int limit) {
+        if (limit <= 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Counts a record in flight, waiting up to maxBlockMs for one to complete
+     * while limit records are in flight.
+     *
+     * @return false if none completed in time
+     */
+    boolean reserve(int limit, long maxBlockMs) {
+        if (tryReserve(limit)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMs);
+        boolean interrupted = false;
+        synchronized (this) {
+            waiting.incrementAndGet();
+            try {
+                while (!tryReserve(limit)) {
+                    long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMs <= 0) {
+                        return false;
+                    }
+                    try {
+                        wait(remainingMs);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                return true;
+            } finally {
+                waiting.decrementAndGet();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a record out of flight and wakes a thread waiting to send.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+        if (waiting.get() > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+}
@@ -17,10 +17,27 @@ package us.dot.its.jpo.ode.wrapper;
 
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,29 +46,93 @@ public class MessageConsumer<K, V> {
     private String name = "DefaultMessageConsumer";
 
     private static final int CONSUMER_POLL_TIMEOUT_MS = 60000;
+    // short enough to notice a drained processor soon
+    private static final int PAUSED_POLL_TIMEOUT_MS = 100;
     public static final String SERIALIZATION_STRING_DESERIALIZER = "org.apache.kafka.common.serialization.StringDeserializer";
     public static final String SERIALIZATION_BYTE_ARRAY_DESERIALIZER = "org.apache.kafka.common.serialization.ByteArrayDeserializer";
     public static final int DEFAULT_CONSUMER_SESSION_TIMEOUT_MS = 30000;
     public static final int DEFAULT_CONSUMER_AUTO_COMMIT_INTERVAL_MS = 1000;
     public static final String DEFAULT_CONSUMER_ENABLE_AUTO_COMMIT = "true";
+    public static final int DEFAULT_CONSUMER_COMMIT_BATCH_SIZE = 500;
+    public static final int DEFAULT_CONSUMER_MAX_RETRIES = 3;
 
     private static Logger logger = LoggerFactory.getLogger(MessageConsumer.class);
 
+    /**
+     * What the worker threads keep in order when {@link #getWorkerThreads()}
+     * is above one.
+     */
+    public enum Ordering {
+        // the records of one partition are processed by one worker, in offset order
+        PARTITION,
+        // the records of one key are processed by one worker, in offset order;
+        // the keys of one partition are spread over the workers
+        KEY;
+
+        public static Ordering fromString(String name) {
+            if (name == null)
+                return PARTITION;
+            try {
+                return valueOf(name.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warn("Unknown consumer ordering {}, using PARTITION", name);
+                return PARTITION;
+            }
+        }
+    }
+
     private MessageProcessor<K, V> processor;
 
-    private KafkaConsumer<K, V> consumer;
+    private Consumer<K, V> consumer;
 
     private boolean isRunning = false;
 
+    // partitions are paused while the processor is saturated
+    private volatile boolean paused = false;
+
+    // with auto commit off, the offsets returned by the processor are committed here
+    private boolean autoCommit = true;
+    private int commitBatchSize = DEFAULT_CONSUMER_COMMIT_BATCH_SIZE;
+    private long commitIntervalMs = DEFAULT_CONSUMER_AUTO_COMMIT_INTERVAL_MS;
+    // next offset to read per partition, processed but not committed yet
+    private final Map<TopicPartition, OffsetAndMetadata> pendingOffsets = new HashMap<>();
+    private int pendingRecords = 0;
+    private long lastCommitMs;
+    // failed attempts at the batch starting at the same offset, per partition
+    private final Map<TopicPartition, Retry> retries = new HashMap<>();
+    private int maxRetries = DEFAULT_CONSUMER_MAX_RETRIES;
+    // records skipped after the retries, log only unless set
+    private DeadLetterPublisher deadLetters;
+
+    // one polling thread processes every batch unless more workers are set
+    private int workerThreads = 1;
+    private Ordering ordering = Ordering.PARTITION;
+    private ExecutorService workers;
+
+    private final ConsumerMetrics metrics = new ConsumerMetrics();
+
     public static MessageConsumer<String, byte[]> defaultByteArrayMessageConsumer(
             String brokers,
             String groupId,
             MessageProcessor<String, byte[]> processor) {
+        return defaultByteArrayMessageConsumer(brokers, groupId, processor, new Properties());
+    }
+
+    /**
+     * @param overrides consumer properties replacing the defaults, for example
+     *                  enable.auto.commit=false to commit only processed offsets
+     */
+    public static MessageConsumer<String, byte[]> defaultByteArrayMessageConsumer(
+            String brokers,
+            String groupId,
+            MessageProcessor<String, byte[]> processor,
+            Properties overrides) {
         MessageConsumer<String, byte[]> msgConsumer = new MessageConsumer<String, byte[]>(
                 brokers,
                 groupId,
                 processor,
-                SERIALIZATION_BYTE_ARRAY_DESERIALIZER);
+                SERIALIZATION_BYTE_ARRAY_DESERIALIZER,
+                overrides);
 
         logger.info("Default String Message Consumer Created");
 
@@ -62,11 +143,24 @@ public class MessageConsumer<K, V> {
             String brokers,
             String groupId,
             MessageProcessor<String, String> processor) {
+        return defaultStringMessageConsumer(brokers, groupId, processor, new Properties());
+    }
+
+    /**
+     * @param overrides consumer properties replacing the defaults, for example
+     *                  enable.auto.commit=false to commit only processed offsets
+     */
+    public static MessageConsumer<String, String> defaultStringMessageConsumer(
+            String brokers,
+            String groupId,
+            MessageProcessor<String, String> processor,
+            Properties overrides) {
         MessageConsumer<String, String> msgConsumer = new MessageConsumer<String, String>(
                 brokers,
                 groupId,
                 processor,
-                SERIALIZATION_STRING_DESERIALIZER);
+                SERIALIZATION_STRING_DESERIALIZER,
+                overrides);
 
         logger.info("Default String Message Consumer Created");
 
@@ -78,6 +172,15 @@ public class MessageConsumer<K, V> {
             String groupId,
             MessageProcessor<K, V> processor,
             String valueDeserializer) {
+        this(brokers, groupId, processor, valueDeserializer, new Properties());
+    }
+
+    public MessageConsumer(
+            String brokers,
+            String groupId,
+            MessageProcessor<K, V> processor,
+            String valueDeserializer,
+            Properties overrides) {
         Properties props = new Properties();
 
         props.put("enable.auto.commit", DEFAULT_CONSUMER_ENABLE_AUTO_COMMIT);
@@ -87,6 +190,7 @@ public class MessageConsumer<K, V> {
         props.put("session.timeout.ms", DEFAULT_CONSUMER_SESSION_TIMEOUT_MS);
         props.put("key.deserializer", SERIALIZATION_STRING_DESERIALIZER);
         props.put("value.deserializer", valueDeserializer);
+        props.putAll(overrides);
 
         this.processor = processor;
         props.put("bootstrap.servers", brokers);
@@ -96,7 +200,8 @@ public class MessageConsumer<K, V> {
         if (kafkaType != null && kafkaType.equals("CONFLUENT"))
             addConfluentProperties(props);
         
-        this.consumer = new KafkaConsumer<K, V>(props);
+        this.consumer = MessageTransport.getDefault().createConsumer(props);
+        this.autoCommit = isAutoCommit(props);
 
         logger.info("Consumer Created for groupId {}", groupId);
     }
@@ -114,11 +219,18 @@ public class MessageConsumer<K, V> {
         if (kafkaType != null && kafkaType.equals("CONFLUENT"))
             addConfluentProperties(props);
         
-        this.consumer = new KafkaConsumer<K, V>(props);
+        this.consumer = MessageTransport.getDefault().createConsumer(props);
+        this.autoCommit = isAutoCommit(props);
 
         logger.info("Consumer Created for groupId {}", groupId);
     }
 
+    // Kafka commits automatically unless enable.auto.commit is false
+    private static boolean isAutoCommit(Properties props) {
+        Object enableAutoCommit = props.get("enable.auto.commit");
+        return enableAutoCommit == null || !"false".equalsIgnoreCase(enableAutoCommit.toString());
+    }
+
     private Properties addConfluentProperties(Properties props) {
         props.put("ssl.endpoint.identification.algorithm", "https");
         props.put("security.protocol", "SASL_SSL");
@@ -140,21 +252,83 @@ public class MessageConsumer<K, V> {
         return props;
     }
 
+    /**
+     * Polls the topics and hands every batch to the processor until
+     * {@link #close()} is called. With enable.auto.commit=false only the
+     * offsets the processor returns are committed: asynchronously once
+     * {@link #getCommitBatchSize()} records or {@link #getCommitIntervalMs()}
+     * have accumulated, and synchronously when partitions are revoked and on
+     * shutdown. A batch the processor fails on is read again from its first
+     * record, so every record is processed at least once. After
+     * {@link #getMaxRetries()} failures from the same offset of a partition,
+     * its records are processed one at a time instead, the ones that still
+     * fail are handed to the {@link #setDeadLetters dead letters} and the
+     * offsets committed past them, so one poison record cannot hold up its
+     * partition.
+     * <p>
+     * With more than one {@link #getWorkerThreads() worker thread} the batch
+     * of every partition, or of every key with {@link Ordering#KEY}, is handed
+     * to the workers and the next poll waits until all of them are done. A
+     * partition counts as processed only once all of its records are, and only
+     * the partitions that failed are read again.
+     * <p>
+     * While the processor reports it is {@link MessageProcessor#isSaturated()
+     * saturated}, every assigned partition is paused. Polling goes on with a
+     * short timeout, which keeps the consumer in its group without fetching
+     * more records, and the partitions are resumed as soon as the processor
+     * has drained.
+     * <p>
+     * Throughput, processing time and the lag of every assigned partition are
+     * kept in {@link #getMetrics()}, listed under this consumer's name while it
+     * is subscribed.
+     */
     public void subscribe(String... topics) {
         List<String> listTopics = Arrays.asList(topics);
         logger.info("Subscribing to {}", listTopics);
-        consumer.subscribe(listTopics);
+        if (autoCommit) {
+            consumer.subscribe(listTopics);
+        } else {
+            consumer.subscribe(listTopics, new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    commitSync();
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    // positions come from the committed offsets
+                }
+            });
+        }
 
+        if (workerThreads > 1) {
+            workers = newWorkerPool();
+        }
         isRunning = true;
+        paused = false;
+        metrics.register(name);
+        lastCommitMs = System.currentTimeMillis();
         boolean gotMessages = false;
         while (isRunning) {
+            ConsumerRecords<K, V> records = null;
+            long polledNanos = 0;
             try {
-                ConsumerRecords<K, V> records = consumer.poll(Duration.ofMillis(CONSUMER_POLL_TIMEOUT_MS));
+                records = consumer.poll(Duration.ofMillis(paused ? PAUSED_POLL_TIMEOUT_MS : CONSUMER_POLL_TIMEOUT_MS));
+                polledNanos = System.nanoTime();
+                metrics.polled(records == null ? 0 : records.count());
+                metrics.updateLag(consumer);
                 if (records != null && !records.isEmpty()) {
                     gotMessages = true;
                     logger.debug("{} consuming {} message(s)", name, records.count());
-                    processor.process(records);
-                } else {
+                    Map<TopicPartition, Long> processedOffsets = workers == null
+                            ? timedProcess(records)
+                            : processInParallel(records);
+                    metrics.batchDone(System.nanoTime() - polledNanos);
+                    if (!autoCommit) {
+                        processedOffsets.keySet().forEach(retries::remove);
+                        addPending(processedOffsets, records.count());
+                    }
+                } else if (!paused) {
                     if (gotMessages) {
                         logger.debug(
                                 "{} no messages consumed in {} seconds.",
@@ -163,19 +337,256 @@ public class MessageConsumer<K, V> {
                         gotMessages = false;
                     }
                 }
+                if (!autoCommit) {
+                    commitIfDue();
+                }
+                applyFlowControl();
             } catch (Exception e) {
                 logger.error(" {} error processing consumed messages", name, e);
+                if (records != null && !records.isEmpty()) {
+                    metrics.batchDone(System.nanoTime() - polledNanos);
+                    metrics.batchFailed();
+                }
+                if (!autoCommit && records != null) {
+                    for (TopicPartition partition : records.partitions()) {
+                        retryOrSkip(partition, records.records(partition));
+                    }
+                }
             }
         }
 
         logger.debug("Closing message consumer.");
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+        if (!autoCommit) {
+            commitSync();
+        }
         consumer.close();
+        metrics.unregister();
+    }
+
+    /*
+     * Pauses every assigned partition while the processor is saturated,
+     * including partitions assigned since it became saturated, and resumes
+     * them once it is not.
+     */
+    private void applyFlowControl() {
+        if (processor.isSaturated()) {
+            Set<TopicPartition> assigned = consumer.assignment();
+            if (!paused) {
+                logger.info("{} pausing {} while the processor is saturated", name, assigned);
+                paused = true;
+                metrics.setPaused(true);
+            }
+            consumer.pause(assigned);
+        } else if (paused) {
+            Set<TopicPartition> resumed = consumer.paused();
+            consumer.resume(resumed);
+            paused = false;
+            metrics.setPaused(false);
+            logger.info("{} resuming {}", name, resumed);
+        }
+    }
+
+    private ExecutorService newWorkerPool() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*
+     * Hands every partition, or every key lane of every partition, to the
+     * workers and waits for all of them. Returns the last offset of each
+     * partition whose records were all processed; failed partitions are
+     * rewound.
+     */
+    private Map<TopicPartition, Long> processInParallel(ConsumerRecords<K, V> records)
+            throws InterruptedException {
+        Map<TopicPartition, List<Future<List<Object>>>> tasks = new LinkedHashMap<>();
+        for (TopicPartition partition : records.partitions()) {
+            List<Future<List<Object>>> lanes = new ArrayList<>();
+            for (List<ConsumerRecord<K, V>> lane : lanes(records.records(partition))) {
+                lanes.add(workers.submit(() -> timedProcessBatch(lane)));
+            }
+            tasks.put(partition, lanes);
+        }
+
+        Map<TopicPartition, Long> processedOffsets = new HashMap<>();
+        for (Map.Entry<TopicPartition, List<Future<List<Object>>>> task : tasks.entrySet()) {
+            TopicPartition partition = task.getKey();
+            boolean failed = false;
+            for (Future<List<Object>> lane : task.getValue()) {
+                try {
+                    lane.get();
+                } catch (ExecutionException e) {
+                    failed = true;
+                    logger.error("{} error processing consumed messages of {}", name, partition, e.getCause());
+                }
+            }
+            List<ConsumerRecord<K, V>> partitionRecords = records.records(partition);
+            if (!failed) {
+                processedOffsets.put(partition, partitionRecords.get(partitionRecords.size() - 1).offset());
+            } else {
+                metrics.batchFailed();
+                if (!autoCommit) {
+                    retryOrSkip(partition, partitionRecords);
+                }
+            }
+        }
+        return processedOffsets;
+    }
+
+    private Map<TopicPartition, Long> timedProcess(ConsumerRecords<K, V> records) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return processor.process(records);
+        } finally {
+            metrics.processed(System.nanoTime() - start);
+        }
+    }
+
+    private List<Object> timedProcessBatch(List<ConsumerRecord<K, V>> records) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return processor.processBatch(records);
+        } finally {
+            metrics.processed(System.nanoTime() - start);
+        }
+    }
+
+    /*
+     * Splits the records of one partition into the lists that must each be
+     * processed in order.
+     */
+    private List<List<ConsumerRecord<K, V>>> lanes(List<ConsumerRecord<K, V>> records) {
+        if (ordering == Ordering.PARTITION) {
+            return Collections.singletonList(records);
+        }
+        Map<Integer, List<ConsumerRecord<K, V>>> lanes = new LinkedHashMap<>();
+        for (ConsumerRecord<K, V> consumerRecord : records) {
+            int lane = Math.floorMod(Objects.hashCode(consumerRecord.key()), workerThreads);
+            lanes.computeIfAbsent(lane, l -> new ArrayList<>()).add(consumerRecord);
+        }
+        return new ArrayList<>(lanes.values());
+    }
+
+    private void addPending(Map<TopicPartition, Long> processedOffsets, int recordCount) {
+        processedOffsets.forEach(
+                (partition, offset) -> pendingOffsets.put(partition, new OffsetAndMetadata(offset + 1)));
+        pendingRecords += recordCount;
+    }
+
+    private void commitIfDue() {
+        if (pendingOffsets.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (pendingRecords < commitBatchSize && now - lastCommitMs < commitIntervalMs) {
+            return;
+        }
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>(pendingOffsets);
+        pendingOffsets.clear();
+        pendingRecords = 0;
+        lastCommitMs = now;
+        consumer.commitAsync(offsets, (committed, e) -> {
+            if (e != null) {
+                // a later commit of the same partitions covers these offsets
+                logger.warn("{} failed to commit offsets {}", name, committed, e);
+            }
+        });
+    }
+
+    private void commitSync() {
+        if (pendingOffsets.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.commitSync(pendingOffsets);
+            logger.debug("{} committed offsets {}", name, pendingOffsets);
+        } catch (Exception e) {
+            logger.error("{} failed to commit offsets {}", name, pendingOffsets, e);
+        }
+        pendingOffsets.clear();
+        pendingRecords = 0;
+        lastCommitMs = System.currentTimeMillis();
+    }
+
+    /*
+     * Reads the failed records of a partition again on the next poll, or once
+     * they have failed maxRetries times, processes them one at a time and
+     * skips the ones that still fail.
+     */
+    private void retryOrSkip(TopicPartition partition, List<ConsumerRecord<K, V>> records) {
+        long firstOffset = records.get(0).offset();
+        Retry retry = retries.get(partition);
+        if (retry == null || retry.offset != firstOffset) {
+            retry = new Retry(firstOffset);
+            retries.put(partition, retry);
+        }
+        if (++retry.attempts <= maxRetries) {
+            rewind(partition, firstOffset);
+            return;
+        }
+
+        retries.remove(partition);
+        logger.warn("{} failed {} times on {} from offset {}, processing its {} records one at a time", name,
+                retry.attempts, partition, firstOffset, records.size());
+        for (ConsumerRecord<K, V> consumerRecord : records) {
+            try {
+                processor.processBatch(Collections.singletonList(consumerRecord));
+            } catch (Exception e) {
+                deadLetters().failed(consumerRecord, consumerRecord.value(), e);
+            }
+        }
+        addPending(Collections.singletonMap(partition, records.get(records.size() - 1).offset()), records.size());
+    }
+
+    private DeadLetterPublisher deadLetters() {
+        if (deadLetters == null) {
+            deadLetters = new DeadLetterPublisher(null, null, name);
+        }
+        return deadLetters;
+    }
+
+    private void rewind(TopicPartition partition, long offset) {
+        try {
+            consumer.seek(partition, offset);
+        } catch (IllegalStateException e) {
+            // no longer assigned, the new owner starts from the committed offset
+            logger.debug("{} not rewinding revoked partition {}", name, partition);
+        }
     }
 
     public void close() {
         isRunning = false;
     }
 
+    /**
+     * Times a batch starting at the same offset of a partition is read again
+     * after failing, when auto commit is off, before its records are processed
+     * one at a time and the failing ones skipped.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Where the records skipped after {@link #getMaxRetries()} go. By default
+     * they are only logged.
+     */
+    public void setDeadLetters(DeadLetterPublisher deadLetters) {
+        this.deadLetters = deadLetters;
+    }
+
     public MessageProcessor<K, V> getProcessor() {
         return processor;
     }
@@ -184,14 +595,82 @@ public class MessageConsumer<K, V> {
         this.processor = processor;
     }
 
-    public KafkaConsumer<K, V> getConsumer() {
+    /**
+     * Whether the partitions are paused because the processor is saturated.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Throughput, processing time and lag of this consumer.
+     */
+    public ConsumerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Consumer<K, V> getConsumer() {
         return consumer;
     }
 
-    public void setConsumer(KafkaConsumer<K, V> consumer) {
+    public void setConsumer(Consumer<K, V> consumer) {
         this.consumer = consumer;
     }
 
+    /**
+     * Whether Kafka commits offsets on its own timer rather than this consumer
+     * committing the offsets returned by the processor.
+     */
+    public boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    /**
+     * Processed records after which their offsets are committed, when auto
+     * commit is off.
+     */
+    public int getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    public void setCommitBatchSize(int commitBatchSize) {
+        this.commitBatchSize = commitBatchSize;
+    }
+
+    /**
+     * Longest time processed offsets wait to be committed, when auto commit is
+     * off.
+     */
+    public long getCommitIntervalMs() {
+        return commitIntervalMs;
+    }
+
+    public void setCommitIntervalMs(long commitIntervalMs) {
+        this.commitIntervalMs = commitIntervalMs;
+    }
+
+    /**
+     * Threads processing the polled records. With one, the default, the
+     * polling thread processes them itself. Takes effect on the next
+     * {@link #subscribe(String...)}; the processor must be safe to call from
+     * several threads.
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = Math.max(1, workerThreads);
+    }
+
+    public Ordering getOrdering() {
+        return ordering;
+    }
+
+    public void setOrdering(Ordering ordering) {
+        this.ordering = ordering;
+    }
+
     public String getName() {
         return name;
     }
@@ -199,4 +678,13 @@ public class MessageConsumer<K, V> {
     public void setName(String name) {
         this.name = name;
     }
+
+    private static class Retry {
+        private final long offset;
+        private int attempts;
+
+        Retry(long offset) {
+            this.offset = offset;
+        }
+    }
 }
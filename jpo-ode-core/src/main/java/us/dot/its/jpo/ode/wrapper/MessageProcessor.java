@@ -15,7 +15,9 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.wrapper;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -27,38 +29,89 @@ import org.apache.kafka.common.TopicPartition;
  * @author 572682
  * This abstract class provides the common and basic functionality for processinf messages
  * received from a Kafka topic subscription.
+ * 
+ * Records are handed over in batches, one per partition, through
+ * {@link #processBatch(List)}. The default batch implementation runs
+ * {@link #call()} once per record with {@link #getRecord()} returning that
+ * record. The current record is kept per thread, so one processor may work
+ * on batches of different partitions at the same time.
  *  
  * @param <K> Message Key type
  * @param <V> Message Value type
  */
 public abstract class MessageProcessor<K, V> implements Callable<Object> {
 
-   private ConsumerRecord<K, V> record;
+   private final ThreadLocal<ConsumerRecord<K, V>> record = new ThreadLocal<>();
 
    public Map<TopicPartition, Long> process(ConsumerRecords<K, V> consumerRecords) throws Exception {
 
       Map<TopicPartition, Long> processedOffsets = new HashMap<TopicPartition, Long>();
-      for (ConsumerRecord<K, V> recordMetadata : consumerRecords) {
-         record = recordMetadata;
-
-         TopicPartition topicPartition = new TopicPartition(recordMetadata.topic(), recordMetadata.partition());
-         try {
-            call();
-            processedOffsets.put(topicPartition, recordMetadata.offset());
-         } catch (Exception e) {
-            throw new Exception("Error processing message", e);
-         }
+      for (TopicPartition topicPartition : consumerRecords.partitions()) {
+         List<ConsumerRecord<K, V>> records = consumerRecords.records(topicPartition);
+         processBatch(records);
+         processedOffsets.put(topicPartition, records.get(records.size() - 1).offset());
       }
       return processedOffsets;
    }
+
+   /**
+    * Processes the records of one partition in offset order.
+    *
+    * @param records records of one partition, in offset order
+    * @return the result of every record, in the order of the records
+    * @throws Exception if any record fails, after the records before it were
+    *                   processed
+    */
+   public List<Object> processBatch(List<ConsumerRecord<K, V>> records) throws Exception {
+      List<Object> results = new ArrayList<>(records.size());
+      for (ConsumerRecord<K, V> consumerRecord : records) {
+         results.add(withRecord(consumerRecord, this));
+      }
+      return results;
+   }
+
+   /**
+    * Runs the task with {@link #getRecord()} returning the given record on the
+    * calling thread, and clears it again once the task is done, so a pooled
+    * thread never keeps one.
+    */
+   public <T> T withRecord(ConsumerRecord<K, V> consumerRecord, Callable<T> task) throws Exception {
+      record.set(consumerRecord);
+      try {
+         return task.call();
+      } catch (Exception e) {
+         throw new Exception("Error processing message", e);
+      } finally {
+         record.remove();
+      }
+   }
    
+   /**
+    * Whether a downstream stage is too far behind to take more records. While
+    * it is, the consumer pauses its partitions and only polls to stay in its
+    * group, then resumes once this turns false again.
+    */
+   public boolean isSaturated() {
+      return false;
+   }
+
+   /**
+    * The record being processed on the calling thread.
+    */
    public ConsumerRecord<K, V> getRecord() {
-      return record;
+      return record.get();
    }
 
+   /**
+    * Sets the record {@link #getRecord()} returns on the calling thread until
+    * it is set again.
+    *
+    * @deprecated the record stays set on the thread; use {@link #withRecord}
+    */
+   @Deprecated
    public MessageProcessor<K, V> setRecord(ConsumerRecord<K, V> newRecord) {
-       this.record = newRecord;
-       return this;
+      this.record.set(newRecord);
+      return this;
    }
 
 }
@@ -15,13 +15,21 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.wrapper;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.kafka.clients.producer.Callback;
-import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +42,32 @@ import org.slf4j.LoggerFactory;
  */
 public class MessageProducer<K, V> {
 
+    /**
+     * Reported by {@link MessageProducer#sendAsync} when the producer already
+     * has its maximum number of records in flight, and thrown by the other
+     * send methods when none completes within {@link #getMaxBlockMs()}.
+     */
+    public static class InFlightLimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public InFlightLimitExceededException(String topic, int maxInFlight) {
+            super("Not sending to " + topic + ", " + maxInFlight + " records already in flight");
+        }
+    }
+
+    /**
+     * Completion callback for {@link MessageProducer#sendBatch}. Called once,
+     * after the broker acknowledged or rejected every record of the batch.
+     */
+    public interface BatchCallback {
+        /**
+         * @param recordCount number of records in the batch
+         * @param exception the first failure reported for the batch, null if
+         *                  every record was written
+         */
+        void onCompletion(int recordCount, Exception exception);
+    }
+
     public static final String SERIALIZATION_STRING_SERIALIZER = "org.apache.kafka.common.serialization.StringSerializer";
     public static final String SERIALIZATION_BYTE_ARRAY_SERIALIZER = "org.apache.kafka.common.serialization.ByteArraySerializer";
     public static final int DEFAULT_PRODUCER_BUFFER_MEMORY_BYTES = 33554432;
@@ -41,33 +75,64 @@ public class MessageProducer<K, V> {
     public static final int DEFAULT_PRODUCER_BATCH_SIZE_BYTES = 16384;
     public static final int DEFAULT_PRODUCER_RETRIES = 0;
     public static final String DEFAULT_PRODUCER_ACKS = "all";
+    public static final long DEFAULT_MAX_BLOCK_MS = 60000;
 
     private static Logger logger = LoggerFactory.getLogger(MessageProducer.class);
 
+    private static final Callback LOGGING_CALLBACK = new Callback() {
+        @Override
+        public void onCompletion(RecordMetadata returnMetadata, Exception e) {
+            if (null != e) {
+                logger.error("Error sending record.", e);
+            } else {
+                logger.debug(
+                        "Completed publish to topic: {}, offset: {}, partition: {}",
+                        returnMetadata.topic(),
+                        returnMetadata.offset(),
+                        returnMetadata.partition());
+            }
+        }
+    };
+
     private Producer<K, V> producer;
     private Set<String> disabledTopicsSet;
+    private boolean shared;
+    private Runnable release;
+
+    // records handed to the producer and not yet acknowledged or rejected, by any handle on it
+    private final InFlightWindow inFlight;
+    private volatile int maxInFlight;
+    private volatile long maxBlockMs = DEFAULT_MAX_BLOCK_MS;
+    private final Map<String, ProducerTopicMetrics> topicMetrics = new ConcurrentHashMap<>();
+    // picks the producer of every topic when batching adapts to the traffic
+    private AdaptiveBatchingController batching;
 
     public static MessageProducer<String, byte[]> defaultByteArrayMessageProducer(
             String brokers,
             String type,
             Set<String> disabledTopics) {
-        return new MessageProducer<String, byte[]>(
-                brokers,
-                type,
-                null,
-                SERIALIZATION_BYTE_ARRAY_SERIALIZER,
-                disabledTopics);
+        return sharedMessageProducer(brokers, type, null, SERIALIZATION_BYTE_ARRAY_SERIALIZER, disabledTopics);
     }
 
     public static MessageProducer<String, String> defaultStringMessageProducer(
             String brokers,
             String type,
             Set<String> disabledTopics) {
-        return new MessageProducer<String, String>(
-                brokers,
-                type,
-                null,
-                SERIALIZATION_STRING_SERIALIZER,
+        return sharedMessageProducer(brokers, type, null, SERIALIZATION_STRING_SERIALIZER, disabledTopics);
+    }
+
+    /**
+     * A handle on the producer {@link MessageProducerRegistry} keeps for the
+     * given brokers, partitioner and value serializer. Closing the handle
+     * releases it; the producer is closed with its last handle.
+     */
+    public static <V> MessageProducer<String, V> sharedMessageProducer(
+            String brokers,
+            String type,
+            String partitionerClass,
+            String valueSerializerFQN,
+            Set<String> disabledTopics) {
+        return MessageProducerRegistry.getInstance().acquire(brokers, partitionerClass, valueSerializerFQN,
                 disabledTopics);
     }
 
@@ -77,29 +142,11 @@ public class MessageProducer<K, V> {
             String partitionerClass,
             String valueSerializerFQN,
             Set<String> disabledTopics) {
-        Properties props = setDefaultProperties();
-
-        if (brokers != null) {
-            props.put("bootstrap.servers", brokers);
-        } else {
-            logger.error("Bootstrap servers setting is null");
-        }
-
-        props.put("key.serializer", SERIALIZATION_STRING_SERIALIZER);
-        props.put("value.serializer", valueSerializerFQN);
-
-        if (partitionerClass != null) {
-            props.put("partitioner.class", partitionerClass);
-        }
-
-        String kafkaType = System.getenv("KAFKA_TYPE");
-        if (kafkaType != null && kafkaType.equals("CONFLUENT")) {
-            addConfluentProperties(props);
-        }
-        
-        producer = new KafkaProducer<>(props);
+        producer = MessageTransport.getDefault().createProducer(
+                defaultProperties(brokers, partitionerClass, valueSerializerFQN));
 
         this.disabledTopicsSet = disabledTopics;
+        this.inFlight = new InFlightWindow();
 
         logger.info("Producer Created with default properties");
     }
@@ -121,14 +168,67 @@ public class MessageProducer<K, V> {
             addConfluentProperties(props);
         }
         
-        producer = new KafkaProducer<>(props);
+        producer = MessageTransport.getDefault().createProducer(props);
 
         this.disabledTopicsSet = enabledTopics;
+        this.inFlight = new InFlightWindow();
 
         logger.info("Producer Created");
     }
 
-    private Properties setDefaultProperties() {
+    /**
+     * A handle on a producer shared through {@link MessageProducerRegistry}.
+     * Closing the handle runs release instead of closing the producer.
+     */
+    MessageProducer(Producer<K, V> producer, Set<String> disabledTopics, Runnable release) {
+        this(producer, disabledTopics, release, new InFlightWindow());
+    }
+
+    /**
+     * A handle counting its records in the in-flight window of every handle on
+     * the same producer.
+     */
+    MessageProducer(Producer<K, V> producer, Set<String> disabledTopics, Runnable release, InFlightWindow inFlight) {
+        this.producer = producer;
+        this.disabledTopicsSet = disabledTopics;
+        this.shared = true;
+        this.release = release;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Sends every topic through the producer of the batching profile the
+     * controller picks for it instead of through {@link #getProducer()}.
+     */
+    MessageProducer<K, V> setBatching(AdaptiveBatchingController batching) {
+        this.batching = batching;
+        return this;
+    }
+
+    static Properties defaultProperties(String brokers, String partitionerClass, String valueSerializerFQN) {
+        Properties props = setDefaultProperties();
+
+        if (brokers != null) {
+            props.put("bootstrap.servers", brokers);
+        } else {
+            logger.error("Bootstrap servers setting is null");
+        }
+
+        props.put("key.serializer", SERIALIZATION_STRING_SERIALIZER);
+        props.put("value.serializer", valueSerializerFQN);
+
+        if (partitionerClass != null) {
+            props.put("partitioner.class", partitionerClass);
+        }
+
+        String kafkaType = System.getenv("KAFKA_TYPE");
+        if (kafkaType != null && kafkaType.equals("CONFLUENT")) {
+            addConfluentProperties(props);
+        }
+        return props;
+    }
+
+    private static Properties setDefaultProperties() {
         // NOSONAR
         Properties props = new Properties();
         props.put("acks", DEFAULT_PRODUCER_ACKS); // Set acknowledgments for
@@ -146,7 +246,11 @@ public class MessageProducer<K, V> {
         return props;
     }
 
-    private Properties addConfluentProperties(Properties props) {
+    /**
+     * Adds the SASL settings for Confluent Cloud, with the credentials taken
+     * from the CONFLUENT_KEY and CONFLUENT_SECRET environment variables.
+     */
+    public static Properties addConfluentProperties(Properties props) {
         props.put("ssl.endpoint.identification.algorithm", "https");
         props.put("security.protocol", "SASL_SSL");
         props.put("sasl.mechanism", "PLAIN");
@@ -175,28 +279,276 @@ public class MessageProducer<K, V> {
             else
                 data = new ProducerRecord<>(topic, key, value);
 
-            producer.send(
-                    data,
-                    new Callback() {
-                        @Override
-                        public void onCompletion(RecordMetadata returnMetadata, Exception e) {
-                            if (null != e) {
-                                logger.error("Error sending record.", e);
-                            } else {
-                                logger.debug(
-                                        "Completed publish to topic: {}, offset: {}, partition: {}",
-                                        returnMetadata.topic(),
-                                        returnMetadata.offset(),
-                                        returnMetadata.partition());
-                            }
-                        }
-                    });
+            sendTracked(data, LOGGING_CALLBACK);
+        }
+    }
+
+    /**
+     * Sends one record with headers, for example a binary raw encoded message
+     * whose metadata travels in the headers.
+     */
+    public void send(String topic, K key, V value, Iterable<Header> headers) {
+        if (!disabledTopicsSet.contains(topic)) {
+            sendTracked(new ProducerRecord<>(topic, null, key, value, headers), LOGGING_CALLBACK);
+        }
+    }
+
+    /**
+     * Sends one record without blocking on a full in-flight window. The
+     * returned future completes with the record's metadata once the broker
+     * acknowledges it, with null if the topic is disabled, or exceptionally if
+     * the record is rejected. When {@link #getMaxInFlight()} records are
+     * already in flight the record is not sent and the future fails at once
+     * with an {@link InFlightLimitExceededException}, leaving it to the caller
+     * to drop, divert or retry.
+     */
+    public CompletableFuture<RecordMetadata> sendAsync(String topic, K key, V value) {
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        if (disabledTopicsSet.contains(topic)) {
+            future.complete(null);
+            return future;
+        }
+        if (!inFlight.tryReserve(maxInFlight)) {
+            future.completeExceptionally(new InFlightLimitExceededException(topic, maxInFlight));
+            return future;
+        }
+        try {
+            dispatch(new ProducerRecord<>(topic, key, value), (returnMetadata, e) -> {
+                if (null != e) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(returnMetadata);
+                }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Whether {@link #sendAsync} would accept a record now. Callers that can
+     * shed or buffer ask this first instead of piling more records onto a
+     * slow broker.
+     */
+    public boolean canSend() {
+        int limit = maxInFlight;
+        return limit <= 0 || inFlight.get() < limit;
+    }
+
+    /**
+     * Records sent through the producer, by any send method of any handle on
+     * it, that the broker has not acknowledged or rejected yet.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Most records this handle lets into flight on the producer, counting those
+     * of every handle on it, 0 or less for no limit. {@link #sendAsync} fails
+     * at the limit, the other send methods wait for a record to complete.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public MessageProducer<K, V> setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * How long the send methods other than {@link #sendAsync} wait for room
+     * at the in-flight limit before they throw an
+     * {@link InFlightLimitExceededException}.
+     */
+    public long getMaxBlockMs() {
+        return maxBlockMs;
+    }
+
+    public MessageProducer<K, V> setMaxBlockMs(long maxBlockMs) {
+        this.maxBlockMs = maxBlockMs;
+        return this;
+    }
+
+    /**
+     * Send outcomes and latencies per topic.
+     */
+    public Map<String, ProducerTopicMetrics> getTopicMetrics() {
+        return Collections.unmodifiableMap(topicMetrics);
+    }
+
+    /*
+     * Counts a record in flight, waiting for room while the producer has
+     * maxInFlight records in flight, like the Kafka producer does for a full
+     * buffer.
+     */
+    private void sendTracked(ProducerRecord<K, V> data, Callback callback) {
+        if (!inFlight.reserve(maxInFlight, maxBlockMs)) {
+            throw new InFlightLimitExceededException(data.topic(), maxInFlight);
+        }
+        dispatch(data, callback);
+    }
+
+    /*
+     * Hands a record already counted in flight to the producer and records its
+     * outcome for its topic once the callback runs.
+     */
+    private void dispatch(ProducerRecord<K, V> data, Callback callback) {
+        final ProducerTopicMetrics metrics = topicMetrics.computeIfAbsent(data.topic(),
+                t -> new ProducerTopicMetrics());
+        final AdaptiveBatchingController controller = batching;
+        final long start = System.nanoTime();
+        boolean acquired = false;
+        try {
+            Producer<K, V> target = producer;
+            if (controller != null) {
+                BatchingProfile profile = controller.acquire(data.topic());
+                acquired = true;
+                target = batchingProducer(controller, profile);
+            }
+            target.send(data, (returnMetadata, e) -> {
+                inFlight.release();
+                long latency = System.nanoTime() - start;
+                if (null != e) {
+                    metrics.recordFailure(latency);
+                } else {
+                    metrics.recordSuccess(latency);
+                }
+                if (controller != null) {
+                    controller.completed(data.topic(), latency, returnMetadata);
+                }
+                callback.onCompletion(returnMetadata, e);
+            });
+        } catch (RuntimeException e) {
+            // rejected before it was queued, or its producer could not be created, the callback never runs
+            inFlight.release();
+            long latency = System.nanoTime() - start;
+            metrics.recordFailure(latency);
+            if (acquired) {
+                controller.completed(data.topic(), latency, null);
+            }
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Producer<K, V> batchingProducer(AdaptiveBatchingController controller,
+            BatchingProfile profile) {
+        return (Producer<K, V>) controller.producerFor(profile);
+    }
+
+    /**
+     * Sends a batch of values to one topic as a single unit. The records are
+     * handed to the producer back to back so they share producer batches, and
+     * the callback fires once when the last of them completes rather than once
+     * per record.
+     *
+     * @param topic    destination topic
+     * @param key      key used for every record, may be null
+     * @param values   record values
+     * @param callback called once for the batch, may be null to only log failures
+     */
+    public void sendBatch(String topic, K key, Collection<V> values, BatchCallback callback) {
+        if (values.isEmpty() || disabledTopicsSet.contains(topic)) {
+            return;
+        }
+
+        Callback recordCallback = batchCallback(topic, values.size(), callback);
+        int sent = 0;
+        try {
+            for (V value : values) {
+                ProducerRecord<K, V> data;
+                if (key == null)
+                    data = new ProducerRecord<>(topic, value);
+                else
+                    data = new ProducerRecord<>(topic, key, value);
+                sendTracked(data, recordCallback);
+                sent++;
+            }
+        } catch (RuntimeException e) {
+            failUnsent(recordCallback, values.size() - sent, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #sendBatch(String, Object, Collection, BatchCallback)} with a
+     * key of its own for every record.
+     *
+     * @param topic    destination topic
+     * @param keys     record keys in the order of the values, entries may be null
+     * @param values   record values
+     * @param callback called once for the batch, may be null to only log failures
+     */
+    public void sendKeyedBatch(String topic, List<K> keys, List<V> values, BatchCallback callback) {
+        if (values.isEmpty() || disabledTopicsSet.contains(topic)) {
+            return;
+        }
+
+        Callback recordCallback = batchCallback(topic, values.size(), callback);
+        int sent = 0;
+        try {
+            for (; sent < values.size(); sent++) {
+                sendTracked(new ProducerRecord<>(topic, keys.get(sent), values.get(sent)), recordCallback);
+            }
+        } catch (RuntimeException e) {
+            failUnsent(recordCallback, values.size() - sent, e);
+            throw e;
         }
     }
 
+    /*
+     * Completes the records of a batch that were never handed to the producer,
+     * so the batch callback still fires once the others complete.
+     */
+    private static void failUnsent(Callback recordCallback, int unsent, Exception e) {
+        for (int i = 0; i < unsent; i++) {
+            recordCallback.onCompletion(null, e);
+        }
+    }
+
+    private Callback batchCallback(String topic, int recordCount, BatchCallback callback) {
+        final AtomicInteger outstanding = new AtomicInteger(recordCount);
+        final AtomicReference<Exception> firstException = new AtomicReference<>();
+        return new Callback() {
+            @Override
+            public void onCompletion(RecordMetadata returnMetadata, Exception e) {
+                if (null != e) {
+                    firstException.compareAndSet(null, e);
+                }
+                if (outstanding.decrementAndGet() == 0) {
+                    Exception batchException = firstException.get();
+                    if (null != batchException) {
+                        logger.error("Error sending batch of {} records to topic {}.", recordCount, topic, batchException);
+                    } else {
+                        logger.debug("Completed publish of {} records to topic: {}", recordCount, topic);
+                    }
+                    if (null != callback) {
+                        callback.onCompletion(recordCount, batchException);
+                    }
+                }
+            }
+        };
+    }
+
     public void close() {
-        producer.close();
-        logger.info("Producer Closed");
+        if (shared) {
+            Runnable sharedRelease;
+            synchronized (this) {
+                // a shared handle is released once, later calls are ignored
+                sharedRelease = release;
+                release = null;
+            }
+            if (sharedRelease != null) {
+                sharedRelease.run();
+                logger.info("Shared producer handle released");
+            }
+        } else {
+            producer.close();
+            logger.info("Producer Closed");
+        }
     }
 
     public Producer<K, V> getProducer() {
@@ -209,7 +561,7 @@ public class MessageProducer<K, V> {
     }
 
     public void send(ProducerRecord<K, V> producerRecord) {
-        producer.send(
+        sendTracked(
                 producerRecord,
                 new Callback() {
                     @Override
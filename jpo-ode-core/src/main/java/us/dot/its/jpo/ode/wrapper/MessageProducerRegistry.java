@@ -0,0 +1,183 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide registry of Kafka producers. A KafkaProducer is thread safe and
+ * owns a send buffer, a sender thread and a connection to every broker, so
+ * one is created per profile, that is per brokers, partitioner and value
+ * serializer, and shared by every {@link MessageProducer} handed out for that
+ * profile. Each handle keeps its own set of disabled topics and in-flight
+ * limit, counted against the records in flight of all of them. Closing a handle
+ * releases its reference; the producer is closed once the last handle of its
+ * profile is closed, or by {@link #closeAll()} at shutdown.
+ * <p>
+ * With adaptive batching set, every profile gets an
+ * {@link AdaptiveBatchingController} instead, which keeps a producer per
+ * {@link BatchingProfile} and picks the one each topic is sent through.
+ */
+public class MessageProducerRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageProducerRegistry.class);
+
+    private static final MessageProducerRegistry INSTANCE = new MessageProducerRegistry();
+
+    private final Function<Properties, Producer<?, ?>> producerFactory;
+
+    // in order of creation
+    private final Map<String, SharedProducer> producers = new LinkedHashMap<>();
+    // null to send every topic with the default batching
+    private AdaptiveBatchingController.Settings adaptiveBatching;
+
+    public static MessageProducerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    private MessageProducerRegistry() {
+        this(props -> MessageTransport.getDefault().createProducer(props));
+    }
+
+    MessageProducerRegistry(Function<Properties, Producer<?, ?>> producerFactory) {
+        this.producerFactory = producerFactory;
+    }
+
+    /**
+     * Returns a handle on the producer of the given profile, creating the
+     * producer if this is its first handle.
+     *
+     * @param brokers            bootstrap servers
+     * @param partitionerClass   partitioner class name, null for the default
+     * @param valueSerializerFQN value serializer class name; keys are always
+     *                           serialized as strings
+     * @param disabledTopics     topics this handle does not send to
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <K, V> MessageProducer<K, V> acquire(
+            String brokers,
+            String partitionerClass,
+            String valueSerializerFQN,
+            Set<String> disabledTopics) {
+        String profile = brokers + "|" + partitionerClass + "|" + valueSerializerFQN;
+        SharedProducer shared = producers.get(profile);
+        if (shared == null) {
+            Properties props = MessageProducer.defaultProperties(brokers, partitionerClass, valueSerializerFQN);
+            if (adaptiveBatching != null) {
+                AdaptiveBatchingController batching = new AdaptiveBatchingController(props, producerFactory,
+                        adaptiveBatching);
+                shared = new SharedProducer(profile, batching.producerFor(BatchingProfile.LOW_LATENCY), batching);
+            } else {
+                shared = new SharedProducer(profile, producerFactory.apply(props), null);
+            }
+            producers.put(profile, shared);
+            logger.info("Shared producer created for {}", profile);
+        }
+        shared.references++;
+        final SharedProducer released = shared;
+        return new MessageProducer<>((Producer<K, V>) shared.producer, disabledTopics, () -> release(released),
+                shared.inFlight).setBatching(shared.batching);
+    }
+
+    /**
+     * Adapts the batching of the producers created from now on to the traffic
+     * of every topic, within the given limits, or turns it off if null.
+     */
+    public synchronized void setAdaptiveBatching(AdaptiveBatchingController.Settings adaptiveBatching) {
+        this.adaptiveBatching = adaptiveBatching;
+    }
+
+    /**
+     * The batching profile of every topic, by producer profile, for the
+     * producers whose batching adapts.
+     */
+    public synchronized Map<String, Map<String, BatchingProfile>> getBatchingProfiles() {
+        Map<String, Map<String, BatchingProfile>> profiles = new LinkedHashMap<>();
+        producers.forEach((profile, shared) -> {
+            if (shared.batching != null) {
+                profiles.put(profile, shared.batching.getProfiles());
+            }
+        });
+        return profiles;
+    }
+
+    private synchronized void release(SharedProducer shared) {
+        if (--shared.references == 0 && producers.remove(shared.profile, shared)) {
+            shared.close();
+            logger.info("Shared producer closed for {}", shared.profile);
+        }
+    }
+
+    /**
+     * Flushes every producer, then closes them in the order they were created.
+     * Handles still in use can no longer send.
+     */
+    public void closeAll() {
+        List<SharedProducer> closing;
+        synchronized (this) {
+            closing = new ArrayList<>(producers.values());
+            producers.clear();
+        }
+        for (SharedProducer shared : closing) {
+            try {
+                shared.flush();
+            } catch (RuntimeException e) {
+                logger.error("Error flushing producer for {}", shared.profile, e);
+            }
+        }
+        for (SharedProducer shared : closing) {
+            try {
+                shared.close();
+            } catch (RuntimeException e) {
+                logger.error("Error closing producer for {}", shared.profile, e);
+            }
+        }
+        logger.info("Closed {} shared producers", closing.size());
+    }
+
+    /**
+     * Number of producers currently open.
+     */
+    public synchronized int getProducerCount() {
+        return producers.size();
+    }
+
+    private static class SharedProducer {
+        private final String profile;
+        private final Producer<?, ?> producer;
+        private final AdaptiveBatchingController batching;
+        // counted by every handle, so their in-flight limits cover the whole producer
+        private final InFlightWindow inFlight = new InFlightWindow();
+        private int references;
+
+        SharedProducer(String profile, Producer<?, ?> producer, AdaptiveBatchingController batching) {
+            this.profile = profile;
+            this.producer = producer;
+            this.batching = batching;
+        }
+
+        void flush() {
+            if (batching != null) {
+                batching.flush();
+            } else {
+                producer.flush();
+            }
+        }
+
+        void close() {
+            if (batching != null) {
+                batching.close();
+            } else {
+                producer.close();
+            }
+        }
+    }
+}
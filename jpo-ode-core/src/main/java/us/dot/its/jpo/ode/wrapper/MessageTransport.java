@@ -0,0 +1,58 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.Properties;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+
+/**
+ * Creates the clients behind {@link MessageProducer} and
+ * {@link MessageConsumer}. Kafka is the default; another transport, such as
+ * the in-memory one, is set once at startup before any producer or consumer
+ * is created.
+ */
+public abstract class MessageTransport {
+
+    /**
+     * KafkaProducer and KafkaConsumer talking to the configured brokers.
+     */
+    public static final MessageTransport KAFKA = new MessageTransport() {
+        @Override
+        public <K, V> Producer<K, V> createProducer(Properties props) {
+            return new KafkaProducer<>(props);
+        }
+
+        @Override
+        public <K, V> Consumer<K, V> createConsumer(Properties props) {
+            return new KafkaConsumer<>(props);
+        }
+
+        @Override
+        public String toString() {
+            return "Kafka";
+        }
+    };
+
+    private static volatile MessageTransport defaultTransport = KAFKA;
+
+    public static MessageTransport getDefault() {
+        return defaultTransport;
+    }
+
+    public static void setDefault(MessageTransport transport) {
+        defaultTransport = transport;
+    }
+
+    /**
+     * @param props Kafka producer properties, including the serializers
+     */
+    public abstract <K, V> Producer<K, V> createProducer(Properties props);
+
+    /**
+     * @param props Kafka consumer properties, including the group id and the
+     *              deserializers
+     */
+    public abstract <K, V> Consumer<K, V> createConsumer(Properties props);
+}
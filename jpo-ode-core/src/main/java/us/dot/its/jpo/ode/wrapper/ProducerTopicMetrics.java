@@ -0,0 +1,60 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Send outcomes of one {@link MessageProducer} for one topic, counted when
+ * the broker acknowledges or rejects each record.
+ */
+public class ProducerTopicMetrics {
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    void recordSuccess(long latencyNanos) {
+        succeeded.increment();
+        recordLatency(latencyNanos);
+    }
+
+    void recordFailure(long latencyNanos) {
+        failed.increment();
+        recordLatency(latencyNanos);
+    }
+
+    private void recordLatency(long latencyNanos) {
+        totalLatencyNanos.add(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * Records acknowledged by the broker.
+     */
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    /**
+     * Records rejected by the broker or the producer.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Mean time from send to completion over all records, in milliseconds.
+     */
+    public double getAverageLatencyMs() {
+        long completed = succeeded.sum() + failed.sum();
+        return completed == 0 ? 0 : totalLatencyNanos.sum() / (completed * 1_000_000.0);
+    }
+
+    /**
+     * Longest time from send to completion, in milliseconds.
+     */
+    public double getMaxLatencyMs() {
+        return maxLatencyNanos.get() / 1_000_000.0;
+    }
+}
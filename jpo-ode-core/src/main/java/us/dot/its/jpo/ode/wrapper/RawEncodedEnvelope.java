@@ -0,0 +1,73 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import us.dot.its.jpo.ode.model.OdeMsgMetadata;
+import us.dot.its.jpo.ode.util.JsonUtils;
+
+/**
+ * Binary form of a raw encoded message: the UPER bytes are the record value
+ * and every metadata field travels as a record header named after the field,
+ * holding the field's compact JSON. Consumers tell this form apart from the
+ * JSON one by the {@link #FORMAT_HEADER} header.
+ */
+public class RawEncodedEnvelope {
+
+    public static final String FORMAT_HEADER = "odeFormat";
+    public static final String FORMAT_UPER = "uper";
+
+    private static final byte[] FORMAT_UPER_BYTES = FORMAT_UPER.getBytes(StandardCharsets.UTF_8);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private RawEncodedEnvelope() {
+    }
+
+    /**
+     * Record headers carrying the metadata, null fields left out.
+     */
+    public static Headers toHeaders(OdeMsgMetadata metadata) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(FORMAT_HEADER, FORMAT_UPER_BYTES);
+        Iterator<Map.Entry<String, JsonNode>> fields = JsonUtils.toJsonNode(metadata, false).fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            headers.add(field.getKey(), field.getValue().toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return headers;
+    }
+
+    /**
+     * Whether a record carries a binary raw encoded message.
+     */
+    public static boolean isEnvelope(Headers headers) {
+        if (headers == null)
+            return false;
+        Header format = headers.lastHeader(FORMAT_HEADER);
+        return format != null && FORMAT_UPER.equals(new String(format.value(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rebuilds the metadata JSON tree from the record headers, ready to be read
+     * into the metadata class of the message type.
+     */
+    public static ObjectNode toMetadataNode(Headers headers) throws IOException {
+        ObjectNode metadata = mapper.createObjectNode();
+        for (Header header : headers) {
+            if (FORMAT_HEADER.equals(header.key()) || header.value() == null)
+                continue;
+            metadata.set(header.key(), mapper.readTree(header.value()));
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,302 @@
+package us.dot.its.jpo.ode.wrapper.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Topics, partitions and consumer groups kept in the JVM, standing in for a
+ * Kafka cluster. Topics are created on first use with the same number of
+ * partitions. Every partition holds at most a fixed number of records; once
+ * full the oldest record is dropped, as Kafka retention would, and a consumer
+ * that had not read it yet continues from the oldest record left. Keyed
+ * records are partitioned by the murmur2 hash of the key like Kafka's default
+ * partitioner, unkeyed records round robin. The partitions of a topic are
+ * spread over the members of every group subscribed to it and the offsets each
+ * group commits are kept until the broker goes away.
+ */
+public class InMemoryBroker {
+
+    public static final int DEFAULT_PARTITIONS = 1;
+    public static final int DEFAULT_PARTITION_CAPACITY = 100000;
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryBroker.class);
+
+    private final int partitionsPerTopic;
+    private final int partitionCapacity;
+    private final ConcurrentMap<String, Topic> topics = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<String, Group> groups = new HashMap<>();
+
+    // bumped on every append and rebalance, consumers wait for it to move
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final Object arrivals = new Object();
+
+    public InMemoryBroker() {
+        this(DEFAULT_PARTITIONS, DEFAULT_PARTITION_CAPACITY);
+    }
+
+    /**
+     * @param partitionsPerTopic partitions of every topic
+     * @param partitionCapacity  records every partition holds before dropping
+     *                           its oldest
+     */
+    public InMemoryBroker(int partitionsPerTopic, int partitionCapacity) {
+        this.partitionsPerTopic = Math.max(1, partitionsPerTopic);
+        this.partitionCapacity = Math.max(1, partitionCapacity);
+    }
+
+    RecordMetadata append(String topicName, Integer partition, byte[] key, byte[] value, Headers headers,
+            long timestamp) {
+        Topic topic = topic(topicName);
+        int p = partition != null ? partition : topic.partitionFor(key);
+        if (p < 0 || p >= topic.partitions.length) {
+            throw new IllegalArgumentException("Topic " + topicName + " has no partition " + p);
+        }
+        long offset = topic.partitions[p].append(new StoredRecord(key, value, headers, timestamp));
+        signal();
+        return new RecordMetadata(new TopicPartition(topicName, p), offset, 0, timestamp,
+                key == null ? -1 : key.length, value == null ? -1 : value.length);
+    }
+
+    /*
+     * Records of the partition from the given offset on, at most max of them.
+     * An offset below the oldest record held reads from the oldest one.
+     */
+    List<StoredRecord> read(TopicPartition partition, long fromOffset, int max) {
+        return topic(partition.topic()).partitions[partition.partition()].read(fromOffset, max);
+    }
+
+    public long beginningOffset(TopicPartition partition) {
+        return topic(partition.topic()).partitions[partition.partition()].startOffset();
+    }
+
+    public long endOffset(TopicPartition partition) {
+        return topic(partition.topic()).partitions[partition.partition()].endOffset();
+    }
+
+    /**
+     * Records dropped from the partition to stay within its capacity.
+     */
+    public long dropped(TopicPartition partition) {
+        return topic(partition.topic()).partitions[partition.partition()].startOffset();
+    }
+
+    public List<PartitionInfo> partitionsFor(String topicName) {
+        Topic topic = topic(topicName);
+        List<PartitionInfo> infos = new ArrayList<>(topic.partitions.length);
+        for (int p = 0; p < topic.partitions.length; p++) {
+            infos.add(new PartitionInfo(topicName, p, null, null, null));
+        }
+        return infos;
+    }
+
+    public Set<String> topics() {
+        return new TreeSet<>(topics.keySet());
+    }
+
+    private Topic topic(String name) {
+        return topics.computeIfAbsent(name, n -> new Topic(partitionsPerTopic, partitionCapacity));
+    }
+
+    synchronized void join(String groupId, InMemoryConsumer<?, ?> member, Collection<String> subscription) {
+        subscription.forEach(this::topic);
+        Group group = groups.computeIfAbsent(groupId, g -> new Group());
+        group.members.put(member, new LinkedHashSet<>(subscription));
+        rebalance(groupId, group);
+    }
+
+    synchronized void leave(String groupId, InMemoryConsumer<?, ?> member) {
+        Group group = groups.get(groupId);
+        if (group != null && group.members.remove(member) != null) {
+            rebalance(groupId, group);
+        }
+    }
+
+    synchronized void rebalance(String groupId) {
+        Group group = groups.get(groupId);
+        if (group != null) {
+            rebalance(groupId, group);
+        }
+    }
+
+    /*
+     * Deals the partitions of every subscribed topic out to the members
+     * subscribed to it, in the order they joined. Members pick up their new
+     * assignment on their next poll.
+     */
+    private void rebalance(String groupId, Group group) {
+        Map<InMemoryConsumer<?, ?>, Set<TopicPartition>> assignments = new LinkedHashMap<>();
+        Set<String> subscribed = new TreeSet<>();
+        for (Map.Entry<InMemoryConsumer<?, ?>, Set<String>> member : group.members.entrySet()) {
+            assignments.put(member.getKey(), new LinkedHashSet<>());
+            subscribed.addAll(member.getValue());
+        }
+        for (String topicName : subscribed) {
+            List<InMemoryConsumer<?, ?>> subscribers = new ArrayList<>();
+            group.members.forEach((member, subscription) -> {
+                if (subscription.contains(topicName))
+                    subscribers.add(member);
+            });
+            int partitions = topic(topicName).partitions.length;
+            for (int p = 0; p < partitions; p++) {
+                assignments.get(subscribers.get(p % subscribers.size())).add(new TopicPartition(topicName, p));
+            }
+        }
+        assignments.forEach(InMemoryConsumer::reassign);
+        logger.debug("Group {} rebalanced over {} members", groupId, assignments.size());
+        signal();
+    }
+
+    void commit(String groupId, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        committedOffsets(groupId).putAll(offsets);
+    }
+
+    Map<TopicPartition, OffsetAndMetadata> committed(String groupId, Set<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> groupOffsets = committedOffsets(groupId);
+        Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            committed.put(partition, groupOffsets.get(partition));
+        }
+        return committed;
+    }
+
+    private synchronized Map<TopicPartition, OffsetAndMetadata> committedOffsets(String groupId) {
+        return groups.computeIfAbsent(groupId, g -> new Group()).committed;
+    }
+
+    long version() {
+        return version.get();
+    }
+
+    /*
+     * Waits until something was appended or rebalanced since the given
+     * version, or the timeout passes.
+     */
+    void awaitChange(long sinceVersion, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (arrivals) {
+            waiters.incrementAndGet();
+            try {
+                long remaining = timeoutMs;
+                while (version.get() == sinceVersion && remaining > 0) {
+                    arrivals.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+
+    void signal() {
+        version.incrementAndGet();
+        if (waiters.get() > 0) {
+            synchronized (arrivals) {
+                arrivals.notifyAll();
+            }
+        }
+    }
+
+    private static class Topic {
+        private final Partition[] partitions;
+        private final AtomicInteger nextPartition = new AtomicInteger();
+
+        Topic(int partitionCount, int capacity) {
+            partitions = new Partition[partitionCount];
+            for (int p = 0; p < partitionCount; p++) {
+                partitions[p] = new Partition(capacity);
+            }
+        }
+
+        int partitionFor(byte[] key) {
+            if (key == null) {
+                return Utils.toPositive(nextPartition.getAndIncrement()) % partitions.length;
+            }
+            return Utils.toPositive(Utils.murmur2(key)) % partitions.length;
+        }
+    }
+
+    /*
+     * A ring of the latest records; the record at an offset sits at offset
+     * modulo capacity.
+     */
+    private static class Partition {
+        private final StoredRecord[] ring;
+        private long endOffset = 0;
+
+        Partition(int capacity) {
+            ring = new StoredRecord[capacity];
+        }
+
+        synchronized long append(StoredRecord stored) {
+            long offset = endOffset++;
+            stored.offset = offset;
+            ring[(int) (offset % ring.length)] = stored;
+            return offset;
+        }
+
+        synchronized List<StoredRecord> read(long fromOffset, int max) {
+            long from = Math.max(fromOffset, startOffset());
+            int count = (int) Math.min(max, endOffset - from);
+            if (count <= 0) {
+                return Collections.emptyList();
+            }
+            List<StoredRecord> records = new ArrayList<>(count);
+            for (long offset = from; offset < from + count; offset++) {
+                records.add(ring[(int) (offset % ring.length)]);
+            }
+            return records;
+        }
+
+        synchronized long startOffset() {
+            return Math.max(0, endOffset - ring.length);
+        }
+
+        synchronized long endOffset() {
+            return endOffset;
+        }
+    }
+
+    private static class Group {
+        // members in the order they joined, with the topics they subscribed to
+        private final Map<InMemoryConsumer<?, ?>, Set<String>> members = new LinkedHashMap<>();
+        private final Map<TopicPartition, OffsetAndMetadata> committed = new ConcurrentHashMap<>();
+    }
+
+    static class StoredRecord {
+        final byte[] key;
+        final byte[] value;
+        final Headers headers;
+        final long timestamp;
+        long offset;
+
+        StoredRecord(byte[] key, byte[] value, Headers headers, long timestamp) {
+            this.key = key;
+            this.value = value;
+            this.headers = headers;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package us.dot.its.jpo.ode.wrapper.memory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.dot.its.jpo.ode.wrapper.memory.InMemoryBroker.StoredRecord;
+
+/**
+ * Consumer reading from an {@link InMemoryBroker} as a member of its group.
+ * It honours group.id, max.poll.records, auto.offset.reset, enable.auto.commit
+ * and auto.commit.interval.ms; partitions assigned to it start from the
+ * group's committed offset. Like a KafkaConsumer it must be used from one
+ * thread, except for {@link #wakeup()}. Pattern subscriptions and offset
+ * lookups by time are not supported.
+ */
+public class InMemoryConsumer<K, V> implements Consumer<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryConsumer.class);
+
+    private final InMemoryBroker broker;
+    private final String groupId;
+    private final Deserializer<K> keyDeserializer;
+    private final Deserializer<V> valueDeserializer;
+    private final int maxPollRecords;
+    private final boolean resetToEarliest;
+    private final boolean autoCommit;
+    private final long autoCommitIntervalMs;
+
+    private Set<String> subscription = Collections.emptySet();
+    private ConsumerRebalanceListener listener;
+    private Set<TopicPartition> assignment = new LinkedHashSet<>();
+    private final Map<TopicPartition, Long> positions = new HashMap<>();
+    private final Set<TopicPartition> paused = new HashSet<>();
+    private long lastAutoCommitMs = System.currentTimeMillis();
+    // rotates the partition read first, so one busy partition cannot starve the others
+    private int nextPartition = 0;
+    private boolean closed = false;
+
+    // set by the broker on rebalance, taken on the next poll
+    private final AtomicReference<Set<TopicPartition>> pendingAssignment = new AtomicReference<>();
+    private final AtomicBoolean wakeup = new AtomicBoolean();
+
+    @SuppressWarnings("unchecked")
+    public InMemoryConsumer(InMemoryBroker broker, Properties props) {
+        this.broker = broker;
+        this.groupId = props.getProperty("group.id");
+        this.keyDeserializer = InMemoryTransport.configured(props, "key.deserializer", Deserializer.class, true);
+        this.valueDeserializer = InMemoryTransport.configured(props, "value.deserializer", Deserializer.class, false);
+        this.maxPollRecords = Integer.parseInt(String.valueOf(props.getOrDefault("max.poll.records", 500)));
+        this.resetToEarliest = "earliest".equalsIgnoreCase(String.valueOf(props.get("auto.offset.reset")));
+        this.autoCommit = groupId != null
+                && !"false".equalsIgnoreCase(String.valueOf(props.getOrDefault("enable.auto.commit", "true")));
+        this.autoCommitIntervalMs = Long.parseLong(String.valueOf(props.getOrDefault("auto.commit.interval.ms", 5000)));
+    }
+
+    @Override
+    public void subscribe(Collection<String> topics) {
+        subscribe(topics, null);
+    }
+
+    @Override
+    public void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+        ensureOpen();
+        if (groupId == null) {
+            throw new IllegalStateException("Subscribing needs a group.id");
+        }
+        this.subscription = new LinkedHashSet<>(topics);
+        this.listener = listener;
+        broker.join(groupId, this, subscription);
+    }
+
+    @Override
+    public void assign(Collection<TopicPartition> partitions) {
+        ensureOpen();
+        if (!subscription.isEmpty()) {
+            throw new IllegalStateException("Subscription to topics and manual assignment are mutually exclusive");
+        }
+        reassign(new LinkedHashSet<>(partitions));
+        applyPendingAssignment();
+    }
+
+    @Override
+    public void unsubscribe() {
+        ensureOpen();
+        if (!subscription.isEmpty()) {
+            broker.leave(groupId, this);
+            subscription = Collections.emptySet();
+        }
+        reassign(Collections.emptySet());
+        applyPendingAssignment();
+    }
+
+    /*
+     * Called by the broker, possibly from another member's thread.
+     */
+    void reassign(Set<TopicPartition> partitions) {
+        pendingAssignment.set(partitions);
+    }
+
+    private void applyPendingAssignment() {
+        Set<TopicPartition> next = pendingAssignment.getAndSet(null);
+        if (next == null) {
+            return;
+        }
+        Set<TopicPartition> revoked = new LinkedHashSet<>(assignment);
+        revoked.removeAll(next);
+        Set<TopicPartition> added = new LinkedHashSet<>(next);
+        added.removeAll(assignment);
+
+        if (!revoked.isEmpty()) {
+            if (autoCommit) {
+                commitPositions(revoked);
+            }
+            if (listener != null) {
+                listener.onPartitionsRevoked(revoked);
+            }
+        }
+        assignment = new LinkedHashSet<>(next);
+        positions.keySet().retainAll(next);
+        paused.retainAll(next);
+        for (TopicPartition partition : added) {
+            positions.put(partition, startingOffset(partition));
+        }
+        if (listener != null && (!added.isEmpty() || !revoked.isEmpty())) {
+            listener.onPartitionsAssigned(added);
+        }
+        logger.debug("Group {} member assigned {}", groupId, assignment);
+    }
+
+    private long startingOffset(TopicPartition partition) {
+        OffsetAndMetadata committed = groupId == null ? null
+                : broker.committed(groupId, Collections.singleton(partition)).get(partition);
+        if (committed != null) {
+            return committed.offset();
+        }
+        return resetToEarliest ? broker.beginningOffset(partition) : broker.endOffset(partition);
+    }
+
+    @Override
+    @Deprecated
+    public ConsumerRecords<K, V> poll(long timeoutMs) {
+        return poll(Duration.ofMillis(timeoutMs));
+    }
+
+    @Override
+    public ConsumerRecords<K, V> poll(Duration timeout) {
+        ensureOpen();
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        applyPendingAssignment();
+        maybeAutoCommit();
+        while (true) {
+            long version = broker.version();
+            ConsumerRecords<K, V> records = fetch();
+            if (!records.isEmpty()) {
+                return records;
+            }
+            if (wakeup.getAndSet(false)) {
+                throw new WakeupException();
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return ConsumerRecords.empty();
+            }
+            try {
+                broker.awaitChange(version, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptException(e);
+            }
+            applyPendingAssignment();
+        }
+    }
+
+    private ConsumerRecords<K, V> fetch() {
+        List<TopicPartition> readable = new ArrayList<>(assignment);
+        readable.removeAll(paused);
+        if (readable.isEmpty()) {
+            return ConsumerRecords.empty();
+        }
+        Map<TopicPartition, List<ConsumerRecord<K, V>>> fetched = new LinkedHashMap<>();
+        int budget = maxPollRecords;
+        int first = nextPartition++ % readable.size();
+        for (int i = 0; i < readable.size() && budget > 0; i++) {
+            TopicPartition partition = readable.get((first + i) % readable.size());
+            long position = positions.get(partition);
+            List<StoredRecord> stored = broker.read(partition, position, budget);
+            if (stored.isEmpty()) {
+                continue;
+            }
+            if (stored.get(0).offset > position) {
+                logger.warn("Group {} skipped {} records of {} dropped before they were read", groupId,
+                        stored.get(0).offset - position, partition);
+            }
+            List<ConsumerRecord<K, V>> records = new ArrayList<>(stored.size());
+            for (StoredRecord record : stored) {
+                records.add(deserialize(partition, record));
+            }
+            fetched.put(partition, records);
+            positions.put(partition, stored.get(stored.size() - 1).offset + 1);
+            budget -= stored.size();
+        }
+        return fetched.isEmpty() ? ConsumerRecords.empty() : new ConsumerRecords<>(fetched);
+    }
+
+    private ConsumerRecord<K, V> deserialize(TopicPartition partition, StoredRecord record) {
+        String topic = partition.topic();
+        return new ConsumerRecord<>(topic, partition.partition(), record.offset, record.timestamp,
+                TimestampType.CREATE_TIME, record.key == null ? -1 : record.key.length,
+                record.value == null ? -1 : record.value.length,
+                keyDeserializer.deserialize(topic, record.headers, record.key),
+                valueDeserializer.deserialize(topic, record.headers, record.value), record.headers,
+                Optional.empty());
+    }
+
+    private void maybeAutoCommit() {
+        long now = System.currentTimeMillis();
+        if (autoCommit && now - lastAutoCommitMs >= autoCommitIntervalMs) {
+            commitPositions(assignment);
+            lastAutoCommitMs = now;
+        }
+    }
+
+    private void commitPositions(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            Long position = positions.get(partition);
+            if (position != null)
+                offsets.put(partition, new OffsetAndMetadata(position));
+        }
+        if (!offsets.isEmpty()) {
+            broker.commit(groupId, offsets);
+        }
+    }
+
+    @Override
+    public void commitSync() {
+        commitSync(Duration.ZERO);
+    }
+
+    @Override
+    public void commitSync(Duration timeout) {
+        ensureOpen();
+        commitPositions(assignment);
+    }
+
+    @Override
+    public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        commitSync(offsets, Duration.ZERO);
+    }
+
+    @Override
+    public void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets, Duration timeout) {
+        ensureOpen();
+        if (groupId == null) {
+            throw new IllegalStateException("Committing needs a group.id");
+        }
+        broker.commit(groupId, offsets);
+    }
+
+    @Override
+    public void commitAsync() {
+        commitAsync(null);
+    }
+
+    @Override
+    public void commitAsync(OffsetCommitCallback callback) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : assignment) {
+            offsets.put(partition, new OffsetAndMetadata(positions.get(partition)));
+        }
+        commitAsync(offsets, callback);
+    }
+
+    @Override
+    public void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+        Exception error = null;
+        try {
+            commitSync(offsets);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        if (callback != null) {
+            callback.onComplete(offsets, error);
+        }
+    }
+
+    @Override
+    public void seek(TopicPartition partition, long offset) {
+        ensureAssigned(partition);
+        positions.put(partition, offset);
+    }
+
+    @Override
+    public void seek(TopicPartition partition, OffsetAndMetadata offsetAndMetadata) {
+        seek(partition, offsetAndMetadata.offset());
+    }
+
+    @Override
+    public void seekToBeginning(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions.isEmpty() ? assignment : partitions) {
+            seek(partition, broker.beginningOffset(partition));
+        }
+    }
+
+    @Override
+    public void seekToEnd(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions.isEmpty() ? assignment : partitions) {
+            seek(partition, broker.endOffset(partition));
+        }
+    }
+
+    @Override
+    public long position(TopicPartition partition) {
+        ensureAssigned(partition);
+        return positions.get(partition);
+    }
+
+    @Override
+    public long position(TopicPartition partition, Duration timeout) {
+        return position(partition);
+    }
+
+    @Override
+    @Deprecated
+    public OffsetAndMetadata committed(TopicPartition partition) {
+        return committed(Collections.singleton(partition)).get(partition);
+    }
+
+    @Override
+    @Deprecated
+    public OffsetAndMetadata committed(TopicPartition partition, Duration timeout) {
+        return committed(partition);
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndMetadata> committed(Set<TopicPartition> partitions) {
+        ensureOpen();
+        return broker.committed(groupId, partitions);
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndMetadata> committed(Set<TopicPartition> partitions, Duration timeout) {
+        return committed(partitions);
+    }
+
+    @Override
+    public Set<TopicPartition> assignment() {
+        applyPendingAssignment();
+        return Collections.unmodifiableSet(new LinkedHashSet<>(assignment));
+    }
+
+    @Override
+    public Set<String> subscription() {
+        return Collections.unmodifiableSet(subscription);
+    }
+
+    @Override
+    public Set<TopicPartition> paused() {
+        return Collections.unmodifiableSet(new HashSet<>(paused));
+    }
+
+    @Override
+    public void pause(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            ensureAssigned(partition);
+            paused.add(partition);
+        }
+    }
+
+    @Override
+    public void resume(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            ensureAssigned(partition);
+            paused.remove(partition);
+        }
+    }
+
+    @Override
+    public Map<TopicPartition, Long> beginningOffsets(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        partitions.forEach(partition -> offsets.put(partition, broker.beginningOffset(partition)));
+        return offsets;
+    }
+
+    @Override
+    public Map<TopicPartition, Long> beginningOffsets(Collection<TopicPartition> partitions, Duration timeout) {
+        return beginningOffsets(partitions);
+    }
+
+    @Override
+    public Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        partitions.forEach(partition -> offsets.put(partition, broker.endOffset(partition)));
+        return offsets;
+    }
+
+    @Override
+    public Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions, Duration timeout) {
+        return endOffsets(partitions);
+    }
+
+    @Override
+    public OptionalLong currentLag(TopicPartition partition) {
+        Long position = positions.get(partition);
+        return position == null ? OptionalLong.empty() : OptionalLong.of(broker.endOffset(partition) - position);
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+        return broker.partitionsFor(topic);
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic, Duration timeout) {
+        return partitionsFor(topic);
+    }
+
+    @Override
+    public Map<String, List<PartitionInfo>> listTopics() {
+        Map<String, List<PartitionInfo>> topics = new LinkedHashMap<>();
+        broker.topics().forEach(topic -> topics.put(topic, broker.partitionsFor(topic)));
+        return topics;
+    }
+
+    @Override
+    public Map<String, List<PartitionInfo>> listTopics(Duration timeout) {
+        return listTopics();
+    }
+
+    @Override
+    public ConsumerGroupMetadata groupMetadata() {
+        return new ConsumerGroupMetadata(groupId);
+    }
+
+    @Override
+    public void enforceRebalance() {
+        if (groupId != null && !subscription.isEmpty()) {
+            broker.rebalance(groupId);
+        }
+    }
+
+    @Override
+    public void enforceRebalance(String reason) {
+        enforceRebalance();
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void wakeup() {
+        wakeup.set(true);
+        broker.signal();
+    }
+
+    @Override
+    public void close() {
+        close(Duration.ZERO);
+    }
+
+    @Override
+    public void close(Duration timeout) {
+        if (closed) {
+            return;
+        }
+        if (autoCommit) {
+            commitPositions(assignment);
+        }
+        if (!subscription.isEmpty()) {
+            broker.leave(groupId, this);
+        }
+        closed = true;
+        keyDeserializer.close();
+        valueDeserializer.close();
+    }
+
+    @Override
+    public void subscribe(Pattern pattern, ConsumerRebalanceListener listener) {
+        throw new UnsupportedOperationException("The in-memory transport subscribes to topics by name");
+    }
+
+    @Override
+    public void subscribe(Pattern pattern) {
+        throw new UnsupportedOperationException("The in-memory transport subscribes to topics by name");
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch) {
+        throw new UnsupportedOperationException("The in-memory transport does not index records by time");
+    }
+
+    @Override
+    public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch,
+            Duration timeout) {
+        return offsetsForTimes(timestampsToSearch);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("This consumer has already been closed.");
+        }
+    }
+
+    private void ensureAssigned(TopicPartition partition) {
+        if (!assignment.contains(partition)) {
+            throw new IllegalStateException("No current assignment for partition " + partition);
+        }
+    }
+}
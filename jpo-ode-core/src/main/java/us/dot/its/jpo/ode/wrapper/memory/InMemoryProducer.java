@@ -0,0 +1,128 @@
+package us.dot.its.jpo.ode.wrapper.memory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Producer appending to an {@link InMemoryBroker}. Records are serialized with
+ * the configured serializers, so consumers read them back exactly as from
+ * Kafka, and are acknowledged as soon as they are appended. The partitioner
+ * setting is ignored and transactions are not supported.
+ */
+public class InMemoryProducer<K, V> implements Producer<K, V> {
+
+    private final InMemoryBroker broker;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private volatile boolean closed = false;
+
+    @SuppressWarnings("unchecked")
+    public InMemoryProducer(InMemoryBroker broker, Properties props) {
+        this.broker = broker;
+        this.keySerializer = InMemoryTransport.configured(props, "key.serializer", Serializer.class, true);
+        this.valueSerializer = InMemoryTransport.configured(props, "value.serializer", Serializer.class, false);
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record) {
+        return send(record, null);
+    }
+
+    @Override
+    public Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+        if (closed) {
+            throw new IllegalStateException("Cannot send after the producer is closed.");
+        }
+        // the caller may reuse its headers, keep a copy
+        Headers headers = new RecordHeaders(record.headers().toArray());
+        byte[] key = keySerializer.serialize(record.topic(), headers, record.key());
+        byte[] value = valueSerializer.serialize(record.topic(), headers, record.value());
+        long timestamp = record.timestamp() == null ? System.currentTimeMillis() : record.timestamp();
+
+        RecordMetadata metadata = broker.append(record.topic(), record.partition(), key, value, headers, timestamp);
+        if (callback != null) {
+            callback.onCompletion(metadata, null);
+        }
+        return CompletableFuture.completedFuture(metadata);
+    }
+
+    @Override
+    public void flush() {
+        // appended on send
+    }
+
+    @Override
+    public List<PartitionInfo> partitionsFor(String topic) {
+        return broker.partitionsFor(topic);
+    }
+
+    @Override
+    public Map<MetricName, ? extends Metric> metrics() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void close() {
+        close(Duration.ZERO);
+    }
+
+    @Override
+    public void close(Duration timeout) {
+        if (!closed) {
+            closed = true;
+            keySerializer.close();
+            valueSerializer.close();
+        }
+    }
+
+    @Override
+    public void initTransactions() {
+        throw new UnsupportedOperationException("The in-memory transport has no transactions");
+    }
+
+    @Override
+    public void beginTransaction() {
+        throw new UnsupportedOperationException("The in-memory transport has no transactions");
+    }
+
+    @Override
+    @Deprecated
+    public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets, String consumerGroupId) {
+        throw new UnsupportedOperationException("The in-memory transport has no transactions");
+    }
+
+    @Override
+    public void sendOffsetsToTransaction(Map<TopicPartition, OffsetAndMetadata> offsets,
+            ConsumerGroupMetadata groupMetadata) {
+        throw new UnsupportedOperationException("The in-memory transport has no transactions");
+    }
+
+    @Override
+    public void commitTransaction() {
+        throw new UnsupportedOperationException("The in-memory transport has no transactions");
+    }
+
+    @Override
+    public void abortTransaction() {
+        throw new UnsupportedOperationException("The in-memory transport has no transactions");
+    }
+}
@@ -0,0 +1,80 @@
+package us.dot.its.jpo.ode.wrapper.memory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+import us.dot.its.jpo.ode.wrapper.MessageTransport;
+
+/**
+ * Transport keeping every topic in an {@link InMemoryBroker}, so the whole
+ * pipeline runs in one JVM without a Kafka cluster. Records are still
+ * serialized, but never leave the process.
+ */
+public class InMemoryTransport extends MessageTransport {
+
+    private final InMemoryBroker broker;
+
+    public InMemoryTransport(InMemoryBroker broker) {
+        this.broker = broker;
+    }
+
+    public InMemoryBroker getBroker() {
+        return broker;
+    }
+
+    @Override
+    public <K, V> Producer<K, V> createProducer(Properties props) {
+        return new InMemoryProducer<>(broker, props);
+    }
+
+    @Override
+    public <K, V> Consumer<K, V> createConsumer(Properties props) {
+        return new InMemoryConsumer<>(broker, props);
+    }
+
+    @Override
+    public String toString() {
+        return "in-memory";
+    }
+
+    /*
+     * The serializer or deserializer a property names, given as an instance, a
+     * class or a class name, configured with all the properties.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static <T> T configured(Properties props, String property, Class<T> type, boolean isKey) {
+        Object setting = props.get(property);
+        if (setting == null) {
+            throw new KafkaException("Missing required configuration \"" + property + "\"");
+        }
+        T instance;
+        try {
+            if (type.isInstance(setting)) {
+                instance = type.cast(setting);
+            } else if (setting instanceof Class) {
+                instance = Utils.newInstance((Class<? extends T>) setting);
+            } else {
+                instance = Utils.newInstance(setting.toString().trim(), type);
+            }
+        } catch (ClassNotFoundException e) {
+            throw new KafkaException("Cannot load " + property + " " + setting, e);
+        }
+
+        Map<String, Object> configs = new HashMap<>();
+        props.forEach((name, value) -> configs.put(name.toString(), value));
+        if (instance instanceof Serializer) {
+            ((Serializer) instance).configure(configs, isKey);
+        } else if (instance instanceof Deserializer) {
+            ((Deserializer) instance).configure(configs, isKey);
+        }
+        return instance;
+    }
+}
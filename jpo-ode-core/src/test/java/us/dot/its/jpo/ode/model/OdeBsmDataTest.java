@@ -55,6 +55,23 @@ public class OdeBsmDataTest {
 
     
 
+    @Test
+    public void shouldDeserializeRxSourceIps_bsmTx() throws Exception {
+        final String mergedJson = bsmTxJson.replace("\"rxSource\":\"RV\"}",
+            "\"rxSource\":\"RV\",\"rxSourceIps\":[\"10.11.81.12\",\"10.11.81.13\"]}");
+        final var merged = (OdeBsmData)JsonUtils.fromJson(mergedJson, OdeBsmData.class);
+        var details = ((OdeBsmMetadata)merged.getMetadata()).getReceivedMessageDetails();
+        assertEquals(2, details.getRxSourceIps().size());
+        assertEquals("10.11.81.13", details.getRxSourceIps().get(1));
+        validateJson(merged.toJson(false));
+
+        // a single IP read back from XML arrives as a plain value
+        final String singleJson = bsmTxJson.replace("\"rxSource\":\"RV\"}",
+            "\"rxSource\":\"RV\",\"rxSourceIps\":\"10.11.81.12\"}");
+        final var single = (OdeBsmData)JsonUtils.fromJson(singleJson, OdeBsmData.class);
+        assertEquals(1, ((OdeBsmMetadata)single.getMetadata()).getReceivedMessageDetails().getRxSourceIps().size());
+    }
+
     @Test
     public void serializationShouldNotAddClassProperty_bsmTx() {
         final var deserialized = (OdeBsmData)JsonUtils.fromJson(bsmTxJson, OdeBsmData.class);
@@ -0,0 +1,97 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+public class AbstractSubPubTransformerTest {
+
+   private final MockProducer<String, String> mockProducer = new MockProducer<>(true, new StringSerializer(),
+         new StringSerializer());
+
+   // upper cases every value, drops the ones starting with "skip"
+   private final AbstractSubPubTransformer<String, String, String> testTransformer =
+         new AbstractSubPubTransformer<String, String, String>(
+               new MessageProducer<>(mockProducer, Collections.emptySet(), null), "outputTopic") {
+            @Override
+            protected Object process(String consumedData) {
+               return consumedData.startsWith("skip") ? null
+                     : consumedData.toUpperCase() + "@" + getRecord().offset();
+            }
+         };
+
+   private static ConsumerRecord<String, String> record(int partition, long offset, String key, String value) {
+      return new ConsumerRecord<>("inputTopic", partition, offset, key, value);
+   }
+
+   @Test
+   public void processBatchShouldPublishResultsAsOneKeyedBatch() throws Exception {
+      List<Object> results = testTransformer.processBatch(
+            Arrays.asList(record(0, 5, "k1", "a"), record(0, 6, "k2", "skip"), record(0, 7, null, "c")));
+
+      assertEquals(Arrays.asList("A@5", null, "C@7"), results);
+      assertEquals(2, mockProducer.history().size());
+      assertEquals("k1", mockProducer.history().get(0).key());
+      assertEquals("A@5", mockProducer.history().get(0).value());
+      assertNull(mockProducer.history().get(1).key());
+      assertEquals("outputTopic", mockProducer.history().get(1).topic());
+      assertEquals(3, testTransformer.getMessagesConsumed());
+      assertEquals(2, testTransformer.getMessagesPublished());
+      // the current record is cleared once the batch is done
+      assertNull(testTransformer.getRecord());
+   }
+
+   @Test
+   public void processBatchShouldPublishResultsBeforeAFailedRecord() {
+      assertThrows(Exception.class, () -> testTransformer.processBatch(
+            Arrays.asList(record(0, 5, "k1", "a"), record(0, 6, "k2", null), record(0, 7, "k3", "c"))));
+
+      assertEquals(1, mockProducer.history().size());
+      assertEquals("A@5", mockProducer.history().get(0).value());
+      assertNull(testTransformer.getRecord());
+   }
+
+   @Test
+   public void processShouldReturnLastOffsetOfEveryPartition() throws Exception {
+      Map<TopicPartition, List<ConsumerRecord<String, String>>> polled = new HashMap<>();
+      polled.put(new TopicPartition("inputTopic", 0), Arrays.asList(record(0, 1, null, "a"), record(0, 2, null, "b")));
+      polled.put(new TopicPartition("inputTopic", 1), Arrays.asList(record(1, 9, null, "c")));
+
+      Map<TopicPartition, Long> offsets = testTransformer.process(new ConsumerRecords<>(polled));
+
+      assertEquals(Long.valueOf(2), offsets.get(new TopicPartition("inputTopic", 0)));
+      assertEquals(Long.valueOf(9), offsets.get(new TopicPartition("inputTopic", 1)));
+      assertEquals(3, mockProducer.history().size());
+   }
+
+   @Test
+   public void shouldBeSaturatedWhileProducerIsAtInFlightLimit() throws Exception {
+      MockProducer<String, String> slowProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      testTransformer.setProducer(new MessageProducer<String, String>(slowProducer, Collections.emptySet(), null)
+            .setMaxInFlight(2));
+
+      testTransformer.processBatch(Arrays.asList(record(0, 1, null, "a")));
+      assertFalse(testTransformer.isSaturated());
+      testTransformer.processBatch(Arrays.asList(record(0, 2, null, "b")));
+      assertTrue(testTransformer.isSaturated());
+
+      slowProducer.completeNext();
+      assertFalse(testTransformer.isSaturated());
+   }
+}
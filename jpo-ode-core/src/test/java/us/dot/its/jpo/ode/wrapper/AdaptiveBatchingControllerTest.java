@@ -0,0 +1,114 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveBatchingControllerTest {
+
+   private final Map<BatchingProfile, Properties> createdWith = new EnumMap<>(BatchingProfile.class);
+   private final Map<BatchingProfile, MockProducer<String, String>> created = new EnumMap<>(BatchingProfile.class);
+   private long now = 1000;
+
+   private final AdaptiveBatchingController controller = new AdaptiveBatchingController(new Properties(), props -> {
+      MockProducer<String, String> producer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      BatchingProfile profile = "0".equals(String.valueOf(props.get("linger.ms"))) ? BatchingProfile.LOW_LATENCY
+            : "5".equals(String.valueOf(props.get("linger.ms"))) ? BatchingProfile.BALANCED
+                  : BatchingProfile.HIGH_THROUGHPUT;
+      createdWith.put(profile, props);
+      created.put(profile, producer);
+      return producer;
+   }, new AdaptiveBatchingController.Settings()
+         .setEvaluationIntervalMs(1000)
+         .setBalancedBytesPerSecond(1000)
+         .setHighThroughputBytesPerSecond(10000)
+         .setLatencyTargetMs(250)
+         .setLatencySensitiveTargetMs(50)
+         .setLatencySensitiveTopics(Collections.singleton("safetyTopic")), () -> now, Runnable::run);
+
+   /*
+    * Sends a second of traffic, every record completing with the given
+    * latency, and returns the profile of the first record of the next second.
+    */
+   private BatchingProfile sendSecond(String topic, int records, int bytes, long latencyMs) {
+      for (int i = 0; i < records; i++) {
+         controller.acquire(topic);
+         controller.completed(topic, latencyMs * 1_000_000L, metadata(topic, bytes));
+      }
+      now += 1000;
+      BatchingProfile next = controller.acquire(topic);
+      controller.completed(topic, 0, metadata(topic, 0));
+      return next;
+   }
+
+   private static RecordMetadata metadata(String topic, int bytes) {
+      return new RecordMetadata(new TopicPartition(topic, 0), 0, 0, 0, 0, bytes);
+   }
+
+   @Test
+   public void shouldBatchMoreOneProfileAtATimeAsByteRateGrows() {
+      assertEquals(BatchingProfile.LOW_LATENCY, sendSecond("busyTopic", 100, 5, 1));
+      assertEquals(BatchingProfile.BALANCED, sendSecond("busyTopic", 100, 200, 1));
+      assertEquals(BatchingProfile.HIGH_THROUGHPUT, sendSecond("busyTopic", 100, 200, 1));
+      assertEquals(BatchingProfile.HIGH_THROUGHPUT, controller.getProfiles().get("busyTopic"));
+
+      controller.producerFor(BatchingProfile.HIGH_THROUGHPUT);
+      assertEquals(25, createdWith.get(BatchingProfile.HIGH_THROUGHPUT).get("linger.ms"));
+      assertEquals("lz4", createdWith.get(BatchingProfile.HIGH_THROUGHPUT).get("compression.type"));
+
+      // back down once the traffic is gone
+      assertEquals(BatchingProfile.BALANCED, sendSecond("busyTopic", 1, 10, 1));
+   }
+
+   @Test
+   public void shouldBatchLessWhenLatencyTargetIsMissed() {
+      assertEquals(BatchingProfile.BALANCED, sendSecond("safetyTopic", 100, 200, 1));
+
+      // within the default target but over the one of latency sensitive topics
+      assertEquals(BatchingProfile.LOW_LATENCY, sendSecond("safetyTopic", 100, 200, 100));
+
+      // held down until the latency is back well under the target
+      assertEquals(BatchingProfile.LOW_LATENCY, sendSecond("safetyTopic", 100, 200, 40));
+      assertEquals(BatchingProfile.BALANCED, sendSecond("safetyTopic", 100, 200, 1));
+
+      // the same latency is within the default target
+      assertEquals(BatchingProfile.BALANCED, sendSecond("otherTopic", 100, 200, 1));
+      assertEquals(BatchingProfile.HIGH_THROUGHPUT, sendSecond("otherTopic", 100, 200, 100));
+   }
+
+   @Test
+   public void shouldSwitchOnlyWithNothingInFlightAndFlushWithoutBlocking() {
+      controller.producerFor(BatchingProfile.LOW_LATENCY);
+      created.get(BatchingProfile.LOW_LATENCY).send(new ProducerRecord<>("busyTopic", "in flight"));
+      controller.acquire("busyTopic");
+      sendSecond("busyTopic", 100, 200, 0);
+
+      // a record still in flight on the low latency producer
+      assertEquals(BatchingProfile.LOW_LATENCY, controller.acquire("busyTopic"));
+      controller.completed("busyTopic", 0, metadata("busyTopic", 0));
+      assertFalse(created.get(BatchingProfile.LOW_LATENCY).flushed());
+
+      // still busy an interval later, the old producer is flushed and the sender goes on with it
+      assertEquals(BatchingProfile.LOW_LATENCY, sendSecond("busyTopic", 100, 200, 0));
+      assertTrue(created.get(BatchingProfile.LOW_LATENCY).flushed());
+      assertEquals(BatchingProfile.LOW_LATENCY, controller.getProfiles().get("busyTopic"));
+
+      // switched once the record in flight completes
+      controller.completed("busyTopic", 0, metadata("busyTopic", 0));
+      assertEquals(BatchingProfile.BALANCED, controller.acquire("busyTopic"));
+      assertEquals(BatchingProfile.BALANCED, controller.getProfiles().get("busyTopic"));
+   }
+}
@@ -0,0 +1,81 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import us.dot.its.jpo.ode.util.JsonUtils;
+
+public class DeadLetterPublisherTest {
+
+   private final MockProducer<String, String> mockProducer = new MockProducer<>(true, new StringSerializer(),
+         new StringSerializer());
+
+   private final DeadLetterPublisher testPublisher = new DeadLetterPublisher(
+         new MessageProducer<>(mockProducer, Collections.emptySet(), null), "deadLetterTopic", "testStage")
+         .setExcerptLength(8);
+
+   @Test
+   public void shouldPublishReferenceAndExcerptInsteadOfPayload() throws Exception {
+      ConsumerRecord<String, String> failedRecord = new ConsumerRecord<>("inputTopic", 3, 42, "key", "ignored");
+
+      testPublisher.failed(failedRecord, "<OdeAsn1Data>malformed", new IllegalStateException("bad input"));
+
+      assertEquals(1, mockProducer.history().size());
+      assertEquals("deadLetterTopic", mockProducer.history().get(0).topic());
+      assertEquals("key", mockProducer.history().get(0).key());
+      JsonNode deadLetter = JsonUtils.toObjectNode(mockProducer.history().get(0).value());
+      assertEquals("testStage", deadLetter.get("stage").asText());
+      assertEquals("inputTopic", deadLetter.get("source").get("topic").asText());
+      assertEquals(3, deadLetter.get("source").get("partition").asInt());
+      assertEquals(42, deadLetter.get("source").get("offset").asLong());
+      assertEquals(IllegalStateException.class.getName(), deadLetter.get("errorClass").asText());
+      assertEquals("<OdeAsn1...", deadLetter.get("excerpt").asText());
+      assertEquals(22, deadLetter.get("payloadLength").asInt());
+      assertEquals(1, testPublisher.getFailures());
+   }
+
+   @Test
+   public void shouldExcerptBytesAsHex() {
+      assertEquals("00FF10...", DeadLetterPublisher.excerpt(new byte[] { 0, -1, 16, 1, 2 }, 6));
+      assertEquals("0102", DeadLetterPublisher.excerpt(new byte[] { 1, 2 }, 6));
+      assertEquals("short", DeadLetterPublisher.excerpt("short", 6));
+      assertNull(DeadLetterPublisher.excerpt(null, 6));
+   }
+
+   @Test
+   public void shouldOnlyCountWithoutTopic() {
+      DeadLetterPublisher logOnly = new DeadLetterPublisher(
+            new MessageProducer<>(mockProducer, Collections.emptySet(), null), "", "testStage");
+
+      logOnly.failed(null, "payload", new RuntimeException());
+      logOnly.failed(null, "payload", new RuntimeException());
+
+      assertTrue(mockProducer.history().isEmpty());
+      assertNull(logOnly.getTopic());
+      assertEquals(2, logOnly.getFailures());
+   }
+
+   @Test
+   public void shouldNotFailWhenDeadLetterCannotBePublished() {
+      MockProducer<String, String> failingProducer = new MockProducer<>(true, new StringSerializer(),
+            new StringSerializer());
+      failingProducer.close();
+      DeadLetterPublisher publisher = new DeadLetterPublisher(
+            new MessageProducer<>(failingProducer, Collections.emptySet(), null), "deadLetterTopic", "testStage");
+
+      publisher.failed(null, "payload", new RuntimeException());
+
+      assertTrue(failingProducer.history().isEmpty());
+      assertEquals(1, publisher.getFailures());
+   }
+}
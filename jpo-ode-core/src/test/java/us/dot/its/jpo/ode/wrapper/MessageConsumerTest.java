@@ -0,0 +1,414 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+public class MessageConsumerTest {
+
+   private static final TopicPartition PARTITION = new TopicPartition("testTopic", 0);
+   private static final TopicPartition PARTITION_1 = new TopicPartition("testTopic", 1);
+
+   private ConsumerRebalanceListener rebalanceListener;
+   private final MockConsumer<String, String> mockConsumer = new MockConsumer<String, String>(
+         OffsetResetStrategy.EARLIEST) {
+      @Override
+      public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+         // the mock does not call the listener itself
+         rebalanceListener = listener;
+         super.subscribe(topics, listener);
+      }
+
+      @Override
+      public synchronized void close() {
+         committedAtClose = committed(Collections.singleton(PARTITION)).get(PARTITION);
+         super.close();
+      }
+   };
+   private OffsetAndMetadata committedAtClose;
+   // appended to by the worker threads as well
+   private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+   private MessageConsumer<String, String> testConsumer;
+   private AssertionError taskFailure;
+
+   /*
+    * Runs a step on the polling thread. A failed assertion stops the consumer
+    * instead of being swallowed by its poll loop, and is rethrown by run().
+    */
+   private void schedule(Runnable step) {
+      mockConsumer.schedulePollTask(() -> {
+         try {
+            step.run();
+         } catch (AssertionError e) {
+            taskFailure = e;
+            testConsumer.close();
+         }
+      });
+   }
+
+   private void run() {
+      // stop once every step has run
+      mockConsumer.schedulePollTask(() -> testConsumer.close());
+      testConsumer.subscribe("testTopic");
+      if (taskFailure != null)
+         throw taskFailure;
+   }
+
+   private MessageConsumer<String, String> newTestConsumer(MessageProcessor<String, String> processor,
+         boolean autoCommit) {
+      Properties overrides = new Properties();
+      overrides.put("enable.auto.commit", String.valueOf(autoCommit));
+      testConsumer = MessageConsumer.defaultStringMessageConsumer("localhost:9092",
+            "testGroup", processor, overrides);
+      testConsumer.getConsumer().close();
+      testConsumer.setConsumer(mockConsumer);
+      mockConsumer.updateBeginningOffsets(Collections.singletonMap(PARTITION, 0L));
+      mockConsumer.updateBeginningOffsets(Collections.singletonMap(PARTITION_1, 0L));
+      return testConsumer;
+   }
+
+   private MessageProcessor<String, String> recordingProcessor(String failOn) {
+      return new MessageProcessor<String, String>() {
+         @Override
+         public Object call() {
+            String value = getRecord().value();
+            if (value.equals(failOn) && !processed.contains("failed " + value)) {
+               processed.add("failed " + value);
+               throw new IllegalStateException("cannot process " + value);
+            }
+            processed.add(value);
+            return value;
+         }
+      };
+   }
+
+   private long committedOffset() {
+      return committedOffset(PARTITION);
+   }
+
+   private long committedOffset(TopicPartition partition) {
+      OffsetAndMetadata committed = mockConsumer.committed(Collections.singleton(partition)).get(partition);
+      return committed == null ? -1 : committed.offset();
+   }
+
+   private void addRecord(TopicPartition partition, long offset, String key, String value) {
+      mockConsumer.addRecord(new ConsumerRecord<>(partition.topic(), partition.partition(), offset, key, value));
+   }
+
+   private List<String> processedStartingWith(String prefix) {
+      synchronized (processed) {
+         return processed.stream().filter(value -> value.startsWith(prefix)).collect(Collectors.toList());
+      }
+   }
+
+   private void addRecords(String... values) {
+      long offset = mockConsumer.position(PARTITION);
+      for (String value : values) {
+         mockConsumer.addRecord(new ConsumerRecord<>("testTopic", 0, offset++, null, value));
+      }
+   }
+
+   @Test
+   public void manualCommitShouldCommitProcessedOffsetsOnShutdown() {
+      newTestConsumer(recordingProcessor(null), false);
+      assertFalse(testConsumer.isAutoCommit());
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a", "b");
+      });
+      schedule(() -> {
+         // below the batch size and the interval, nothing committed yet
+         assertEquals(-1, committedOffset());
+      });
+      run();
+
+      assertEquals(2, processed.size());
+      assertEquals(2, committedAtClose.offset());
+      assertTrue(mockConsumer.closed());
+   }
+
+   @Test
+   public void manualCommitShouldCommitFullBatches() {
+      newTestConsumer(recordingProcessor(null), false);
+      testConsumer.setCommitBatchSize(2);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a", "b", "c");
+      });
+      schedule(() -> {
+         assertEquals(3, committedOffset());
+      });
+      run();
+   }
+
+   @Test
+   public void manualCommitShouldRedeliverFailedBatch() {
+      newTestConsumer(recordingProcessor("b"), false);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a", "b");
+      });
+      schedule(() -> {
+         // the failed batch was rewound, read it again
+         assertEquals(0, mockConsumer.position(PARTITION));
+         addRecords("a", "b");
+      });
+      run();
+
+      assertEquals("a", processed.get(0));
+      assertEquals("failed b", processed.get(1));
+      assertEquals(1, Collections.frequency(processed, "b"));
+      assertEquals(2, committedAtClose.offset());
+   }
+
+   @Test
+   public void manualCommitShouldSkipPoisonRecordAfterRetries() {
+      newTestConsumer(new MessageProcessor<String, String>() {
+         @Override
+         public Object call() {
+            String value = getRecord().value();
+            if (value.equals("b")) {
+               throw new IllegalStateException("cannot process " + value);
+            }
+            processed.add(value);
+            return value;
+         }
+      }, false);
+      testConsumer.setMaxRetries(1);
+      assertEquals(1, testConsumer.getMaxRetries());
+      DeadLetterPublisher deadLetters = new DeadLetterPublisher(null, null, "MessageConsumerTest");
+      testConsumer.setDeadLetters(deadLetters);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a", "b", "c");
+      });
+      schedule(() -> {
+         // retried once
+         assertEquals(0, mockConsumer.position(PARTITION));
+         addRecords("a", "b", "c");
+      });
+      schedule(() -> {
+         // then skipped, and the partition goes on past it
+         assertEquals(3, mockConsumer.position(PARTITION));
+         assertEquals(1, deadLetters.getFailures());
+         addRecords("d");
+      });
+      run();
+
+      assertEquals(Arrays.asList("a", "a", "a", "c", "d"), processed);
+      assertEquals(4, committedAtClose.offset());
+   }
+
+   @Test
+   public void metricsShouldCountBatchesAndLagWhileSubscribed() {
+      newTestConsumer(recordingProcessor("b"), false);
+      testConsumer.setName("metricsTestConsumer");
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         mockConsumer.updateEndOffsets(Collections.singletonMap(PARTITION, 5L));
+         addRecords("a", "b");
+      });
+      schedule(() -> {
+         ConsumerMetrics metrics = ConsumerMetrics.byConsumer().get("metricsTestConsumer");
+         assertSame(testConsumer.getMetrics(), metrics);
+         assertEquals(2, metrics.getRecordsConsumed());
+         assertEquals(1, metrics.getBatchesProcessed());
+         assertEquals(1, metrics.getBatchesFailed());
+         // as of the poll, before the failed batch was rewound
+         assertEquals(Long.valueOf(3), metrics.getLag().get(PARTITION));
+         assertEquals(3, metrics.getTotalLag());
+      });
+      run();
+
+      assertFalse(ConsumerMetrics.byConsumer().containsKey("metricsTestConsumer"));
+   }
+
+   @Test
+   public void manualCommitShouldCommitOnRevoke() {
+      newTestConsumer(recordingProcessor(null), false);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a");
+      });
+      schedule(() -> {
+         rebalanceListener.onPartitionsRevoked(Collections.singleton(PARTITION));
+         assertEquals(1, committedOffset());
+         mockConsumer.rebalance(Collections.emptyList());
+      });
+      run();
+   }
+
+   @Test
+   public void autoCommitShouldLeaveCommitsToKafka() {
+      newTestConsumer(recordingProcessor(null), true);
+      assertTrue(testConsumer.isAutoCommit());
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a");
+      });
+      run();
+
+      assertEquals(1, processed.size());
+      assertNull(committedAtClose);
+   }
+
+   @Test
+   public void workersShouldKeepOrderWithinEveryPartition() {
+      newTestConsumer(recordingProcessor(null), false);
+      testConsumer.setWorkerThreads(2);
+      testConsumer.setCommitBatchSize(1);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Arrays.asList(PARTITION, PARTITION_1));
+         for (int i = 0; i < 50; i++) {
+            addRecord(PARTITION, i, null, "p0-" + i);
+            addRecord(PARTITION_1, i, null, "p1-" + i);
+         }
+      });
+      schedule(() -> {
+         assertEquals(50, committedOffset(PARTITION));
+         assertEquals(50, committedOffset(PARTITION_1));
+      });
+      run();
+
+      for (String partition : Arrays.asList("p0-", "p1-")) {
+         List<String> values = processedStartingWith(partition);
+         assertEquals(50, values.size());
+         for (int i = 0; i < 50; i++) {
+            assertEquals(partition + i, values.get(i));
+         }
+      }
+   }
+
+   @Test
+   public void workersShouldRewindOnlyTheFailedPartition() {
+      newTestConsumer(recordingProcessor("p1-b"), false);
+      testConsumer.setWorkerThreads(2);
+      testConsumer.setCommitBatchSize(1);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Arrays.asList(PARTITION, PARTITION_1));
+         addRecord(PARTITION, 0, null, "p0-a");
+         addRecord(PARTITION_1, 0, null, "p1-a");
+         addRecord(PARTITION_1, 1, null, "p1-b");
+      });
+      schedule(() -> {
+         assertEquals(1, committedOffset(PARTITION));
+         assertEquals(-1, committedOffset(PARTITION_1));
+         assertEquals(1, mockConsumer.position(PARTITION));
+         assertEquals(0, mockConsumer.position(PARTITION_1));
+         addRecord(PARTITION_1, 0, null, "p1-a");
+         addRecord(PARTITION_1, 1, null, "p1-b");
+      });
+      schedule(() -> {
+         assertEquals(2, committedOffset(PARTITION_1));
+      });
+      run();
+
+      assertEquals(1, Collections.frequency(processed, "p0-a"));
+      assertEquals(1, Collections.frequency(processed, "p1-b"));
+   }
+
+   @Test
+   public void keyOrderingShouldKeepOrderWithinEveryKey() {
+      newTestConsumer(recordingProcessor(null), false);
+      testConsumer.setWorkerThreads(3);
+      testConsumer.setOrdering(MessageConsumer.Ordering.KEY);
+      assertEquals(MessageConsumer.Ordering.KEY, testConsumer.getOrdering());
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         for (int i = 0; i < 30; i++) {
+            String key = "key" + i % 5;
+            addRecord(PARTITION, i, key, key + "-" + i);
+         }
+      });
+      run();
+
+      assertEquals(30, new HashSet<>(processed).size());
+      for (int k = 0; k < 5; k++) {
+         List<String> values = processedStartingWith("key" + k + "-");
+         assertEquals(6, values.size());
+         for (int i = 0; i < values.size(); i++) {
+            assertEquals("key" + k + "-" + (k + 5 * i), values.get(i));
+         }
+      }
+      assertEquals(30, committedAtClose.offset());
+   }
+
+   @Test
+   public void saturatedProcessorShouldPausePartitionsUntilDrained() {
+      AtomicBoolean saturated = new AtomicBoolean();
+      newTestConsumer(new MessageProcessor<String, String>() {
+         @Override
+         public Object call() {
+            processed.add(getRecord().value());
+            saturated.set(true);
+            return null;
+         }
+
+         @Override
+         public boolean isSaturated() {
+            return saturated.get();
+         }
+      }, false);
+
+      schedule(() -> {
+         mockConsumer.rebalance(Collections.singletonList(PARTITION));
+         addRecords("a");
+      });
+      schedule(() -> {
+         assertTrue(testConsumer.isPaused());
+         assertEquals(Collections.singleton(PARTITION), mockConsumer.paused());
+         addRecords("b");
+      });
+      schedule(() -> {
+         // nothing read from the paused partition, the processor drains
+         assertEquals(Collections.singletonList("a"), processed);
+         saturated.set(false);
+      });
+      schedule(() -> {
+         assertFalse(testConsumer.isPaused());
+         assertTrue(mockConsumer.paused().isEmpty());
+      });
+      run();
+
+      assertEquals(Arrays.asList("a", "b"), processed);
+      assertEquals(2, committedAtClose.offset());
+   }
+
+   @Test
+   public void orderingShouldParseLenientlyAndDefaultToPartition() {
+      assertEquals(MessageConsumer.Ordering.KEY, MessageConsumer.Ordering.fromString(" key "));
+      assertEquals(MessageConsumer.Ordering.PARTITION, MessageConsumer.Ordering.fromString("offset"));
+      assertEquals(MessageConsumer.Ordering.PARTITION, MessageConsumer.Ordering.fromString(null));
+   }
+}
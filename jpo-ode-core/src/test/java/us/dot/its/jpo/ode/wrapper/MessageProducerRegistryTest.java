@@ -0,0 +1,123 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+public class MessageProducerRegistryTest {
+
+   private final List<MockProducer<String, String>> created = new ArrayList<>();
+
+   private final MessageProducerRegistry registry = new MessageProducerRegistry(props -> {
+      MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(),
+            new StringSerializer());
+      created.add(producer);
+      return producer;
+   });
+
+   @Test
+   public void acquireShouldShareOneProducerPerProfile() {
+      MessageProducer<String, String> first = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+      MessageProducer<String, String> second = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.singleton("disabledTopic"));
+      MessageProducer<String, byte[]> bytes = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_BYTE_ARRAY_SERIALIZER, Collections.emptySet());
+
+      assertEquals(2, registry.getProducerCount());
+      assertSame(first.getProducer(), second.getProducer());
+      assertNotSame(first.getProducer(), bytes.getProducer());
+
+      // every handle keeps its own disabled topics
+      first.send("disabledTopic", null, "a");
+      second.send("disabledTopic", null, "b");
+      assertEquals(1, created.get(0).history().size());
+   }
+
+   @Test
+   public void handlesShouldShareTheInFlightLimitOfTheirProducer() {
+      MockProducer<String, String> slowProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducerRegistry slowRegistry = new MessageProducerRegistry(props -> slowProducer);
+      MessageProducer<String, String> first = slowRegistry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+      MessageProducer<String, String> second = slowRegistry.<String, String>acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet()).setMaxInFlight(1);
+
+      first.send("testTopic", null, "a");
+      assertEquals(1, second.getInFlight());
+      assertFalse(second.canSend());
+      assertTrue(second.sendAsync("testTopic", null, "b").isCompletedExceptionally());
+
+      slowProducer.completeNext();
+      assertTrue(second.canSend());
+      assertEquals(0, first.getInFlight());
+   }
+
+   @Test
+   public void closeShouldCloseProducerWithLastHandle() {
+      MessageProducer<String, String> first = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+      MessageProducer<String, String> second = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+
+      first.close();
+      first.close();
+      assertFalse(created.get(0).closed());
+      assertEquals(1, registry.getProducerCount());
+
+      second.close();
+      assertTrue(created.get(0).closed());
+      assertEquals(0, registry.getProducerCount());
+
+      // a new handle after the last one was closed gets a new producer
+      registry.acquire("brokers", null, MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+      assertEquals(2, created.size());
+   }
+
+   @Test
+   public void closeAllShouldFlushAndCloseEveryProducer() {
+      MessageProducer<String, String> handle = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+      registry.acquire("brokers", "partitioner", MessageProducer.SERIALIZATION_STRING_SERIALIZER,
+            Collections.emptySet());
+
+      registry.closeAll();
+
+      assertEquals(0, registry.getProducerCount());
+      assertTrue(created.get(0).closed());
+      assertTrue(created.get(1).closed());
+
+      // releasing a handle after shutdown does not touch the registry
+      handle.close();
+      assertEquals(0, registry.getProducerCount());
+   }
+
+   @Test
+   public void acquireShouldSendThroughBatchingProfilesWhenAdaptive() {
+      registry.setAdaptiveBatching(new AdaptiveBatchingController.Settings());
+      MessageProducer<String, String> handle = registry.acquire("brokers", null,
+            MessageProducer.SERIALIZATION_STRING_SERIALIZER, Collections.emptySet());
+
+      handle.send("topic", "key", "value");
+
+      assertEquals(1, created.size());
+      assertSame(created.get(0), handle.getProducer());
+      assertEquals(1, created.get(0).history().size());
+      assertEquals(BatchingProfile.LOW_LATENCY,
+            registry.getBatchingProfiles().values().iterator().next().get("topic"));
+
+      handle.close();
+      assertTrue(created.get(0).closed());
+   }
+}
@@ -0,0 +1,217 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+public class MessageProducerTest {
+
+   private MessageProducer<String, String> newTestProducer(MockProducer<String, String> mockProducer) {
+      return new MessageProducer<>(mockProducer, new HashSet<>(Arrays.asList("disabledTopic")), null);
+   }
+
+   @Test
+   public void sendBatchShouldCallBackOnceAfterAllRecords() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer);
+
+      AtomicInteger callbacks = new AtomicInteger();
+      AtomicReference<Exception> reported = new AtomicReference<>();
+      testProducer.sendBatch("testTopic", null, Arrays.asList("a", "b", "c"), (count, e) -> {
+         callbacks.incrementAndGet();
+         assertEquals(3, count);
+         reported.set(e);
+      });
+
+      assertEquals(3, mockProducer.history().size());
+      mockProducer.completeNext();
+      mockProducer.completeNext();
+      assertEquals(0, callbacks.get());
+      mockProducer.completeNext();
+      assertEquals(1, callbacks.get());
+      assertNull(reported.get());
+   }
+
+   @Test
+   public void sendBatchShouldReportFirstFailure() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer);
+
+      AtomicReference<Exception> reported = new AtomicReference<>();
+      testProducer.sendBatch("testTopic", "key", Arrays.asList("a", "b"), (count, e) -> reported.set(e));
+
+      RuntimeException failure = new RuntimeException("broker unavailable");
+      mockProducer.errorNext(failure);
+      mockProducer.completeNext();
+      assertSame(failure, reported.get());
+   }
+
+   @Test
+   public void sendKeyedBatchShouldKeyEveryRecord() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(true, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer);
+
+      AtomicInteger callbacks = new AtomicInteger();
+      testProducer.sendKeyedBatch("testTopic", Arrays.asList("k1", null), Arrays.asList("a", "b"),
+            (count, e) -> callbacks.incrementAndGet());
+
+      assertEquals(2, mockProducer.history().size());
+      assertEquals("k1", mockProducer.history().get(0).key());
+      assertNull(mockProducer.history().get(1).key());
+      assertEquals(1, callbacks.get());
+   }
+
+   @Test
+   public void sendBatchShouldSkipDisabledTopic() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(true, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer);
+
+      testProducer.sendBatch("disabledTopic", null, Arrays.asList("a", "b"), null);
+
+      assertEquals(0, mockProducer.history().size());
+   }
+
+   @Test
+   public void sendWithHeadersShouldKeepHeaders() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(true, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer);
+
+      RecordHeaders headers = new RecordHeaders();
+      headers.add("h", new byte[] { 1 });
+      testProducer.send("testTopic", null, "value", headers);
+      testProducer.send("disabledTopic", null, "value", headers);
+
+      assertEquals(1, mockProducer.history().size());
+      assertEquals(1, mockProducer.history().get(0).headers().lastHeader("h").value()[0]);
+   }
+
+   @Test
+   public void sendAsyncShouldRejectRecordsOverInFlightLimit() throws Exception {
+      MockProducer<String, String> mockProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer).setMaxInFlight(2);
+
+      CompletableFuture<RecordMetadata> first = testProducer.sendAsync("testTopic", "k", "a");
+      // plain sends count towards the limit too
+      testProducer.send("testTopic", "k", "b");
+      assertFalse(testProducer.canSend());
+
+      CompletableFuture<RecordMetadata> rejected = testProducer.sendAsync("testTopic", "k", "c");
+      assertTrue(rejected.isCompletedExceptionally());
+      assertEquals(2, mockProducer.history().size());
+
+      mockProducer.completeNext();
+      assertEquals("testTopic", first.get().topic());
+      assertTrue(testProducer.canSend());
+      assertEquals(1, testProducer.getInFlight());
+   }
+
+   @Test
+   public void sendShouldWaitForRoomAtInFlightLimit() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer).setMaxInFlight(1)
+            .setMaxBlockMs(20);
+
+      testProducer.send("testTopic", null, "a");
+      assertThrows(MessageProducer.InFlightLimitExceededException.class,
+            () -> testProducer.send("testTopic", null, "b"));
+      assertEquals(1, mockProducer.history().size());
+
+      mockProducer.completeNext();
+      testProducer.send("testTopic", null, "c");
+      assertEquals(2, mockProducer.history().size());
+   }
+
+   @Test
+   public void sendBatchShouldCallBackWhenARecordCannotBeSent() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer).setMaxInFlight(2)
+            .setMaxBlockMs(20);
+
+      AtomicInteger callbacks = new AtomicInteger();
+      AtomicReference<Exception> reported = new AtomicReference<>();
+      assertThrows(MessageProducer.InFlightLimitExceededException.class,
+            () -> testProducer.sendKeyedBatch("testTopic", Arrays.asList("k1", "k2", "k3"),
+                  Arrays.asList("a", "b", "c"), (count, e) -> {
+                     callbacks.incrementAndGet();
+                     reported.set(e);
+                  }));
+      assertEquals(2, mockProducer.history().size());
+
+      // once the records that were sent complete
+      mockProducer.completeNext();
+      assertEquals(0, callbacks.get());
+      mockProducer.completeNext();
+      assertEquals(1, callbacks.get());
+      assertTrue(reported.get() instanceof MessageProducer.InFlightLimitExceededException);
+   }
+
+   @Test
+   public void sendShouldReleaseInFlightWhenBatchingProducerCannotBeCreated() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(true, new StringSerializer(),
+            new StringSerializer());
+      AtomicInteger attempts = new AtomicInteger();
+      AdaptiveBatchingController controller = new AdaptiveBatchingController(new Properties(), props -> {
+         if (attempts.incrementAndGet() == 1) {
+            throw new KafkaException("Failed to construct kafka producer");
+         }
+         return mockProducer;
+      }, new AdaptiveBatchingController.Settings(), () -> 0L, Runnable::run);
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer).setMaxInFlight(1)
+            .setBatching(controller);
+
+      assertThrows(KafkaException.class, () -> testProducer.send("testTopic", null, "a"));
+      assertEquals(0, testProducer.getInFlight());
+      assertEquals(0, controller.getInFlight("testTopic"));
+
+      testProducer.send("testTopic", null, "b");
+      assertEquals(1, mockProducer.history().size());
+   }
+
+   @Test
+   public void sendAsyncShouldCountOutcomesPerTopic() {
+      MockProducer<String, String> mockProducer = new MockProducer<>(false, new StringSerializer(),
+            new StringSerializer());
+      MessageProducer<String, String> testProducer = newTestProducer(mockProducer);
+
+      CompletableFuture<RecordMetadata> sent = testProducer.sendAsync("testTopic", null, "a");
+      CompletableFuture<RecordMetadata> failed = testProducer.sendAsync("testTopic", null, "b");
+      CompletableFuture<RecordMetadata> disabled = testProducer.sendAsync("disabledTopic", null, "c");
+      mockProducer.completeNext();
+      mockProducer.errorNext(new RuntimeException("broker unavailable"));
+
+      assertTrue(sent.isDone() && !sent.isCompletedExceptionally());
+      assertTrue(failed.isCompletedExceptionally());
+      assertTrue(disabled.isDone() && !disabled.isCompletedExceptionally());
+      ProducerTopicMetrics metrics = testProducer.getTopicMetrics().get("testTopic");
+      assertEquals(1, metrics.getSucceeded());
+      assertEquals(1, metrics.getFailed());
+      assertTrue(metrics.getMaxLatencyMs() >= metrics.getAverageLatencyMs());
+      assertFalse(testProducer.getTopicMetrics().containsKey("disabledTopic"));
+      assertEquals(0, testProducer.getInFlight());
+   }
+}
@@ -0,0 +1,60 @@
+package us.dot.its.jpo.ode.wrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import us.dot.its.jpo.ode.model.OdeAsn1Payload;
+import us.dot.its.jpo.ode.model.OdeBsmMetadata;
+import us.dot.its.jpo.ode.model.OdeBsmMetadata.BsmSource;
+import us.dot.its.jpo.ode.model.OdeLogMetadata.RecordType;
+import us.dot.its.jpo.ode.model.ReceivedMessageDetails;
+import us.dot.its.jpo.ode.model.RxSource;
+
+public class RawEncodedEnvelopeTest {
+
+   @Test
+   public void metadataShouldSurviveHeaders() throws Exception {
+      OdeBsmMetadata metadata = new OdeBsmMetadata(new OdeAsn1Payload());
+      metadata.setOriginIp("10.0.0.1");
+      metadata.setBsmSource(BsmSource.EV);
+      metadata.setRecordType(RecordType.bsmTx);
+      ReceivedMessageDetails details = new ReceivedMessageDetails();
+      details.setRxSource(RxSource.RSU);
+      metadata.setReceivedMessageDetails(details);
+
+      Headers headers = RawEncodedEnvelope.toHeaders(metadata);
+
+      assertTrue(RawEncodedEnvelope.isEnvelope(headers));
+      assertEquals("\"10.0.0.1\"", new String(headers.lastHeader("originIp").value(), StandardCharsets.UTF_8));
+      assertNull(headers.lastHeader("logFileName"));
+
+      OdeBsmMetadata read = new ObjectMapper().treeToValue(RawEncodedEnvelope.toMetadataNode(headers),
+            OdeBsmMetadata.class);
+      assertEquals("10.0.0.1", read.getOriginIp());
+      assertEquals(BsmSource.EV, read.getBsmSource());
+      assertEquals(RecordType.bsmTx, read.getRecordType());
+      assertEquals(RxSource.RSU, read.getReceivedMessageDetails().getRxSource());
+      assertEquals(metadata.getSerialId().getStreamId(), read.getSerialId().getStreamId());
+      assertEquals(metadata.getOdeReceivedAt(), read.getOdeReceivedAt());
+   }
+
+   @Test
+   public void recordsWithoutFormatHeaderAreNotEnvelopes() {
+      assertFalse(RawEncodedEnvelope.isEnvelope(null));
+      assertFalse(RawEncodedEnvelope.isEnvelope(new RecordHeaders()));
+
+      RecordHeaders other = new RecordHeaders();
+      other.add(RawEncodedEnvelope.FORMAT_HEADER, "json".getBytes(StandardCharsets.UTF_8));
+      assertFalse(RawEncodedEnvelope.isEnvelope(other));
+   }
+}
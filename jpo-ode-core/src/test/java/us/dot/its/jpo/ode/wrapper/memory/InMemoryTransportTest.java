@@ -0,0 +1,153 @@
+package us.dot.its.jpo.ode.wrapper.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import us.dot.its.jpo.ode.wrapper.MessageProducer;
+import us.dot.its.jpo.ode.wrapper.MessageTransport;
+
+public class InMemoryTransportTest {
+
+   private static final Duration POLL_TIMEOUT = Duration.ofMillis(200);
+
+   private final InMemoryTransport transport = new InMemoryTransport(new InMemoryBroker(2, 3));
+
+   private Producer<String, String> newProducer() {
+      Properties props = new Properties();
+      props.put("key.serializer", StringSerializer.class.getName());
+      props.put("value.serializer", StringSerializer.class);
+      return transport.createProducer(props);
+   }
+
+   private Consumer<String, String> newConsumer(String groupId) {
+      Properties props = new Properties();
+      props.put("group.id", groupId);
+      props.put("key.deserializer", StringDeserializer.class.getName());
+      props.put("value.deserializer", new StringDeserializer());
+      props.put("auto.offset.reset", "earliest");
+      props.put("enable.auto.commit", "false");
+      return transport.createConsumer(props);
+   }
+
+   private static List<String> values(ConsumerRecords<String, String> records) {
+      List<String> values = new ArrayList<>();
+      records.forEach(record -> values.add(record.value()));
+      return values;
+   }
+
+   @Test
+   public void consumerShouldReadWhatProducerSent() {
+      try (Producer<String, String> producer = newProducer();
+            Consumer<String, String> consumer = newConsumer("group")) {
+         consumer.subscribe(Collections.singleton("topic"));
+         producer.send(new ProducerRecord<>("topic", 0, null, "k", "v",
+               Collections.singleton(new RecordHeader("h", "x".getBytes(StandardCharsets.UTF_8)))));
+
+         ConsumerRecords<String, String> records = consumer.poll(POLL_TIMEOUT);
+
+         assertEquals(1, records.count());
+         ConsumerRecord<String, String> record = records.iterator().next();
+         assertEquals("k", record.key());
+         assertEquals("v", record.value());
+         assertEquals(0, record.offset());
+         assertArrayEquals("x".getBytes(StandardCharsets.UTF_8), record.headers().lastHeader("h").value());
+      }
+   }
+
+   @Test
+   public void sameKeyShouldAlwaysGoToSamePartition() {
+      try (Producer<String, String> producer = newProducer()) {
+         Set<Integer> partitions = new HashSet<>();
+         for (int i = 0; i < 3; i++) {
+            partitions.add(producer.send(new ProducerRecord<>("topic", "key", "v" + i)).get().partition());
+         }
+         assertEquals(1, partitions.size());
+      } catch (Exception e) {
+         throw new AssertionError(e);
+      }
+   }
+
+   @Test
+   public void fullPartitionShouldDropOldestRecords() throws Exception {
+      TopicPartition partition = new TopicPartition("topic", 1);
+      try (Producer<String, String> producer = newProducer();
+            Consumer<String, String> consumer = newConsumer("group")) {
+         for (int i = 0; i < 5; i++) {
+            producer.send(new ProducerRecord<>("topic", 1, null, "v" + i)).get();
+         }
+         consumer.assign(Collections.singleton(partition));
+
+         assertEquals(Arrays.asList("v2", "v3", "v4"), values(consumer.poll(POLL_TIMEOUT)));
+         assertEquals(2, transport.getBroker().dropped(partition));
+         assertEquals(5, consumer.position(partition));
+      }
+   }
+
+   @Test
+   public void groupShouldSplitPartitionsAndResumeFromCommittedOffsets() throws Exception {
+      try (Producer<String, String> producer = newProducer()) {
+         Consumer<String, String> first = newConsumer("group");
+         Consumer<String, String> second = newConsumer("group");
+         first.subscribe(Collections.singleton("topic"));
+         second.subscribe(Collections.singleton("topic"));
+         assertEquals(1, first.assignment().size());
+         assertEquals(1, second.assignment().size());
+
+         RecordMetadata sent = producer.send(new ProducerRecord<>("topic", 0, null, "a")).get();
+         producer.send(new ProducerRecord<>("topic", 0, null, "b")).get();
+         Consumer<String, String> owner = first.assignment().contains(new TopicPartition("topic", 0)) ? first : second;
+         assertEquals(Arrays.asList("a", "b"), values(owner.poll(POLL_TIMEOUT)));
+         owner.commitSync();
+         first.close();
+         second.close();
+
+         producer.send(new ProducerRecord<>("topic", 0, null, "c")).get();
+         try (Consumer<String, String> rejoined = newConsumer("group")) {
+            rejoined.subscribe(Collections.singleton("topic"));
+            assertEquals(2, rejoined.assignment().size());
+            assertEquals(Collections.singletonList("c"), values(rejoined.poll(POLL_TIMEOUT)));
+            // nothing read since the last commit, so it still stands
+            TopicPartition partition = new TopicPartition("topic", sent.partition());
+            assertEquals(sent.offset() + 2, rejoined.committed(Collections.singleton(partition)).get(partition).offset());
+         }
+      }
+   }
+
+   @Test
+   public void messageProducerShouldUseDefaultTransport() {
+      MessageTransport.setDefault(transport);
+      try {
+         MessageProducer<String, String> producer = new MessageProducer<>("unused:9092", null, null,
+               StringSerializer.class.getName(), Collections.emptySet());
+         producer.send("topic", null, "v");
+         producer.close();
+      } finally {
+         MessageTransport.setDefault(MessageTransport.KAFKA);
+      }
+      TopicPartition partition = new TopicPartition("topic", 0);
+      TopicPartition other = new TopicPartition("topic", 1);
+      assertEquals(1, transport.getBroker().endOffset(partition) + transport.getBroker().endOffset(other));
+   }
+}
@@ -0,0 +1,119 @@
+package us.dot.its.jpo.ode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import us.dot.its.jpo.ode.wrapper.ConsumerMetrics;
+
+/**
+ * Throughput, processing time and lag of every subscribed MessageConsumer,
+ * read from {@link ConsumerMetrics#byConsumer()} whenever asked, so
+ * consumers started later are included.
+ */
+public class KafkaConsumerMetrics implements KafkaConsumerMetricsMXBean {
+
+   public static final String OBJECT_NAME = "us.dot.its.jpo.ode:type=KafkaConsumerMetrics";
+
+   private static final KafkaConsumerMetrics instance = new KafkaConsumerMetrics();
+
+   public static KafkaConsumerMetrics getInstance() {
+      return instance;
+   }
+
+   KafkaConsumerMetrics() {
+      super();
+   }
+
+   private static <T> Map<String, T> byConsumer(Function<ConsumerMetrics, T> metric) {
+      Map<String, T> result = new LinkedHashMap<>();
+      ConsumerMetrics.byConsumer().forEach((name, metrics) -> result.put(name, metric.apply(metrics)));
+      return result;
+   }
+
+   private static Map<String, Long> partitionLag(ConsumerMetrics metrics) {
+      Map<String, Long> result = new TreeMap<>();
+      metrics.getLag().forEach((partition, lag) -> result.put(partition.toString(), lag));
+      return result;
+   }
+
+   @Override
+   public Map<String, Long> getRecordsConsumed() {
+      return byConsumer(ConsumerMetrics::getRecordsConsumed);
+   }
+
+   @Override
+   public Map<String, Double> getRecordsPerSecond() {
+      return byConsumer(ConsumerMetrics::getRecordsPerSecond);
+   }
+
+   @Override
+   public Map<String, Long> getTotalLag() {
+      return byConsumer(ConsumerMetrics::getTotalLag);
+   }
+
+   @Override
+   public Map<String, Long> getPartitionLag() {
+      Map<String, Long> result = new LinkedHashMap<>();
+      ConsumerMetrics.byConsumer().forEach((name, metrics) -> partitionLag(metrics)
+            .forEach((partition, lag) -> result.put(name + "/" + partition, lag)));
+      return result;
+   }
+
+   @Override
+   public Map<String, Double> getAverageProcessTimeMs() {
+      return byConsumer(ConsumerMetrics::getAverageProcessTimeMs);
+   }
+
+   @Override
+   public Map<String, Double> getMaxProcessTimeMs() {
+      return byConsumer(ConsumerMetrics::getMaxProcessTimeMs);
+   }
+
+   @Override
+   public Map<String, Double> getAveragePollToProcessMs() {
+      return byConsumer(ConsumerMetrics::getAveragePollToProcessMs);
+   }
+
+   @Override
+   public Map<String, Double> getMaxPollToProcessMs() {
+      return byConsumer(ConsumerMetrics::getMaxPollToProcessMs);
+   }
+
+   @Override
+   public Map<String, Long> getBatchesFailed() {
+      return byConsumer(ConsumerMetrics::getBatchesFailed);
+   }
+
+   @Override
+   public Map<String, Boolean> getPaused() {
+      return byConsumer(ConsumerMetrics::isPaused);
+   }
+
+   /**
+    * Everything in one tree per consumer, as served by the REST endpoint.
+    */
+   public Map<String, Object> snapshot() {
+      return new LinkedHashMap<>(byConsumer(metrics -> {
+         Map<String, Object> entry = new LinkedHashMap<>();
+         entry.put("recordsConsumed", metrics.getRecordsConsumed());
+         entry.put("recordsPerSecond", metrics.getRecordsPerSecond());
+         entry.put("batchesProcessed", metrics.getBatchesProcessed());
+         entry.put("batchesFailed", metrics.getBatchesFailed());
+         entry.put("averageProcessTimeMs", metrics.getAverageProcessTimeMs());
+         entry.put("maxProcessTimeMs", metrics.getMaxProcessTimeMs());
+         entry.put("averagePollToProcessMs", metrics.getAveragePollToProcessMs());
+         entry.put("maxPollToProcessMs", metrics.getMaxPollToProcessMs());
+         entry.put("paused", metrics.isPaused());
+         entry.put("totalLag", metrics.getTotalLag());
+         entry.put("partitionLag", partitionLag(metrics));
+         return entry;
+      }));
+   }
+
+   @Override
+   public void doReset() {
+      ConsumerMetrics.byConsumer().values().forEach(ConsumerMetrics::reset);
+   }
+}
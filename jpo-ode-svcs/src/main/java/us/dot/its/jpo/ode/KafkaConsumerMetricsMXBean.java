@@ -0,0 +1,42 @@
+package us.dot.its.jpo.ode;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of every subscribed MessageConsumer, registered as
+ * us.dot.its.jpo.ode:type=KafkaConsumerMetrics. Maps are keyed by consumer
+ * name unless stated otherwise.
+ */
+public interface KafkaConsumerMetricsMXBean {
+
+   public Map<String, Long> getRecordsConsumed();
+
+   // over the last ten seconds
+   public Map<String, Double> getRecordsPerSecond();
+
+   // records behind the end of all assigned partitions
+   public Map<String, Long> getTotalLag();
+
+   // records behind the end of each partition, keyed by consumer/topic-partition
+   public Map<String, Long> getPartitionLag();
+
+   // time spent in one call of the processor
+   public Map<String, Double> getAverageProcessTimeMs();
+
+   public Map<String, Double> getMaxProcessTimeMs();
+
+   // time from a poll returning a batch to the batch being processed
+   public Map<String, Double> getAveragePollToProcessMs();
+
+   public Map<String, Double> getMaxPollToProcessMs();
+
+   public Map<String, Long> getBatchesFailed();
+
+   // consumers whose partitions are paused for a saturated processor
+   public Map<String, Boolean> getPaused();
+
+   // any method starting with get and set are considered
+   // as attributes getter and setter methods, so I am
+   // using do* for operation.
+   public void doReset();
+}
@@ -0,0 +1,47 @@
+package us.dot.its.jpo.ode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import us.dot.its.jpo.ode.udp.UdpIngestMetrics;
+import us.dot.its.jpo.ode.util.JsonUtils;
+
+@RestController
+public class OdeMetricsController {
+
+  private static final Logger logger = LoggerFactory.getLogger(OdeMetricsController.class);
+
+  private UdpIngestMetrics udpIngestMetrics;
+  private KafkaConsumerMetrics kafkaConsumerMetrics;
+
+  public OdeMetricsController() {
+    this(UdpIngestMetrics.getInstance(), KafkaConsumerMetrics.getInstance());
+  }
+
+  OdeMetricsController(UdpIngestMetrics udpIngestMetrics, KafkaConsumerMetrics kafkaConsumerMetrics) {
+    super();
+    this.udpIngestMetrics = udpIngestMetrics;
+    this.kafkaConsumerMetrics = kafkaConsumerMetrics;
+  }
+
+  @CrossOrigin
+  @GetMapping(value = "/metrics/udp")
+  public ResponseEntity<String> getUdpMetrics() { // NOSONAR
+    logger.debug("Request for UDP ingest metrics received");
+
+    return ResponseEntity.ok().body(JsonUtils.toJson(udpIngestMetrics.snapshot(), false));
+  }
+
+  @CrossOrigin
+  @GetMapping(value = "/metrics/kafka")
+  public ResponseEntity<String> getKafkaConsumerMetrics() { // NOSONAR
+    logger.debug("Request for Kafka consumer metrics received");
+
+    return ResponseEntity.ok().body(JsonUtils.toJson(kafkaConsumerMetrics.snapshot(), false));
+  }
+
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 
@@ -44,6 +45,12 @@ import us.dot.its.jpo.ode.eventlog.EventLogger;
 import us.dot.its.jpo.ode.model.OdeMsgMetadata;
 import us.dot.its.jpo.ode.plugin.OdePlugin;
 import us.dot.its.jpo.ode.util.CommonUtils;
+import us.dot.its.jpo.ode.wrapper.AdaptiveBatchingController;
+import us.dot.its.jpo.ode.wrapper.DeadLetterPublisher;
+import us.dot.its.jpo.ode.wrapper.MessageProducerRegistry;
+import us.dot.its.jpo.ode.wrapper.MessageTransport;
+import us.dot.its.jpo.ode.wrapper.memory.InMemoryBroker;
+import us.dot.its.jpo.ode.wrapper.memory.InMemoryTransport;
 
 @ConfigurationProperties("ode")
 @PropertySource("classpath:application.properties")
@@ -63,6 +70,40 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaBrokers = null;
    private static final String DEFAULT_KAFKA_PORT = "9092";
    private String kafkaProducerType = AppContext.DEFAULT_KAFKA_PRODUCER_TYPE;
+   // JSON, or BINARY to publish raw encoded messages as UPER bytes with the metadata in record headers
+   private String rawEncodedMessageFormat = "JSON";
+   // key records by BSM id, intersection id or RSU IP instead of leaving them unkeyed; off by default since
+   // keys change the partition records land on for existing consumers
+   private boolean kafkaRecordKeysEnabled = false;
+   // records a publisher keeps in flight before the UDP receivers drop packets, 0 for no limit
+   private int kafkaProducerMaxInFlight = 0;
+   // false to commit only the offsets of processed records, at least once, instead of on a timer
+   private boolean kafkaConsumerAutoCommit = true;
+   private int kafkaConsumerMaxPollRecords = 500;
+   // threads the decoded data router works with, keeping PARTITION or KEY order
+   private int kafkaConsumerThreads = AppContext.DEFAULT_KAFKA_CONSUMER_THREADS;
+   private String kafkaConsumerOrdering = "PARTITION";
+   // STOMP messages waiting for slow clients at which the exporters stop reading, 0 for no limit
+   private int stompMaxQueuedMessages = 0;
+   // route the decoder output with Kafka Streams instead of the decoded data router consumer
+   private boolean kafkaStreamsRoutingEnabled = false;
+   private int kafkaStreamsThreads = 1;
+   private int kafkaStreamsStandbyReplicas = 0;
+   // route the decoder output in Kafka transactions, implies streams routing, and read only committed records
+   private boolean kafkaExactlyOnceEnabled = false;
+   // KAFKA, or IN_MEMORY to keep every topic inside this JVM when no broker is available
+   private String messageTransport = "KAFKA";
+   // payload characters a dead letter keeps, and how often failures are logged rather than counted
+   private int deadLetterExcerptLength = DeadLetterPublisher.DEFAULT_EXCERPT_LENGTH;
+   private long deadLetterLogIntervalMs = DeadLetterPublisher.DEFAULT_LOG_INTERVAL_MS;
+   private int inMemoryTopicPartitions = InMemoryBroker.DEFAULT_PARTITIONS;
+   private int inMemoryPartitionCapacity = InMemoryBroker.DEFAULT_PARTITION_CAPACITY;
+   // batch and compress busy topics more, within a p99 send latency target, instead of fixed producer settings
+   private boolean kafkaProducerAdaptiveBatching = false;
+   private long kafkaProducerLatencyTargetMs = 250;
+   // the tighter target of PSM, SPaT and MAP unless listed; not BSM, a firehose the tight target would keep from batching
+   private long kafkaProducerLatencySensitiveTargetMs = 50;
+   private String[] kafkaProducerLatencySensitiveTopics = {};
    private Boolean verboseJson = false;
    private int importProcessorBufferSize = OdePlugin.INPUT_STREAM_BUFFER_SIZE;
    private String hostId;
@@ -106,6 +147,21 @@ public class OdeProperties implements EnvironmentAware {
     */
    private int trustRetries = 2; // if trust handshake fails, how many times to retry
    private int messagesUntilTrustReestablished = 10; // renew trust session every x messages
+   private boolean udpSelectorEnabled = false; // drain all UDP ports from shared selectors instead of a thread per port
+   private int udpSelectorThreads = 1; // number of I/O threads polling the UDP selectors
+   private int udpProcessingThreads = Runtime.getRuntime().availableProcessors(); // threads publishing received packets
+   private int udpProcessingQueueSize = 10000; // packets waiting for a processing thread before the I/O threads push back
+   private int udpRingBufferSize = 0; // packet slots between each blocking receive loop and its workers, 0 publishes inline
+   private int udpRingBufferWorkers = 2; // workers enriching and publishing packets taken from each ring buffer
+   private String udpRingBufferWaitStrategy = "SLEEPING"; // BUSY_SPIN, YIELDING or SLEEPING
+   private int udpBatchSize = 1; // datagrams drained from a socket and published as one batch, 1 disables batching
+   private int udpBatchTimeBudgetMs = 2; // longest a blocking receive loop waits to fill a batch
+   private int udpBufferPoolSize = 1024; // direct receive buffers pooled per port by the selector based ingest
+   private int udpSenderBurst = 20; // packets a sender may send back to back before its rate limit applies
+   private int udpSenderIdleTimeoutMs = 60000; // how long a quiet sender's token bucket is kept
+   private String udpShedPolicy = "DROP"; // DROP, SAMPLE or OVERFLOW packets over a sender's rate
+   private int udpShedSampleRate = 100; // with SAMPLE, one in this many packets over the rate is still published
+   private String kafkaTopicOdeRawEncodedOverflowJson = "topic.OdeRawEncodedOverflowJson"; // with OVERFLOW, where packets over the rate go
 
    /*
     * Kafka Topics
@@ -128,6 +184,12 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdeRawEncodedBSMJson = "topic.OdeRawEncodedBSMJson";
    private int bsmReceiverPort = 46800;
    private int bsmBufferSize = 500;
+   private int bsmReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int bsmSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int bsmSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
+   private String bsmDuplicateSuppression = "OFF"; // OFF, DROP or MERGE copies of a BSM forwarded by several RSUs
+   private int bsmDuplicateWindowMs = 250; // how long a BSM fingerprint is remembered
+   private int bsmDuplicateMaxEntries = 100000; // most BSM fingerprints remembered at once
 
    // TIM
    private String kafkaTopicOdeTimJson = "topic.OdeTimJson";
@@ -140,6 +202,9 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdeRawEncodedTIMJson = "topic.OdeRawEncodedTIMJson";
    private int timReceiverPort = 47900;
    private int timBufferSize = 500;
+   private int timReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int timSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int timSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
    
    //SPAT
    private String kafkaTopicOdeSpatTxPojo = "topic.OdeSpatTxPojo";
@@ -151,6 +216,9 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdeRawEncodedSPATJson = "topic.OdeRawEncodedSPATJson";
    private int spatReceiverPort = 44910;
    private int spatBufferSize = 500;
+   private int spatReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int spatSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int spatSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
 
    //SSM
    private String kafkaTopicOdeSsmPojo = "topic.OdeSsmPojo";
@@ -158,6 +226,9 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdeRawEncodedSSMJson = "topic.OdeRawEncodedSSMJson";
    private int ssmReceiverPort = 44900;
    private int ssmBufferSize = 500;
+   private int ssmReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int ssmSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int ssmSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
 
    //SRM
    private String kafkaTopicOdeSrmTxPojo = "topic.OdeSrmTxPojo";
@@ -165,6 +236,9 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdeRawEncodedSRMJson = "topic.OdeRawEncodedSRMJson";
    private int srmReceiverPort = 44930;
    private int srmBufferSize = 500;
+   private int srmReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int srmSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int srmSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
    
    //MAP
    private String kafkaTopicOdeRawEncodedMAPJson = "topic.OdeRawEncodedMAPJson";
@@ -172,6 +246,9 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdeMapJson = "topic.OdeMapJson";
    private int mapReceiverPort = 44920;
    private int mapBufferSize = 2048;
+   private int mapReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int mapSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int mapSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
 
    // PSM
    private String kafkaTopicOdeRawEncodedPSMJson = "topic.OdeRawEncodedPSMJson";
@@ -179,6 +256,17 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicOdePsmJson = "topic.OdePsmJson";
    private int psmReceiverPort = 44940;
    private int psmBufferSize = 500;
+   private int psmReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int psmSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
+   private int psmSenderRateLimit = 0; // packets per second admitted from each sender, 0 for no limit
+
+   // Unified UDP port for every supported MessageFrame
+   private boolean unifiedReceiverEnabled = false; // classify and route every supported message type on one port
+   private boolean udpTypedReceiversEnabled = true; // keep the port per message type, turn off to ingest on the unified port only
+   private int unifiedReceiverPort = 44990;
+   private int unifiedBufferSize = 2048;
+   private int unifiedReceiverSocketCount = 1; // sockets sharing the port through SO_REUSEPORT
+   private int unifiedSocketReceiveBufferSize = 0; // SO_RCVBUF in bytes, 0 keeps the OS default
    
 // DriverAlerts
    private String kafkaTopicDriverAlertJson = "topic.OdeDriverAlertJson";
@@ -188,6 +276,9 @@ public class OdeProperties implements EnvironmentAware {
    private String kafkaTopicAsn1DecoderOutput = "topic.Asn1DecoderOutput";
    private String kafkaTopicAsn1EncoderInput = "topic.Asn1EncoderInput";
    private String kafkaTopicAsn1EncoderOutput = "topic.Asn1EncoderOutput";
+   // where the routers put a reference to the records they fail on, empty to only log
+   private String kafkaTopicAsn1DecoderOutputDeadLetter = "topic.Asn1DecoderOutputDeadLetter";
+   private String kafkaTopicAsn1EncoderOutputDeadLetter = "topic.Asn1EncoderOutputDeadLetter";
 
    // SDX Depositor Module
    private String kafkaTopicSdwDepositorInput = "topic.SDWDepositorInput";
@@ -252,6 +343,21 @@ public class OdeProperties implements EnvironmentAware {
       List<String> asList = Arrays.asList(this.getKafkaTopicsDisabled());
       logger.info("Disabled Topics: {}", asList);
       kafkaTopicsDisabledSet.addAll(asList);
+
+      if (isInMemoryTransport()) {
+         logger.warn("Using the in-memory message transport, {} partitions of {} records per topic, nothing is kept across restarts",
+               inMemoryTopicPartitions, inMemoryPartitionCapacity);
+         MessageTransport.setDefault(
+               new InMemoryTransport(new InMemoryBroker(inMemoryTopicPartitions, inMemoryPartitionCapacity)));
+      }
+
+      if (kafkaProducerAdaptiveBatching) {
+         AdaptiveBatchingController.Settings settings = adaptiveBatchingSettings();
+         logger.info("Adapting producer batching, p99 latency target {} ms, {} ms for {}",
+               settings.getLatencyTargetMs(), settings.getLatencySensitiveTargetMs(),
+               settings.getLatencySensitiveTopics());
+         MessageProducerRegistry.getInstance().setAdaptiveBatching(settings);
+      }
    }
 
    
@@ -307,6 +413,210 @@ public class OdeProperties implements EnvironmentAware {
       this.kafkaProducerType = kafkaProducerType;
    }
 
+   public String getRawEncodedMessageFormat() {
+      return rawEncodedMessageFormat;
+   }
+
+   public void setRawEncodedMessageFormat(String rawEncodedMessageFormat) {
+      this.rawEncodedMessageFormat = rawEncodedMessageFormat;
+   }
+
+   public boolean isRawEncodedBinary() {
+      return "BINARY".equalsIgnoreCase(rawEncodedMessageFormat);
+   }
+
+   public boolean isKafkaRecordKeysEnabled() {
+      return kafkaRecordKeysEnabled;
+   }
+
+   public void setKafkaRecordKeysEnabled(boolean kafkaRecordKeysEnabled) {
+      this.kafkaRecordKeysEnabled = kafkaRecordKeysEnabled;
+   }
+
+   public int getKafkaProducerMaxInFlight() {
+      return kafkaProducerMaxInFlight;
+   }
+
+   public void setKafkaProducerMaxInFlight(int kafkaProducerMaxInFlight) {
+      this.kafkaProducerMaxInFlight = kafkaProducerMaxInFlight;
+   }
+
+   public boolean isKafkaConsumerAutoCommit() {
+      return kafkaConsumerAutoCommit;
+   }
+
+   public void setKafkaConsumerAutoCommit(boolean kafkaConsumerAutoCommit) {
+      this.kafkaConsumerAutoCommit = kafkaConsumerAutoCommit;
+   }
+
+   public int getKafkaConsumerMaxPollRecords() {
+      return kafkaConsumerMaxPollRecords;
+   }
+
+   public void setKafkaConsumerMaxPollRecords(int kafkaConsumerMaxPollRecords) {
+      this.kafkaConsumerMaxPollRecords = kafkaConsumerMaxPollRecords;
+   }
+
+   public int getKafkaConsumerThreads() {
+      return kafkaConsumerThreads;
+   }
+
+   public void setKafkaConsumerThreads(int kafkaConsumerThreads) {
+      this.kafkaConsumerThreads = kafkaConsumerThreads;
+   }
+
+   public String getKafkaConsumerOrdering() {
+      return kafkaConsumerOrdering;
+   }
+
+   public void setKafkaConsumerOrdering(String kafkaConsumerOrdering) {
+      this.kafkaConsumerOrdering = kafkaConsumerOrdering;
+   }
+
+   public int getStompMaxQueuedMessages() {
+      return stompMaxQueuedMessages;
+   }
+
+   public void setStompMaxQueuedMessages(int stompMaxQueuedMessages) {
+      this.stompMaxQueuedMessages = stompMaxQueuedMessages;
+   }
+
+   public boolean isKafkaStreamsRoutingEnabled() {
+      return kafkaStreamsRoutingEnabled;
+   }
+
+   public void setKafkaStreamsRoutingEnabled(boolean kafkaStreamsRoutingEnabled) {
+      this.kafkaStreamsRoutingEnabled = kafkaStreamsRoutingEnabled;
+   }
+
+   public int getKafkaStreamsThreads() {
+      return kafkaStreamsThreads;
+   }
+
+   public void setKafkaStreamsThreads(int kafkaStreamsThreads) {
+      this.kafkaStreamsThreads = kafkaStreamsThreads;
+   }
+
+   public int getKafkaStreamsStandbyReplicas() {
+      return kafkaStreamsStandbyReplicas;
+   }
+
+   public void setKafkaStreamsStandbyReplicas(int kafkaStreamsStandbyReplicas) {
+      this.kafkaStreamsStandbyReplicas = kafkaStreamsStandbyReplicas;
+   }
+
+   public boolean isKafkaExactlyOnceEnabled() {
+      return kafkaExactlyOnceEnabled;
+   }
+
+   public void setKafkaExactlyOnceEnabled(boolean kafkaExactlyOnceEnabled) {
+      this.kafkaExactlyOnceEnabled = kafkaExactlyOnceEnabled;
+   }
+
+   public String getMessageTransport() {
+      return messageTransport;
+   }
+
+   public void setMessageTransport(String messageTransport) {
+      this.messageTransport = messageTransport;
+   }
+
+   public boolean isInMemoryTransport() {
+      return "IN_MEMORY".equalsIgnoreCase(messageTransport);
+   }
+
+   public int getInMemoryTopicPartitions() {
+      return inMemoryTopicPartitions;
+   }
+
+   public void setInMemoryTopicPartitions(int inMemoryTopicPartitions) {
+      this.inMemoryTopicPartitions = inMemoryTopicPartitions;
+   }
+
+   public int getDeadLetterExcerptLength() {
+      return deadLetterExcerptLength;
+   }
+
+   public void setDeadLetterExcerptLength(int deadLetterExcerptLength) {
+      this.deadLetterExcerptLength = deadLetterExcerptLength;
+   }
+
+   public long getDeadLetterLogIntervalMs() {
+      return deadLetterLogIntervalMs;
+   }
+
+   public void setDeadLetterLogIntervalMs(long deadLetterLogIntervalMs) {
+      this.deadLetterLogIntervalMs = deadLetterLogIntervalMs;
+   }
+
+   public int getInMemoryPartitionCapacity() {
+      return inMemoryPartitionCapacity;
+   }
+
+   public void setInMemoryPartitionCapacity(int inMemoryPartitionCapacity) {
+      this.inMemoryPartitionCapacity = inMemoryPartitionCapacity;
+   }
+
+   public boolean isKafkaProducerAdaptiveBatching() {
+      return kafkaProducerAdaptiveBatching;
+   }
+
+   public void setKafkaProducerAdaptiveBatching(boolean kafkaProducerAdaptiveBatching) {
+      this.kafkaProducerAdaptiveBatching = kafkaProducerAdaptiveBatching;
+   }
+
+   public long getKafkaProducerLatencyTargetMs() {
+      return kafkaProducerLatencyTargetMs;
+   }
+
+   public void setKafkaProducerLatencyTargetMs(long kafkaProducerLatencyTargetMs) {
+      this.kafkaProducerLatencyTargetMs = kafkaProducerLatencyTargetMs;
+   }
+
+   public long getKafkaProducerLatencySensitiveTargetMs() {
+      return kafkaProducerLatencySensitiveTargetMs;
+   }
+
+   public void setKafkaProducerLatencySensitiveTargetMs(long kafkaProducerLatencySensitiveTargetMs) {
+      this.kafkaProducerLatencySensitiveTargetMs = kafkaProducerLatencySensitiveTargetMs;
+   }
+
+   public String[] getKafkaProducerLatencySensitiveTopics() {
+      return kafkaProducerLatencySensitiveTopics;
+   }
+
+   public void setKafkaProducerLatencySensitiveTopics(String[] kafkaProducerLatencySensitiveTopics) {
+      this.kafkaProducerLatencySensitiveTopics = kafkaProducerLatencySensitiveTopics;
+   }
+
+   /**
+    * Limits of the adaptive producer batching.
+    */
+   public AdaptiveBatchingController.Settings adaptiveBatchingSettings() {
+      Set<String> latencySensitive = new HashSet<>(Arrays.asList(kafkaProducerLatencySensitiveTopics));
+      if (latencySensitive.isEmpty()) {
+         latencySensitive.addAll(Arrays.asList(kafkaTopicOdePsmJson, kafkaTopicOdeSpatJson, kafkaTopicOdeMapJson));
+      }
+      return new AdaptiveBatchingController.Settings()
+            .setLatencyTargetMs(kafkaProducerLatencyTargetMs)
+            .setLatencySensitiveTargetMs(kafkaProducerLatencySensitiveTargetMs)
+            .setLatencySensitiveTopics(latencySensitive);
+   }
+
+   /**
+    * Consumer properties that replace the MessageConsumer defaults.
+    */
+   public Properties kafkaConsumerProperties() {
+      Properties props = new Properties();
+      props.put("enable.auto.commit", String.valueOf(kafkaConsumerAutoCommit));
+      props.put("max.poll.records", kafkaConsumerMaxPollRecords);
+      if (kafkaExactlyOnceEnabled) {
+         // skip records of aborted routing transactions
+         props.put("isolation.level", "read_committed");
+      }
+      return props;
+   }
+
    public Environment getEnv() {
       return env;
    }
@@ -396,6 +706,54 @@ public class OdeProperties implements EnvironmentAware {
       this.bsmBufferSize = bsmBufferSize;
    }
 
+   public int getBsmReceiverSocketCount() {
+      return bsmReceiverSocketCount;
+   }
+
+   public void setBsmReceiverSocketCount(int bsmReceiverSocketCount) {
+      this.bsmReceiverSocketCount = bsmReceiverSocketCount;
+   }
+
+   public int getBsmSocketReceiveBufferSize() {
+      return bsmSocketReceiveBufferSize;
+   }
+
+   public void setBsmSocketReceiveBufferSize(int bsmSocketReceiveBufferSize) {
+      this.bsmSocketReceiveBufferSize = bsmSocketReceiveBufferSize;
+   }
+
+   public String getBsmDuplicateSuppression() {
+      return bsmDuplicateSuppression;
+   }
+
+   public void setBsmDuplicateSuppression(String bsmDuplicateSuppression) {
+      this.bsmDuplicateSuppression = bsmDuplicateSuppression;
+   }
+
+   public int getBsmDuplicateWindowMs() {
+      return bsmDuplicateWindowMs;
+   }
+
+   public void setBsmDuplicateWindowMs(int bsmDuplicateWindowMs) {
+      this.bsmDuplicateWindowMs = bsmDuplicateWindowMs;
+   }
+
+   public int getBsmDuplicateMaxEntries() {
+      return bsmDuplicateMaxEntries;
+   }
+
+   public void setBsmDuplicateMaxEntries(int bsmDuplicateMaxEntries) {
+      this.bsmDuplicateMaxEntries = bsmDuplicateMaxEntries;
+   }
+
+   public int getBsmSenderRateLimit() {
+      return bsmSenderRateLimit;
+   }
+
+   public void setBsmSenderRateLimit(int bsmSenderRateLimit) {
+      this.bsmSenderRateLimit = bsmSenderRateLimit;
+   }
+
    public int getTimReceiverPort() {
       return timReceiverPort;
    }
@@ -412,6 +770,30 @@ public class OdeProperties implements EnvironmentAware {
       this.timBufferSize = timBufferSize;
    }
 
+   public int getTimReceiverSocketCount() {
+      return timReceiverSocketCount;
+   }
+
+   public void setTimReceiverSocketCount(int timReceiverSocketCount) {
+      this.timReceiverSocketCount = timReceiverSocketCount;
+   }
+
+   public int getTimSocketReceiveBufferSize() {
+      return timSocketReceiveBufferSize;
+   }
+
+   public void setTimSocketReceiveBufferSize(int timSocketReceiveBufferSize) {
+      this.timSocketReceiveBufferSize = timSocketReceiveBufferSize;
+   }
+
+   public int getTimSenderRateLimit() {
+      return timSenderRateLimit;
+   }
+
+   public void setTimSenderRateLimit(int timSenderRateLimit) {
+      this.timSenderRateLimit = timSenderRateLimit;
+   }
+
    public int getSsmReceiverPort() {
       return ssmReceiverPort;
    }
@@ -428,6 +810,30 @@ public class OdeProperties implements EnvironmentAware {
       this.ssmBufferSize = ssmBufferSize;
    }
 
+   public int getSsmReceiverSocketCount() {
+      return ssmReceiverSocketCount;
+   }
+
+   public void setSsmReceiverSocketCount(int ssmReceiverSocketCount) {
+      this.ssmReceiverSocketCount = ssmReceiverSocketCount;
+   }
+
+   public int getSsmSocketReceiveBufferSize() {
+      return ssmSocketReceiveBufferSize;
+   }
+
+   public void setSsmSocketReceiveBufferSize(int ssmSocketReceiveBufferSize) {
+      this.ssmSocketReceiveBufferSize = ssmSocketReceiveBufferSize;
+   }
+
+   public int getSsmSenderRateLimit() {
+      return ssmSenderRateLimit;
+   }
+
+   public void setSsmSenderRateLimit(int ssmSenderRateLimit) {
+      this.ssmSenderRateLimit = ssmSenderRateLimit;
+   }
+
    public int getSrmReceiverPort() {
       return srmReceiverPort;
    }
@@ -444,6 +850,30 @@ public class OdeProperties implements EnvironmentAware {
       this.srmBufferSize = srmBufferSize;
    }
 
+   public int getSrmReceiverSocketCount() {
+      return srmReceiverSocketCount;
+   }
+
+   public void setSrmReceiverSocketCount(int srmReceiverSocketCount) {
+      this.srmReceiverSocketCount = srmReceiverSocketCount;
+   }
+
+   public int getSrmSocketReceiveBufferSize() {
+      return srmSocketReceiveBufferSize;
+   }
+
+   public void setSrmSocketReceiveBufferSize(int srmSocketReceiveBufferSize) {
+      this.srmSocketReceiveBufferSize = srmSocketReceiveBufferSize;
+   }
+
+   public int getSrmSenderRateLimit() {
+      return srmSenderRateLimit;
+   }
+
+   public void setSrmSenderRateLimit(int srmSenderRateLimit) {
+      this.srmSenderRateLimit = srmSenderRateLimit;
+   }
+
    public int getSpatReceiverPort() {
       return spatReceiverPort;
    }
@@ -460,6 +890,30 @@ public class OdeProperties implements EnvironmentAware {
       this.spatBufferSize = spatBufferSize;
    }
 
+   public int getSpatReceiverSocketCount() {
+      return spatReceiverSocketCount;
+   }
+
+   public void setSpatReceiverSocketCount(int spatReceiverSocketCount) {
+      this.spatReceiverSocketCount = spatReceiverSocketCount;
+   }
+
+   public int getSpatSocketReceiveBufferSize() {
+      return spatSocketReceiveBufferSize;
+   }
+
+   public void setSpatSocketReceiveBufferSize(int spatSocketReceiveBufferSize) {
+      this.spatSocketReceiveBufferSize = spatSocketReceiveBufferSize;
+   }
+
+   public int getSpatSenderRateLimit() {
+      return spatSenderRateLimit;
+   }
+
+   public void setSpatSenderRateLimit(int spatSenderRateLimit) {
+      this.spatSenderRateLimit = spatSenderRateLimit;
+   }
+
    public int getMapReceiverPort() {
       return mapReceiverPort;
    }
@@ -476,6 +930,30 @@ public class OdeProperties implements EnvironmentAware {
       this.mapBufferSize = mapBufferSize;
    }
 
+   public int getMapReceiverSocketCount() {
+      return mapReceiverSocketCount;
+   }
+
+   public void setMapReceiverSocketCount(int mapReceiverSocketCount) {
+      this.mapReceiverSocketCount = mapReceiverSocketCount;
+   }
+
+   public int getMapSocketReceiveBufferSize() {
+      return mapSocketReceiveBufferSize;
+   }
+
+   public void setMapSocketReceiveBufferSize(int mapSocketReceiveBufferSize) {
+      this.mapSocketReceiveBufferSize = mapSocketReceiveBufferSize;
+   }
+
+   public int getMapSenderRateLimit() {
+      return mapSenderRateLimit;
+   }
+
+   public void setMapSenderRateLimit(int mapSenderRateLimit) {
+      this.mapSenderRateLimit = mapSenderRateLimit;
+   }
+
    public int getPsmReceiverPort() {
       return psmReceiverPort;
    }
@@ -492,6 +970,198 @@ public class OdeProperties implements EnvironmentAware {
       this.psmBufferSize = psmBufferSize;
    }
 
+   public int getPsmReceiverSocketCount() {
+      return psmReceiverSocketCount;
+   }
+
+   public void setPsmReceiverSocketCount(int psmReceiverSocketCount) {
+      this.psmReceiverSocketCount = psmReceiverSocketCount;
+   }
+
+   public int getPsmSocketReceiveBufferSize() {
+      return psmSocketReceiveBufferSize;
+   }
+
+   public void setPsmSocketReceiveBufferSize(int psmSocketReceiveBufferSize) {
+      this.psmSocketReceiveBufferSize = psmSocketReceiveBufferSize;
+   }
+
+   public int getPsmSenderRateLimit() {
+      return psmSenderRateLimit;
+   }
+
+   public void setPsmSenderRateLimit(int psmSenderRateLimit) {
+      this.psmSenderRateLimit = psmSenderRateLimit;
+   }
+
+   public boolean isUnifiedReceiverEnabled() {
+      return unifiedReceiverEnabled;
+   }
+
+   public void setUnifiedReceiverEnabled(boolean unifiedReceiverEnabled) {
+      this.unifiedReceiverEnabled = unifiedReceiverEnabled;
+   }
+
+   public boolean isUdpTypedReceiversEnabled() {
+      return udpTypedReceiversEnabled;
+   }
+
+   public void setUdpTypedReceiversEnabled(boolean udpTypedReceiversEnabled) {
+      this.udpTypedReceiversEnabled = udpTypedReceiversEnabled;
+   }
+
+   public int getUnifiedReceiverPort() {
+      return unifiedReceiverPort;
+   }
+
+   public void setUnifiedReceiverPort(int unifiedReceiverPort) {
+      this.unifiedReceiverPort = unifiedReceiverPort;
+   }
+
+   public int getUnifiedBufferSize() {
+      return unifiedBufferSize;
+   }
+
+   public void setUnifiedBufferSize(int unifiedBufferSize) {
+      this.unifiedBufferSize = unifiedBufferSize;
+   }
+
+   public int getUnifiedReceiverSocketCount() {
+      return unifiedReceiverSocketCount;
+   }
+
+   public void setUnifiedReceiverSocketCount(int unifiedReceiverSocketCount) {
+      this.unifiedReceiverSocketCount = unifiedReceiverSocketCount;
+   }
+
+   public int getUnifiedSocketReceiveBufferSize() {
+      return unifiedSocketReceiveBufferSize;
+   }
+
+   public void setUnifiedSocketReceiveBufferSize(int unifiedSocketReceiveBufferSize) {
+      this.unifiedSocketReceiveBufferSize = unifiedSocketReceiveBufferSize;
+   }
+
+   public boolean isUdpSelectorEnabled() {
+      return udpSelectorEnabled;
+   }
+
+   public void setUdpSelectorEnabled(boolean udpSelectorEnabled) {
+      this.udpSelectorEnabled = udpSelectorEnabled;
+   }
+
+   public int getUdpSelectorThreads() {
+      return udpSelectorThreads;
+   }
+
+   public void setUdpSelectorThreads(int udpSelectorThreads) {
+      this.udpSelectorThreads = udpSelectorThreads;
+   }
+
+   public int getUdpProcessingThreads() {
+      return udpProcessingThreads;
+   }
+
+   public void setUdpProcessingThreads(int udpProcessingThreads) {
+      this.udpProcessingThreads = udpProcessingThreads;
+   }
+
+   public int getUdpProcessingQueueSize() {
+      return udpProcessingQueueSize;
+   }
+
+   public void setUdpProcessingQueueSize(int udpProcessingQueueSize) {
+      this.udpProcessingQueueSize = udpProcessingQueueSize;
+   }
+
+   public int getUdpRingBufferSize() {
+      return udpRingBufferSize;
+   }
+
+   public void setUdpRingBufferSize(int udpRingBufferSize) {
+      this.udpRingBufferSize = udpRingBufferSize;
+   }
+
+   public int getUdpRingBufferWorkers() {
+      return udpRingBufferWorkers;
+   }
+
+   public void setUdpRingBufferWorkers(int udpRingBufferWorkers) {
+      this.udpRingBufferWorkers = udpRingBufferWorkers;
+   }
+
+   public String getUdpRingBufferWaitStrategy() {
+      return udpRingBufferWaitStrategy;
+   }
+
+   public void setUdpRingBufferWaitStrategy(String udpRingBufferWaitStrategy) {
+      this.udpRingBufferWaitStrategy = udpRingBufferWaitStrategy;
+   }
+
+   public int getUdpBatchSize() {
+      return udpBatchSize;
+   }
+
+   public void setUdpBatchSize(int udpBatchSize) {
+      this.udpBatchSize = udpBatchSize;
+   }
+
+   public int getUdpBatchTimeBudgetMs() {
+      return udpBatchTimeBudgetMs;
+   }
+
+   public void setUdpBatchTimeBudgetMs(int udpBatchTimeBudgetMs) {
+      this.udpBatchTimeBudgetMs = udpBatchTimeBudgetMs;
+   }
+
+   public int getUdpBufferPoolSize() {
+      return udpBufferPoolSize;
+   }
+
+   public void setUdpBufferPoolSize(int udpBufferPoolSize) {
+      this.udpBufferPoolSize = udpBufferPoolSize;
+   }
+
+   public int getUdpSenderBurst() {
+      return udpSenderBurst;
+   }
+
+   public void setUdpSenderBurst(int udpSenderBurst) {
+      this.udpSenderBurst = udpSenderBurst;
+   }
+
+   public int getUdpSenderIdleTimeoutMs() {
+      return udpSenderIdleTimeoutMs;
+   }
+
+   public void setUdpSenderIdleTimeoutMs(int udpSenderIdleTimeoutMs) {
+      this.udpSenderIdleTimeoutMs = udpSenderIdleTimeoutMs;
+   }
+
+   public String getUdpShedPolicy() {
+      return udpShedPolicy;
+   }
+
+   public void setUdpShedPolicy(String udpShedPolicy) {
+      this.udpShedPolicy = udpShedPolicy;
+   }
+
+   public int getUdpShedSampleRate() {
+      return udpShedSampleRate;
+   }
+
+   public void setUdpShedSampleRate(int udpShedSampleRate) {
+      this.udpShedSampleRate = udpShedSampleRate;
+   }
+
+   public String getKafkaTopicOdeRawEncodedOverflowJson() {
+      return kafkaTopicOdeRawEncodedOverflowJson;
+   }
+
+   public void setKafkaTopicOdeRawEncodedOverflowJson(String kafkaTopicOdeRawEncodedOverflowJson) {
+      this.kafkaTopicOdeRawEncodedOverflowJson = kafkaTopicOdeRawEncodedOverflowJson;
+   }
+
    public String getDdsCasUrl() {
       return ddsCasUrl;
    }
@@ -612,6 +1282,22 @@ public class OdeProperties implements EnvironmentAware {
       this.kafkaTopicAsn1EncoderInput = kafkaTopicAsn1EncoderInput;
    }
 
+   public String getKafkaTopicAsn1DecoderOutputDeadLetter() {
+      return kafkaTopicAsn1DecoderOutputDeadLetter;
+   }
+
+   public void setKafkaTopicAsn1DecoderOutputDeadLetter(String kafkaTopicAsn1DecoderOutputDeadLetter) {
+      this.kafkaTopicAsn1DecoderOutputDeadLetter = kafkaTopicAsn1DecoderOutputDeadLetter;
+   }
+
+   public String getKafkaTopicAsn1EncoderOutputDeadLetter() {
+      return kafkaTopicAsn1EncoderOutputDeadLetter;
+   }
+
+   public void setKafkaTopicAsn1EncoderOutputDeadLetter(String kafkaTopicAsn1EncoderOutputDeadLetter) {
+      this.kafkaTopicAsn1EncoderOutputDeadLetter = kafkaTopicAsn1EncoderOutputDeadLetter;
+   }
+
    public String getKafkaTopicAsn1EncoderOutput() {
       return kafkaTopicAsn1EncoderOutput;
    }
@@ -40,6 +40,9 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 
+import us.dot.its.jpo.ode.udp.UdpIngestMetrics;
+import us.dot.its.jpo.ode.wrapper.MessageProducerRegistry;
+
 @SpringBootApplication
 @EnableConfigurationProperties(OdeProperties.class)
 public class OdeSvcsApplication {
@@ -54,6 +57,8 @@ public class OdeSvcsApplication {
       SystemConfig mBean = new SystemConfig(DEFAULT_NO_THREADS, DEFAULT_SCHEMA);
       ObjectName name = new ObjectName("us.dot.its.jpo.ode:type=SystemConfig");
       mbs.registerMBean(mBean, name);
+      mbs.registerMBean(UdpIngestMetrics.getInstance(), new ObjectName(UdpIngestMetrics.OBJECT_NAME));
+      mbs.registerMBean(KafkaConsumerMetrics.getInstance(), new ObjectName(KafkaConsumerMetrics.OBJECT_NAME));
 
       SecurityProtocols.getInstance().addAuthenticationProtocol(new AuthSHA());
       SecurityProtocols.getInstance().addAuthenticationProtocol(new AuthHMAC128SHA224());
@@ -73,7 +78,7 @@ public class OdeSvcsApplication {
 
    @PreDestroy
    public void cleanup() {
-      // Unused
+      MessageProducerRegistry.getInstance().closeAll();
    }
 
 }
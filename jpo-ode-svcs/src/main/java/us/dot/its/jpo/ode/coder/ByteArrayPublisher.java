@@ -19,7 +19,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.model.OdeMsgMetadata;
 import us.dot.its.jpo.ode.wrapper.MessageProducer;
+import us.dot.its.jpo.ode.wrapper.RawEncodedEnvelope;
 
 public class ByteArrayPublisher extends MessagePublisher {
 
@@ -31,7 +33,15 @@ public class ByteArrayPublisher extends MessagePublisher {
       this.bytesProducer = MessageProducer.defaultByteArrayMessageProducer(
          odeProperties.getKafkaBrokers(), odeProperties.getKafkaProducerType(), 
          odeProperties.getKafkaTopicsDisabledSet());
+      this.bytesProducer.setMaxInFlight(odeProperties.getKafkaProducerMaxInFlight());
+   }
 
+   /**
+    * Whether the producer is below its in-flight limit, false while the broker
+    * is falling behind.
+    */
+   public boolean canPublish() {
+      return bytesProducer.canSend();
    }
 
    public void publish(byte[] msg, String topic) {
@@ -39,4 +49,17 @@ public class ByteArrayPublisher extends MessagePublisher {
     bytesProducer.send(topic, null, msg);
    }
 
+   /**
+    * Publishes the encoded bytes as the record value with the metadata carried
+    * in the record headers.
+    */
+   public void publishEnvelope(OdeMsgMetadata metadata, byte[] payload, String topic) {
+      publishEnvelope(metadata, payload, topic, null);
+   }
+
+   public void publishEnvelope(OdeMsgMetadata metadata, byte[] payload, String topic, String key) {
+      logger.debug("Publishing binary envelope to {}", topic);
+      bytesProducer.send(topic, key, payload, RawEncodedEnvelope.toHeaders(metadata));
+   }
+
 }
@@ -30,7 +30,7 @@ public class OdeDataPublisher extends MessagePublisher {
 
    public OdeDataPublisher(OdeProperties odeProps, String serializer) {
       super(odeProps);
-      this.objectProducer = new MessageProducer<>(odeProperties.getKafkaBrokers(), 
+      this.objectProducer = MessageProducer.sharedMessageProducer(odeProperties.getKafkaBrokers(),
             odeProperties.getKafkaProducerType(),
             null, serializer, 
             odeProperties.getKafkaTopicsDisabledSet());
@@ -15,6 +15,8 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.coder;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,12 +33,37 @@ public class StringPublisher extends MessagePublisher {
       this.stringProducer = MessageProducer.defaultStringMessageProducer(
          odeProperties.getKafkaBrokers(), odeProperties.getKafkaProducerType(), 
          odeProperties.getKafkaTopicsDisabledSet());
+      this.stringProducer.setMaxInFlight(odeProperties.getKafkaProducerMaxInFlight());
+   }
 
+   /**
+    * Whether the producer is below its in-flight limit, false while the broker
+    * is falling behind.
+    */
+   public boolean canPublish() {
+      return stringProducer.canSend();
    }
 
    public void publish(String msg, String topic) {
-    logger.debug("Publishing String data to {}", topic);
-    stringProducer.send(topic, null, msg);
+    publish(msg, topic, null);
+   }
+
+   public void publish(String msg, String topic, String key) {
+      logger.debug("Publishing String data to {}", topic);
+      stringProducer.send(topic, key, msg);
+   }
+
+   public void publishBatch(List<String> msgs, String topic) {
+      logger.debug("Publishing batch of {} String messages to {}", msgs.size(), topic);
+      stringProducer.sendBatch(topic, null, msgs, null);
+   }
+
+   /**
+    * Publishes a batch with a key of its own for every message.
+    */
+   public void publishBatch(List<String> msgs, String topic, List<String> keys) {
+      logger.debug("Publishing batch of {} keyed String messages to {}", msgs.size(), topic);
+      stringProducer.sendKeyedBatch(topic, keys, msgs, null);
    }
 
 }
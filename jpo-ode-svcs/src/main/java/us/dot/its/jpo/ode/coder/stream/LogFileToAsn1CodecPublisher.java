@@ -17,6 +17,7 @@ package us.dot.its.jpo.ode.coder.stream;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,6 +27,8 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.ByteArrayPublisher;
 import us.dot.its.jpo.ode.coder.StringPublisher;
 import us.dot.its.jpo.ode.importer.ImporterDirectoryWatcher.ImporterFileType;
 import us.dot.its.jpo.ode.importer.parser.BsmLogFileParser;
@@ -47,7 +50,9 @@ import us.dot.its.jpo.ode.model.RxSource;
 import us.dot.its.jpo.ode.model.SerialId;
 import us.dot.its.jpo.ode.util.JsonUtils;
 import us.dot.its.jpo.ode.util.XmlUtils;
+import us.dot.its.jpo.ode.uper.UperKeys;
 import us.dot.its.jpo.ode.uper.UperUtil;
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
 
 public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 
@@ -64,6 +69,7 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 	protected static final Logger logger = LoggerFactory.getLogger(LogFileToAsn1CodecPublisher.class);
 
 	protected StringPublisher publisher;
+	private ByteArrayPublisher bytesPublisher;
 	protected LogFileParser fileParser;
 	protected SerialId serialId;
 
@@ -78,6 +84,8 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 		ParserStatus status;
 
 		List<OdeData> dataList = new ArrayList<>();
+		// the UPER bytes of every record in dataList as parsed, null for driver alerts
+		List<byte[]> payloads = new ArrayList<>();
 		if (fileType == ImporterFileType.LOG_FILE) {
 			fileParser = LogFileParser.factory(fileName);
 
@@ -85,9 +93,9 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 				try {
 					status = fileParser.parseFile(bis, fileName);
 					if (status == ParserStatus.COMPLETE) {
-						addDataToList(dataList);
+						addDataToList(dataList, payloads);
 					} else if (status == ParserStatus.EOF) {
-						publishList(xmlUtils, dataList);
+						publishList(xmlUtils, dataList, payloads);
 					} else if (status == ParserStatus.INIT) {
 						logger.error("Failed to parse the header bytes.");
 					} else {
@@ -103,7 +111,7 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 		return dataList;
 	}
 
-	private void addDataToList(List<OdeData> dataList) {
+	private void addDataToList(List<OdeData> dataList, List<byte[]> payloads) {
 
 		OdeData odeData;
 
@@ -129,6 +137,7 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 		fileParser.updateMetadata(metadata);
 
 		dataList.add(odeData);
+		payloads.add(isDriverAlertRecord() ? null : fileParser.getPayloadParser().getPayload());
 	}
 
 	public boolean isDriverAlertRecord() {
@@ -144,10 +153,13 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 		return fileParser instanceof SpatLogFileParser;
 	}
 
-	private void publishList(XmlUtils xmlUtils, List<OdeData> dataList) throws JsonProcessingException {
+	private void publishList(XmlUtils xmlUtils, List<OdeData> dataList, List<byte[]> payloads)
+			throws JsonProcessingException {
 		serialId.setBundleSize(dataList.size());
 
-		for (OdeData odeData : dataList) {
+		for (int i = 0; i < dataList.size(); i++) {
+			OdeData odeData = dataList.get(i);
+			byte[] uper = payloads.get(i);
 			OdeLogMetadata msgMetadata = (OdeLogMetadata) odeData.getMetadata();
 			OdeMsgPayload msgPayload = (OdeMsgPayload) odeData.getPayload();
 			msgMetadata.setSerialId(serialId);
@@ -156,28 +168,28 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 				publisher.publish(JsonUtils.toJson(odeData, false),
 						publisher.getOdeProperties().getKafkaTopicDriverAlertJson());
 			} else if (isBsmRecord()) {
-				publisher.publish(JsonUtils.toJson(odeData, false),
+				publishRawEncoded(odeData, uper, SupportedMessageTypes.BSM,
 				publisher.getOdeProperties().getKafkaTopicOdeRawEncodedBSMJson());
 			} else if (isSpatRecord()) {
-				publisher.publish(JsonUtils.toJson(odeData, false),
+				publishRawEncoded(odeData, uper, SupportedMessageTypes.SPAT,
 					publisher.getOdeProperties().getKafkaTopicOdeRawEncodedSPATJson());
 			} else {
 				// Determine the message type (MAP, TIM, SSM, SRM, or PSM)
 				String messageType = UperUtil.determineMessageType(msgPayload);
 				if (messageType == "MAP") {
-					publisher.publish(JsonUtils.toJson(odeData, false),
+					publishRawEncoded(odeData, uper, SupportedMessageTypes.MAP,
 						publisher.getOdeProperties().getKafkaTopicOdeRawEncodedMAPJson());
 				} else if (messageType == "TIM") {
-					publisher.publish(JsonUtils.toJson(odeData, false),
+					publishRawEncoded(odeData, uper, SupportedMessageTypes.TIM,
 						publisher.getOdeProperties().getKafkaTopicOdeRawEncodedTIMJson());
 				} else if (messageType == "SSM") {
-					publisher.publish(JsonUtils.toJson(odeData, false),
+					publishRawEncoded(odeData, uper, SupportedMessageTypes.SSM,
 						publisher.getOdeProperties().getKafkaTopicOdeRawEncodedSSMJson());
 				} else if (messageType == "SRM") {
-					publisher.publish(JsonUtils.toJson(odeData, false),
+					publishRawEncoded(odeData, uper, SupportedMessageTypes.SRM,
 						publisher.getOdeProperties().getKafkaTopicOdeRawEncodedSRMJson());
 				} else if (messageType == "PSM") {
-					publisher.publish(JsonUtils.toJson(odeData, false),
+					publishRawEncoded(odeData, uper, SupportedMessageTypes.PSM,
 						publisher.getOdeProperties().getKafkaTopicOdeRawEncodedPSMJson());
 				}
 			}
@@ -186,6 +198,29 @@ public class LogFileToAsn1CodecPublisher implements Asn1CodecPublisher {
 		}
 	}
 
+	/**
+	 * Publishes a raw encoded record in the configured format, JSON or the UPER
+	 * bytes with the metadata in record headers, keyed by the vehicle or
+	 * intersection it is about when record keys are on. The bytes are the ones
+	 * the parser read, so they are never converted to hex and back.
+	 */
+	private void publishRawEncoded(OdeData odeData, byte[] uper, SupportedMessageTypes messageType, String topic) {
+		OdeProperties odeProperties = publisher.getOdeProperties();
+		String key = null;
+		if (odeProperties.isKafkaRecordKeysEnabled()) {
+			key = UperKeys.keyOf(messageType, ByteBuffer.wrap(uper), null);
+		}
+
+		if (!odeProperties.isRawEncodedBinary()) {
+			publisher.publish(JsonUtils.toJson(odeData, false), topic, key);
+			return;
+		}
+		if (bytesPublisher == null) {
+			bytesPublisher = new ByteArrayPublisher(odeProperties);
+		}
+		bytesPublisher.publishEnvelope(odeData.getMetadata(), uper, topic, key);
+	}
+
 	// This method will check if the next character is a newline character (0x0A in hex or 10 in converted decimal) 
 	// or if the next character does not contain a newline character it will put that character back into the buffered input stream
 	public BufferedInputStream removeNextNewLineCharacter(BufferedInputStream bis) {
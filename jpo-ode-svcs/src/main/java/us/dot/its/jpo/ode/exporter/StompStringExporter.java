@@ -16,6 +16,7 @@
 package us.dot.its.jpo.ode.exporter;
 
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import us.dot.its.jpo.ode.OdeProperties;
 import us.dot.its.jpo.ode.wrapper.MessageConsumer;
 
@@ -27,25 +28,43 @@ public class StompStringExporter extends Exporter{
     private OdeProperties odeProperties;
     private SimpMessagingTemplate template;
     private String odeTopic;
+    private ThreadPoolTaskExecutor outboundExecutor;
 
     public StompStringExporter(
             OdeProperties odeProperties,
             String stompTopic,
             SimpMessagingTemplate template,
             String odeTopic) {
+        this(odeProperties, stompTopic, template, odeTopic, null);
+    }
+
+    /**
+     * @param outboundExecutor executor delivering STOMP messages to the
+     *                         clients; reading pauses while its queue is at
+     *                         ode.stompMaxQueuedMessages
+     */
+    public StompStringExporter(
+            OdeProperties odeProperties,
+            String stompTopic,
+            SimpMessagingTemplate template,
+            String odeTopic,
+            ThreadPoolTaskExecutor outboundExecutor) {
         super(stompTopic);
         this.odeProperties = odeProperties;
         this.template = template;
         this.odeTopic = odeTopic;
+        this.outboundExecutor = outboundExecutor;
     }
 
     @Override
     protected void subscribe() {
         setConsumer(MessageConsumer.defaultStringMessageConsumer(odeProperties.getKafkaBrokers(),
                 odeProperties.getHostId() + this.getClass().getSimpleName(),
-                new StompStringMessageDistributor(template, getTopic())));
+                new StompStringMessageDistributor(template, getTopic(), outboundExecutor,
+                        odeProperties.getStompMaxQueuedMessages()),
+                odeProperties.kafkaConsumerProperties()));
 
-        getConsumer().setName(this.getClass().getSimpleName());
+        getConsumer().setName(this.getClass().getSimpleName() + "-" + odeTopic);
         getConsumer().subscribe(odeTopic);
     }
 }
@@ -18,6 +18,7 @@ package us.dot.its.jpo.ode.exporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import us.dot.its.jpo.ode.stomp.StompContent;
 import us.dot.its.jpo.ode.wrapper.AbstractSubscriberProcessor;
@@ -27,13 +28,48 @@ public class StompStringMessageDistributor extends AbstractSubscriberProcessor<S
 
    private SimpMessagingTemplate template;
    private String topic;
+   private ThreadPoolTaskExecutor outboundExecutor;
+   private int maxQueuedMessages;
+   // set at the limit, cleared once the queue is down to half of it
+   private volatile boolean saturated = false;
 
    public StompStringMessageDistributor(SimpMessagingTemplate template, String topic) {
+      this(template, topic, null, 0);
+   }
+
+   /**
+    * @param outboundExecutor  executor delivering the messages to the WebSocket
+    *                          clients
+    * @param maxQueuedMessages messages waiting for delivery at which no more
+    *                          are read, 0 for no limit
+    */
+   public StompStringMessageDistributor(SimpMessagingTemplate template, String topic,
+         ThreadPoolTaskExecutor outboundExecutor, int maxQueuedMessages) {
       this.template = template;
       this.topic = topic;
+      this.outboundExecutor = outboundExecutor;
+      this.maxQueuedMessages = maxQueuedMessages;
       logger.info("Distributing messages to API layer topic {}", topic);
    }
 
+   /**
+    * Saturated once the messages waiting for slow WebSocket clients reach the
+    * limit, until half of them have been delivered.
+    */
+   @Override
+   public boolean isSaturated() {
+      if (outboundExecutor == null || maxQueuedMessages <= 0) {
+         return false;
+      }
+      int queued = outboundExecutor.getQueueSize();
+      if (queued >= maxQueuedMessages) {
+         saturated = true;
+      } else if (queued <= maxQueuedMessages / 2) {
+         saturated = false;
+      }
+      return saturated;
+   }
+
    @Override
    protected Object process(String consumedData) {
       template.convertAndSend(topic, new StompContent(consumedData));
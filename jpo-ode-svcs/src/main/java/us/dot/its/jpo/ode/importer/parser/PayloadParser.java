@@ -18,17 +18,22 @@ package us.dot.its.jpo.ode.importer.parser;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
-import java.util.HashMap;
 
 import us.dot.its.jpo.ode.uper.UperUtil;
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
 
 import us.dot.its.jpo.ode.util.CodecUtils;
 
 public class PayloadParser extends LogFileParser {
 
-   private static HashMap<String, String> msgStartFlags = new HashMap<String, String>();
+   // checked in this order; the first start flag found in the packet wins
+   private static final byte[][] msgStartFlags = {
+         UperUtil.getStartFlagBytes(SupportedMessageTypes.TIM),
+         UperUtil.getStartFlagBytes(SupportedMessageTypes.BSM),
+         UperUtil.getStartFlagBytes(SupportedMessageTypes.MAP) };
 
    public static final int PAYLOAD_LENGTH = 2;
    
@@ -38,9 +43,6 @@ public class PayloadParser extends LogFileParser {
 
    public PayloadParser() {
       super();
-      msgStartFlags.put("BSM", "0014");
-      msgStartFlags.put("TIM", "001f");
-      msgStartFlags.put("MAP", "0012");
    }
 
    @Override
@@ -62,7 +64,12 @@ public class PayloadParser extends LogFileParser {
             status = parseStep(bis, getPayloadLength());
             if (status != ParserStatus.COMPLETE)
                return status;
-            setPayload(UperUtil.stripDot3Header(Arrays.copyOf(readBuffer, getPayloadLength()), msgStartFlags));
+            ByteBuffer stripped = UperUtil.stripDot3Header(ByteBuffer.wrap(readBuffer, 0, getPayloadLength()),
+                  msgStartFlags);
+            if (stripped != null)
+               setPayload(UperUtil.toByteArray(stripped));
+            else
+               setPayload(Arrays.copyOf(readBuffer, getPayloadLength()));
          }
          
          resetStep();
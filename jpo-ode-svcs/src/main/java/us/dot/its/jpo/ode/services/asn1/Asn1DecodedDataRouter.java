@@ -15,6 +15,9 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.services.asn1;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +37,7 @@ import us.dot.its.jpo.ode.plugin.j2735.J2735DSRCmsgID;
 import us.dot.its.jpo.ode.traveler.TimTransmogrifier;
 import us.dot.its.jpo.ode.util.XmlUtils;
 import us.dot.its.jpo.ode.wrapper.AbstractSubscriberProcessor;
+import us.dot.its.jpo.ode.wrapper.DeadLetterPublisher;
 import us.dot.its.jpo.ode.wrapper.MessageProducer;
 import us.dot.its.jpo.ode.wrapper.serdes.OdeBsmSerializer;
 
@@ -49,11 +53,13 @@ public class Asn1DecodedDataRouter extends AbstractSubscriberProcessor<String, S
 	private MessageProducer<String, String> ssmProducer;
 	private MessageProducer<String, String> srmProducer;
 	private MessageProducer<String, String> psmProducer;
+	private List<MessageProducer<String, ?>> producers;
+	private DeadLetterPublisher deadLetters;
 
 	public Asn1DecodedDataRouter(OdeProperties odeProps) {
 		super();
 		this.odeProperties = odeProps;
-		this.bsmProducer = new MessageProducer<>(odeProps.getKafkaBrokers(), odeProps.getKafkaProducerType(), null,
+		this.bsmProducer = MessageProducer.sharedMessageProducer(odeProps.getKafkaBrokers(), odeProps.getKafkaProducerType(), null,
 				OdeBsmSerializer.class.getName(), odeProperties.getKafkaTopicsDisabledSet());
 		this.timProducer = MessageProducer.defaultStringMessageProducer(odeProps.getKafkaBrokers(),
 				odeProps.getKafkaProducerType(), odeProperties.getKafkaTopicsDisabledSet());
@@ -67,6 +73,32 @@ public class Asn1DecodedDataRouter extends AbstractSubscriberProcessor<String, S
 				odeProps.getKafkaProducerType(), odeProperties.getKafkaTopicsDisabledSet());
 		this.psmProducer = MessageProducer.defaultStringMessageProducer(odeProps.getKafkaBrokers(),
 				odeProps.getKafkaProducerType(), odeProperties.getKafkaTopicsDisabledSet());
+		this.producers = Arrays.asList(bsmProducer, timProducer, spatProducer, mapProducer, ssmProducer,
+				srmProducer, psmProducer);
+		producers.forEach(producer -> producer.setMaxInFlight(odeProps.getKafkaProducerMaxInFlight()));
+		this.deadLetters = new DeadLetterPublisher(
+				MessageProducer.defaultStringMessageProducer(odeProps.getKafkaBrokers(),
+						odeProps.getKafkaProducerType(), odeProperties.getKafkaTopicsDisabledSet()),
+				odeProps.getKafkaTopicAsn1DecoderOutputDeadLetter(), this.getClass().getSimpleName())
+				.setExcerptLength(odeProps.getDeadLetterExcerptLength())
+				.setLogIntervalMs(odeProps.getDeadLetterLogIntervalMs());
+	}
+
+	/**
+	 * Where the records that fail to route go, those skipped by the consumer
+	 * after its retries included.
+	 */
+	public DeadLetterPublisher getDeadLetters() {
+		return deadLetters;
+	}
+
+	/**
+	 * Saturated while any of the output producers has its maximum of records in
+	 * flight, so the consumer stops reading until the broker catches up.
+	 */
+	@Override
+	public boolean isSaturated() {
+		return producers.stream().anyMatch(producer -> !producer.canSend());
 	}
 
 	@Override
@@ -79,77 +111,83 @@ public class Asn1DecodedDataRouter extends AbstractSubscriberProcessor<String, S
 			RecordType recordType = RecordType
 					.valueOf(consumed.getJSONObject(AppContext.METADATA_STRING).getString("recordType"));
 
+			// keep a vehicle or intersection on one partition of every output topic
+			String key = odeProperties.isKafkaRecordKeysEnabled()
+					? DecodedMessageKeys.keyOf(consumed, messageId, getRecord().key())
+					: getRecord().key();
+
 			if (messageId == J2735DSRCmsgID.BasicSafetyMessage.getMsgID()) {
 				// ODE-518/ODE-604 Demultiplex the messages to appropriate topics based on the
 				// "recordType"
 				OdeBsmData odeBsmData = OdeBsmDataCreatorHelper.createOdeBsmData(consumedData);
 				if (recordType == RecordType.bsmLogDuringEvent) {
-					bsmProducer.send(odeProperties.getKafkaTopicOdeBsmDuringEventPojo(), getRecord().key(), odeBsmData);
+					bsmProducer.send(odeProperties.getKafkaTopicOdeBsmDuringEventPojo(), key, odeBsmData);
 				} else if (recordType == RecordType.rxMsg) {
-					bsmProducer.send(odeProperties.getKafkaTopicOdeBsmRxPojo(), getRecord().key(), odeBsmData);
+					bsmProducer.send(odeProperties.getKafkaTopicOdeBsmRxPojo(), key, odeBsmData);
 				} else if (recordType == RecordType.bsmTx) {
-					bsmProducer.send(odeProperties.getKafkaTopicOdeBsmTxPojo(), getRecord().key(), odeBsmData);
+					bsmProducer.send(odeProperties.getKafkaTopicOdeBsmTxPojo(), key, odeBsmData);
 				}
 				// Send all BSMs also to OdeBsmPojo
-				bsmProducer.send(odeProperties.getKafkaTopicOdeBsmPojo(), getRecord().key(), odeBsmData);
+				bsmProducer.send(odeProperties.getKafkaTopicOdeBsmPojo(), key, odeBsmData);
 				logger.debug("Submitted to BSM Pojo topic");
 			} else if (messageId == J2735DSRCmsgID.TravelerInformation.getMsgID()) {
 				String odeTimData = TimTransmogrifier.createOdeTimData(consumed).toString();
 				if (recordType == RecordType.dnMsg) {
-					timProducer.send(odeProperties.getKafkaTopicOdeDNMsgJson(), getRecord().key(), odeTimData);
+					timProducer.send(odeProperties.getKafkaTopicOdeDNMsgJson(), key, odeTimData);
 				} else if (recordType == RecordType.rxMsg) {
-					timProducer.send(odeProperties.getKafkaTopicOdeTimRxJson(), getRecord().key(), odeTimData);
+					timProducer.send(odeProperties.getKafkaTopicOdeTimRxJson(), key, odeTimData);
 				}
 				// Send all TIMs also to OdeTimJson
-				timProducer.send(odeProperties.getKafkaTopicOdeTimJson(), getRecord().key(), odeTimData);
+				timProducer.send(odeProperties.getKafkaTopicOdeTimJson(), key, odeTimData);
 				logger.debug("Submitted to TIM Pojo topic");
 			} else if (messageId == J2735DSRCmsgID.SPATMessage.getMsgID()) {
 				String odeSpatData = OdeSpatDataCreatorHelper.createOdeSpatData(consumedData).toString();
 				if (recordType == RecordType.dnMsg) {
-					spatProducer.send(odeProperties.getKafkaTopicOdeDNMsgJson(), getRecord().key(), odeSpatData);
+					spatProducer.send(odeProperties.getKafkaTopicOdeDNMsgJson(), key, odeSpatData);
 				} else if (recordType == RecordType.rxMsg) {
-					spatProducer.send(odeProperties.getKafkaTopicOdeSpatRxJson(), getRecord().key(), odeSpatData);
+					spatProducer.send(odeProperties.getKafkaTopicOdeSpatRxJson(), key, odeSpatData);
 				} else if (recordType == RecordType.spatTx) {
-					spatProducer.send(odeProperties.getKafkaTopicOdeSpatTxPojo(), getRecord().key(), odeSpatData);
+					spatProducer.send(odeProperties.getKafkaTopicOdeSpatTxPojo(), key, odeSpatData);
 				}
 				// Send all SPATs also to OdeSpatJson
-				spatProducer.send(odeProperties.getKafkaTopicOdeSpatJson(), getRecord().key(), odeSpatData);
+				spatProducer.send(odeProperties.getKafkaTopicOdeSpatJson(), key, odeSpatData);
 				logger.debug("Submitted to SPAT Pojo topic");
 			} else if (messageId == J2735DSRCmsgID.MAPMessage.getMsgID()) {
 				String odeMapData = OdeMapDataCreatorHelper.createOdeMapData(consumedData).toString();
 				if (recordType == RecordType.mapTx) {
-					mapProducer.send(odeProperties.getKafkaTopicOdeMapTxPojo(), getRecord().key(), odeMapData);
+					mapProducer.send(odeProperties.getKafkaTopicOdeMapTxPojo(), key, odeMapData);
 				}
 				// Send all Map also to OdeMapJson
-				mapProducer.send(odeProperties.getKafkaTopicOdeMapJson(), getRecord().key(), odeMapData);
+				mapProducer.send(odeProperties.getKafkaTopicOdeMapJson(), key, odeMapData);
 				logger.debug("Submitted to MAP Pojo topic");
 			} else if (messageId == J2735DSRCmsgID.SSMMessage.getMsgID()) {
 				String odeSsmData = OdeSsmDataCreatorHelper.createOdeSsmData(consumedData).toString();
 				if (recordType == RecordType.ssmTx) {
-					ssmProducer.send(odeProperties.getKafkaTopicOdeSsmPojo(), getRecord().key(), odeSsmData);
+					ssmProducer.send(odeProperties.getKafkaTopicOdeSsmPojo(), key, odeSsmData);
 				}
 				// Send all SSMs also to OdeSsmJson
-				ssmProducer.send(odeProperties.getKafkaTopicOdeSsmJson(), getRecord().key(), odeSsmData);
+				ssmProducer.send(odeProperties.getKafkaTopicOdeSsmJson(), key, odeSsmData);
 				logger.debug("Submitted to SSM Pojo topic");
 			} else if (messageId == J2735DSRCmsgID.SRMMessage.getMsgID()) {
 				String odeSrmData = OdeSrmDataCreatorHelper.createOdeSrmData(consumedData).toString();
 				if (recordType == RecordType.srmTx) {
-					srmProducer.send(odeProperties.getKafkaTopicOdeSrmTxPojo(), getRecord().key(), odeSrmData);
+					srmProducer.send(odeProperties.getKafkaTopicOdeSrmTxPojo(), key, odeSrmData);
 				}
 				// Send all SRMs also to OdeSrmJson
-				srmProducer.send(odeProperties.getKafkaTopicOdeSrmJson(), getRecord().key(), odeSrmData);
+				srmProducer.send(odeProperties.getKafkaTopicOdeSrmJson(), key, odeSrmData);
 				logger.debug("Submitted to SRM Pojo topic");
 			} else if (messageId == J2735DSRCmsgID.PersonalSafetyMessage.getMsgID()) {
 				String odePsmData = OdePsmDataCreatorHelper.createOdePsmData(consumedData).toString();
 				if (recordType == RecordType.psmTx) {
-					psmProducer.send(odeProperties.getKafkaTopicOdePsmTxPojo(), getRecord().key(), odePsmData);
+					psmProducer.send(odeProperties.getKafkaTopicOdePsmTxPojo(), key, odePsmData);
 				}
 				// Send all PSMs also to OdePsmJson
-				psmProducer.send(odeProperties.getKafkaTopicOdePsmJson(), getRecord().key(), odePsmData);
+				psmProducer.send(odeProperties.getKafkaTopicOdePsmJson(), key, odePsmData);
 				logger.debug("Submitted to PSM Pojo topic");
 			}
 		} catch (Exception e) {
-			logger.error("Failed to route received data: " + consumedData, e);
+			// a reference and an excerpt only, malformed input must not flood the log
+			deadLetters.failed(getRecord(), consumedData, e);
 		}
 		return null;
 	}
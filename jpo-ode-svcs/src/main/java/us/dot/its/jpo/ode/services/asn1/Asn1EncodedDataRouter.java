@@ -36,6 +36,7 @@ import us.dot.its.jpo.ode.util.JsonUtils;
 import us.dot.its.jpo.ode.util.JsonUtils.JsonUtilsException;
 import us.dot.its.jpo.ode.util.XmlUtils;
 import us.dot.its.jpo.ode.wrapper.AbstractSubscriberProcessor;
+import us.dot.its.jpo.ode.wrapper.DeadLetterPublisher;
 import us.dot.its.jpo.ode.wrapper.MessageProducer;
 
 public class Asn1EncodedDataRouter extends AbstractSubscriberProcessor<String, String> {
@@ -63,6 +64,7 @@ public class Asn1EncodedDataRouter extends AbstractSubscriberProcessor<String, S
    private Asn1CommandManager asn1CommandManager;
    private boolean dataSigningEnabledRSU;
    private boolean dataSigningEnabledSDW;
+   private DeadLetterPublisher deadLetters;
 
    public Asn1EncodedDataRouter(OdeProperties odeProperties) {
       super();
@@ -74,6 +76,11 @@ public class Asn1EncodedDataRouter extends AbstractSubscriberProcessor<String, S
 
       this.asn1CommandManager = new Asn1CommandManager(odeProperties);
 
+      this.deadLetters = new DeadLetterPublisher(stringMsgProducer,
+            odeProperties.getKafkaTopicAsn1EncoderOutputDeadLetter(), this.getClass().getSimpleName())
+            .setExcerptLength(odeProperties.getDeadLetterExcerptLength())
+            .setLogIntervalMs(odeProperties.getDeadLetterLogIntervalMs());
+
       this.dataSigningEnabledRSU = System.getenv("DATA_SIGNING_ENABLED_RSU") != null && !System.getenv("DATA_SIGNING_ENABLED_RSU").isEmpty()
             ? Boolean.parseBoolean(System.getenv("DATA_SIGNING_ENABLED_RSU"))
             : false;
@@ -133,13 +140,20 @@ public class Asn1EncodedDataRouter extends AbstractSubscriberProcessor<String, S
                   + TimTransmogrifier.REQUEST_STRING + "' object in the encoder response");
          }
       } catch (Exception e) {
-         String msg = "Error in processing received message from ASN.1 Encoder module: " + consumedData;
-         EventLogger.logger.error(msg, e);
-         logger.error(msg, e);
+         // a reference and an excerpt only, malformed input must not flood the logs
+         deadLetters.failed(getRecord(), consumedData, e);
       }
       return null;
    }
 
+   /**
+    * Where the records that fail to route go, those skipped by the consumer
+    * after its retries included.
+    */
+   public DeadLetterPublisher getDeadLetters() {
+      return deadLetters;
+   }
+
    public ServiceRequest getServicerequest(JSONObject consumedObj) {
       String sr = consumedObj.getJSONObject(AppContext.METADATA_STRING).getJSONObject(TimTransmogrifier.REQUEST_STRING).toString();
       logger.debug("ServiceRequest: {}", sr);
@@ -289,9 +303,11 @@ public class Asn1EncodedDataRouter extends AbstractSubscriberProcessor<String, S
 
             responseList.put("ddsMessage", ddsMessage);
          } else if (logger.isErrorEnabled()) { // Added to avoid Sonar's "Invoke method(s) only conditionally." code smell
-            String msg = "ASN.1 Encoder did not return ASD encoding {}";
-            EventLogger.logger.error(msg, consumedObj.toString());
-            logger.error(msg, consumedObj.toString());
+            String msg = "ASN.1 Encoder did not return ASD encoding for record {}";
+            String source = getRecord() == null ? "unknown"
+                  : getRecord().topic() + "-" + getRecord().partition() + "@" + getRecord().offset();
+            EventLogger.logger.error(msg, source);
+            logger.error(msg, source);
          }
       }
 
@@ -15,6 +15,11 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.services.asn1;
 
+import java.time.Duration;
+
+import jakarta.annotation.PreDestroy;
+
+import org.apache.kafka.streams.KafkaStreams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +37,8 @@ public class AsnCodecRouterServiceController {
    private static final Logger logger = LoggerFactory.getLogger(AsnCodecRouterServiceController.class);
    org.apache.kafka.common.serialization.Serdes bas;
 
+   private KafkaStreams decoderStreams;
+
    @Autowired
    public AsnCodecRouterServiceController(OdeProperties odeProps) {
       super();
@@ -41,13 +48,31 @@ public class AsnCodecRouterServiceController {
       // asn1_codec Decoder Routing
       logger.info("Routing DECODED data received ASN.1 Decoder");
 
-      Asn1DecodedDataRouter decoderRouter = new Asn1DecodedDataRouter(odeProps);
+      // only the streams routing can commit its output and offsets in one transaction
+      boolean streamsRouting = odeProps.isKafkaStreamsRoutingEnabled() || odeProps.isKafkaExactlyOnceEnabled();
+      if (streamsRouting && odeProps.isInMemoryTransport()) {
+         // Kafka Streams talks to the cluster itself, it cannot run over the in-memory transport
+         logger.warn("Kafka Streams routing is not available with the in-memory transport, using the consumer router");
+         streamsRouting = false;
+      }
+      if (streamsRouting) {
+         decoderStreams = new DecodedDataRoutingTopology(odeProps).start();
+      } else {
+         Asn1DecodedDataRouter decoderRouter = new Asn1DecodedDataRouter(odeProps);
 
-      MessageConsumer<String, String> asn1DecoderConsumer = MessageConsumer.defaultStringMessageConsumer(
-         odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), decoderRouter);
+         MessageConsumer<String, String> asn1DecoderConsumer = MessageConsumer.defaultStringMessageConsumer(
+            odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), decoderRouter,
+            odeProps.kafkaConsumerProperties());
 
-      asn1DecoderConsumer.setName("Asn1DecoderConsumer");
-      decoderRouter.start(asn1DecoderConsumer, odeProps.getKafkaTopicAsn1DecoderOutput());
+         asn1DecoderConsumer.setName("Asn1DecoderConsumer");
+         asn1DecoderConsumer.setDeadLetters(decoderRouter.getDeadLetters());
+         // XML parsing dominates here, spread it over the configured threads
+         if (odeProps.getKafkaConsumerThreads() > 1) {
+            asn1DecoderConsumer.setWorkerThreads(odeProps.getKafkaConsumerThreads());
+            asn1DecoderConsumer.setOrdering(MessageConsumer.Ordering.fromString(odeProps.getKafkaConsumerOrdering()));
+         }
+         decoderRouter.start(asn1DecoderConsumer, odeProps.getKafkaTopicAsn1DecoderOutput());
+      }
 
       // asn1_codec Encoder Routing
       logger.info("Routing ENCODED data received ASN.1 Encoder");
@@ -55,9 +80,18 @@ public class AsnCodecRouterServiceController {
       Asn1EncodedDataRouter encoderRouter = new Asn1EncodedDataRouter(odeProps);
 
       MessageConsumer<String, String> encoderConsumer = MessageConsumer.defaultStringMessageConsumer(
-         odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), encoderRouter);
+         odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), encoderRouter,
+         odeProps.kafkaConsumerProperties());
 
       encoderConsumer.setName("Asn1EncoderConsumer");
+      encoderConsumer.setDeadLetters(encoderRouter.getDeadLetters());
       encoderRouter.start(encoderConsumer, odeProps.getKafkaTopicAsn1EncoderOutput());
    }
+
+   @PreDestroy
+   public void stop() {
+      if (decoderStreams != null) {
+         decoderStreams.close(Duration.ofSeconds(30));
+      }
+   }
 }
@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright 2018 572682
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package us.dot.its.jpo.ode.services.asn1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Function;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.errors.StreamsUncaughtExceptionHandler.StreamThreadExceptionResponse;
+import org.apache.kafka.streams.kstream.Branched;
+import org.apache.kafka.streams.kstream.BranchedKStream;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorSupplier;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.RecordMetadata;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.OdeBsmDataCreatorHelper;
+import us.dot.its.jpo.ode.coder.OdeMapDataCreatorHelper;
+import us.dot.its.jpo.ode.coder.OdePsmDataCreatorHelper;
+import us.dot.its.jpo.ode.coder.OdeSpatDataCreatorHelper;
+import us.dot.its.jpo.ode.coder.OdeSrmDataCreatorHelper;
+import us.dot.its.jpo.ode.coder.OdeSsmDataCreatorHelper;
+import us.dot.its.jpo.ode.context.AppContext;
+import us.dot.its.jpo.ode.model.OdeAsn1Data;
+import us.dot.its.jpo.ode.model.OdeLogMetadata.RecordType;
+import us.dot.its.jpo.ode.plugin.j2735.J2735DSRCmsgID;
+import us.dot.its.jpo.ode.traveler.TimTransmogrifier;
+import us.dot.its.jpo.ode.util.XmlUtils;
+import us.dot.its.jpo.ode.util.XmlUtils.XmlUtilsException;
+import us.dot.its.jpo.ode.wrapper.DeadLetterPublisher;
+import us.dot.its.jpo.ode.wrapper.MessageProducer;
+import us.dot.its.jpo.ode.wrapper.serdes.OdeBsmSerializer;
+
+/**
+ * Kafka Streams version of {@link Asn1DecodedDataRouter}. The decoder output
+ * is parsed once per record, split by message type, and every message is
+ * serialized once and written as the same bytes to the topic of its record
+ * type and to the topic of all messages of its type. Partitions are spread
+ * over the stream threads of every ODE instance sharing the application id.
+ * <p>
+ * With ode.kafkaExactlyOnceEnabled the records written for a batch of decoder
+ * output and the offsets of that batch are committed in one transaction by
+ * idempotent producers, so a crash or rebalance neither loses nor duplicates
+ * routed messages for read_committed consumers.
+ * <p>
+ * A record that cannot be decoded or serialized is written to the decoder
+ * output dead-letter topic instead, with the topic, partition and offset it
+ * came from, in the same transaction as the routed messages.
+ */
+public class DecodedDataRoutingTopology {
+
+	public static final String APPLICATION_ID = "ode-decoded-data-router";
+
+	private static final Logger logger = LoggerFactory.getLogger(DecodedDataRoutingTopology.class);
+
+	private final OdeProperties odeProperties;
+	private final List<Route> routes = new ArrayList<>();
+	private final DeadLetterPublisher failures;
+	// null if dead letters are only logged
+	private final String deadLetterTopic;
+
+	public DecodedDataRoutingTopology(OdeProperties odeProps) {
+		this.odeProperties = odeProps;
+		this.failures = new DeadLetterPublisher(null, odeProps.getKafkaTopicAsn1DecoderOutputDeadLetter(),
+				this.getClass().getSimpleName())
+				.setExcerptLength(odeProps.getDeadLetterExcerptLength())
+				.setLogIntervalMs(odeProps.getDeadLetterLogIntervalMs());
+		this.deadLetterTopic = failures.getTopic() == null
+				|| odeProps.getKafkaTopicsDisabledSet().contains(failures.getTopic()) ? null : failures.getTopic();
+		OdeBsmSerializer bsmSerializer = new OdeBsmSerializer();
+
+		addRoute(J2735DSRCmsgID.BasicSafetyMessage, odeProps.getKafkaTopicOdeBsmPojo(),
+				message -> bsmSerializer.serialize(null, OdeBsmDataCreatorHelper.createOdeBsmData(message.xml)))
+				.typed(RecordType.bsmLogDuringEvent, odeProps.getKafkaTopicOdeBsmDuringEventPojo())
+				.typed(RecordType.rxMsg, odeProps.getKafkaTopicOdeBsmRxPojo())
+				.typed(RecordType.bsmTx, odeProps.getKafkaTopicOdeBsmTxPojo());
+		addRoute(J2735DSRCmsgID.TravelerInformation, odeProps.getKafkaTopicOdeTimJson(),
+				message -> utf8(TimTransmogrifier.createOdeTimData(message.consumed).toString()))
+				.typed(RecordType.dnMsg, odeProps.getKafkaTopicOdeDNMsgJson())
+				.typed(RecordType.rxMsg, odeProps.getKafkaTopicOdeTimRxJson());
+		addRoute(J2735DSRCmsgID.SPATMessage, odeProps.getKafkaTopicOdeSpatJson(),
+				message -> utf8(OdeSpatDataCreatorHelper.createOdeSpatData(message.xml).toString()))
+				.typed(RecordType.dnMsg, odeProps.getKafkaTopicOdeDNMsgJson())
+				.typed(RecordType.rxMsg, odeProps.getKafkaTopicOdeSpatRxJson())
+				.typed(RecordType.spatTx, odeProps.getKafkaTopicOdeSpatTxPojo());
+		addRoute(J2735DSRCmsgID.MAPMessage, odeProps.getKafkaTopicOdeMapJson(),
+				message -> utf8(OdeMapDataCreatorHelper.createOdeMapData(message.xml).toString()))
+				.typed(RecordType.mapTx, odeProps.getKafkaTopicOdeMapTxPojo());
+		addRoute(J2735DSRCmsgID.SSMMessage, odeProps.getKafkaTopicOdeSsmJson(),
+				message -> utf8(OdeSsmDataCreatorHelper.createOdeSsmData(message.xml).toString()))
+				.typed(RecordType.ssmTx, odeProps.getKafkaTopicOdeSsmPojo());
+		addRoute(J2735DSRCmsgID.SRMMessage, odeProps.getKafkaTopicOdeSrmJson(),
+				message -> utf8(OdeSrmDataCreatorHelper.createOdeSrmData(message.xml).toString()))
+				.typed(RecordType.srmTx, odeProps.getKafkaTopicOdeSrmTxPojo());
+		addRoute(J2735DSRCmsgID.PersonalSafetyMessage, odeProps.getKafkaTopicOdePsmJson(),
+				message -> utf8(OdePsmDataCreatorHelper.createOdePsmData(message.xml).toString()))
+				.typed(RecordType.psmTx, odeProps.getKafkaTopicOdePsmTxPojo());
+	}
+
+	private Route addRoute(J2735DSRCmsgID messageType, String allTopic, PayloadCreator payloadCreator) {
+		Route route = new Route(messageType, allTopic, payloadCreator);
+		routes.add(route);
+		return route;
+	}
+
+	private static byte[] utf8(String payload) {
+		return payload.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Builds the topology reading the ASN.1 decoder output topic.
+	 */
+	public Topology build() {
+		StreamsBuilder builder = new StreamsBuilder();
+		KStream<String, Outcome<KeyValue<String, DecodedMessage>>> parsed = builder
+				.stream(odeProperties.getKafkaTopicAsn1DecoderOutput(), Consumed.with(Serdes.String(), Serdes.String()))
+				.processValues(guarded(this::decode, xml -> xml), Named.as("decode"));
+		deadLetters(parsed, "decode");
+		KStream<String, DecodedMessage> decoded = parsed
+				.filter((key, outcome) -> !outcome.failed(), Named.as("decoded"))
+				.map((key, outcome) -> outcome.value, Named.as("key"));
+
+		BranchedKStream<String, DecodedMessage> byType = decoded.split(Named.as("type-"));
+		for (Route route : routes) {
+			byType.branch((key, message) -> message.messageId == route.messageType.getMsgID(),
+					Branched.withConsumer(messages -> route(messages, route), route.messageType.name()));
+		}
+		byType.noDefaultBranch();
+
+		return builder.build();
+	}
+
+	/*
+	 * Parses the decoder's XML and picks the record key.
+	 */
+	KeyValue<String, DecodedMessage> decode(String key, String xml) throws XmlUtilsException {
+		JSONObject consumed = XmlUtils.toJSONObject(xml).getJSONObject(OdeAsn1Data.class.getSimpleName());
+		int messageId = consumed.getJSONObject(AppContext.PAYLOAD_STRING).getJSONObject(AppContext.DATA_STRING)
+				.getJSONObject("MessageFrame").getInt("messageId");
+		RecordType recordType = RecordType
+				.valueOf(consumed.getJSONObject(AppContext.METADATA_STRING).getString("recordType"));
+
+		// keep a vehicle or intersection on one partition of every output topic
+		String recordKey = odeProperties.isKafkaRecordKeysEnabled()
+				? DecodedMessageKeys.keyOf(consumed, messageId, key)
+				: key;
+		return KeyValue.pair(recordKey, new DecodedMessage(xml, consumed, messageId, recordType));
+	}
+
+	private void route(KStream<String, DecodedMessage> messages, Route route) {
+		String name = route.messageType.name();
+		KStream<String, Outcome<RoutedMessage>> serialized = messages
+				.processValues(guarded((key, message) -> route.serialize(message), message -> message.xml),
+						Named.as(name + "-serialize"));
+		deadLetters(serialized, name + "-serialize");
+		KStream<String, RoutedMessage> routed = serialized
+				.filter((key, outcome) -> !outcome.failed(), Named.as(name + "-serialized"))
+				.mapValues(outcome -> outcome.value, Named.as(name + "-message"));
+
+		route.typedTopics.forEach((recordType, topic) -> {
+			String typedName = name + "-" + recordType.name();
+			routed.filter((key, message) -> message.recordType == recordType, Named.as(typedName + "-typed"))
+					.mapValues(message -> message.payload, Named.as(typedName + "-payload"))
+					.to(topic, Produced.with(Serdes.String(), Serdes.ByteArray()).withName(typedName + "-to-typed"));
+		});
+		if (!odeProperties.getKafkaTopicsDisabledSet().contains(route.allTopic)) {
+			routed.mapValues(message -> message.payload, Named.as(name + "-payload"))
+					.to(route.allTopic, Produced.with(Serdes.String(), Serdes.ByteArray()).withName(name + "-to-all"));
+		}
+	}
+
+	/*
+	 * Runs a step on every value and forwards its outcome. A step that fails
+	 * forwards the dead letter of the record, which the processor context
+	 * still knows the topic, partition and offset of.
+	 */
+	private <V, VR> FixedKeyProcessorSupplier<String, V, Outcome<VR>> guarded(Step<V, VR> step,
+			Function<V, Object> payloadOf) {
+		return () -> new FixedKeyProcessor<String, V, Outcome<VR>>() {
+			private FixedKeyProcessorContext<String, Outcome<VR>> context;
+
+			@Override
+			public void init(FixedKeyProcessorContext<String, Outcome<VR>> context) {
+				this.context = context;
+			}
+
+			@Override
+			public void process(FixedKeyRecord<String, V> record) {
+				Outcome<VR> outcome;
+				try {
+					outcome = Outcome.of(step.apply(record.key(), record.value()));
+				} catch (Exception e) {
+					Optional<RecordMetadata> source = context.recordMetadata();
+					outcome = Outcome.failed(failures.deadLetter(source.map(RecordMetadata::topic).orElse(null),
+							source.map(RecordMetadata::partition).orElse(-1),
+							source.map(RecordMetadata::offset).orElse(-1L), record.timestamp(),
+							payloadOf.apply(record.value()), e));
+				}
+				context.forward(record.withValue(outcome));
+			}
+		};
+	}
+
+	private <T> void deadLetters(KStream<String, Outcome<T>> outcomes, String name) {
+		if (deadLetterTopic == null) {
+			return;
+		}
+		outcomes.filter((key, outcome) -> outcome.failed(), Named.as(name + "-failed"))
+				.mapValues(outcome -> outcome.deadLetter, Named.as(name + "-dead-letter"))
+				.to(deadLetterTopic, Produced.with(Serdes.String(), Serdes.String()).withName(name + "-to-dead-letter"));
+	}
+
+	/*
+	 * Every topic a message of the given type and record type is written to.
+	 */
+	List<String> topicsFor(int messageId, RecordType recordType) {
+		for (Route route : routes) {
+			if (route.messageType.getMsgID() == messageId) {
+				List<String> topics = new ArrayList<>();
+				if (route.typedTopics.containsKey(recordType)) {
+					topics.add(route.typedTopics.get(recordType));
+				}
+				if (!odeProperties.getKafkaTopicsDisabledSet().contains(route.allTopic)) {
+					topics.add(route.allTopic);
+				}
+				return topics;
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Streams settings: ode.kafkaStreamsThreads stream threads,
+	 * ode.kafkaStreamsStandbyReplicas standby replicas per instance and, with
+	 * ode.kafkaExactlyOnceEnabled, the exactly_once_v2 processing guarantee.
+	 */
+	public Properties streamsProperties() {
+		Properties props = new Properties();
+		props.put(StreamsConfig.APPLICATION_ID_CONFIG, APPLICATION_ID);
+		props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, odeProperties.getKafkaBrokers());
+		props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, odeProperties.getKafkaStreamsThreads());
+		props.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, odeProperties.getKafkaStreamsStandbyReplicas());
+		if (odeProperties.isKafkaExactlyOnceEnabled())
+			props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.EXACTLY_ONCE_V2);
+
+		String kafkaType = System.getenv("KAFKA_TYPE");
+		if (kafkaType != null && kafkaType.equals("CONFLUENT"))
+			MessageProducer.addConfluentProperties(props);
+		return props;
+	}
+
+	/**
+	 * Builds and starts the streams application. A stream thread that dies is
+	 * replaced.
+	 */
+	public KafkaStreams start() {
+		KafkaStreams streams = new KafkaStreams(build(), streamsProperties());
+		streams.setUncaughtExceptionHandler(e -> {
+			logger.error("Decoded data routing stream thread failed, replacing it", e);
+			return StreamThreadExceptionResponse.REPLACE_THREAD;
+		});
+		streams.start();
+		logger.info("Decoded data routing started with {} stream threads", odeProperties.getKafkaStreamsThreads());
+		return streams;
+	}
+
+	@FunctionalInterface
+	private interface Step<V, VR> {
+		VR apply(String key, V value) throws Exception;
+	}
+
+	@FunctionalInterface
+	private interface PayloadCreator {
+		byte[] create(DecodedMessage message) throws Exception;
+	}
+
+	/*
+	 * Where the messages of one type go: the topic of their record type, if it
+	 * has one, and the topic of all messages of the type. Disabled topics are
+	 * left out.
+	 */
+	private class Route {
+		private final J2735DSRCmsgID messageType;
+		private final String allTopic;
+		private final PayloadCreator payloadCreator;
+		private final Map<RecordType, String> typedTopics = new EnumMap<>(RecordType.class);
+
+		Route(J2735DSRCmsgID messageType, String allTopic, PayloadCreator payloadCreator) {
+			this.messageType = messageType;
+			this.allTopic = allTopic;
+			this.payloadCreator = payloadCreator;
+		}
+
+		Route typed(RecordType recordType, String topic) {
+			if (!odeProperties.getKafkaTopicsDisabledSet().contains(topic))
+				typedTopics.put(recordType, topic);
+			return this;
+		}
+
+		RoutedMessage serialize(DecodedMessage message) throws Exception {
+			return new RoutedMessage(message.recordType, payloadCreator.create(message));
+		}
+	}
+
+	/*
+	 * The result of a step, or the dead letter of the record it failed on.
+	 */
+	static class Outcome<T> {
+		final T value;
+		final String deadLetter;
+
+		private Outcome(T value, String deadLetter) {
+			this.value = value;
+			this.deadLetter = deadLetter;
+		}
+
+		static <T> Outcome<T> of(T value) {
+			return new Outcome<>(value, null);
+		}
+
+		static <T> Outcome<T> failed(String deadLetter) {
+			return new Outcome<>(null, deadLetter);
+		}
+
+		boolean failed() {
+			return deadLetter != null;
+		}
+	}
+
+	static class DecodedMessage {
+		final String xml;
+		final JSONObject consumed;
+		final int messageId;
+		final RecordType recordType;
+
+		DecodedMessage(String xml, JSONObject consumed, int messageId, RecordType recordType) {
+			this.xml = xml;
+			this.consumed = consumed;
+			this.messageId = messageId;
+			this.recordType = recordType;
+		}
+	}
+
+	/*
+	 * A message serialized once, written as is to every topic it goes to.
+	 */
+	static class RoutedMessage {
+		final RecordType recordType;
+		final byte[] payload;
+
+		RoutedMessage(RecordType recordType, byte[] payload) {
+			this.recordType = recordType;
+			this.payload = payload;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package us.dot.its.jpo.ode.services.asn1;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import us.dot.its.jpo.ode.context.AppContext;
+import us.dot.its.jpo.ode.plugin.j2735.J2735DSRCmsgID;
+
+/**
+ * Record keys of decoded messages, matching the keys the raw encoded messages
+ * were published with: the BSM coreData id, the id of the first intersection
+ * of a SPaT or MAP, or the IP address of the RSU that forwarded the message.
+ */
+public class DecodedMessageKeys {
+
+	private DecodedMessageKeys() {
+	}
+
+	/**
+	 * @param consumed    the decoded OdeAsn1Data, converted from the codec's XML
+	 *                    with every value kept as a string
+	 * @param messageId   the DSRCmsgID of the decoded MessageFrame
+	 * @param fallbackKey used when the message carries no key, typically the
+	 *                    key of the consumed record
+	 */
+	public static String keyOf(JSONObject consumed, int messageId, String fallbackKey) {
+		String key = null;
+		JSONObject value = consumed.getJSONObject(AppContext.PAYLOAD_STRING).getJSONObject(AppContext.DATA_STRING)
+				.getJSONObject("MessageFrame").optJSONObject("value");
+		if (value != null) {
+			if (messageId == J2735DSRCmsgID.BasicSafetyMessage.getMsgID()) {
+				JSONObject coreData = path(value, "BasicSafetyMessage", "coreData");
+				if (coreData != null && !coreData.optString("id").isEmpty())
+					key = coreData.optString("id").toUpperCase();
+			} else if (messageId == J2735DSRCmsgID.SPATMessage.getMsgID()) {
+				key = firstIntersectionId(path(value, "SPAT", "intersections"), "IntersectionState");
+			} else if (messageId == J2735DSRCmsgID.MAPMessage.getMsgID()) {
+				key = firstIntersectionId(path(value, "MapData", "intersections"), "IntersectionGeometry");
+			}
+		}
+
+		if (key == null) {
+			JSONObject metadata = consumed.optJSONObject(AppContext.METADATA_STRING);
+			String originIp = metadata == null ? "" : metadata.optString("originIp");
+			key = originIp.isEmpty() ? fallbackKey : originIp;
+		}
+		return key;
+	}
+
+	/*
+	 * A list of one element comes out of the XML as an object, longer lists as
+	 * an array.
+	 */
+	private static String firstIntersectionId(JSONObject intersections, String elementName) {
+		if (intersections == null)
+			return null;
+		JSONObject first = intersections.optJSONObject(elementName);
+		if (first == null) {
+			JSONArray list = intersections.optJSONArray(elementName);
+			first = list == null ? null : list.optJSONObject(0);
+		}
+		JSONObject id = path(first, "id");
+		if (id == null || id.optString("id").isEmpty())
+			return null;
+		return id.optString("id");
+	}
+
+	private static JSONObject path(JSONObject node, String... names) {
+		for (String name : names) {
+			if (node == null)
+				return null;
+			node = node.optJSONObject(name);
+		}
+		return node;
+	}
+}
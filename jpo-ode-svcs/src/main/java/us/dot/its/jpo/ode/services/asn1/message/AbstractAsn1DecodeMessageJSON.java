@@ -1,20 +1,46 @@
 package us.dot.its.jpo.ode.services.asn1.message;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.tomcat.util.buf.HexUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import us.dot.its.jpo.ode.coder.StringPublisher;
+import us.dot.its.jpo.ode.model.Asn1Encoding;
+import us.dot.its.jpo.ode.model.Asn1Encoding.EncodingRule;
+import us.dot.its.jpo.ode.model.OdeAsn1Data;
+import us.dot.its.jpo.ode.model.OdeAsn1Payload;
 import us.dot.its.jpo.ode.model.OdeData;
+import us.dot.its.jpo.ode.model.OdeLogMetadata;
+import us.dot.its.jpo.ode.uper.UperUtil;
 import us.dot.its.jpo.ode.util.XmlUtils;
 import us.dot.its.jpo.ode.wrapper.AbstractSubscriberProcessor;
+import us.dot.its.jpo.ode.wrapper.DeadLetterPublisher;
+import us.dot.its.jpo.ode.wrapper.RawEncodedEnvelope;
 
-public abstract class AbstractAsn1DecodeMessageJSON extends AbstractSubscriberProcessor<String, String> {
+/**
+ * Routes raw encoded messages to the ASN.1 decoder. Records are consumed as
+ * bytes so that both raw encoded formats can share a topic: records carrying
+ * the binary envelope header are read as UPER bytes with the metadata in the
+ * headers, everything else as the JSON form.
+ */
+public abstract class AbstractAsn1DecodeMessageJSON extends AbstractSubscriberProcessor<String, byte[]> {
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
+	private ObjectMapper envelopeMapper = new ObjectMapper();
+	// logs the binary records that fail with an excerpt, at most once an interval
+	private final DeadLetterPublisher failures = new DeadLetterPublisher(null, null, getClass().getSimpleName());
 
 	protected StringPublisher codecPublisher;
     protected String payload_start_flag;
+	// payload_start_flag as bytes, decoded once for the binary records
+	private byte[] payloadStartFlagBytes;
 
 	public AbstractAsn1DecodeMessageJSON() {
 		super();
@@ -24,14 +50,80 @@ public abstract class AbstractAsn1DecodeMessageJSON extends AbstractSubscriberPr
 		super();
 		this.codecPublisher = codecPublisher;
 		this.payload_start_flag = payload_start_flag;
+		this.payloadStartFlagBytes = HexUtils.fromHexString(payload_start_flag);
+	}
+
+	/**
+	 * Saturated while the codec publisher has its maximum of records in flight.
+	 */
+	@Override
+	public boolean isSaturated() {
+		return codecPublisher != null && !codecPublisher.canPublish();
+	}
+
+	/**
+	 * The metadata class of the message type, used to read the metadata of
+	 * binary records.
+	 */
+	protected abstract Class<? extends OdeLogMetadata> getMetadataClass();
+
+	/**
+	 * Processes a raw encoded message in the JSON form.
+	 */
+	protected abstract OdeAsn1Data process(String consumedData);
+
+	@Override
+	protected OdeAsn1Data process(byte[] consumedData) {
+		Headers headers = getRecord() == null ? null : getRecord().headers();
+		if (RawEncodedEnvelope.isEnvelope(headers)) {
+			return processEnvelope(consumedData, headers);
+		}
+		return process(new String(consumedData, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Processes a raw encoded message in the binary form. The payload is
+	 * stripped at the byte level and never goes through hex. A record that
+	 * fails is logged and skipped.
+	 */
+	protected OdeAsn1Data processEnvelope(byte[] consumedData, Headers headers) {
+		OdeAsn1Data messageToPublish = null;
+		try {
+			OdeLogMetadata metadata = envelopeMapper.treeToValue(RawEncodedEnvelope.toMetadataNode(headers),
+					getMetadataClass());
+
+			Asn1Encoding unsecuredDataEncoding = new Asn1Encoding("unsecuredData", "MessageFrame", EncodingRule.UPER);
+			metadata.addEncoding(unsecuredDataEncoding);
+
+			ByteBuffer stripped = UperUtil.stripDot2Header(ByteBuffer.wrap(consumedData), payloadStartFlagBytes);
+			if (stripped == null) {
+				logger.error("Record on {} does not carry a {} payload", getRecord().topic(),
+						getMetadataClass().getSimpleName());
+				return null;
+			}
+
+			OdeAsn1Payload payload = new OdeAsn1Payload(UperUtil.toByteArray(stripped));
+
+			messageToPublish = new OdeAsn1Data(metadata, payload);
+			publishEncodedMessageToAsn1Decoder(messageToPublish);
+		} catch (IOException | RuntimeException e) {
+			failures.failed(getRecord(), consumedData, e);
+			return null;
+		}
+		return messageToPublish;
 	}
 
+	/**
+	 * Sends the message to the ASN.1 codec under the key of the consumed record
+	 * so the decoded message keeps the partition affinity of the raw one.
+	 */
 	protected void publishEncodedMessageToAsn1Decoder(OdeData odeData) {
 		XmlUtils xmlUtils = new XmlUtils();
+		String key = getRecord() == null ? null : getRecord().key();
 		try {
 			logger.debug("Sending encoded message payload XML to ASN1 codec {}", xmlUtils.toXml(odeData));
 			codecPublisher.publish(xmlUtils.toXml(odeData),
-					codecPublisher.getOdeProperties().getKafkaTopicAsn1DecoderInput());
+					codecPublisher.getOdeProperties().getKafkaTopicAsn1DecoderInput(), key);
 		} catch (JsonProcessingException e) {
 			logger.error("Error sending encoded message payload XML to ASN1 codec {}", e.getMessage());
 			e.printStackTrace();
@@ -24,6 +24,11 @@ public class Asn1DecodeBSMJSON extends AbstractAsn1DecodeMessageJSON {
 		super(new StringPublisher(odeProps), UperUtil.getBsmStartFlag());
 	}
 
+	@Override
+	protected Class<OdeBsmMetadata> getMetadataClass() {
+		return OdeBsmMetadata.class;
+	}
+
 	@Override
 	protected OdeAsn1Data process(String consumedData) {
 		OdeAsn1Data messageToPublish = null;
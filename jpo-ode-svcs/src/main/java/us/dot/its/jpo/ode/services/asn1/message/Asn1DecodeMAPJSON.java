@@ -25,6 +25,11 @@ public class Asn1DecodeMAPJSON extends AbstractAsn1DecodeMessageJSON {
 		super(new StringPublisher(odeProps), UperUtil.getMapStartFlag());
 	}
 
+	@Override
+	protected Class<OdeMapMetadata> getMetadataClass() {
+		return OdeMapMetadata.class;
+	}
+
 	@Override
 	protected OdeAsn1Data process(String consumedData) {
 		OdeAsn1Data messageToPublish = null;
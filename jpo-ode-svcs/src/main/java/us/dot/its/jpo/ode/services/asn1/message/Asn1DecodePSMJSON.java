@@ -24,6 +24,11 @@ public class Asn1DecodePSMJSON extends AbstractAsn1DecodeMessageJSON {
 		super(new StringPublisher(odeProps), UperUtil.getPsmStartFlag());
 	}
 
+	@Override
+	protected Class<OdePsmMetadata> getMetadataClass() {
+		return OdePsmMetadata.class;
+	}
+
 	@Override
 	protected OdeAsn1Data process(String consumedData) {
 		OdeAsn1Data messageToPublish = null;
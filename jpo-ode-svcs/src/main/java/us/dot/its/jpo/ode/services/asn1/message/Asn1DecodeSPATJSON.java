@@ -24,6 +24,11 @@ public class Asn1DecodeSPATJSON extends AbstractAsn1DecodeMessageJSON {
 		super(new StringPublisher(odeProps), UperUtil.getSpatStartFlag());
 	}
 
+	@Override
+	protected Class<OdeSpatMetadata> getMetadataClass() {
+		return OdeSpatMetadata.class;
+	}
+
 	@Override
 	protected OdeAsn1Data process(String consumedData) {
 		OdeAsn1Data messageToPublish = null;
@@ -24,6 +24,11 @@ public class Asn1DecodeSRMJSON extends AbstractAsn1DecodeMessageJSON {
 		super(new StringPublisher(odeProps), UperUtil.getSrmStartFlag());
 	}
 
+	@Override
+	protected Class<OdeSrmMetadata> getMetadataClass() {
+		return OdeSrmMetadata.class;
+	}
+
 	@Override
 	protected OdeAsn1Data process(String consumedData) {
 		OdeAsn1Data messageToPublish = null;
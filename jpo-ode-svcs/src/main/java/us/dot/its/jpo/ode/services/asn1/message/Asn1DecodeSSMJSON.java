@@ -24,6 +24,11 @@ public class Asn1DecodeSSMJSON extends AbstractAsn1DecodeMessageJSON {
 		super(new StringPublisher(odeProps), UperUtil.getSsmStartFlag());
 	}
 
+	@Override
+	protected Class<OdeSsmMetadata> getMetadataClass() {
+		return OdeSsmMetadata.class;
+	}
+
 	@Override
 	protected OdeAsn1Data process(String consumedData) {
 		OdeAsn1Data messageToPublish = null;
@@ -24,6 +24,11 @@ public class Asn1DecodeTIMJSON extends AbstractAsn1DecodeMessageJSON {
         super(new StringPublisher(odeProps), UperUtil.getTimStartFlag());
     }
 
+    @Override
+    protected Class<OdeTimMetadata> getMetadataClass() {
+        return OdeTimMetadata.class;
+    }
+
     @Override
     protected OdeAsn1Data process(String consumedData) {
         OdeAsn1Data messageToPublish = null;
@@ -26,8 +26,9 @@ public class AsnCodecMessageServiceController {
 		logger.info("Send encoded BSM to ASN.1 Decoder");
 		Asn1DecodeBSMJSON asn1DecodeBSMJSON = new Asn1DecodeBSMJSON(odeProps);
 
-		MessageConsumer<String, String> asn1RawBSMJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeBSMJSON);
+		MessageConsumer<String, byte[]> asn1RawBSMJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeBSMJSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawBSMJSONConsumer.setName("asn1DecodeBSMJSON");
 		asn1DecodeBSMJSON.start(asn1RawBSMJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedBSMJson());
 
@@ -35,8 +36,9 @@ public class AsnCodecMessageServiceController {
 		logger.info("Send encoded SPAT to ASN.1 Decoder");
 		Asn1DecodeSPATJSON asn1DecodeSPATJSON = new Asn1DecodeSPATJSON(odeProps);
 
-		MessageConsumer<String, String> asn1RawSPATJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeSPATJSON);
+		MessageConsumer<String, byte[]> asn1RawSPATJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeSPATJSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawSPATJSONConsumer.setName("asn1DecodeSPATJSON");
 		asn1DecodeSPATJSON.start(asn1RawSPATJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedSPATJson());
 
@@ -44,8 +46,9 @@ public class AsnCodecMessageServiceController {
 		logger.info("Send encoded SSM to ASN.1 Decoder");
 		Asn1DecodeSSMJSON asn1DecodeSSMJSON = new Asn1DecodeSSMJSON(odeProps);
 
-		MessageConsumer<String, String> asn1RawSSMJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeSSMJSON);
+		MessageConsumer<String, byte[]> asn1RawSSMJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeSSMJSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawSSMJSONConsumer.setName("asn1DecodeSSMJSON");
 		asn1DecodeSSMJSON.start(asn1RawSSMJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedSSMJson());
 
@@ -53,8 +56,9 @@ public class AsnCodecMessageServiceController {
 		logger.info("Send encoded SRM to ASN.1 Decoder");
 		Asn1DecodeSRMJSON asn1DecodeSRMJSON = new Asn1DecodeSRMJSON(odeProps);
 
-		MessageConsumer<String, String> asn1RawSRMJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeSRMJSON);
+		MessageConsumer<String, byte[]> asn1RawSRMJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeSRMJSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawSRMJSONConsumer.setName("asn1DecodeSRMJSON");
 		asn1DecodeSRMJSON.start(asn1RawSRMJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedSRMJson());
 
@@ -62,24 +66,27 @@ public class AsnCodecMessageServiceController {
 		logger.info("Send encoded TIM to ASN.1 Decoder");
 		Asn1DecodeTIMJSON asn1DecodeTIMJSON = new Asn1DecodeTIMJSON(odeProps);
 
-		MessageConsumer<String, String> asn1RawTIMJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeTIMJSON);
+		MessageConsumer<String, byte[]> asn1RawTIMJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+				odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeTIMJSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawTIMJSONConsumer.setName("asn1DecodeTIMJSON");
 		asn1DecodeTIMJSON.start(asn1RawTIMJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedTIMJson());
 
 		//MAP
 		logger.info("Send encoded MAP to ASN.1 Decoder");
 		Asn1DecodeMAPJSON asn1DecodeMAPSON = new Asn1DecodeMAPJSON(odeProps);
-		MessageConsumer<String, String> asn1RawMAPJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-				   odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeMAPSON);
+		MessageConsumer<String, byte[]> asn1RawMAPJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+				   odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodeMAPSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawMAPJSONConsumer.setName("asn1DecodeMAPJSON");				      
 		asn1DecodeMAPSON.start(asn1RawMAPJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedMAPJson());
 
 		//PSM
 		logger.info("Send encoded PSM to ASN.1 Decoder");
 		Asn1DecodePSMJSON asn1DecodePSMSON = new Asn1DecodePSMJSON(odeProps);
-		MessageConsumer<String, String> asn1RawPSMJSONConsumer = MessageConsumer.defaultStringMessageConsumer(
-					odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodePSMSON);
+		MessageConsumer<String, byte[]> asn1RawPSMJSONConsumer = MessageConsumer.defaultByteArrayMessageConsumer(
+					odeProps.getKafkaBrokers(), this.getClass().getSimpleName(), asn1DecodePSMSON,
+				odeProps.kafkaConsumerProperties());
 		asn1RawPSMJSONConsumer.setName("asn1DecodePSMJSON");				      
 		asn1DecodePSMSON.start(asn1RawPSMJSONConsumer, odeProps.getKafkaTopicOdeRawEncodedPSMJson());
 	}
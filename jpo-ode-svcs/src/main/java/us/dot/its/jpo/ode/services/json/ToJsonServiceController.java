@@ -50,7 +50,8 @@ public class ToJsonServiceController {
             jsonConverter.getOutputTopic());
 
       MessageConsumer<String, V> consumer = new MessageConsumer<>(odeProperties.getKafkaBrokers(),
-            this.getClass().getSimpleName(), jsonConverter, serializerFQN);
+            this.getClass().getSimpleName(), jsonConverter, serializerFQN,
+            odeProperties.kafkaConsumerProperties());
 
       consumer.setName(this.getClass().getName() + fromTopic + "Consumer");
       jsonConverter.start(consumer, fromTopic);
@@ -98,7 +98,7 @@ public class TimDepositController {
 
       this.stringMsgProducer = MessageProducer.defaultStringMessageProducer(odeProperties.getKafkaBrokers(),
             odeProperties.getKafkaProducerType(), odeProperties.getKafkaTopicsDisabledSet());
-      this.timProducer = new MessageProducer<>(odeProperties.getKafkaBrokers(), odeProperties.getKafkaProducerType(),
+      this.timProducer = MessageProducer.sharedMessageProducer(odeProperties.getKafkaBrokers(), odeProperties.getKafkaProducerType(),
             null, OdeTimSerializer.class.getName(), odeProperties.getKafkaTopicsDisabledSet());
 
       this.dataSigningEnabledSDW = System.getenv("DATA_SIGNING_ENABLED_SDW") != null && !System.getenv("DATA_SIGNING_ENABLED_SDW").isEmpty()
@@ -0,0 +1,360 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.udp.controller.UdpServiceThreadFactory;
+
+/**
+ * The socket side of a UDP receiver: binds its port, reads datagrams off the
+ * socket in the configured receive mode and hands every datagram, or batch of
+ * datagrams, to {@link #processDatagram(ReceivedDatagram)} or
+ * {@link #processBatch(List)}. Whatever happens to a datagram after that is
+ * left to the subclass.
+ */
+public abstract class AbstractUdpReceiver implements Runnable {
+
+   private static Logger logger = LoggerFactory.getLogger(AbstractUdpReceiver.class);
+
+   protected OdeProperties odeProperties;
+   protected int port;
+   protected int bufferSize;
+   protected int socketCount = 1;
+   protected int socketReceiveBufferSize = 0;
+   protected int ringBufferSize;
+   protected int ringBufferWorkers;
+   protected PacketRingBuffer.WaitStrategy ringBufferWaitStrategy;
+   protected int batchSize;
+   protected int batchTimeBudgetMs;
+   protected int bufferPoolSize;
+
+   protected UdpIngestMetrics metrics = UdpIngestMetrics.getInstance();
+   private ReceiveBufferPool bufferPool;
+
+   // set by the thread stopping the receiver, read by its receive loops
+   private volatile boolean stopped = false;
+
+   public boolean isStopped() {
+      return stopped;
+   }
+
+   public void setStopped(boolean stopped) {
+      this.stopped = stopped;
+   }
+
+   /**
+    * Ends the receive loops and releases whatever the receiver holds besides
+    * its sockets.
+    */
+   public void stop() {
+      setStopped(true);
+   }
+
+   protected AbstractUdpReceiver(OdeProperties odeProps, int port, int bufferSize) {
+      this.odeProperties = odeProps;
+      this.port = port;
+      this.bufferSize = bufferSize;
+      this.ringBufferSize = odeProps.getUdpRingBufferSize();
+      this.ringBufferWorkers = Math.max(1, odeProps.getUdpRingBufferWorkers());
+      this.ringBufferWaitStrategy = toWaitStrategy(odeProps.getUdpRingBufferWaitStrategy());
+      this.batchSize = Math.max(1, odeProps.getUdpBatchSize());
+      this.batchTimeBudgetMs = Math.max(1, odeProps.getUdpBatchTimeBudgetMs());
+      this.bufferPoolSize = odeProps.getUdpBufferPoolSize();
+   }
+
+   /**
+    * Name used for this receiver's threads and log messages.
+    */
+   public abstract String getName();
+
+   /**
+    * Counts a datagram read off the socket in the ingest metrics. Called on the
+    * receive thread, before the datagram is queued for processing.
+    */
+   public abstract void countReceived(ReceivedDatagram datagram);
+
+   /**
+    * Counts a failed socket read in the ingest metrics.
+    */
+   protected abstract void countReceiveError();
+
+   /**
+    * Processes one received datagram. All per-packet state must be kept on the
+    * stack, this is called concurrently for datagrams received on any socket
+    * or channel.
+    */
+   public abstract void processDatagram(ReceivedDatagram datagram);
+
+   /**
+    * Processes the datagrams drained from the socket together.
+    */
+   public abstract void processBatch(List<ReceivedDatagram> datagrams);
+
+   /**
+    * Blocking receive loop used when the receiver runs on its own thread. The
+    * socket is bound here rather than in the constructor so that the selector
+    * based ingest can reuse the receiver without claiming its port. When the
+    * receiver is configured with more than one socket, run() is called once per
+    * socket and every call binds its own SO_REUSEPORT socket, letting the kernel
+    * spread the senders over the receive loops.
+    */
+   @Override
+   public void run() {
+      logger.debug("{} UDP Receiver Service started.", getName());
+
+      DatagramSocket socket;
+      try {
+         socket = openSocket();
+         logger.info("Created UDP socket bound to port {}", this.port);
+      } catch (Exception e) {
+         logger.error("Error creating socket with port " + this.port, e);
+         return;
+      }
+
+      if (ringBufferSize > 0) {
+         receiveIntoRingBuffer(socket);
+         return;
+      }
+      if (batchSize > 1) {
+         receiveBatches(socket);
+         return;
+      }
+
+      // one spare byte to tell a datagram that filled the buffer from one that was cut off
+      byte[] buffer = new byte[bufferSize + 1];
+
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+      do {
+         try {
+            logger.debug("Waiting for UDP {} packets...", getName());
+            packet.setLength(buffer.length);
+            socket.receive(packet);
+            if (packet.getLength() > 0) {
+               ReceivedDatagram datagram = ReceivedDatagram.of(packet, System.nanoTime());
+               countReceived(datagram);
+               processDatagram(datagram);
+            }
+         } catch (Exception e) {
+            logger.error("Error receiving packet", e);
+         }
+      } while (!isStopped());
+   }
+
+   /**
+    * Receive loop that only reads the socket. Packets are received straight into
+    * the slots of a ring buffer and enriched, serialized and published by a pool
+    * of workers, so a slow serializer or a stalled Kafka client does not leave
+    * the socket unread.
+    */
+   private void receiveIntoRingBuffer(DatagramSocket socket) {
+      PacketRingBuffer ring = new PacketRingBuffer(ringBufferSize, bufferSize + 1, ringBufferWaitStrategy);
+      ExecutorService workers = Executors.newFixedThreadPool(ringBufferWorkers,
+            new UdpServiceThreadFactory(getName() + "UdpWorker"));
+      for (int i = 0; i < ringBufferWorkers; i++) {
+         workers.submit(() -> publishFromRingBuffer(ring));
+      }
+      logger.info("{} receiver handing packets to {} worker(s) through a {} slot ring buffer", getName(),
+            ringBufferWorkers, ring.getCapacity());
+
+      try {
+         do {
+            long sequence = ring.claim();
+            DatagramPacket slot = ring.get(sequence);
+            try {
+               socket.receive(slot);
+            } catch (Exception e) {
+               // the slot stays claimed and is reused for the next packet
+               countReceiveError();
+               logger.error("Error receiving packet", e);
+               continue;
+            }
+            if (slot.getLength() > 0) {
+               long receivedNanos = System.nanoTime();
+               ReceivedDatagram datagram = ReceivedDatagram.of(slot, receivedNanos);
+               ring.setReceived(sequence, datagram);
+               countReceived(datagram);
+               ring.publish(sequence);
+            }
+         } while (!isStopped());
+      } finally {
+         ring.halt();
+         workers.shutdown();
+      }
+   }
+
+   /**
+    * Burst-drain receive loop. After the first datagram arrives, keeps reading
+    * until the batch is full or the time budget is spent, then publishes
+    * whatever was collected as a single batch.
+    */
+   private void receiveBatches(DatagramSocket socket) {
+      List<DatagramPacket> slots = new ArrayList<>(batchSize);
+      for (int i = 0; i < batchSize; i++) {
+         slots.add(new DatagramPacket(new byte[bufferSize + 1], bufferSize + 1));
+      }
+      List<ReceivedDatagram> batch = new ArrayList<>(batchSize);
+
+      do {
+         batch.clear();
+         try {
+            logger.debug("Waiting for UDP {} packets...", getName());
+            socket.setSoTimeout(0);
+            receiveInto(socket, slots.get(0), batch);
+
+            long deadline = System.nanoTime() + batchTimeBudgetMs * 1_000_000L;
+            for (int i = 1; i < batchSize; i++) {
+               long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+               if (remainingMs <= 0)
+                  break;
+               socket.setSoTimeout((int) remainingMs);
+               receiveInto(socket, slots.get(i), batch);
+            }
+         } catch (SocketTimeoutException e) {
+            // budget spent, publish what was drained so far
+         } catch (Exception e) {
+            countReceiveError();
+            logger.error("Error receiving packet", e);
+         }
+
+         if (!batch.isEmpty()) {
+            try {
+               processBatch(batch);
+            } catch (Exception e) {
+               logger.error("Error processing batch", e);
+            }
+         }
+      } while (!isStopped());
+   }
+
+   private void receiveInto(DatagramSocket socket, DatagramPacket slot, List<ReceivedDatagram> batch)
+         throws IOException {
+      slot.setLength(slot.getData().length);
+      socket.receive(slot);
+      if (slot.getLength() > 0) {
+         ReceivedDatagram datagram = ReceivedDatagram.of(slot, System.nanoTime());
+         countReceived(datagram);
+         batch.add(datagram);
+      }
+   }
+
+   private void publishFromRingBuffer(PacketRingBuffer ring) {
+      long sequence;
+      while ((sequence = ring.take()) != PacketRingBuffer.HALTED) {
+         try {
+            processDatagram(ring.getReceived(sequence));
+         } catch (Exception e) {
+            logger.error("Error processing packet", e);
+         } finally {
+            ring.release(sequence);
+         }
+      }
+   }
+
+   private static PacketRingBuffer.WaitStrategy toWaitStrategy(String name) {
+      if (name == null)
+         return PacketRingBuffer.WaitStrategy.SLEEPING;
+      try {
+         return PacketRingBuffer.WaitStrategy.valueOf(name.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+         logger.warn("Unknown UDP ring buffer wait strategy {}, using SLEEPING", name);
+         return PacketRingBuffer.WaitStrategy.SLEEPING;
+      }
+   }
+
+   private DatagramSocket openSocket() throws IOException {
+      DatagramSocket socket = new DatagramSocket(null);
+      try {
+         if (socketCount > 1) {
+            if (socket.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+               socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            } else {
+               logger.warn("SO_REUSEPORT is not supported, only one {} socket can bind port {}", getName(),
+                     this.port);
+            }
+         }
+         if (socketReceiveBufferSize > 0) {
+            socket.setReceiveBufferSize(socketReceiveBufferSize);
+            checkReceiveBufferSize(socket.getReceiveBufferSize());
+         }
+         socket.bind(new InetSocketAddress(this.port));
+      } catch (IOException e) {
+         socket.close();
+         throw e;
+      }
+      return socket;
+   }
+
+   /**
+    * Warns when the kernel granted less SO_RCVBUF than configured, typically
+    * because of net.core.rmem_max on Linux.
+    */
+   public void checkReceiveBufferSize(int granted) {
+      if (granted < socketReceiveBufferSize) {
+         logger.warn("{} port {} asked for a {} byte socket receive buffer but got {}", getName(), this.port,
+               socketReceiveBufferSize, granted);
+      }
+   }
+
+   public int getPort() {
+      return port;
+   }
+
+   public int getBufferSize() {
+      return bufferSize;
+   }
+
+   /**
+    * Most datagrams drained from the socket and published together, 1 when
+    * batching is off.
+    */
+   public int getBatchSize() {
+      return batchSize;
+   }
+
+   /**
+    * Number of sockets, and receive loops, that share this receiver's port.
+    */
+   public int getSocketCount() {
+      return socketCount;
+   }
+
+   public void setSocketCount(int socketCount) {
+      this.socketCount = Math.max(1, socketCount);
+   }
+
+   /**
+    * SO_RCVBUF requested for this receiver's sockets, 0 to keep the OS default.
+    */
+   public int getSocketReceiveBufferSize() {
+      return socketReceiveBufferSize;
+   }
+
+   public void setSocketReceiveBufferSize(int socketReceiveBufferSize) {
+      this.socketReceiveBufferSize = Math.max(0, socketReceiveBufferSize);
+   }
+
+   /**
+    * Direct buffers for receiving from a datagram channel. Each holds one byte
+    * more than the configured buffer size so oversize datagrams can be detected.
+    */
+   public synchronized ReceiveBufferPool getBufferPool() {
+      if (bufferPool == null) {
+         bufferPool = new ReceiveBufferPool(bufferSize + 1, bufferPoolSize);
+      }
+      return bufferPool;
+   }
+
+}
@@ -1,8 +1,9 @@
 package us.dot.its.jpo.ode.udp;
 
-import java.net.DatagramSocket;
 import java.net.DatagramPacket;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.tomcat.util.buf.HexUtils;
 import org.slf4j.Logger;
@@ -10,10 +11,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.ByteArrayPublisher;
+import us.dot.its.jpo.ode.coder.StringPublisher;
+import us.dot.its.jpo.ode.model.OdeAsn1Data;
 import us.dot.its.jpo.ode.model.OdeAsn1Payload;
+import us.dot.its.jpo.ode.model.OdeMsgMetadata;
+import us.dot.its.jpo.ode.uper.UperKeys;
 import us.dot.its.jpo.ode.uper.UperUtil;
+import us.dot.its.jpo.ode.util.JsonUtils;
 
-public abstract class AbstractUdpReceiverPublisher implements Runnable {
+/**
+ * Receives the datagrams of one message type, strips their headers, attaches
+ * that type's metadata and publishes them to that type's raw encoded topic,
+ * within the per-sender rate limit and the producer's in-flight limit.
+ */
+public abstract class AbstractUdpReceiverPublisher extends AbstractUdpReceiver {
 
    public class UdpReceiverException extends Exception {
       private static final long serialVersionUID = 1L;
@@ -24,57 +36,344 @@ public abstract class AbstractUdpReceiverPublisher implements Runnable {
    }
 
    private static Logger logger = LoggerFactory.getLogger(AbstractUdpReceiverPublisher.class);
-   protected DatagramSocket socket;
 
-   protected String senderIp;
-   protected int senderPort;
+   // What admission control decided for a datagram
+   private enum Admission {
+      ADMIT, DIVERT, SHED
+   }
 
-   protected OdeProperties odeProperties;
-   protected int port;
-   protected int bufferSize;
+   protected SenderRateLimiter rateLimiter;
+   protected SenderRateLimiter.ShedPolicy shedPolicy;
+   protected int shedSampleRate;
 
-   private boolean stopped = false;
+   protected StringPublisher publisher;
+   private ByteArrayPublisher bytesPublisher;
 
-   public boolean isStopped() {
-      return stopped;
+   @Autowired
+   public AbstractUdpReceiverPublisher(OdeProperties odeProps, int port, int bufferSize) {
+      super(odeProps, port, bufferSize);
+      this.publisher = new StringPublisher(odeProps);
+      this.shedPolicy = SenderRateLimiter.ShedPolicy.fromString(odeProps.getUdpShedPolicy());
+      this.shedSampleRate = Math.max(1, odeProps.getUdpShedSampleRate());
+      setSenderRateLimit(0);
    }
 
-   public void setStopped(boolean stopped) {
-      this.stopped = stopped;
+   /**
+    * The message type this receiver accepts. Packets that do not carry this
+    * type's start flag are dropped.
+    */
+   public abstract UperUtil.SupportedMessageTypes getMessageType();
+
+   @Override
+   public String getName() {
+      return getMessageType().name();
    }
 
-   @Autowired
-   public AbstractUdpReceiverPublisher(OdeProperties odeProps, int port, int bufferSize) {
-      this.odeProperties = odeProps;
-      this.port = port;
-      this.bufferSize = bufferSize;
+   /**
+    * The topic the raw encoded messages of this type are published to.
+    */
+   protected abstract String getPublishTopic();
+
+   /**
+    * Creates the metadata that accompanies a received payload. Called from the
+    * processing threads, so implementations must not keep per-packet state in
+    * fields.
+    */
+   protected abstract OdeMsgMetadata createMetadata(OdeAsn1Payload payload, String senderIp);
 
+   @Override
+   public void countReceived(ReceivedDatagram datagram) {
+      metrics.packetReceived(getMessageType(), datagram.getSenderIp(), datagram.getLength());
+   }
+
+   @Override
+   protected void countReceiveError() {
+      metrics.receiveError(getMessageType());
+   }
+
+   public void processPacket(DatagramPacket packet) {
+      processDatagram(ReceivedDatagram.of(packet, System.nanoTime()));
+   }
+
+   /**
+    * Strips the headers from a received datagram, attaches the metadata and
+    * publishes the result. All per-packet state is kept on the stack so this may
+    * be called concurrently for datagrams received on any socket or channel.
+    */
+   @Override
+   public void processDatagram(ReceivedDatagram datagram) {
+      Admission admission = admit(datagram);
+      if (admission == Admission.SHED)
+         return;
       try {
-         socket = new DatagramSocket(this.port);
-         logger.info("Created UDP socket bound to port {}", this.port);
-      } catch (SocketException e) {
-         logger.error("Error creating socket with port " + this.port, e);
+         RawEncodedMessage message = toMessage(datagram);
+         if (message == null)
+            return;
+         if (admission == Admission.DIVERT) {
+            divert(message, datagram);
+            return;
+         }
+
+         // Submit to the OdeRawEncodedMessageJson Kafka Topic
+         publish(message, getPublishTopic());
+         metrics.packetPublished(getMessageType(), datagram.getReceivedNanos());
+      } catch (RuntimeException e) {
+         metrics.packetFailed(getMessageType());
+         throw e;
+      }
+   }
+
+   /**
+    * Batch counterpart of {@link #processDatagram(ReceivedDatagram)}. Every
+    * datagram is enriched and serialized first, then the whole batch is handed
+    * to the producer as one unit with a single completion callback. Binary
+    * messages carry their own headers and are handed over one by one.
+    */
+   @Override
+   public void processBatch(List<ReceivedDatagram> datagrams) {
+      List<RawEncodedMessage> messages = new ArrayList<>(datagrams.size());
+      List<ReceivedDatagram> accepted = new ArrayList<>(datagrams.size());
+      for (ReceivedDatagram datagram : datagrams) {
+         Admission admission = admit(datagram);
+         if (admission == Admission.SHED)
+            continue;
+         try {
+            RawEncodedMessage message = toMessage(datagram);
+            if (message == null)
+               continue;
+            if (admission == Admission.DIVERT) {
+               divert(message, datagram);
+            } else {
+               messages.add(message);
+               accepted.add(datagram);
+            }
+         } catch (RuntimeException e) {
+            metrics.packetFailed(getMessageType());
+            logger.error("Error processing packet", e);
+         }
+      }
+
+      if (messages.isEmpty())
+         return;
+      try {
+         if (odeProperties.isRawEncodedBinary()) {
+            for (RawEncodedMessage message : messages) {
+               publish(message, getPublishTopic());
+            }
+         } else {
+            List<String> json = new ArrayList<>(messages.size());
+            List<String> keys = new ArrayList<>(messages.size());
+            for (RawEncodedMessage message : messages) {
+               json.add(message.json);
+               keys.add(message.key);
+            }
+            publisher.publishBatch(json, getPublishTopic(), keys);
+         }
+      } catch (RuntimeException e) {
+         for (int i = 0; i < accepted.size(); i++) {
+            metrics.packetFailed(getMessageType());
+         }
+         throw e;
+      }
+      for (ReceivedDatagram datagram : accepted) {
+         metrics.packetPublished(getMessageType(), datagram.getReceivedNanos());
+      }
+   }
+
+   /**
+    * Charges the datagram to its sender's token bucket and applies the shed
+    * policy when the sender is over its rate, then drops it if the producer
+    * already has its limit of records in flight. Runs before any conversion so
+    * a flooding sender or a slow broker costs little more than the receive.
+    */
+   private Admission admit(ReceivedDatagram datagram) {
+      Admission admission = admitSender(datagram);
+      if (admission != Admission.SHED && isBackpressured(datagram.getSenderIp()))
+         return Admission.SHED;
+      return admission;
+   }
+
+   /**
+    * Whether a packet from the sender has to be dropped because the producer
+    * already has its limit of records in flight.
+    */
+   protected boolean isBackpressured(String senderIp) {
+      if (odeProperties.getKafkaProducerMaxInFlight() <= 0 || canPublish())
+         return false;
+      metrics.packetBackpressured(getMessageType());
+      if (logger.isDebugEnabled()) {
+         logger.debug("Dropping {} packet from {}, the producer is at its in-flight limit", getMessageType(),
+               senderIp);
+      }
+      return true;
+   }
+
+   private boolean canPublish() {
+      return odeProperties.isRawEncodedBinary() ? getBytesPublisher().canPublish() : publisher.canPublish();
+   }
+
+   private Admission admitSender(ReceivedDatagram datagram) {
+      int sampleRate = shedPolicy == SenderRateLimiter.ShedPolicy.SAMPLE ? shedSampleRate : 0;
+      if (rateLimiter.tryAcquire(datagram.getSenderIp(), datagram.getReceivedNanos(), sampleRate))
+         return Admission.ADMIT;
+
+      if (shedPolicy == SenderRateLimiter.ShedPolicy.OVERFLOW)
+         return Admission.DIVERT;
+      metrics.packetShed(getMessageType(), datagram.getSenderIp());
+      if (logger.isDebugEnabled()) {
+         logger.debug("Shedding {} packet from {} over its rate", getMessageType(), datagram.getSenderIp());
+      }
+      return Admission.SHED;
+   }
+
+   private void divert(RawEncodedMessage message, ReceivedDatagram datagram) {
+      publish(message, odeProperties.getKafkaTopicOdeRawEncodedOverflowJson());
+      metrics.packetDiverted(getMessageType(), datagram.getSenderIp());
+   }
+
+   private void publish(RawEncodedMessage message, String topic) {
+      if (message.json != null) {
+         publisher.publish(message.json, topic, message.key);
+      } else {
+         getBytesPublisher().publishEnvelope(message.metadata, message.uper, topic, message.key);
+      }
+   }
+
+   /**
+    * Publishes a stripped payload with its metadata in the configured raw
+    * encoded format.
+    */
+   protected void publish(OdeMsgMetadata metadata, OdeAsn1Payload payload, byte[] uper, String topic, String key) {
+      if (odeProperties.isRawEncodedBinary()) {
+         getBytesPublisher().publishEnvelope(metadata, uper, topic, key);
+      } else {
+         publisher.publish(JsonUtils.toJson(new OdeAsn1Data(metadata, payload), false), topic, key);
+      }
+   }
+
+   /**
+    * The record key of a stripped payload: the vehicle or intersection it is
+    * about when that can be read from the UPER bytes, the sender otherwise.
+    * Null when record keys are turned off.
+    */
+   protected String keyOf(ByteBuffer payload, String senderIp) {
+      if (!odeProperties.isKafkaRecordKeysEnabled())
+         return null;
+      return UperKeys.keyOf(getMessageType(), payload, senderIp);
+   }
+
+   private synchronized ByteArrayPublisher getBytesPublisher() {
+      if (bytesPublisher == null) {
+         bytesPublisher = new ByteArrayPublisher(odeProperties);
+      }
+      return bytesPublisher;
+   }
+
+   /**
+    * Serializes a datagram with its metadata, or returns null after counting
+    * the datagram as truncated or rejected. In the binary format the payload
+    * is kept as bytes and never converted to hex.
+    */
+   private RawEncodedMessage toMessage(ReceivedDatagram datagram) {
+      String packetSenderIp = datagram.getSenderIp();
+      logger.debug("Packet received from {}:{}", packetSenderIp, datagram.getSender().getPort());
+
+      if (datagram.getLength() > bufferSize) {
+         // larger than the configured buffer, the tail was cut off by the receive
+         metrics.packetTruncated(getMessageType());
+         logger.warn("Dropping {} packet from {} larger than the {} byte buffer", getMessageType(), packetSenderIp,
+               bufferSize);
+         return null;
+      }
+
+      ByteBuffer stripped = stripHeaders(datagram.getData(), getMessageType());
+      if (stripped == null) {
+         metrics.packetRejected(getMessageType());
+         return null;
+      }
+      if (!accept(stripped, datagram))
+         return null;
+
+      byte[] uper = UperUtil.toByteArray(stripped);
+      String key = keyOf(stripped, packetSenderIp);
+      if (odeProperties.isRawEncodedBinary()) {
+         return new RawEncodedMessage(createMetadata(new OdeAsn1Payload(), packetSenderIp), uper, null, key);
+      }
+
+      // Create OdeMsgPayload and OdeLogMetadata objects and populate them
+      OdeAsn1Payload payload = new OdeAsn1Payload(uper);
+      OdeMsgMetadata metadata = createMetadata(payload, packetSenderIp);
+
+      return new RawEncodedMessage(metadata, uper, JsonUtils.toJson(new OdeAsn1Data(metadata, payload), false),
+            key);
+   }
+
+   // A processed datagram, serialized to JSON unless the binary format is on
+   private static class RawEncodedMessage {
+      final OdeMsgMetadata metadata;
+      final byte[] uper;
+      final String json;
+      final String key;
+
+      RawEncodedMessage(OdeMsgMetadata metadata, byte[] uper, String json, String key) {
+         this.metadata = metadata;
+         this.uper = uper;
+         this.json = json;
+         this.key = key;
       }
    }
 
    public OdeAsn1Payload getPayloadHexString(DatagramPacket packet, UperUtil.SupportedMessageTypes msgType) {
-      String startFlag = UperUtil.getStartFlag(msgType);
-      // extract the actual packet from the buffer
-      byte[] payload = packet.getData();
-      if (payload == null)
+      // only the bytes received, never stale bytes left in the buffer by earlier packets
+      if (packet.getData() == null)
          return null;
-      // convert bytes to hex string and verify identity
-      String payloadHexString = HexUtils.toHexString(payload).toLowerCase();
-      if (payloadHexString.indexOf(startFlag) == -1)
+      return getPayload(ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()), msgType);
+   }
+
+   /**
+    * Strips the headers from the received bytes between the buffer's position
+    * and limit. The buffer itself is not modified.
+    */
+   public OdeAsn1Payload getPayload(ByteBuffer datagram, UperUtil.SupportedMessageTypes msgType) {
+      ByteBuffer stripped = stripHeaders(datagram, msgType);
+      if (stripped == null)
          return null;
-      
-      logger.debug("Full {} packet: {}", msgType, payloadHexString);
-      payloadHexString = UperUtil.stripDot3Header(payloadHexString, startFlag);
-      logger.debug("Stripped {} packet: {}", msgType, payloadHexString);
+      return new OdeAsn1Payload(UperUtil.toByteArray(stripped));
+   }
+
+   private static ByteBuffer stripHeaders(ByteBuffer datagram, UperUtil.SupportedMessageTypes msgType) {
+      // locate the start flag and headers directly in the received bytes
+      ByteBuffer stripped = UperUtil.stripDot3Header(datagram, UperUtil.getStartFlagBytes(msgType));
 
-      OdeAsn1Payload timPayload = new OdeAsn1Payload(HexUtils.fromHexString(payloadHexString));
-      
-      return timPayload;
+      if (stripped != null && logger.isDebugEnabled()) {
+         logger.debug("Full {} packet: {}", msgType, HexUtils.toHexString(UperUtil.toByteArray(datagram)));
+         logger.debug("Stripped {} packet: {}", msgType, HexUtils.toHexString(UperUtil.toByteArray(stripped)));
+      }
+      return stripped;
    }
 
-}
\ No newline at end of file
+   /**
+    * Called once the headers are stripped and before any metadata is built.
+    * Returning false drops the datagram; implementations account for it in the
+    * ingest metrics themselves.
+    *
+    * @param payload  the stripped UPER bytes, a view into the received buffer
+    * @param datagram the datagram the payload was stripped from
+    */
+   protected boolean accept(ByteBuffer payload, ReceivedDatagram datagram) {
+      return true;
+   }
+
+   /**
+    * Packets per second admitted from each sender, 0 or less for no limit.
+    * Senders over the limit are handled according to ode.udpShedPolicy.
+    */
+   public void setSenderRateLimit(int ratePerSecond) {
+      this.rateLimiter = new SenderRateLimiter(ratePerSecond, odeProperties.getUdpSenderBurst(),
+            odeProperties.getUdpSenderIdleTimeoutMs());
+   }
+
+   public SenderRateLimiter getRateLimiter() {
+      return rateLimiter;
+   }
+}
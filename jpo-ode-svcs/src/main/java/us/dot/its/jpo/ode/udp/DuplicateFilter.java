@@ -0,0 +1,217 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.dot.its.jpo.ode.udp.controller.UdpServiceThreadFactory;
+
+/**
+ * Suppresses copies of the same message heard by several RSUs. Payloads are
+ * identified by a 64-bit fingerprint of their stripped UPER bytes and
+ * remembered for a fixed time window in a cache bounded by entry count.
+ * <p>
+ * In {@link Mode#DROP} mode the first copy is published straight away and
+ * later copies inside the window are dropped. In {@link Mode#MERGE} mode the
+ * first copy is held for the window, every sender that forwarded a copy is
+ * collected, and one merged message is handed to the {@link MergeHandler}
+ * when the window closes.
+ */
+public class DuplicateFilter {
+
+   private static final Logger logger = LoggerFactory.getLogger(DuplicateFilter.class);
+
+   private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+   private static final long FNV_PRIME = 0x100000001b3L;
+
+   public enum Mode {
+      OFF, DROP, MERGE;
+
+      public static Mode fromString(String name) {
+         if (name == null)
+            return OFF;
+         try {
+            return valueOf(name.trim().toUpperCase());
+         } catch (IllegalArgumentException e) {
+            logger.warn("Unknown duplicate suppression mode {}, suppression is off", name);
+            return OFF;
+         }
+      }
+   }
+
+   public enum Result {
+      /** First copy in the window, publish it now */
+      PUBLISH,
+      /** Copy of a message already seen in the window, do not publish */
+      DUPLICATE,
+      /** First copy in the window, held until the window closes */
+      HELD
+   }
+
+   /**
+    * Receives the merged messages in {@link Mode#MERGE} mode.
+    */
+   public interface MergeHandler {
+      void publishMerged(byte[] payload, List<String> senderIps, long receivedNanos);
+   }
+
+   private final Mode mode;
+   private final long windowNanos;
+   private final int maxEntries;
+   private final MergeHandler mergeHandler;
+   private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+   private ScheduledExecutorService flusher;
+
+   public DuplicateFilter(Mode mode, long windowMs, int maxEntries, MergeHandler mergeHandler) {
+      this.mode = mode;
+      this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, windowMs));
+      this.maxEntries = Math.max(1, maxEntries);
+      this.mergeHandler = mergeHandler;
+   }
+
+   /**
+    * Starts the thread that publishes merged messages once their window closes.
+    * Only needed in {@link Mode#MERGE} mode.
+    */
+   public synchronized void start(String name) {
+      if (mode != Mode.MERGE || flusher != null)
+         return;
+      long periodNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), windowNanos / 4);
+      flusher = Executors.newSingleThreadScheduledExecutor(new UdpServiceThreadFactory(name));
+      flusher.scheduleAtFixedRate(() -> {
+         try {
+            flush(System.nanoTime());
+         } catch (Exception e) {
+            logger.error("Error publishing merged messages", e);
+         }
+      }, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * Publishes the messages still held for their window, then stops the
+    * flusher thread.
+    */
+   public synchronized void stop() {
+      flush(Long.MAX_VALUE);
+      if (flusher != null) {
+         flusher.shutdown();
+         flusher = null;
+      }
+   }
+
+   /**
+    * Looks the payload up in the window and remembers it if it is new.
+    *
+    * @param payload       stripped UPER bytes between position and limit, not
+    *                      modified
+    * @param senderIp      RSU that forwarded this copy
+    * @param receivedNanos {@link System#nanoTime()} when this copy was received
+    */
+   public Result offer(ByteBuffer payload, String senderIp, long receivedNanos) {
+      if (mode == Mode.OFF)
+         return Result.PUBLISH;
+
+      long fingerprint = fingerprint(payload);
+      List<Entry> evicted = new ArrayList<>();
+      Result result;
+      synchronized (this) {
+         expire(receivedNanos, evicted);
+         Entry entry = entries.get(fingerprint);
+         if (entry != null) {
+            if (mode == Mode.MERGE && !entry.senderIps.contains(senderIp))
+               entry.senderIps.add(senderIp);
+            result = Result.DUPLICATE;
+         } else {
+            entry = new Entry(receivedNanos, senderIp);
+            if (mode == Mode.MERGE) {
+               byte[] bytes = new byte[payload.remaining()];
+               payload.duplicate().get(bytes);
+               entry.payload = bytes;
+               result = Result.HELD;
+            } else {
+               result = Result.PUBLISH;
+            }
+            entries.put(fingerprint, entry);
+            if (entries.size() > maxEntries) {
+               // over capacity, the oldest entry leaves the window early
+               Iterator<Entry> eldest = entries.values().iterator();
+               evicted.add(eldest.next());
+               eldest.remove();
+            }
+         }
+      }
+      publish(evicted);
+      return result;
+   }
+
+   /**
+    * Closes the window of every entry older than the window length and, in
+    * {@link Mode#MERGE} mode, publishes their merged messages. Long.MAX_VALUE
+    * closes every window.
+    */
+   public void flush(long nowNanos) {
+      List<Entry> expired = new ArrayList<>();
+      synchronized (this) {
+         expire(nowNanos, expired);
+      }
+      publish(expired);
+   }
+
+   public synchronized int size() {
+      return entries.size();
+   }
+
+   public Mode getMode() {
+      return mode;
+   }
+
+   private void expire(long nowNanos, List<Entry> expired) {
+      Iterator<Entry> oldest = entries.values().iterator();
+      while (oldest.hasNext()) {
+         Entry entry = oldest.next();
+         if (nowNanos != Long.MAX_VALUE && nowNanos - entry.firstReceivedNanos < windowNanos)
+            break;
+         expired.add(entry);
+         oldest.remove();
+      }
+   }
+
+   private void publish(List<Entry> closed) {
+      if (mode != Mode.MERGE)
+         return;
+      for (Entry entry : closed) {
+         mergeHandler.publishMerged(entry.payload, entry.senderIps, entry.firstReceivedNanos);
+      }
+   }
+
+   /**
+    * 64-bit FNV-1a over the bytes between position and limit.
+    */
+   static long fingerprint(ByteBuffer payload) {
+      long hash = FNV_OFFSET_BASIS;
+      for (int i = payload.position(); i < payload.limit(); i++) {
+         hash ^= payload.get(i) & 0xff;
+         hash *= FNV_PRIME;
+      }
+      return hash;
+   }
+
+   private static class Entry {
+      final long firstReceivedNanos;
+      final List<String> senderIps = new ArrayList<>(2);
+      byte[] payload;
+
+      Entry(long firstReceivedNanos, String senderIp) {
+         this.firstReceivedNanos = firstReceivedNanos;
+         this.senderIps.add(senderIp);
+      }
+   }
+}
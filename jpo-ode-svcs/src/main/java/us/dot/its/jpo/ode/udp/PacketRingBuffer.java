@@ -0,0 +1,167 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer/multi-consumer ring of preallocated
+ * {@link DatagramPacket} slots. The receive loop claims a free slot, receives
+ * straight into it and publishes it; workers take published slots, process them
+ * in place and release them for reuse. Hand-off is lock-free: every slot
+ * carries a sequence number that tells whether it is free for the producer,
+ * published for the consumers or still held by a worker.
+ * <p>
+ * Only one thread may call {@link #claim()} and {@link #publish(long)}. Any
+ * number of threads may call {@link #take()} and {@link #release(long)}.
+ */
+public class PacketRingBuffer {
+
+   /**
+    * How a thread waits for the ring when it has nothing to do: the producer
+    * when every slot is in use, a consumer when no slot is published.
+    */
+   public enum WaitStrategy {
+      /** Spin on the sequence. Lowest latency, burns a core per waiting thread. */
+      BUSY_SPIN,
+      /** Spin briefly, then yield the processor between checks. */
+      YIELDING,
+      /** Spin, then yield, then park for short periods. Lowest CPU use when idle. */
+      SLEEPING;
+
+      private static final int SPIN_TRIES = 100;
+      private static final int YIELD_TRIES = 200;
+      private static final long PARK_NANOS = 100_000L;
+
+      void idle(int attempt) {
+         if (this == BUSY_SPIN || attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+         } else if (this == YIELDING || attempt < YIELD_TRIES) {
+            Thread.yield();
+         } else {
+            LockSupport.parkNanos(PARK_NANOS);
+         }
+      }
+   }
+
+   /** Returned by {@link #claim()} and {@link #take()} once the ring is halted. */
+   public static final long HALTED = -1L;
+
+   private final DatagramPacket[] slots;
+   private final ReceivedDatagram[] received;
+   private final AtomicLongArray slotSequences;
+   private final int mask;
+   private final WaitStrategy waitStrategy;
+
+   private final AtomicLong consumerSequence = new AtomicLong();
+   private long producerSequence = 0;
+   private volatile boolean halted = false;
+
+   /**
+    * @param capacity number of slots, rounded up to a power of two
+    * @param slotSize size of the receive buffer preallocated in every slot
+    * @param waitStrategy how waiting producer and consumers idle
+    */
+   public PacketRingBuffer(int capacity, int slotSize, WaitStrategy waitStrategy) {
+      int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+      this.slots = new DatagramPacket[size];
+      this.received = new ReceivedDatagram[size];
+      this.slotSequences = new AtomicLongArray(size);
+      this.mask = size - 1;
+      this.waitStrategy = waitStrategy;
+      for (int i = 0; i < size; i++) {
+         slots[i] = new DatagramPacket(new byte[slotSize], slotSize);
+         slotSequences.set(i, i);
+      }
+   }
+
+   /**
+    * Waits for the next slot to be free and returns its sequence, or
+    * {@link #HALTED}. Producer only.
+    */
+   public long claim() {
+      long sequence = producerSequence;
+      int index = (int) sequence & mask;
+      int attempt = 0;
+      while (slotSequences.getAcquire(index) != sequence) {
+         if (halted)
+            return HALTED;
+         waitStrategy.idle(attempt++);
+      }
+      DatagramPacket slot = slots[index];
+      slot.setLength(slot.getData().length);
+      return sequence;
+   }
+
+   /**
+    * Makes a claimed slot visible to the consumers. Producer only.
+    */
+   public void publish(long sequence) {
+      slotSequences.setRelease((int) sequence & mask, sequence + 1);
+      producerSequence = sequence + 1;
+   }
+
+   /**
+    * Waits for a published slot and takes it, or returns {@link #HALTED} once the
+    * ring is halted and drained. The slot stays owned by the caller until it is
+    * released.
+    */
+   public long take() {
+      int attempt = 0;
+      while (true) {
+         long sequence = consumerSequence.get();
+         long slotSequence = slotSequences.getAcquire((int) sequence & mask);
+         if (slotSequence == sequence + 1) {
+            if (consumerSequence.compareAndSet(sequence, sequence + 1))
+               return sequence;
+         } else if (slotSequence <= sequence) {
+            // nothing published yet
+            if (halted)
+               return HALTED;
+            waitStrategy.idle(attempt++);
+         }
+         // otherwise another consumer took this sequence first, retry with the next one
+      }
+   }
+
+   /**
+    * Hands a taken slot back to the producer for reuse.
+    */
+   public void release(long sequence) {
+      slotSequences.setRelease((int) sequence & mask, sequence + slots.length);
+   }
+
+   /**
+    * The packet held in the slot for the given sequence.
+    */
+   public DatagramPacket get(long sequence) {
+      return slots[(int) sequence & mask];
+   }
+
+   /**
+    * The datagram the producer received into the slot, with its receive time
+    * and anything the receive loop learned about it, set before publishing
+    * the slot. Published together with the slot, so consumers see the value
+    * written for their sequence.
+    */
+   public ReceivedDatagram getReceived(long sequence) {
+      return received[(int) sequence & mask];
+   }
+
+   public void setReceived(long sequence, ReceivedDatagram datagram) {
+      received[(int) sequence & mask] = datagram;
+   }
+
+   /**
+    * Wakes the producer and the consumers. Consumers finish the slots already
+    * published before {@link #take()} returns {@link #HALTED}.
+    */
+   public void halt() {
+      halted = true;
+   }
+
+   public int getCapacity() {
+      return slots.length;
+   }
+}
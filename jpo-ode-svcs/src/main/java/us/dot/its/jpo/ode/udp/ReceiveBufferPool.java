@@ -0,0 +1,69 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size direct buffers that datagram channels receive into, so
+ * the kernel copies straight into native memory and no buffer is allocated per
+ * packet. Buffers are allocated lazily up to the pool size. When every pooled
+ * buffer is in use, {@link #acquire()} falls back to a short-lived heap buffer
+ * rather than blocking the receive loop.
+ */
+public class ReceiveBufferPool {
+
+   private final int bufferCapacity;
+   private final int poolSize;
+   private final BlockingQueue<ByteBuffer> free;
+   private final AtomicInteger allocated = new AtomicInteger();
+
+   public ReceiveBufferPool(int bufferCapacity, int poolSize) {
+      this.bufferCapacity = bufferCapacity;
+      this.poolSize = Math.max(1, poolSize);
+      this.free = new ArrayBlockingQueue<>(this.poolSize);
+   }
+
+   /**
+    * Returns a cleared buffer of {@link #getBufferCapacity()} bytes.
+    */
+   public ByteBuffer acquire() {
+      ByteBuffer buffer = free.poll();
+      if (buffer == null) {
+         if (allocated.incrementAndGet() <= poolSize) {
+            buffer = ByteBuffer.allocateDirect(bufferCapacity);
+         } else {
+            allocated.decrementAndGet();
+            buffer = ByteBuffer.allocate(bufferCapacity);
+         }
+      }
+      buffer.clear();
+      return buffer;
+   }
+
+   /**
+    * Returns a buffer obtained from {@link #acquire()} to the pool. Heap
+    * overflow buffers are left to the garbage collector.
+    */
+   public void release(ByteBuffer buffer) {
+      if (buffer.isDirect() && buffer.capacity() == bufferCapacity) {
+         free.offer(buffer);
+      }
+   }
+
+   public int getBufferCapacity() {
+      return bufferCapacity;
+   }
+
+   public int getPoolSize() {
+      return poolSize;
+   }
+
+   /**
+    * Number of direct buffers allocated so far, pooled or in use.
+    */
+   public int getAllocated() {
+      return allocated.get();
+   }
+}
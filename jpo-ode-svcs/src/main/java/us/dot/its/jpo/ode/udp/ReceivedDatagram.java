@@ -0,0 +1,83 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+/**
+ * A datagram read off a receiver socket: an exact-length view of the received
+ * bytes, the sender and the time it was received. The view may be backed by a
+ * pooled or reused buffer and is only valid until the processing call it was
+ * handed to returns.
+ */
+public class ReceivedDatagram {
+
+   private final ByteBuffer data;
+   private final InetSocketAddress sender;
+   private final long receivedNanos;
+   // read from the UPER bytes once, by a receiver that takes every type
+   private SupportedMessageTypes messageType;
+   private boolean classified;
+
+   public ReceivedDatagram(ByteBuffer data, InetSocketAddress sender, long receivedNanos) {
+      this.data = data;
+      this.sender = sender;
+      this.receivedNanos = receivedNanos;
+   }
+
+   /**
+    * Wraps the {@link DatagramPacket#getLength()} bytes actually received, not
+    * the whole packet buffer.
+    */
+   public static ReceivedDatagram of(DatagramPacket packet, long receivedNanos) {
+      return new ReceivedDatagram(ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength()).slice(),
+            (InetSocketAddress) packet.getSocketAddress(), receivedNanos);
+   }
+
+   /**
+    * The received bytes, from position to limit. Callers must not move the
+    * position of the returned buffer; use {@link ByteBuffer#duplicate()} to
+    * read it relatively.
+    */
+   public ByteBuffer getData() {
+      return data;
+   }
+
+   public int getLength() {
+      return data.remaining();
+   }
+
+   public InetSocketAddress getSender() {
+      return sender;
+   }
+
+   public String getSenderIp() {
+      return sender.getAddress().getHostAddress();
+   }
+
+   public long getReceivedNanos() {
+      return receivedNanos;
+   }
+
+   /**
+    * Whether {@link #setMessageType} was called, even with null.
+    */
+   public boolean isClassified() {
+      return classified;
+   }
+
+   /**
+    * The message type read from the datagram, null if it carries none of the
+    * supported types or was not classified.
+    */
+   public SupportedMessageTypes getMessageType() {
+      return messageType;
+   }
+
+   public void setMessageType(SupportedMessageTypes messageType) {
+      this.messageType = messageType;
+      this.classified = true;
+   }
+}
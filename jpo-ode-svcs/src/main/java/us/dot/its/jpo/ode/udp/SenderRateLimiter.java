@@ -0,0 +1,145 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-sender token buckets guarding a UDP receiver. Every sender IP gets a
+ * bucket refilled at a fixed rate and holding at most a burst of packets;
+ * packets arriving at an empty bucket are over the limit and shed according to
+ * the receiver's {@link ShedPolicy}.
+ * <p>
+ * Each bucket is a single atomic theoretical arrival time (the generic cell
+ * rate algorithm), so admission is one compare-and-set on the hot path with no
+ * locks. Next to it the bucket counts the sender's packets over the limit, so
+ * the SAMPLE policy picks one in every sample rate packets of each sender.
+ * Buckets of senders that stay quiet for the idle timeout are dropped.
+ */
+public class SenderRateLimiter {
+
+   private static final Logger logger = LoggerFactory.getLogger(SenderRateLimiter.class);
+
+   // Senders with a bucket of their own, the rest share the OTHER_SENDERS bucket
+   static final int MAX_TRACKED_SENDERS = 100000;
+   static final String OTHER_SENDERS = "other";
+
+   /**
+    * What happens to a packet over its sender's rate.
+    */
+   public enum ShedPolicy {
+      /** Drop it. */
+      DROP,
+      /** Drop it, except for one in every sample rate packets over the limit. */
+      SAMPLE,
+      /** Publish it to the overflow topic instead of the message type's topic. */
+      OVERFLOW;
+
+      public static ShedPolicy fromString(String name) {
+         if (name == null)
+            return DROP;
+         try {
+            return valueOf(name.trim().toUpperCase());
+         } catch (IllegalArgumentException e) {
+            logger.warn("Unknown UDP shed policy {}, using DROP", name);
+            return DROP;
+         }
+      }
+   }
+
+   private final long emissionIntervalNanos;
+   private final long burstToleranceNanos;
+   private final long idleTimeoutNanos;
+   private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+   private final AtomicLong lastSweepNanos;
+
+   /**
+    * @param ratePerSecond packets per second allowed from each sender, 0 or less
+    *                      admits everything
+    * @param burst         packets a sender may send back to back after being
+    *                      quiet
+    * @param idleTimeoutMs how long a sender's bucket is kept after it goes quiet
+    */
+   public SenderRateLimiter(int ratePerSecond, int burst, long idleTimeoutMs) {
+      this.emissionIntervalNanos = ratePerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / ratePerSecond : 0;
+      this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, burst) - 1);
+      this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, idleTimeoutMs));
+      this.lastSweepNanos = new AtomicLong(System.nanoTime());
+   }
+
+   public boolean isEnabled() {
+      return emissionIntervalNanos > 0;
+   }
+
+   /**
+    * Takes a token from the sender's bucket.
+    *
+    * @param senderIp  the packet's source address
+    * @param nowNanos  {@link System#nanoTime()} when the packet was received
+    * @return true if the packet is within the sender's rate
+    */
+   public boolean tryAcquire(String senderIp, long nowNanos) {
+      return tryAcquire(senderIp, nowNanos, 0);
+   }
+
+   /**
+    * Takes a token from the sender's bucket, or admits one in every sampleRate
+    * of the sender's packets over its rate.
+    *
+    * @param senderIp   the packet's source address
+    * @param nowNanos   {@link System#nanoTime()} when the packet was received
+    * @param sampleRate 0 or less to admit no packet over the rate
+    * @return true if the packet is within the sender's rate or sampled
+    */
+   public boolean tryAcquire(String senderIp, long nowNanos, int sampleRate) {
+      if (!isEnabled())
+         return true;
+
+      sweep(nowNanos);
+
+      Bucket bucket = buckets.get(senderIp);
+      if (bucket == null) {
+         String key = buckets.size() < MAX_TRACKED_SENDERS ? senderIp : OTHER_SENDERS;
+         bucket = buckets.computeIfAbsent(key, k -> new Bucket(nowNanos));
+      }
+
+      while (true) {
+         long arrival = bucket.arrival.get();
+         // a bucket that has been quiet is full, it does not bank more than the burst
+         long start = arrival - nowNanos < 0 ? nowNanos : arrival;
+         if (start - nowNanos > burstToleranceNanos)
+            return sampleRate > 0 && bucket.overLimit.incrementAndGet() % sampleRate == 0;
+         if (bucket.arrival.compareAndSet(arrival, start + emissionIntervalNanos))
+            return true;
+      }
+   }
+
+   /**
+    * Drops the buckets of senders quiet for longer than the idle timeout. Runs
+    * at most every half timeout, on whichever thread gets there first.
+    */
+   private void sweep(long nowNanos) {
+      long last = lastSweepNanos.get();
+      if (nowNanos - last < idleTimeoutNanos / 2 || !lastSweepNanos.compareAndSet(last, nowNanos))
+         return;
+      buckets.values().removeIf(bucket -> nowNanos - bucket.arrival.get() > idleTimeoutNanos);
+   }
+
+   public int size() {
+      return buckets.size();
+   }
+
+   private static class Bucket {
+      // theoretical arrival time of the sender's next packet
+      final AtomicLong arrival;
+      // packets of the sender over its rate, for the SAMPLE policy
+      final AtomicLong overLimit = new AtomicLong();
+
+      Bucket(long nowNanos) {
+         this.arrival = new AtomicLong(nowNanos);
+      }
+   }
+}
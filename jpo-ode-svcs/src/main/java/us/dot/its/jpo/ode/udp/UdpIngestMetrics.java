@@ -0,0 +1,375 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+/**
+ * Counters for the UDP receive path, shared by every receiver. Updated from
+ * the receive and processing threads without locking; readers get a best
+ * effort snapshot.
+ */
+public class UdpIngestMetrics implements UdpIngestMetricsMXBean {
+
+   public static final String OBJECT_NAME = "us.dot.its.jpo.ode:type=UdpIngestMetrics";
+
+   // Senders tracked individually, the rest are counted under OTHER_SENDERS
+   static final int MAX_TRACKED_SENDERS = 10000;
+   static final String OTHER_SENDERS = "other";
+
+   // Upper bounds of the latency histogram buckets in microseconds
+   private static final long[] LATENCY_BUCKETS_MICROS = { 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000,
+         100000, 250000, 500000, 1000000 };
+
+   private static final UdpIngestMetrics instance = new UdpIngestMetrics();
+
+   private final Map<SupportedMessageTypes, TypeCounters> typeCounters = new EnumMap<>(SupportedMessageTypes.class);
+   private final ConcurrentHashMap<String, SenderCounters> senderCounters = new ConcurrentHashMap<>();
+   // packets and read errors on the unified port that carry no supported message type
+   private final LongAdder unclassified = new LongAdder();
+   private final LongAdder untypedReceiveErrors = new LongAdder();
+
+   public static UdpIngestMetrics getInstance() {
+      return instance;
+   }
+
+   UdpIngestMetrics() {
+      for (SupportedMessageTypes type : SupportedMessageTypes.values()) {
+         typeCounters.put(type, new TypeCounters());
+      }
+   }
+
+   public void packetReceived(SupportedMessageTypes type, String senderIp, int bytes) {
+      TypeCounters counters = typeCounters.get(type);
+      counters.received.increment();
+      counters.bytes.add(bytes);
+
+      SenderCounters sender = sender(senderIp);
+      sender.received.increment();
+      sender.bytes.add(bytes);
+   }
+
+   /**
+    * Records a packet received on the unified port that carries no supported
+    * MessageFrame.
+    */
+   public void packetUnclassified(String senderIp, int bytes) {
+      unclassified.increment();
+      SenderCounters sender = sender(senderIp);
+      sender.received.increment();
+      sender.bytes.add(bytes);
+   }
+
+   /**
+    * Records a failed read on a port that is not tied to one message type.
+    */
+   public void untypedReceiveError() {
+      untypedReceiveErrors.increment();
+   }
+
+   private SenderCounters sender(String senderIp) {
+      SenderCounters sender = senderCounters.get(senderIp);
+      if (sender == null) {
+         String key = senderCounters.size() < MAX_TRACKED_SENDERS ? senderIp : OTHER_SENDERS;
+         sender = senderCounters.computeIfAbsent(key, k -> new SenderCounters());
+      }
+      return sender;
+   }
+
+   public void packetRejected(SupportedMessageTypes type) {
+      typeCounters.get(type).rejected.increment();
+   }
+
+   public void packetFailed(SupportedMessageTypes type) {
+      typeCounters.get(type).failed.increment();
+   }
+
+   public void packetDuplicate(SupportedMessageTypes type) {
+      typeCounters.get(type).duplicates.increment();
+   }
+
+   /**
+    * Records a packet over its sender's rate that was dropped.
+    */
+   public void packetShed(SupportedMessageTypes type, String senderIp) {
+      typeCounters.get(type).shed.increment();
+      sender(senderIp).shed.increment();
+   }
+
+   /**
+    * Records a packet over its sender's rate that was published to the
+    * overflow topic.
+    */
+   public void packetDiverted(SupportedMessageTypes type, String senderIp) {
+      typeCounters.get(type).diverted.increment();
+      sender(senderIp).shed.increment();
+   }
+
+   /**
+    * Records a packet dropped because the producer had its limit of records
+    * in flight.
+    */
+   public void packetBackpressured(SupportedMessageTypes type) {
+      typeCounters.get(type).backpressured.increment();
+   }
+
+   public void packetTruncated(SupportedMessageTypes type) {
+      typeCounters.get(type).truncated.increment();
+   }
+
+   public void receiveError(SupportedMessageTypes type) {
+      typeCounters.get(type).receiveErrors.increment();
+   }
+
+   /**
+    * Records a packet handed to the producer, along with the time since it was
+    * read off the socket.
+    */
+   public void packetPublished(SupportedMessageTypes type, long receivedNanos) {
+      TypeCounters counters = typeCounters.get(type);
+      counters.published.increment();
+      counters.latency[bucketOf((System.nanoTime() - receivedNanos) / 1000L)].increment();
+   }
+
+   private static int bucketOf(long micros) {
+      for (int i = 0; i < LATENCY_BUCKETS_MICROS.length; i++) {
+         if (micros <= LATENCY_BUCKETS_MICROS[i])
+            return i;
+      }
+      return LATENCY_BUCKETS_MICROS.length;
+   }
+
+   private static String bucketLabel(int bucket) {
+      return bucket < LATENCY_BUCKETS_MICROS.length ? "le" + LATENCY_BUCKETS_MICROS[bucket] + "us" : "inf";
+   }
+
+   private Map<String, Long> byType(ToLongFunction<TypeCounters> counter) {
+      Map<String, Long> result = new LinkedHashMap<>();
+      typeCounters.forEach((type, counters) -> result.put(type.name(), counter.applyAsLong(counters)));
+      return result;
+   }
+
+   private static Map<String, Long> histogram(long[] counts) {
+      Map<String, Long> result = new LinkedHashMap<>();
+      for (int i = 0; i < counts.length; i++) {
+         result.put(bucketLabel(i), counts[i]);
+      }
+      return result;
+   }
+
+   @Override
+   public Map<String, Long> getPacketsReceived() {
+      return byType(c -> c.received.sum());
+   }
+
+   @Override
+   public Map<String, Long> getBytesReceived() {
+      return byType(c -> c.bytes.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsRejected() {
+      return byType(c -> c.rejected.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsFailed() {
+      return byType(c -> c.failed.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsPublished() {
+      return byType(c -> c.published.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsDuplicate() {
+      return byType(c -> c.duplicates.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsShed() {
+      return byType(c -> c.shed.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsDiverted() {
+      return byType(c -> c.diverted.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsBackpressured() {
+      return byType(c -> c.backpressured.sum());
+   }
+
+   @Override
+   public Map<String, Long> getPacketsTruncated() {
+      return byType(c -> c.truncated.sum());
+   }
+
+   @Override
+   public Map<String, Long> getReceiveErrors() {
+      return byType(c -> c.receiveErrors.sum());
+   }
+
+   @Override
+   public long getPacketsUnclassified() {
+      return unclassified.sum();
+   }
+
+   @Override
+   public long getUntypedReceiveErrors() {
+      return untypedReceiveErrors.sum();
+   }
+
+   @Override
+   public Map<String, Long> getPendingPackets() {
+      return byType(TypeCounters::pending);
+   }
+
+   @Override
+   public Map<String, Long> getPacketsReceivedBySender() {
+      Map<String, Long> result = new LinkedHashMap<>();
+      senderCounters.forEach((sender, counters) -> result.put(sender, counters.received.sum()));
+      return result;
+   }
+
+   @Override
+   public Map<String, Long> getPacketsShedBySender() {
+      Map<String, Long> result = new LinkedHashMap<>();
+      senderCounters.forEach((sender, counters) -> result.put(sender, counters.shed.sum()));
+      return result;
+   }
+
+   public Map<String, Long> getBytesReceivedBySender() {
+      Map<String, Long> result = new LinkedHashMap<>();
+      senderCounters.forEach((sender, counters) -> result.put(sender, counters.bytes.sum()));
+      return result;
+   }
+
+   @Override
+   public Map<String, Long> getPublishLatencyHistogram() {
+      long[] counts = new long[LATENCY_BUCKETS_MICROS.length + 1];
+      for (TypeCounters counters : typeCounters.values()) {
+         for (int i = 0; i < counts.length; i++) {
+            counts[i] += counters.latency[i].sum();
+         }
+      }
+      return histogram(counts);
+   }
+
+   public Map<String, Long> getPublishLatencyHistogram(SupportedMessageTypes type) {
+      LongAdder[] latency = typeCounters.get(type).latency;
+      long[] counts = new long[latency.length];
+      for (int i = 0; i < counts.length; i++) {
+         counts[i] = latency[i].sum();
+      }
+      return histogram(counts);
+   }
+
+   /**
+    * Everything in one tree, per message type and per sender, as served by the
+    * REST endpoint.
+    */
+   public Map<String, Object> snapshot() {
+      Map<String, Object> types = new LinkedHashMap<>();
+      typeCounters.forEach((type, counters) -> {
+         Map<String, Object> entry = new LinkedHashMap<>();
+         entry.put("packetsReceived", counters.received.sum());
+         entry.put("bytesReceived", counters.bytes.sum());
+         entry.put("packetsRejected", counters.rejected.sum());
+         entry.put("packetsFailed", counters.failed.sum());
+         entry.put("packetsTruncated", counters.truncated.sum());
+         entry.put("packetsDuplicate", counters.duplicates.sum());
+         entry.put("packetsShed", counters.shed.sum());
+         entry.put("packetsDiverted", counters.diverted.sum());
+         entry.put("packetsBackpressured", counters.backpressured.sum());
+         entry.put("packetsPublished", counters.published.sum());
+         entry.put("receiveErrors", counters.receiveErrors.sum());
+         entry.put("pendingPackets", counters.pending());
+         entry.put("publishLatencyHistogram", getPublishLatencyHistogram(type));
+         types.put(type.name(), entry);
+      });
+
+      Map<String, Object> senders = new LinkedHashMap<>();
+      senderCounters.forEach((sender, counters) -> {
+         Map<String, Object> entry = new LinkedHashMap<>();
+         entry.put("packetsReceived", counters.received.sum());
+         entry.put("bytesReceived", counters.bytes.sum());
+         entry.put("packetsShed", counters.shed.sum());
+         senders.put(sender, entry);
+      });
+
+      Map<String, Object> unclassifiedEntry = new LinkedHashMap<>();
+      unclassifiedEntry.put("packetsReceived", unclassified.sum());
+      unclassifiedEntry.put("receiveErrors", untypedReceiveErrors.sum());
+
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("messageTypes", types);
+      result.put("unclassified", unclassifiedEntry);
+      result.put("senders", senders);
+      return result;
+   }
+
+   @Override
+   public void doReset() {
+      typeCounters.values().forEach(TypeCounters::reset);
+      senderCounters.clear();
+      unclassified.reset();
+      untypedReceiveErrors.reset();
+   }
+
+   private static class TypeCounters {
+      final LongAdder received = new LongAdder();
+      final LongAdder bytes = new LongAdder();
+      final LongAdder rejected = new LongAdder();
+      final LongAdder failed = new LongAdder();
+      final LongAdder truncated = new LongAdder();
+      final LongAdder duplicates = new LongAdder();
+      final LongAdder shed = new LongAdder();
+      final LongAdder diverted = new LongAdder();
+      final LongAdder backpressured = new LongAdder();
+      final LongAdder published = new LongAdder();
+      final LongAdder receiveErrors = new LongAdder();
+      final LongAdder[] latency = new LongAdder[LATENCY_BUCKETS_MICROS.length + 1];
+
+      TypeCounters() {
+         for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LongAdder();
+         }
+      }
+
+      void reset() {
+         received.reset();
+         bytes.reset();
+         rejected.reset();
+         failed.reset();
+         truncated.reset();
+         duplicates.reset();
+         shed.reset();
+         diverted.reset();
+         backpressured.reset();
+         published.reset();
+         receiveErrors.reset();
+         for (LongAdder bucket : latency) {
+            bucket.reset();
+         }
+      }
+
+      long pending() {
+         return Math.max(0, received.sum() - published.sum() - rejected.sum() - failed.sum() - truncated.sum()
+               - duplicates.sum() - shed.sum() - diverted.sum() - backpressured.sum());
+      }
+   }
+
+   private static class SenderCounters {
+      final LongAdder received = new LongAdder();
+      final LongAdder bytes = new LongAdder();
+      final LongAdder shed = new LongAdder();
+   }
+}
@@ -0,0 +1,61 @@
+package us.dot.its.jpo.ode.udp;
+
+import java.util.Map;
+
+/**
+ * JMX view of the UDP ingest counters, registered as
+ * us.dot.its.jpo.ode:type=UdpIngestMetrics. Maps are keyed by message type
+ * unless stated otherwise.
+ */
+public interface UdpIngestMetricsMXBean {
+
+   public Map<String, Long> getPacketsReceived();
+
+   public Map<String, Long> getBytesReceived();
+
+   public Map<String, Long> getPacketsRejected();
+
+   public Map<String, Long> getPacketsFailed();
+
+   public Map<String, Long> getPacketsPublished();
+
+   // datagrams larger than the configured buffer size, dropped
+   public Map<String, Long> getPacketsTruncated();
+
+   // copies of a message already received from another sender, suppressed
+   public Map<String, Long> getPacketsDuplicate();
+
+   // packets over their sender's rate, dropped
+   public Map<String, Long> getPacketsShed();
+
+   // packets over their sender's rate, published to the overflow topic
+   public Map<String, Long> getPacketsDiverted();
+
+   // packets dropped while the producer had its limit of records in flight
+   public Map<String, Long> getPacketsBackpressured();
+
+   public Map<String, Long> getReceiveErrors();
+
+   // packets on the unified port that carry no supported message type
+   public long getPacketsUnclassified();
+
+   // failed reads on the unified port
+   public long getUntypedReceiveErrors();
+
+   // received packets not yet published, rejected, truncated, suppressed, shed, dropped or failed
+   public Map<String, Long> getPendingPackets();
+
+   // packets received per sender IP
+   public Map<String, Long> getPacketsReceivedBySender();
+
+   // packets shed or diverted per sender IP
+   public Map<String, Long> getPacketsShedBySender();
+
+   // receive-to-send latency over all message types, keyed by bucket upper bound
+   public Map<String, Long> getPublishLatencyHistogram();
+
+   // any method starting with get and set are considered
+   // as attributes getter and setter methods, so I am
+   // using do* for operation.
+   public void doReset();
+}
@@ -1,102 +1,144 @@
 package us.dot.its.jpo.ode.udp.bsm;
 
-import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import us.dot.its.jpo.ode.OdeProperties;
-import us.dot.its.jpo.ode.coder.StringPublisher;
-import us.dot.its.jpo.ode.model.OdeAsn1Data;
 import us.dot.its.jpo.ode.model.OdeAsn1Payload;
 import us.dot.its.jpo.ode.model.OdeBsmMetadata;
 import us.dot.its.jpo.ode.model.OdeBsmMetadata.BsmSource;
 import us.dot.its.jpo.ode.model.OdeLogMetadata.RecordType;
 import us.dot.its.jpo.ode.model.OdeLogMetadata.SecurityResultCode;
 import us.dot.its.jpo.ode.model.OdeLogMsgMetadataLocation;
+import us.dot.its.jpo.ode.model.OdeMsgMetadata;
 import us.dot.its.jpo.ode.model.OdeMsgMetadata.GeneratedBy;
 import us.dot.its.jpo.ode.model.ReceivedMessageDetails;
 import us.dot.its.jpo.ode.model.RxSource;
 import us.dot.its.jpo.ode.udp.AbstractUdpReceiverPublisher;
+import us.dot.its.jpo.ode.udp.DuplicateFilter;
+import us.dot.its.jpo.ode.udp.ReceivedDatagram;
 import us.dot.its.jpo.ode.uper.UperUtil;
-import us.dot.its.jpo.ode.util.JsonUtils;
 
 public class BsmReceiver extends AbstractUdpReceiverPublisher {
 
-   private static Logger logger = LoggerFactory.getLogger(BsmReceiver.class);
+   private static final Logger logger = LoggerFactory.getLogger(BsmReceiver.class);
 
-   private StringPublisher bsmPublisher;
+   private final DuplicateFilter duplicateFilter;
 
    @Autowired
    public BsmReceiver(OdeProperties odeProps) {
       this(odeProps, odeProps.getBsmReceiverPort(), odeProps.getBsmBufferSize());
-
-      this.bsmPublisher = new StringPublisher(odeProps);
+      setSocketCount(odeProps.getBsmReceiverSocketCount());
+      setSocketReceiveBufferSize(odeProps.getBsmSocketReceiveBufferSize());
+      setSenderRateLimit(odeProps.getBsmSenderRateLimit());
    }
 
    public BsmReceiver(OdeProperties odeProps, int port, int bufferSize) {
       super(odeProps, port, bufferSize);
+      this.duplicateFilter = new DuplicateFilter(
+         DuplicateFilter.Mode.fromString(odeProps.getBsmDuplicateSuppression()),
+         odeProps.getBsmDuplicateWindowMs(),
+         odeProps.getBsmDuplicateMaxEntries(),
+         this::publishMerged);
+      this.duplicateFilter.start("BsmDuplicateFilter");
+   }
+
+   /**
+    * Suppresses copies of a BSM already received from another RSU within the
+    * duplicate window, when duplicate suppression is on.
+    */
+   @Override
+   protected boolean accept(ByteBuffer payload, ReceivedDatagram datagram) {
+      switch (duplicateFilter.offer(payload, datagram.getSenderIp(), datagram.getReceivedNanos())) {
+      case DUPLICATE:
+         metrics.packetDuplicate(getMessageType());
+         return false;
+      case HELD:
+         // published by publishMerged once the window closes
+         return false;
+      default:
+         return true;
+      }
+   }
+
+   /**
+    * Publishes the BSMs still held for the duplicate window before stopping.
+    */
+   @Override
+   public void stop() {
+      super.stop();
+      duplicateFilter.stop();
+   }
 
-      this.bsmPublisher = new StringPublisher(odeProps);
+   /**
+    * Publishes a BSM held for the duplicate window with every RSU that
+    * forwarded a copy listed in its ReceivedMessageDetails, unless the
+    * producer is at its in-flight limit.
+    */
+   void publishMerged(byte[] payload, List<String> senderIps, long receivedNanos) {
+      if (isBackpressured(senderIps.get(0)))
+         return;
+      try {
+         OdeAsn1Payload bsmPayload = new OdeAsn1Payload(payload);
+         OdeBsmMetadata bsmMetadata = (OdeBsmMetadata) createMetadata(bsmPayload, senderIps.get(0));
+         bsmMetadata.getReceivedMessageDetails().setRxSourceIps(senderIps);
+
+         String key = keyOf(ByteBuffer.wrap(payload), senderIps.get(0));
+         publish(bsmMetadata, bsmPayload, payload, getPublishTopic(), key);
+         metrics.packetPublished(getMessageType(), receivedNanos);
+      } catch (RuntimeException e) {
+         metrics.packetFailed(getMessageType());
+         logger.error("Error publishing merged BSM", e);
+      }
+   }
+
+   public DuplicateFilter getDuplicateFilter() {
+      return duplicateFilter;
+   }
+
+   @Override
+   public UperUtil.SupportedMessageTypes getMessageType() {
+      return UperUtil.SupportedMessageTypes.BSM;
+   }
+
+   @Override
+   protected String getPublishTopic() {
+      return odeProperties.getKafkaTopicOdeRawEncodedBSMJson();
    }
 
    @Override
-   public void run() {
-
-      logger.debug("BSM UDP Receiver Service started.");
-
-      byte[] buffer = new byte[bufferSize];
-
-      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-
-      do {
-         try {
-            logger.debug("Waiting for UDP BSM packets...");
-            socket.receive(packet);
-            if (packet.getLength() > 0) {
-               senderIp = packet.getAddress().getHostAddress();
-               senderPort = packet.getPort();
-               logger.debug("Packet received from {}:{}", senderIp, senderPort);
-
-               // Create OdeMsgPayload and OdeLogMetadata objects and populate them
-               OdeAsn1Payload bsmPayload = super.getPayloadHexString(packet, UperUtil.SupportedMessageTypes.BSM);
-               if (bsmPayload == null)
-                  continue;
-               OdeBsmMetadata bsmMetadata = new OdeBsmMetadata(bsmPayload);
-
-               // Set BSM Metadata values that can be assumed from the UDP endpoint
-               ZonedDateTime utc = ZonedDateTime.now(ZoneOffset.UTC);
-               String timestamp = utc.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
-               bsmMetadata.setOdeReceivedAt(timestamp);
-
-               ReceivedMessageDetails receivedMessageDetails = new ReceivedMessageDetails();
-               OdeLogMsgMetadataLocation locationData = new OdeLogMsgMetadataLocation(
-                  "unavailable", 
-                  "unavailable", 
-                  "unavailable", 
-                  "unavailable", 
-                  "unavailable");
-					receivedMessageDetails.setRxSource(RxSource.RSU);
-               receivedMessageDetails.setLocationData(locationData);
-               bsmMetadata.setReceivedMessageDetails(receivedMessageDetails);
-
-               bsmMetadata.setOriginIp(senderIp);
-               bsmMetadata.setBsmSource(BsmSource.EV);
-               bsmMetadata.setRecordType(RecordType.bsmTx);
-               bsmMetadata.setRecordGeneratedBy(GeneratedBy.OBU);
-               bsmMetadata.setSecurityResultCode(SecurityResultCode.success);
-
-               // Submit JSON to the OdeRawEncodedMessageJson Kafka Topic
-               bsmPublisher.publish(JsonUtils.toJson(new OdeAsn1Data(bsmMetadata, bsmPayload), false),
-                  bsmPublisher.getOdeProperties().getKafkaTopicOdeRawEncodedBSMJson());
-            }
-         } catch (Exception e) {
-            logger.error("Error receiving packet", e);
-         }
-      } while (!isStopped());
+   protected OdeMsgMetadata createMetadata(OdeAsn1Payload bsmPayload, String senderIp) {
+      OdeBsmMetadata bsmMetadata = new OdeBsmMetadata(bsmPayload);
+
+      // Set BSM Metadata values that can be assumed from the UDP endpoint
+      ZonedDateTime utc = ZonedDateTime.now(ZoneOffset.UTC);
+      String timestamp = utc.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
+      bsmMetadata.setOdeReceivedAt(timestamp);
+
+      ReceivedMessageDetails receivedMessageDetails = new ReceivedMessageDetails();
+      OdeLogMsgMetadataLocation locationData = new OdeLogMsgMetadataLocation(
+         "unavailable", 
+         "unavailable", 
+         "unavailable", 
+         "unavailable", 
+         "unavailable");
+      receivedMessageDetails.setRxSource(RxSource.RSU);
+      receivedMessageDetails.setLocationData(locationData);
+      bsmMetadata.setReceivedMessageDetails(receivedMessageDetails);
+
+      bsmMetadata.setOriginIp(senderIp);
+      bsmMetadata.setBsmSource(BsmSource.EV);
+      bsmMetadata.setRecordType(RecordType.bsmTx);
+      bsmMetadata.setRecordGeneratedBy(GeneratedBy.OBU);
+      bsmMetadata.setSecurityResultCode(SecurityResultCode.success);
+
+      return bsmMetadata;
    }
 }
@@ -0,0 +1,268 @@
+package us.dot.its.jpo.ode.udp.controller;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.dot.its.jpo.ode.udp.AbstractUdpReceiver;
+import us.dot.its.jpo.ode.udp.ReceiveBufferPool;
+import us.dot.its.jpo.ode.udp.ReceivedDatagram;
+
+/**
+ * Multiplexed UDP ingest. Every submitted receiver gets a non-blocking
+ * {@link DatagramChannel} registered with one of a fixed set of selectors. The
+ * selector threads only drain the channels; the received packets are handed to
+ * a shared processing pool which runs the receivers' header stripping,
+ * enrichment and publishing.
+ */
+public class SelectorServiceManager implements UdpManager {
+
+   private static final Logger logger = LoggerFactory.getLogger(SelectorServiceManager.class);
+
+   // Datagrams read from one channel before moving on to the next ready channel
+   private static final int MAX_DATAGRAMS_PER_KEY = 64;
+
+   private final SelectorLoop[] loops;
+   private final ExecutorService processingPool;
+   private int nextLoop = 0;
+
+   public SelectorServiceManager(int selectorThreads, int processingThreads, int processingQueueSize) {
+      this.processingPool = new ThreadPoolExecutor(processingThreads, processingThreads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(processingQueueSize), new UdpServiceThreadFactory("UdpProcessor"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+      UdpServiceThreadFactory selectorThreadFactory = new UdpServiceThreadFactory("UdpSelector");
+      this.loops = new SelectorLoop[selectorThreads];
+      for (int i = 0; i < selectorThreads; i++) {
+         try {
+            loops[i] = new SelectorLoop(Selector.open());
+         } catch (IOException e) {
+            throw new IllegalStateException("Unable to open UDP selector", e);
+         }
+         selectorThreadFactory.newThread(loops[i]).start();
+      }
+   }
+
+   /**
+    * Opens the receiver's channels and spreads them over the selector loops. A
+    * receiver configured with more than one socket gets that many channels bound
+    * to the same port with SO_REUSEPORT, so the kernel balances its senders over
+    * several loops. A channel that fails to open is logged and the receiver
+    * keeps the channels that did open.
+    */
+   @Override
+   public synchronized void submit(AbstractUdpReceiver rec) {
+      int socketCount = rec.getSocketCount();
+      for (int i = 0; i < socketCount; i++) {
+         try {
+            DatagramChannel channel = openChannel(rec, socketCount > 1);
+            logger.info("Created UDP channel bound to port {} for {}", rec.getPort(), rec.getName());
+
+            SelectorLoop loop = loops[nextLoop];
+            nextLoop = (nextLoop + 1) % loops.length;
+            loop.register(channel, rec);
+         } catch (IOException e) {
+            logger.error("Error creating channel " + (i + 1) + " of " + socketCount + " with port " + rec.getPort(),
+                  e);
+         }
+      }
+   }
+
+   private static DatagramChannel openChannel(AbstractUdpReceiver rec, boolean reusePort)
+         throws IOException {
+      int port = rec.getPort();
+      DatagramChannel channel = DatagramChannel.open();
+      try {
+         if (reusePort) {
+            if (channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+               channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            } else {
+               logger.warn("SO_REUSEPORT is not supported, only one channel can bind port {}", port);
+            }
+         }
+         if (rec.getSocketReceiveBufferSize() > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, rec.getSocketReceiveBufferSize());
+            rec.checkReceiveBufferSize(channel.getOption(StandardSocketOptions.SO_RCVBUF));
+         }
+         channel.bind(new InetSocketAddress(port));
+         channel.configureBlocking(false);
+      } catch (IOException e) {
+         channel.close();
+         throw e;
+      }
+      return channel;
+   }
+
+   /**
+    * Stops the selector loops, which close every registered channel, and the
+    * processing pool once it has worked off the packets already received.
+    */
+   @Override
+   public void shutdown() {
+      for (SelectorLoop loop : loops) {
+         loop.stop();
+      }
+      processingPool.shutdown();
+   }
+
+   private class SelectorLoop implements Runnable {
+
+      private final Selector selector;
+      private final Queue<Registration> pending = new ConcurrentLinkedQueue<>();
+      private volatile boolean running = true;
+
+      SelectorLoop(Selector selector) {
+         this.selector = selector;
+      }
+
+      void register(DatagramChannel channel, AbstractUdpReceiver rec) {
+         pending.add(new Registration(channel, rec));
+         selector.wakeup();
+      }
+
+      void stop() {
+         running = false;
+         selector.wakeup();
+      }
+
+      @Override
+      public void run() {
+         while (running) {
+            try {
+               selector.select();
+               registerPending();
+
+               Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+               while (keys.hasNext()) {
+                  SelectionKey key = keys.next();
+                  keys.remove();
+                  if (key.isValid() && key.isReadable()) {
+                     drain(key);
+                  }
+               }
+            } catch (Exception e) {
+               logger.error("Error receiving packet", e);
+            }
+         }
+
+         try {
+            for (SelectionKey key : selector.keys()) {
+               key.channel().close();
+            }
+            // channels submitted after the last select were never registered
+            Registration registration;
+            while ((registration = pending.poll()) != null) {
+               registration.channel.close();
+            }
+            selector.close();
+         } catch (IOException e) {
+            logger.error("Error closing UDP selector", e);
+         }
+      }
+
+      private void registerPending() throws IOException {
+         Registration registration;
+         while ((registration = pending.poll()) != null) {
+            registration.channel.register(selector, SelectionKey.OP_READ, registration.receiver);
+         }
+      }
+
+      /**
+       * Reads the datagrams already queued on the channel, each into a pooled
+       * direct buffer that goes back to the pool once the datagram is processed.
+       * Receivers in batch mode get the datagrams handed over in batches of up to
+       * their batch size, the others one at a time.
+       */
+      private void drain(SelectionKey key) throws IOException {
+         DatagramChannel channel = (DatagramChannel) key.channel();
+         AbstractUdpReceiver rec = (AbstractUdpReceiver) key.attachment();
+         ReceiveBufferPool pool = rec.getBufferPool();
+         int batchSize = rec.getBatchSize();
+         List<ReceivedDatagram> batch = batchSize > 1 ? new ArrayList<>(batchSize) : null;
+
+         for (int i = 0; i < MAX_DATAGRAMS_PER_KEY; i++) {
+            ByteBuffer buffer = pool.acquire();
+            SocketAddress sender;
+            try {
+               sender = channel.receive(buffer);
+            } catch (IOException e) {
+               pool.release(buffer);
+               throw e;
+            }
+            buffer.flip();
+            if (sender == null || !buffer.hasRemaining()) {
+               pool.release(buffer);
+               if (sender == null)
+                  break;
+               continue;
+            }
+
+            ReceivedDatagram datagram = new ReceivedDatagram(buffer, (InetSocketAddress) sender, System.nanoTime());
+            rec.countReceived(datagram);
+            if (batch == null) {
+               processingPool.execute(() -> {
+                  try {
+                     rec.processDatagram(datagram);
+                  } catch (Exception e) {
+                     logger.error("Error processing packet", e);
+                  } finally {
+                     pool.release(buffer);
+                  }
+               });
+            } else {
+               batch.add(datagram);
+               if (batch.size() >= batchSize) {
+                  submitBatch(rec, pool, batch);
+                  batch = new ArrayList<>(batchSize);
+               }
+            }
+         }
+
+         if (batch != null && !batch.isEmpty()) {
+            submitBatch(rec, pool, batch);
+         }
+      }
+
+      private void submitBatch(AbstractUdpReceiver rec, ReceiveBufferPool pool,
+            List<ReceivedDatagram> batch) {
+         processingPool.execute(() -> {
+            try {
+               rec.processBatch(batch);
+            } catch (Exception e) {
+               logger.error("Error processing batch", e);
+            } finally {
+               for (ReceivedDatagram datagram : batch) {
+                  pool.release(datagram.getData());
+               }
+            }
+         });
+      }
+   }
+
+   private static class Registration {
+      final DatagramChannel channel;
+      final AbstractUdpReceiver receiver;
+
+      Registration(DatagramChannel channel, AbstractUdpReceiver receiver) {
+         this.channel = channel;
+         this.receiver = receiver;
+      }
+   }
+}
@@ -1,19 +1,48 @@
 package us.dot.its.jpo.ode.udp.controller;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
-import us.dot.its.jpo.ode.udp.AbstractUdpReceiverPublisher;
+import us.dot.its.jpo.ode.udp.AbstractUdpReceiver;
 
 public class ServiceManager implements UdpManager{
 
    private ThreadFactory threadFactory;
+   private final List<ExecutorService> pools = new CopyOnWriteArrayList<>();
 
    public ServiceManager(ThreadFactory tf) {
       this.threadFactory = tf;
    }
 
-   public void submit(AbstractUdpReceiverPublisher rec) {
-      Executors.newSingleThreadExecutor(threadFactory).submit(rec);
+   /**
+    * Runs the receiver's blocking loop once per configured socket, each on its
+    * own thread.
+    */
+   public void submit(AbstractUdpReceiver rec) {
+      int socketCount = rec.getSocketCount();
+      if (socketCount > 1) {
+         ExecutorService pool = Executors.newFixedThreadPool(socketCount, threadFactory);
+         for (int i = 0; i < socketCount; i++) {
+            pool.submit(rec);
+         }
+         pools.add(pool);
+      } else {
+         ExecutorService pool = Executors.newSingleThreadExecutor(threadFactory);
+         pool.submit(rec);
+         pools.add(pool);
+      }
+   }
+
+   /**
+    * Interrupts the receive loops. A loop blocked in receive ends with its
+    * next packet, once its receiver is stopped.
+    */
+   @Override
+   public void shutdown() {
+      pools.forEach(ExecutorService::shutdownNow);
+      pools.clear();
    }
 }
@@ -1,9 +1,14 @@
 package us.dot.its.jpo.ode.udp.controller;
 
-import us.dot.its.jpo.ode.udp.AbstractUdpReceiverPublisher;
+import us.dot.its.jpo.ode.udp.AbstractUdpReceiver;
 
 public interface UdpManager {
 
-   public void submit(AbstractUdpReceiverPublisher rec);
+   public void submit(AbstractUdpReceiver rec);
+
+   /**
+    * Stops the threads and closes the sockets of every submitted receiver.
+    */
+   public void shutdown();
 
 }
@@ -1,11 +1,16 @@
 package us.dot.its.jpo.ode.udp.controller;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 
+import jakarta.annotation.PreDestroy;
 import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.udp.AbstractUdpReceiver;
 import us.dot.its.jpo.ode.udp.bsm.BsmReceiver;
 import us.dot.its.jpo.ode.udp.tim.TimReceiver;
 import us.dot.its.jpo.ode.udp.ssm.SsmReceiver;
@@ -13,6 +18,7 @@ import us.dot.its.jpo.ode.udp.srm.SrmReceiver;
 import us.dot.its.jpo.ode.udp.spat.SpatReceiver;
 import us.dot.its.jpo.ode.udp.map.MapReceiver;
 import us.dot.its.jpo.ode.udp.psm.PsmReceiver;
+import us.dot.its.jpo.ode.udp.unified.UnifiedReceiver;
 
 /**
  * Centralized UDP service dispatcher.
@@ -23,36 +29,69 @@ public class UdpServicesController {
 
    private Logger logger = LoggerFactory.getLogger(UdpServicesController.class);
 
+   private final UdpManager rm;
+   private final List<AbstractUdpReceiver> receivers = new ArrayList<>();
+
    @Autowired
    public UdpServicesController(OdeProperties odeProps) {
       super();
 
       // Start the UDP receivers
-      ServiceManager rm = new ServiceManager(new UdpServiceThreadFactory("UdpReceiverManager"));
+      if (odeProps.isUdpSelectorEnabled()) {
+         logger.info("Using selector based UDP ingest with {} I/O thread(s) and {} processing thread(s)",
+               odeProps.getUdpSelectorThreads(), odeProps.getUdpProcessingThreads());
+         rm = new SelectorServiceManager(odeProps.getUdpSelectorThreads(), odeProps.getUdpProcessingThreads(),
+               odeProps.getUdpProcessingQueueSize());
+      } else {
+         rm = new ServiceManager(new UdpServiceThreadFactory("UdpReceiverManager"));
+      }
 
       logger.debug("Starting UDP receiver services...");
 
-      // BSM internal
-      rm.submit(new BsmReceiver(odeProps));
+      // Every supported message type on one port
+      if (odeProps.isUnifiedReceiverEnabled()) {
+         submit(new UnifiedReceiver(odeProps));
+      }
+
+      if (odeProps.isUdpTypedReceiversEnabled()) {
+         // BSM internal
+         submit(new BsmReceiver(odeProps));
+
+         // TIM internal
+         submit(new TimReceiver(odeProps));
 
-      // TIM internal
-      rm.submit(new TimReceiver(odeProps));
+         // SSM internal port
+         submit(new SsmReceiver(odeProps));
 
-      // SSM internal port
-      rm.submit(new SsmReceiver(odeProps));
-      
-      // SRM internal port
-      rm.submit(new SrmReceiver(odeProps));
+         // SRM internal port
+         submit(new SrmReceiver(odeProps));
 
-      // SPAT internal port
-      rm.submit(new SpatReceiver(odeProps));
+         // SPAT internal port
+         submit(new SpatReceiver(odeProps));
 
-      // MAP internal port
-      rm.submit(new MapReceiver(odeProps));
+         // MAP internal port
+         submit(new MapReceiver(odeProps));
 
-      // PSM internal port
-      rm.submit(new PsmReceiver(odeProps));
+         // PSM internal port
+         submit(new PsmReceiver(odeProps));
+      }
 
       logger.debug("UDP receiver services started.");
    }
+
+   private void submit(AbstractUdpReceiver rec) {
+      receivers.add(rec);
+      rm.submit(rec);
+   }
+
+   /**
+    * Stops the receivers, which publishes what they still hold, then releases
+    * their threads and ports.
+    */
+   @PreDestroy
+   public void stop() {
+      logger.info("Stopping UDP receiver services...");
+      receivers.forEach(AbstractUdpReceiver::stop);
+      rm.shutdown();
+   }
 }
@@ -1,84 +1,59 @@
 package us.dot.its.jpo.ode.udp.tim;
 
-import java.net.DatagramPacket;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import us.dot.its.jpo.ode.coder.StringPublisher;
-import us.dot.its.jpo.ode.model.OdeAsn1Data;
 import us.dot.its.jpo.ode.model.OdeAsn1Payload;
 import us.dot.its.jpo.ode.model.OdeLogMetadata.RecordType;
 import us.dot.its.jpo.ode.model.OdeLogMetadata.SecurityResultCode;
+import us.dot.its.jpo.ode.model.OdeMsgMetadata;
 import us.dot.its.jpo.ode.model.OdeMsgMetadata.GeneratedBy;
 import us.dot.its.jpo.ode.model.OdeTimMetadata;
 import us.dot.its.jpo.ode.OdeProperties;
 import us.dot.its.jpo.ode.udp.AbstractUdpReceiverPublisher;
 import us.dot.its.jpo.ode.uper.UperUtil;
-import us.dot.its.jpo.ode.util.JsonUtils;
 
 public class TimReceiver extends AbstractUdpReceiverPublisher {
-   private static Logger logger = LoggerFactory.getLogger(TimReceiver.class);
-
-   private StringPublisher timPublisher;
 
    @Autowired
    public TimReceiver(OdeProperties odeProps) {
       this(odeProps, odeProps.getTimReceiverPort(), odeProps.getTimBufferSize());
-
-      this.timPublisher = new StringPublisher(odeProps);
+      setSocketCount(odeProps.getTimReceiverSocketCount());
+      setSocketReceiveBufferSize(odeProps.getTimSocketReceiveBufferSize());
+      setSenderRateLimit(odeProps.getTimSenderRateLimit());
    }
 
    public TimReceiver(OdeProperties odeProps, int port, int bufferSize) {
       super(odeProps, port, bufferSize);
-
-      this.timPublisher = new StringPublisher(odeProps);
    }
 
    @Override
-   public void run() {
-      logger.debug("TIM UDP Receiver Service started.");
-
-      byte[] buffer = new byte[bufferSize];
-
-      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+   public UperUtil.SupportedMessageTypes getMessageType() {
+      return UperUtil.SupportedMessageTypes.TIM;
+   }
 
-      do {
-         try {
-            logger.debug("Waiting for UDP TIM packets...");
-            socket.receive(packet);
-            if (packet.getLength() > 0) {
-               senderIp = packet.getAddress().getHostAddress();
-               senderPort = packet.getPort();
-               logger.debug("Packet received from {}:{}", senderIp, senderPort);
+   @Override
+   protected String getPublishTopic() {
+      return odeProperties.getKafkaTopicOdeRawEncodedTIMJson();
+   }
 
-               // Create OdeMsgPayload and OdeLogMetadata objects and populate them
-               OdeAsn1Payload timPayload = super.getPayloadHexString(packet, UperUtil.SupportedMessageTypes.TIM);
-               if (timPayload == null)
-                  continue;
-               OdeTimMetadata timMetadata = new OdeTimMetadata(timPayload);
+   @Override
+   protected OdeMsgMetadata createMetadata(OdeAsn1Payload timPayload, String senderIp) {
+      OdeTimMetadata timMetadata = new OdeTimMetadata(timPayload);
 
-               // Add header data for the decoding process
-               ZonedDateTime utc = ZonedDateTime.now(ZoneOffset.UTC);
-               String timestamp = utc.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
-               timMetadata.setOdeReceivedAt(timestamp);
+      // Add header data for the decoding process
+      ZonedDateTime utc = ZonedDateTime.now(ZoneOffset.UTC);
+      String timestamp = utc.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
+      timMetadata.setOdeReceivedAt(timestamp);
 
-               timMetadata.setOriginIp(senderIp);
-               timMetadata.setRecordType(RecordType.timMsg);
-               timMetadata.setRecordGeneratedBy(GeneratedBy.RSU);
-               timMetadata.setSecurityResultCode(SecurityResultCode.success);
+      timMetadata.setOriginIp(senderIp);
+      timMetadata.setRecordType(RecordType.timMsg);
+      timMetadata.setRecordGeneratedBy(GeneratedBy.RSU);
+      timMetadata.setSecurityResultCode(SecurityResultCode.success);
 
-               // Submit JSON to the OdeRawEncodedMessageJson Kafka Topic
-               timPublisher.publish(JsonUtils.toJson(new OdeAsn1Data(timMetadata, timPayload), false),
-                  timPublisher.getOdeProperties().getKafkaTopicOdeRawEncodedTIMJson());
-            }
-         } catch (Exception e) {
-            logger.error("Error receiving packet", e);
-         }
-      } while (!isStopped());
+      return timMetadata;
    }
 }
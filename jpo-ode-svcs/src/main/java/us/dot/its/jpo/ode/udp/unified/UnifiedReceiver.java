@@ -0,0 +1,176 @@
+package us.dot.its.jpo.ode.udp.unified;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.udp.AbstractUdpReceiver;
+import us.dot.its.jpo.ode.udp.AbstractUdpReceiverPublisher;
+import us.dot.its.jpo.ode.udp.ReceivedDatagram;
+import us.dot.its.jpo.ode.udp.bsm.BsmReceiver;
+import us.dot.its.jpo.ode.udp.map.MapReceiver;
+import us.dot.its.jpo.ode.udp.psm.PsmReceiver;
+import us.dot.its.jpo.ode.udp.spat.SpatReceiver;
+import us.dot.its.jpo.ode.udp.srm.SrmReceiver;
+import us.dot.its.jpo.ode.udp.ssm.SsmReceiver;
+import us.dot.its.jpo.ode.udp.tim.TimReceiver;
+import us.dot.its.jpo.ode.uper.UperUtil;
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+/**
+ * Receives every supported MessageFrame on one port. Each packet is classified
+ * once, by the messageId read from its UPER bytes, and handed to the receiver
+ * of that type, which strips it, attaches that type's metadata and publishes
+ * it to that type's raw encoded topic. The per-type receivers never open a
+ * socket of their own; they only supply the processing, so their rate limits
+ * and duplicate suppression still apply. A type's receiver, with its
+ * publishers and threads, is only created once a packet of that type arrives.
+ */
+public class UnifiedReceiver extends AbstractUdpReceiver {
+
+   private static final Logger logger = LoggerFactory.getLogger(UnifiedReceiver.class);
+
+   private final Map<SupportedMessageTypes, AbstractUdpReceiverPublisher> receivers = new ConcurrentHashMap<>();
+
+   @Autowired
+   public UnifiedReceiver(OdeProperties odeProps) {
+      this(odeProps, odeProps.getUnifiedReceiverPort(), odeProps.getUnifiedBufferSize());
+      setSocketCount(odeProps.getUnifiedReceiverSocketCount());
+      setSocketReceiveBufferSize(odeProps.getUnifiedSocketReceiveBufferSize());
+   }
+
+   public UnifiedReceiver(OdeProperties odeProps, int port, int bufferSize) {
+      super(odeProps, port, bufferSize);
+   }
+
+   /**
+    * The receiver that processes packets of the given type, null until a
+    * packet of that type was received.
+    */
+   public AbstractUdpReceiverPublisher getReceiver(SupportedMessageTypes type) {
+      return receivers.get(type);
+   }
+
+   private AbstractUdpReceiverPublisher receiverOf(SupportedMessageTypes type) {
+      return receivers.computeIfAbsent(type, this::createReceiver);
+   }
+
+   private AbstractUdpReceiverPublisher createReceiver(SupportedMessageTypes type) {
+      logger.info("Routing {} packets received on the unified port {}", type, port);
+      AbstractUdpReceiverPublisher receiver;
+      switch (type) {
+      case BSM:
+         receiver = new BsmReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getBsmSenderRateLimit());
+         break;
+      case TIM:
+         receiver = new TimReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getTimSenderRateLimit());
+         break;
+      case SPAT:
+         receiver = new SpatReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getSpatSenderRateLimit());
+         break;
+      case SSM:
+         receiver = new SsmReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getSsmSenderRateLimit());
+         break;
+      case SRM:
+         receiver = new SrmReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getSrmSenderRateLimit());
+         break;
+      case MAP:
+         receiver = new MapReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getMapSenderRateLimit());
+         break;
+      case PSM:
+         receiver = new PsmReceiver(odeProperties, port, bufferSize);
+         receiver.setSenderRateLimit(odeProperties.getPsmSenderRateLimit());
+         break;
+      default:
+         throw new IllegalArgumentException("No receiver for " + type);
+      }
+      return receiver;
+   }
+
+   /**
+    * The message type of the datagram, read from its bytes the first time it
+    * is asked for and kept on the datagram.
+    */
+   private static SupportedMessageTypes classify(ReceivedDatagram datagram) {
+      if (!datagram.isClassified()) {
+         datagram.setMessageType(UperUtil.determineMessageType(datagram.getData()));
+      }
+      return datagram.getMessageType();
+   }
+
+   @Override
+   public void countReceived(ReceivedDatagram datagram) {
+      SupportedMessageTypes type = classify(datagram);
+      if (type != null) {
+         receiverOf(type).countReceived(datagram);
+      } else {
+         metrics.packetUnclassified(datagram.getSenderIp(), datagram.getLength());
+      }
+   }
+
+   @Override
+   protected void countReceiveError() {
+      metrics.untypedReceiveError();
+   }
+
+   @Override
+   public void processDatagram(ReceivedDatagram datagram) {
+      SupportedMessageTypes type = classify(datagram);
+      if (type == null) {
+         logger.debug("Dropping packet from {} with no supported MessageFrame", datagram.getSenderIp());
+         return;
+      }
+      receiverOf(type).processDatagram(datagram);
+   }
+
+   /**
+    * Splits the batch by message type and publishes every type's share as one
+    * batch to its topic.
+    */
+   @Override
+   public void processBatch(List<ReceivedDatagram> datagrams) {
+      Map<SupportedMessageTypes, List<ReceivedDatagram>> batches = new EnumMap<>(SupportedMessageTypes.class);
+      for (ReceivedDatagram datagram : datagrams) {
+         SupportedMessageTypes type = classify(datagram);
+         if (type == null) {
+            logger.debug("Dropping packet from {} with no supported MessageFrame", datagram.getSenderIp());
+            continue;
+         }
+         batches.computeIfAbsent(type, t -> new ArrayList<>()).add(datagram);
+      }
+      batches.forEach((type, batch) -> {
+         try {
+            receiverOf(type).processBatch(batch);
+         } catch (RuntimeException e) {
+            logger.error("Error processing " + type + " batch", e);
+         }
+      });
+   }
+
+   /**
+    * Stops the per-type receivers created so far along with this one.
+    */
+   @Override
+   public void stop() {
+      super.stop();
+      receivers.values().forEach(AbstractUdpReceiver::stop);
+   }
+
+   @Override
+   public String getName() {
+      return "Unified";
+   }
+}
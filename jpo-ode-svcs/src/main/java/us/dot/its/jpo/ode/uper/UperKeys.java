@@ -0,0 +1,219 @@
+package us.dot.its.jpo.ode.uper;
+
+import java.nio.ByteBuffer;
+
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+/**
+ * Derives Kafka record keys from UPER encoded MessageFrames so that every
+ * message about one vehicle or one intersection lands on the same partition
+ * and keeps its order. The keys are read straight from the bits without
+ * decoding the message:
+ * <ul>
+ * <li>BSM: the coreData id, as 8 upper case hex digits</li>
+ * <li>SPaT: the id of the first IntersectionState</li>
+ * <li>MAP: the id of the first IntersectionGeometry</li>
+ * </ul>
+ * Other message types, and messages the fields cannot be read from, are keyed
+ * by the IP address of the RSU that forwarded them.
+ */
+public class UperKeys {
+
+    private UperKeys() {
+    }
+
+    /**
+     * @param type     the message type carried by the packet
+     * @param packet   the received bytes from position to limit, with or
+     *                 without 1609.2 headers; not modified
+     * @param senderIp used when no key can be read from the message, may be
+     *                 null
+     * @return the record key, or null if neither the message nor the sender
+     *         provide one
+     */
+    public static String keyOf(SupportedMessageTypes type, ByteBuffer packet, String senderIp) {
+        String key = null;
+        if (type != null && packet != null) {
+            ByteBuffer frame = UperUtil.stripDot2Header(packet, UperUtil.getStartFlagBytes(type));
+            if (frame != null) {
+                switch (type) {
+                case BSM:
+                    key = bsmId(frame);
+                    break;
+                case SPAT:
+                    key = spatIntersectionId(frame);
+                    break;
+                case MAP:
+                    key = mapIntersectionId(frame);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        return key != null ? key : senderIp;
+    }
+
+    /**
+     * The TemporaryID of a BSM. BasicSafetyMessage opens with its extension
+     * bit and the partII and regional presence bits, followed by BSMcoreData
+     * whose 7 bit msgCnt precedes the 4 octet id.
+     */
+    static String bsmId(ByteBuffer frame) {
+        BitReader bits = BitReader.ofOpenType(frame);
+        if (bits == null)
+            return null;
+        try {
+            bits.skip(3 + 7);
+            return String.format("%08X", bits.read(32));
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The IntersectionID of the first IntersectionState of a SPaT.
+     */
+    static String spatIntersectionId(ByteBuffer frame) {
+        BitReader bits = BitReader.ofOpenType(frame);
+        if (bits == null)
+            return null;
+        try {
+            // SPAT: extension bit, then timeStamp, name and regional presence
+            bits.skip(1);
+            boolean hasTimeStamp = bits.readBit();
+            boolean hasName = bits.readBit();
+            bits.skip(1);
+            if (hasTimeStamp)
+                bits.skip(20);
+            if (hasName)
+                bits.skipDescriptiveName();
+            // IntersectionStateList size, then the first IntersectionState's
+            // extension bit and its six presence bits, name first
+            bits.skip(5 + 1);
+            boolean hasIntersectionName = bits.readBit();
+            bits.skip(5);
+            if (hasIntersectionName)
+                bits.skipDescriptiveName();
+            return bits.readIntersectionReferenceId();
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The IntersectionID of the first IntersectionGeometry of a MAP.
+     */
+    static String mapIntersectionId(ByteBuffer frame) {
+        BitReader bits = BitReader.ofOpenType(frame);
+        if (bits == null)
+            return null;
+        try {
+            // MapData: extension bit, then the presence bits of timeStamp,
+            // layerType, layerID, intersections and four more optional fields
+            bits.skip(1);
+            boolean hasTimeStamp = bits.readBit();
+            boolean hasLayerType = bits.readBit();
+            boolean hasLayerId = bits.readBit();
+            boolean hasIntersections = bits.readBit();
+            bits.skip(4);
+            if (!hasIntersections)
+                return null;
+            if (hasTimeStamp)
+                bits.skip(20);
+            // msgIssueRevision
+            bits.skip(7);
+            if (hasLayerType) {
+                // extensible enumeration of 8 root values
+                bits.skip(bits.readBit() ? 7 : 3);
+            }
+            if (hasLayerId)
+                bits.skip(7);
+            // IntersectionGeometryList size, then the first IntersectionGeometry's
+            // extension bit and its five presence bits, name first
+            bits.skip(5 + 1);
+            boolean hasIntersectionName = bits.readBit();
+            bits.skip(4);
+            if (hasIntersectionName)
+                bits.skipDescriptiveName();
+            return bits.readIntersectionReferenceId();
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Reads unaligned PER fields from the value of a MessageFrame.
+     */
+    private static final class BitReader {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final long limit;
+        private long position;
+
+        private BitReader(ByteBuffer buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.limit = length * 8L;
+        }
+
+        /*
+         * Positions a reader at the value of a MessageFrame, after the 2 byte
+         * messageId and the open type length determinant. Returns null if the
+         * length is fragmented or runs past the end of the buffer.
+         */
+        static BitReader ofOpenType(ByteBuffer frame) {
+            int index = frame.position() + 2;
+            int end = frame.limit();
+            if (index >= end)
+                return null;
+            int first = frame.get(index) & 0xff;
+            int length;
+            if ((first & 0x80) == 0) {
+                length = first;
+                index += 1;
+            } else if ((first & 0xc0) == 0x80 && index + 1 < end) {
+                length = ((first & 0x3f) << 8) | (frame.get(index + 1) & 0xff);
+                index += 2;
+            } else {
+                return null;
+            }
+            if (index + length > end)
+                return null;
+            return new BitReader(frame, index, length);
+        }
+
+        long read(int count) {
+            if (position + count > limit)
+                throw new IndexOutOfBoundsException("Read past the end of the value");
+            long value = 0;
+            for (int i = 0; i < count; i++, position++) {
+                int b = buffer.get(start + (int) (position >>> 3)) & 0xff;
+                value = (value << 1) | ((b >>> (7 - (position & 7))) & 1);
+            }
+            return value;
+        }
+
+        boolean readBit() {
+            return read(1) == 1;
+        }
+
+        void skip(long count) {
+            if (position + count > limit)
+                throw new IndexOutOfBoundsException("Skipped past the end of the value");
+            position += count;
+        }
+
+        // DescriptiveName ::= IA5String (SIZE(1..63))
+        void skipDescriptiveName() {
+            skip(7 * (read(6) + 1));
+        }
+
+        // IntersectionReferenceID ::= SEQUENCE { region OPTIONAL, id }
+        String readIntersectionReferenceId() {
+            if (readBit())
+                skip(16);
+            return String.valueOf(read(16));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package us.dot.its.jpo.ode.uper;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.tomcat.util.buf.HexUtils;
 import org.json.JSONObject;
@@ -23,10 +25,36 @@ public class UperUtil {
     private static final String MAP_START_FLAG = "0012"; 
     private static final String PSM_START_FLAG = "0020";
 
+    // the same start flags as they appear on the wire, for byte level scanning
+    private static final byte[] BSM_START_FLAG_BYTES = { 0x00, 0x14 };
+    private static final byte[] TIM_START_FLAG_BYTES = { 0x00, 0x1f };
+    private static final byte[] SPAT_START_FLAG_BYTES = { 0x00, 0x13 };
+    private static final byte[] SSM_START_FLAG_BYTES = { 0x00, 0x1e };
+    private static final byte[] SRM_START_FLAG_BYTES = { 0x00, 0x1d };
+    private static final byte[] MAP_START_FLAG_BYTES = { 0x00, 0x12 };
+    private static final byte[] PSM_START_FLAG_BYTES = { 0x00, 0x20 };
+
+    // DSRCmsgID of each supported MessageFrame, indexed by the second byte of the
+    // UPER encoded frame
+    private static final SupportedMessageTypes[] MESSAGE_TYPES_BY_ID = new SupportedMessageTypes[128];
+
+    // the start flag bytes by their hex form, so hex flags are not decoded per packet
+    private static final Map<String, byte[]> START_FLAG_BYTES_BY_HEX = new HashMap<>();
+
+    // start of a signed IEEE 1609.2 header
+    private static final byte[] SIGNED_DOT2_START_FLAG_BYTES = { 0x03, (byte) 0x81, 0x00 };
+
     public enum SupportedMessageTypes {
         BSM, TIM, SPAT, SSM, SRM, MAP, PSM
     }
 
+    static {
+        for (SupportedMessageTypes type : SupportedMessageTypes.values()) {
+            MESSAGE_TYPES_BY_ID[getStartFlagBytes(type)[1]] = type;
+            START_FLAG_BYTES_BY_HEX.put(HexUtils.toHexString(getStartFlagBytes(type)), getStartFlagBytes(type));
+        }
+    }
+
     // Strips the IEEE 1609.2 security header (if it exists) and returns the payload
     public static String stripDot2Header(String hexString, String payload_start_flag) {
         hexString = hexString.toLowerCase();
@@ -36,39 +64,143 @@ public class UperUtil {
         return hexString.substring(startIndex, hexString.length());
     }
 
+    /**
+     * Byte level version of {@link #stripDot2Header(String, String)}. Returns a
+     * view of the packet from the first occurrence of the start flag, or null if
+     * the flag is not present. The packet's position and limit are not modified.
+     */
+    public static ByteBuffer stripDot2Header(ByteBuffer packet, byte[] startFlag) {
+        int startIndex = indexOf(packet, startFlag, packet.position(), packet.limit());
+        if (startIndex == -1)
+            return null;
+        ByteBuffer view = packet.duplicate();
+        view.position(startIndex);
+        return view.slice();
+    }
+
     /*
      * Strips the 1609.3 and unsigned 1609.2 headers if they are present.
      * Will return the payload with a signed 1609.2 header if it is present.
      * Otherwise, returns just the payload.
      */
     public static byte[] stripDot3Header(byte[] packet, HashMap<String, String> msgStartFlags) {
-        String hexString = HexUtils.toHexString(packet);
-        String hexPacketParsed = "";
-
+        byte[][] startFlags = new byte[msgStartFlags.size()][];
+        int i = 0;
         for (String start_flag : msgStartFlags.values()) {
-            int payloadStartIndex = hexString.indexOf(start_flag);
+            byte[] cached = START_FLAG_BYTES_BY_HEX.get(start_flag.toLowerCase());
+            startFlags[i++] = cached != null ? cached : HexUtils.fromHexString(start_flag);
+        }
+
+        ByteBuffer stripped = stripDot3Header(ByteBuffer.wrap(packet), startFlags);
+        if (stripped == null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Packet is not a BSM, TIM or Map message: {}", HexUtils.toHexString(packet));
+            }
+            return packet;
+        }
+
+        return toByteArray(stripped);
+    }
+
+    /**
+     * Byte level version of the 1609.3 header stripping. Scans the remaining
+     * bytes of the packet for each start flag in the given order and, for the
+     * first one found, returns a view of the packet that starts at the signed
+     * 1609.2 header if one precedes the payload, or at the payload otherwise.
+     * The view shares the packet's content, so nothing is copied or converted to
+     * hex. The packet's position and limit are not modified.
+     * 
+     * @param packet     the received bytes, from position to limit
+     * @param startFlags the MessageFrame start flags to look for
+     * @return the stripped view, or null if none of the start flags are present
+     */
+    public static ByteBuffer stripDot3Header(ByteBuffer packet, byte[]... startFlags) {
+        int start = packet.position();
+        int end = packet.limit();
 
+        for (byte[] startFlag : startFlags) {
+            int payloadStartIndex = indexOf(packet, startFlag, start, end);
             if (payloadStartIndex == -1)
                 continue;
 
-            String headers = hexString.substring(0, payloadStartIndex);
-            String payload = hexString.substring(payloadStartIndex, hexString.length());
-            
             // Look for the index of the start flag of a signed 1609.2 header, if one exists
-            int signedDot2StartIndex = headers.indexOf("038100");
-            if (signedDot2StartIndex == -1)
-                hexPacketParsed = payload;
-            else
-                hexPacketParsed = headers.substring(signedDot2StartIndex, headers.length()) + payload;
-            break;
+            int signedDot2StartIndex = indexOf(packet, SIGNED_DOT2_START_FLAG_BYTES, start, payloadStartIndex);
+            int viewStart = signedDot2StartIndex == -1 ? payloadStartIndex : signedDot2StartIndex;
+
+            ByteBuffer view = packet.duplicate();
+            view.position(viewStart);
+            view.limit(end);
+            return view.slice();
         }
 
-        if (hexPacketParsed.equals("")) {
-            hexPacketParsed = hexString;
-            logger.debug("Packet is not a BSM, TIM or Map message: " + hexPacketParsed);
+        return null;
+    }
+
+    /**
+     * Classifies a packet by the messageId of the MessageFrame it carries. A UPER
+     * MessageFrame starts with the extension bit and the 15 bit messageId, so the
+     * supported frames start with 0x00 followed by their DSRCmsgID. The bytes are
+     * scanned once from position to limit for the first such pair that is
+     * followed by an open type length that fits in the packet, which skips any
+     * 1609.3 and 1609.2 headers in front of the frame. The packet's position and
+     * limit are not modified.
+     * 
+     * @param packet the received bytes, from position to limit
+     * @return the type of the first MessageFrame found, or null if there is none
+     */
+    public static SupportedMessageTypes determineMessageType(ByteBuffer packet) {
+        int end = packet.limit();
+        for (int i = packet.position(); i + 2 < end; i++) {
+            if (packet.get(i) != 0x00)
+                continue;
+            int messageId = packet.get(i + 1);
+            if (messageId <= 0 || MESSAGE_TYPES_BY_ID[messageId] == null)
+                continue;
+            if (openTypeFits(packet, i + 2, end))
+                return MESSAGE_TYPES_BY_ID[messageId];
         }
+        return null;
+    }
 
-        return HexUtils.fromHexString(hexPacketParsed);
+    /*
+     * Whether the UPER length determinant at index announces a value that ends
+     * at or before end. Fragmented lengths (16K and up) never fit a datagram.
+     */
+    private static boolean openTypeFits(ByteBuffer packet, int index, int end) {
+        int first = packet.get(index) & 0xff;
+        if ((first & 0x80) == 0)
+            return index + 1 + first <= end;
+        if ((first & 0xc0) == 0x80 && index + 1 < end) {
+            int length = ((first & 0x3f) << 8) | (packet.get(index + 1) & 0xff);
+            return index + 2 + length <= end;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the remaining bytes of a stripped view into a new array.
+     */
+    public static byte[] toByteArray(ByteBuffer view) {
+        byte[] bytes = new byte[view.remaining()];
+        view.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /*
+     * Returns the absolute index of the first occurrence of the flag that lies
+     * entirely within buffer[from, to), or -1 if there is none.
+     */
+    private static int indexOf(ByteBuffer buffer, byte[] flag, int from, int to) {
+        int last = to - flag.length;
+        for (int i = from; i <= last; i++) {
+            int j = 0;
+            while (j < flag.length && buffer.get(i + j) == flag[j]) {
+                j++;
+            }
+            if (j == flag.length)
+                return i;
+        }
+        return -1;
     }
 
     /*
@@ -152,6 +284,28 @@ public class UperUtil {
         return PSM_START_FLAG;
     }
 
+    // The returned arrays are shared and must not be modified
+    public static byte[] getStartFlagBytes(SupportedMessageTypes msgType) {
+        switch (msgType) {
+        case SupportedMessageTypes.BSM:
+            return BSM_START_FLAG_BYTES;
+        case SupportedMessageTypes.TIM:
+            return TIM_START_FLAG_BYTES;
+        case SupportedMessageTypes.SPAT:
+            return SPAT_START_FLAG_BYTES;
+        case SupportedMessageTypes.SSM:
+            return SSM_START_FLAG_BYTES;
+        case SupportedMessageTypes.SRM:
+            return SRM_START_FLAG_BYTES;
+        case SupportedMessageTypes.MAP:
+            return MAP_START_FLAG_BYTES;
+        case SupportedMessageTypes.PSM:
+            return PSM_START_FLAG_BYTES;
+        default:
+            return null;
+        }
+    }
+
     public static String getStartFlag(SupportedMessageTypes msgType) {
         switch (msgType) {
         case SupportedMessageTypes.BSM:
@@ -0,0 +1,74 @@
+package us.dot.its.jpo.ode;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import us.dot.its.jpo.ode.udp.UdpIngestMetrics;
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+import us.dot.its.jpo.ode.util.JsonUtils;
+import us.dot.its.jpo.ode.wrapper.MessageConsumer;
+import us.dot.its.jpo.ode.wrapper.MessageProcessor;
+
+public class OdeMetricsControllerTest {
+
+   @Test
+   public void shouldReturnUdpMetricsAsJson() throws Exception {
+      UdpIngestMetrics testMetrics = UdpIngestMetrics.getInstance();
+      testMetrics.doReset();
+      testMetrics.packetReceived(SupportedMessageTypes.BSM, "127.0.0.1", 42);
+
+      String body = new OdeMetricsController().getUdpMetrics().getBody();
+
+      JsonNode json = JsonUtils.toObjectNode(body);
+      assertEquals(42, json.get("messageTypes").get("BSM").get("bytesReceived").asLong());
+      assertEquals(1, json.get("senders").get("127.0.0.1").get("packetsReceived").asLong());
+      testMetrics.doReset();
+   }
+
+   @Test
+   public void shouldReturnKafkaConsumerMetricsAsJson() throws Exception {
+      TopicPartition partition = new TopicPartition("testTopic", 0);
+      MockConsumer<String, String> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+      MessageConsumer<String, String> testConsumer = MessageConsumer.defaultStringMessageConsumer("localhost:9092",
+            "testGroup", new MessageProcessor<String, String>() {
+               @Override
+               public Object call() {
+                  return null;
+               }
+            });
+      testConsumer.getConsumer().close();
+      testConsumer.setConsumer(mockConsumer);
+      testConsumer.setName("metricsControllerTestConsumer");
+
+      // the consumer is listed only while subscribed, read the metrics from its poll loop
+      List<String> bodies = new ArrayList<>();
+      mockConsumer.schedulePollTask(() -> {
+         mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+         mockConsumer.rebalance(Collections.singletonList(partition));
+         mockConsumer.updateEndOffsets(Collections.singletonMap(partition, 4L));
+         mockConsumer.addRecord(new ConsumerRecord<>("testTopic", 0, 0, null, "a"));
+      });
+      mockConsumer.schedulePollTask(() -> {
+         bodies.add(new OdeMetricsController().getKafkaConsumerMetrics().getBody());
+         testConsumer.close();
+      });
+      testConsumer.subscribe("testTopic");
+
+      JsonNode json = JsonUtils.toObjectNode(bodies.get(0)).get("metricsControllerTestConsumer");
+      assertEquals(1, json.get("recordsConsumed").asLong());
+      assertEquals(1, json.get("batchesProcessed").asLong());
+      assertEquals(3, json.get("totalLag").asLong());
+      assertEquals(3, json.get("partitionLag").get("testTopic-0").asLong());
+   }
+}
@@ -15,6 +15,8 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.exporter;
 
+import java.util.Properties;
+
 import mockit.*;
 import org.junit.jupiter.api.Test;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -40,7 +42,8 @@ public class StompStringExporterTest {
    @Test
    public void testSubscribe(@Capturing MessageConsumer capturingMessageConsumer, @Mocked MessageConsumer mockMessageConsumer) {
       new Expectations() {{
-         MessageConsumer.defaultStringMessageConsumer(anyString, anyString, (MessageProcessor) any);
+         MessageConsumer.defaultStringMessageConsumer(anyString, anyString, (MessageProcessor) any,
+               (Properties) any);
          result = mockMessageConsumer;
          
          mockMessageConsumer.setName(anyString);
@@ -15,13 +15,16 @@
  ******************************************************************************/
 package us.dot.its.jpo.ode.exporter;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import mockit.Expectations;
 import mockit.Injectable;
@@ -58,4 +61,30 @@ public class StompStringMessageDistributorTest {
 
     }
 
+    @Test
+    public void shouldBeSaturatedFromLimitUntilHalfDrained(@Injectable SimpMessagingTemplate mockSimpMessagingTemplate,
+            @Injectable ThreadPoolTaskExecutor mockOutboundExecutor) {
+
+        new Expectations() {
+            {
+                mockOutboundExecutor.getQueueSize();
+                returns(5, 10, 7, 5, 4);
+            }
+        };
+
+        StompStringMessageDistributor testSSNMP = new StompStringMessageDistributor(mockSimpMessagingTemplate,
+                "testTopic", mockOutboundExecutor, 10);
+
+        assertFalse(testSSNMP.isSaturated());
+        assertTrue(testSSNMP.isSaturated());
+        assertTrue(testSSNMP.isSaturated());
+        assertFalse(testSSNMP.isSaturated());
+        assertFalse(testSSNMP.isSaturated());
+    }
+
+    @Test
+    public void shouldNeverBeSaturatedWithoutLimit(@Injectable SimpMessagingTemplate mockSimpMessagingTemplate) {
+        assertFalse(new StompStringMessageDistributor(mockSimpMessagingTemplate, "testTopic").isSaturated());
+    }
+
 }
@@ -17,6 +17,8 @@ package us.dot.its.jpo.ode.services.asn1;
 
 import static org.junit.Assert.assertNotNull;
 
+import java.util.Properties;
+
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
@@ -45,7 +47,8 @@ public class AsnCodecRouterServiceControllerTest {
 
       new Expectations() {
          {
-            MessageConsumer.defaultStringMessageConsumer(anyString, anyString, (Asn1DecodedDataRouter) any);
+            MessageConsumer.defaultStringMessageConsumer(anyString, anyString, (Asn1DecodedDataRouter) any,
+                  (Properties) any);
             times = 2;
          }
       };
@@ -0,0 +1,202 @@
+package us.dot.its.jpo.ode.services.asn1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.model.OdeLogMetadata.RecordType;
+import us.dot.its.jpo.ode.services.asn1.DecodedDataRoutingTopology.DecodedMessage;
+import us.dot.its.jpo.ode.util.JsonUtils;
+
+public class DecodedDataRoutingTopologyTest {
+
+   private static final String DECODED_BSM = "<OdeAsn1Data><metadata><recordType>rxMsg</recordType>"
+         + "<originIp>10.0.0.1</originIp></metadata><payload><data><MessageFrame><messageId>20</messageId><value>"
+         + "<BasicSafetyMessage><coreData><id>12a7a951</id></coreData></BasicSafetyMessage>"
+         + "</value></MessageFrame></data></payload></OdeAsn1Data>";
+
+   private final OdeProperties odeProperties = new OdeProperties();
+
+   @Test
+   public void shouldRouteLikeTheDecodedDataRouter() {
+      DecodedDataRoutingTopology topology = new DecodedDataRoutingTopology(odeProperties);
+
+      assertEquals(Arrays.asList("topic.OdeBsmDuringEventPojo", "topic.OdeBsmPojo"),
+            topology.topicsFor(20, RecordType.bsmLogDuringEvent));
+      assertEquals(Arrays.asList("topic.OdeBsmPojo"), topology.topicsFor(20, RecordType.driverAlert));
+      assertEquals(Arrays.asList("topic.OdeDNMsgJson", "topic.OdeTimJson"), topology.topicsFor(31, RecordType.dnMsg));
+      assertEquals(Arrays.asList("topic.OdeSpatTxPojo", "topic.OdeSpatJson"),
+            topology.topicsFor(19, RecordType.spatTx));
+      assertEquals(Arrays.asList("topic.OdeMapTxPojo", "topic.OdeMapJson"), topology.topicsFor(18, RecordType.mapTx));
+      assertEquals(Arrays.asList("topic.OdePsmTxPojo", "topic.OdePsmJson"), topology.topicsFor(32, RecordType.psmTx));
+      assertEquals(Collections.emptyList(), topology.topicsFor(99, RecordType.rxMsg));
+   }
+
+   @Test
+   public void shouldLeaveOutDisabledTopics() {
+      odeProperties.getKafkaTopicsDisabledSet().add("topic.OdeBsmRxPojo");
+      odeProperties.getKafkaTopicsDisabledSet().add("topic.OdeMapJson");
+      DecodedDataRoutingTopology topology = new DecodedDataRoutingTopology(odeProperties);
+
+      assertEquals(Arrays.asList("topic.OdeBsmPojo"), topology.topicsFor(20, RecordType.rxMsg));
+      assertEquals(Arrays.asList("topic.OdeMapTxPojo"), topology.topicsFor(18, RecordType.mapTx));
+
+      String described = topology.build().describe().toString();
+      assertFalse(described.contains("topic.OdeMapJson"));
+   }
+
+   @Test
+   public void shouldWriteEveryTypeToItsAllTopic() {
+      String described = new DecodedDataRoutingTopology(odeProperties).build().describe().toString();
+
+      assertTrue(described.contains("topics: [topic.Asn1DecoderOutput]"));
+      for (String topic : Arrays.asList("topic.OdeBsmPojo", "topic.OdeTimJson", "topic.OdeSpatJson",
+            "topic.OdeMapJson", "topic.OdeSsmJson", "topic.OdeSrmJson", "topic.OdePsmJson")) {
+         assertTrue(topic, described.contains("topic: " + topic));
+      }
+   }
+
+   @Test
+   public void shouldDecodeOnceAndKeyByVehicle() throws Exception {
+      odeProperties.setKafkaRecordKeysEnabled(true);
+      KeyValue<String, DecodedMessage> decoded = new DecodedDataRoutingTopology(odeProperties).decode("recordKey",
+            DECODED_BSM);
+
+      assertEquals("12A7A951", decoded.key);
+      assertEquals(20, decoded.value.messageId);
+      assertEquals(RecordType.rxMsg, decoded.value.recordType);
+   }
+
+   @Test
+   public void shouldKeepTheRecordKeyWhenKeysAreDisabled() throws Exception {
+      KeyValue<String, DecodedMessage> decoded = new DecodedDataRoutingTopology(odeProperties).decode("recordKey",
+            DECODED_BSM);
+
+      assertEquals("recordKey", decoded.key);
+   }
+
+   @Test
+   public void shouldFailOnUndecodableRecords() {
+      DecodedDataRoutingTopology topology = new DecodedDataRoutingTopology(odeProperties);
+
+      assertThrows(Exception.class, () -> topology.decode("recordKey", "<OdeAsn1Data><metadata/></OdeAsn1Data>"));
+   }
+
+   @Test
+   public void shouldWriteUndecodableRecordsToTheDeadLetterTopic() throws Exception {
+      try (TopologyTestDriver driver = new TopologyTestDriver(
+            new DecodedDataRoutingTopology(odeProperties).build(), testProperties())) {
+         TestInputTopic<String, String> input = driver.createInputTopic("topic.Asn1DecoderOutput",
+               new StringSerializer(), new StringSerializer());
+         TestOutputTopic<String, String> deadLetters = driver.createOutputTopic(
+               "topic.Asn1DecoderOutputDeadLetter", new StringDeserializer(), new StringDeserializer());
+
+         input.pipeInput("recordKey", "<OdeAsn1Data><metadata/></OdeAsn1Data>");
+
+         KeyValue<String, String> deadLetter = deadLetters.readKeyValue();
+         assertEquals("recordKey", deadLetter.key);
+         JsonNode value = JsonUtils.toObjectNode(deadLetter.value);
+         assertEquals("DecodedDataRoutingTopology", value.get("stage").asText());
+         assertEquals("topic.Asn1DecoderOutput", value.get("source").get("topic").asText());
+         assertEquals(0, value.get("source").get("offset").asLong());
+         assertTrue(deadLetters.isEmpty());
+      }
+   }
+
+   @Test
+   public void shouldWriteUnserializableMessagesToTheDeadLetterTopic() throws Exception {
+      try (TopologyTestDriver driver = new TopologyTestDriver(
+            new DecodedDataRoutingTopology(odeProperties).build(), testProperties())) {
+         TestInputTopic<String, String> input = driver.createInputTopic("topic.Asn1DecoderOutput",
+               new StringSerializer(), new StringSerializer());
+         TestOutputTopic<String, String> deadLetters = driver.createOutputTopic(
+               "topic.Asn1DecoderOutputDeadLetter", new StringDeserializer(), new StringDeserializer());
+         TestOutputTopic<String, String> bsms = driver.createOutputTopic("topic.OdeBsmPojo",
+               new StringDeserializer(), new StringDeserializer());
+
+         input.pipeInput("first", "<OdeAsn1Data><metadata/></OdeAsn1Data>");
+         // a BSM without the fields the BSM builder needs
+         input.pipeInput("second", DECODED_BSM);
+
+         assertEquals(2, deadLetters.getQueueSize());
+         deadLetters.readValue();
+         JsonNode value = JsonUtils.toObjectNode(deadLetters.readValue());
+         assertEquals(1, value.get("source").get("offset").asLong());
+         assertTrue(bsms.isEmpty());
+      }
+   }
+
+   @Test
+   public void shouldWriteRoutedMessagesToTheirTypedAndAllTopics() throws Exception {
+      try (TopologyTestDriver driver = new TopologyTestDriver(
+            new DecodedDataRoutingTopology(odeProperties).build(), testProperties())) {
+         TestInputTopic<String, String> input = driver.createInputTopic("topic.Asn1DecoderOutput",
+               new StringSerializer(), new StringSerializer());
+         TestOutputTopic<String, String> dnMsgs = driver.createOutputTopic("topic.OdeDNMsgJson",
+               new StringDeserializer(), new StringDeserializer());
+         TestOutputTopic<String, String> tims = driver.createOutputTopic("topic.OdeTimJson",
+               new StringDeserializer(), new StringDeserializer());
+         TestOutputTopic<String, String> timRx = driver.createOutputTopic("topic.OdeTimRxJson",
+               new StringDeserializer(), new StringDeserializer());
+
+         input.pipeInput("recordKey", "<OdeAsn1Data><metadata><recordType>dnMsg</recordType></metadata>"
+               + "<payload><data><MessageFrame><messageId>31</messageId><value><TravelerInformation>"
+               + "<msgCnt>1</msgCnt></TravelerInformation></value></MessageFrame></data></payload></OdeAsn1Data>");
+
+         String routed = dnMsgs.readValue();
+         assertTrue(routed, routed.contains("\"msgCnt\""));
+         assertEquals(routed, tims.readValue());
+         assertTrue(timRx.isEmpty());
+      }
+   }
+
+   private static Properties testProperties() {
+      Properties props = new Properties();
+      props.put(StreamsConfig.APPLICATION_ID_CONFIG, DecodedDataRoutingTopology.APPLICATION_ID);
+      props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+      return props;
+   }
+
+   @Test
+   public void shouldConfigureThreadsAndStandbyReplicas() {
+      odeProperties.setKafkaBrokers("localhost:9092");
+      odeProperties.setKafkaStreamsThreads(4);
+      odeProperties.setKafkaStreamsStandbyReplicas(1);
+
+      Properties props = new DecodedDataRoutingTopology(odeProperties).streamsProperties();
+
+      assertEquals(DecodedDataRoutingTopology.APPLICATION_ID, props.get(StreamsConfig.APPLICATION_ID_CONFIG));
+      assertEquals(4, props.get(StreamsConfig.NUM_STREAM_THREADS_CONFIG));
+      assertEquals(1, props.get(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG));
+      assertNull(props.get(StreamsConfig.PROCESSING_GUARANTEE_CONFIG));
+   }
+
+   @Test
+   public void exactlyOnceShouldRouteInTransactionsAndReadCommitted() {
+      odeProperties.setKafkaBrokers("localhost:9092");
+      odeProperties.setKafkaExactlyOnceEnabled(true);
+
+      Properties props = new DecodedDataRoutingTopology(odeProperties).streamsProperties();
+
+      assertEquals(StreamsConfig.EXACTLY_ONCE_V2, props.get(StreamsConfig.PROCESSING_GUARANTEE_CONFIG));
+      assertEquals("read_committed", odeProperties.kafkaConsumerProperties().get("isolation.level"));
+   }
+}
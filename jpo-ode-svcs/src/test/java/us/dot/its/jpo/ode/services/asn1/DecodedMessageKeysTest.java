@@ -0,0 +1,46 @@
+package us.dot.its.jpo.ode.services.asn1;
+
+import static org.junit.Assert.assertEquals;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import us.dot.its.jpo.ode.util.XmlUtils;
+import us.dot.its.jpo.ode.util.XmlUtils.XmlUtilsException;
+
+public class DecodedMessageKeysTest {
+
+   private static JSONObject decoded(String originIp, String value) throws XmlUtilsException {
+      String metadata = originIp == null ? "<metadata/>" : "<metadata><originIp>" + originIp + "</originIp></metadata>";
+      return XmlUtils.toJSONObject("<OdeAsn1Data>" + metadata + "<payload><data><MessageFrame><messageId>0</messageId><value>"
+            + value + "</value></MessageFrame></data></payload></OdeAsn1Data>").getJSONObject("OdeAsn1Data");
+   }
+
+   @Test
+   public void testBsmKeyedByCoreDataId() throws XmlUtilsException {
+      JSONObject consumed = decoded("10.0.0.1",
+            "<BasicSafetyMessage><coreData><msgCnt>25</msgCnt><id>12a7a951</id></coreData></BasicSafetyMessage>");
+      assertEquals("12A7A951", DecodedMessageKeys.keyOf(consumed, 20, "recordKey"));
+   }
+
+   @Test
+   public void testSpatKeyedByFirstIntersection() throws XmlUtilsException {
+      JSONObject consumed = decoded("10.0.0.1", "<SPAT><intersections><IntersectionState><id><id>8804</id></id>"
+            + "</IntersectionState><IntersectionState><id><id>8805</id></id></IntersectionState></intersections></SPAT>");
+      assertEquals("8804", DecodedMessageKeys.keyOf(consumed, 19, "recordKey"));
+   }
+
+   @Test
+   public void testMapKeyedByIntersection() throws XmlUtilsException {
+      JSONObject consumed = decoded(null, "<MapData><msgIssueRevision>4</msgIssueRevision><intersections>"
+            + "<IntersectionGeometry><id><region>1</region><id>156</id></id></IntersectionGeometry></intersections></MapData>");
+      assertEquals("156", DecodedMessageKeys.keyOf(consumed, 18, "recordKey"));
+   }
+
+   @Test
+   public void testOtherMessagesKeyedByOriginThenRecordKey() throws XmlUtilsException {
+      assertEquals("10.0.0.1",
+            DecodedMessageKeys.keyOf(decoded("10.0.0.1", "<TravelerInformation/>"), 31, "recordKey"));
+      assertEquals("recordKey", DecodedMessageKeys.keyOf(decoded(null, "<TravelerInformation/>"), 31, "recordKey"));
+   }
+}
@@ -1,16 +1,26 @@
 package us.dot.its.jpo.ode.services.asn1.message;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
+import java.util.Optional;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.tomcat.util.buf.HexUtils;
 import org.json.JSONException;
 import org.junit.jupiter.api.Test;
 
+import mockit.Expectations;
+import mockit.Mocked;
 import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.StringPublisher;
 import us.dot.its.jpo.ode.model.OdeAsn1Data;
 import us.dot.its.jpo.ode.model.OdeAsn1Payload;
 import us.dot.its.jpo.ode.model.Asn1Encoding.EncodingRule;
 import us.dot.its.jpo.ode.model.OdeBsmMetadata;
 import us.dot.its.jpo.ode.util.XmlUtils.XmlUtilsException;
+import us.dot.its.jpo.ode.wrapper.RawEncodedEnvelope;
 
 public class Asn1DecodeBSMJSONTest {
   private final String json = "{\"metadata\":{\"bsmSource\":\"EV\",\"recordType\":\"bsmTx\",\"securityResultCode\":\"success\",\"receivedMessageDetails\":{\"locationData\":{\"latitude\":\"unavailable\",\"longitude\":\"unavailable\",\"elevation\":\"unavailable\",\"speed\":\"unavailable\",\"heading\":\"unavailable\"},\"rxSource\":\"RSU\"},\"payloadType\":\"us.dot.its.jpo.ode.model.OdeAsn1Payload\",\"serialId\":{\"streamId\":\"be071349-9bb6-4b66-b1c7-8df1f9e0cb74\",\"bundleSize\":1,\"bundleId\":0,\"recordId\":0,\"serialNumber\":0},\"odeReceivedAt\":\"2024-03-15T16:46:45.297174600Z\",\"schemaVersion\":6,\"maxDurationTime\":0,\"recordGeneratedBy\":\"OBU\",\"sanitized\":false,\"originIp\":\"192.168.0.1\"},\"payload\":{\"dataType\":\"us.dot.its.jpo.ode.model.OdeHexByteArray\",\"data\":{\"bytes\":\"03810040038081B1001480AD4644A9EA5442BC26E97C7496576E052569B214000070007050FD7D0FA1007FFF8000681250020214C1C0FF64BFFA0FB84F720FF71BFF9500DFFFC0FF564006D001FFFC0FF5BBFE5B031FFFC0FF573FF73075FFFC0FF973FFB708FFFFC0FFEFC00B50B5FFFC0FFF0401150BBFFFC0FFDF4015D0C1FFFC0FFB9C01690C7FFFC0FFC0401550C9FFFC0FFBAC014F0C9FFFC0FFBBC01530CBFFFC0FFBB400B30E7FFFC100383FFCD0E3FFFCFFFEC800400120000243450D45B978805B073A8672E91E9D80824A65C65F85E35B61502149263F000FE804E6B84AF66507D51690DE76F30D1468A68F8986B58E6AECB2C5FC4766C223F0B977E87678DDF714FE123C483622CC7500000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000\"}}}";
@@ -43,4 +53,52 @@ public class Asn1DecodeBSMJSONTest {
 		assertEquals(jsonPayloadObj.getDataType(), "us.dot.its.jpo.ode.model.OdeHexByteArray");
 		assertEquals(jsonPayloadObj.getData().toString(), expectedPayload);
 	}
+
+	@Test
+	public void testProcessEnvelope() {
+		OdeProperties properties = new OdeProperties();
+		properties.setKafkaBrokers("localhost:9092");
+		Asn1DecodeBSMJSON testDecodeBsmJson = new Asn1DecodeBSMJSON(properties);
+
+		OdeBsmMetadata metadata = new OdeBsmMetadata(new OdeAsn1Payload());
+		metadata.setBsmSource(OdeBsmMetadata.BsmSource.EV);
+		metadata.setOriginIp("192.168.0.1");
+		// signed 1609.2 header in front of the MessageFrame
+		byte[] uper = HexUtils.fromHexString("03810040038081b10014051122");
+		testDecodeBsmJson.setRecord(new ConsumerRecord<>("topic.OdeRawEncodedBSMJson", 0, 0L, 0L,
+				TimestampType.CREATE_TIME, 0, uper.length, null, uper, RawEncodedEnvelope.toHeaders(metadata),
+				Optional.empty()));
+
+		OdeAsn1Data resultOdeObj = testDecodeBsmJson.process(uper);
+
+		OdeBsmMetadata jsonMetadataObj = (OdeBsmMetadata) resultOdeObj.getMetadata();
+		assertEquals(OdeBsmMetadata.BsmSource.EV, jsonMetadataObj.getBsmSource());
+		assertEquals("192.168.0.1", jsonMetadataObj.getOriginIp());
+		assertEquals(EncodingRule.UPER, jsonMetadataObj.getEncodings().get(0).getEncodingRule());
+		assertEquals("{\"bytes\":\"0014051122\"}", resultOdeObj.getPayload().getData().toString());
+	}
+
+	@Test
+	public void testProcessEnvelopeSkipsFailedRecord(@Mocked StringPublisher mockCodecPublisher) throws Exception {
+		OdeProperties properties = new OdeProperties();
+		new Expectations() {
+			{
+				mockCodecPublisher.getOdeProperties();
+				result = properties;
+				mockCodecPublisher.publish(anyString, anyString, (String) any);
+				result = new IllegalStateException("Producer closed");
+			}
+		};
+		Asn1DecodeBSMJSON testDecodeBsmJson = new Asn1DecodeBSMJSON(properties);
+
+		OdeBsmMetadata metadata = new OdeBsmMetadata(new OdeAsn1Payload());
+		metadata.setBsmSource(OdeBsmMetadata.BsmSource.EV);
+		metadata.setOriginIp("192.168.0.1");
+		byte[] uper = HexUtils.fromHexString("0014051122");
+		ConsumerRecord<String, byte[]> consumerRecord = new ConsumerRecord<>("topic.OdeRawEncodedBSMJson", 0, 0L, 0L,
+				TimestampType.CREATE_TIME, 0, uper.length, null, uper, RawEncodedEnvelope.toHeaders(metadata),
+				Optional.empty());
+
+		assertNull(testDecodeBsmJson.withRecord(consumerRecord, () -> testDecodeBsmJson.process(uper)));
+	}
 }
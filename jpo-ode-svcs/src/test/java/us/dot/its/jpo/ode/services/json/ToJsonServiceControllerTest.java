@@ -14,6 +14,8 @@
  * the License.
  ******************************************************************************/
 package us.dot.its.jpo.ode.services.json;
+import java.util.Properties;
+
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
@@ -41,7 +43,7 @@ public class ToJsonServiceControllerTest {
             new ToJsonConverter<>((OdeProperties) any, anyBoolean, anyString);
             times = 1;
 
-            new MessageConsumer<>(anyString, anyString, (MessageProcessor<?, ?>) any, anyString);
+            new MessageConsumer<>(anyString, anyString, (MessageProcessor<?, ?>) any, anyString, (Properties) any);
             times = 1;
 
          }
@@ -0,0 +1,89 @@
+package us.dot.its.jpo.ode.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class DuplicateFilterTest {
+
+   private static final long MS = 1_000_000L;
+
+   private static ByteBuffer bytes(int... values) {
+      byte[] data = new byte[values.length];
+      for (int i = 0; i < values.length; i++) {
+         data[i] = (byte) values[i];
+      }
+      return ByteBuffer.wrap(data);
+   }
+
+   @Test
+   public void testOffModePublishesEverything() {
+      DuplicateFilter testFilter = new DuplicateFilter(DuplicateFilter.Mode.OFF, 100, 10, null);
+
+      assertEquals(DuplicateFilter.Result.PUBLISH, testFilter.offer(bytes(1, 2), "10.0.0.1", 0));
+      assertEquals(DuplicateFilter.Result.PUBLISH, testFilter.offer(bytes(1, 2), "10.0.0.2", 0));
+      assertEquals(0, testFilter.size());
+   }
+
+   @Test
+   public void testDropModeSuppressesCopiesInsideWindow() {
+      DuplicateFilter testFilter = new DuplicateFilter(DuplicateFilter.Mode.DROP, 100, 10, null);
+
+      assertEquals(DuplicateFilter.Result.PUBLISH, testFilter.offer(bytes(1, 2), "10.0.0.1", 0));
+      assertEquals(DuplicateFilter.Result.DUPLICATE, testFilter.offer(bytes(1, 2), "10.0.0.2", 50 * MS));
+      assertEquals(DuplicateFilter.Result.PUBLISH, testFilter.offer(bytes(1, 3), "10.0.0.2", 60 * MS));
+      assertEquals(DuplicateFilter.Result.PUBLISH, testFilter.offer(bytes(1, 2), "10.0.0.3", 100 * MS));
+   }
+
+   @Test
+   public void testMergeModeCollectsSendersUntilWindowCloses() {
+      List<List<String>> merged = new ArrayList<>();
+      DuplicateFilter testFilter = new DuplicateFilter(DuplicateFilter.Mode.MERGE, 100, 10,
+            (payload, senderIps, receivedNanos) -> {
+               assertTrue(Arrays.equals(new byte[] { 1, 2 }, payload));
+               merged.add(new ArrayList<>(senderIps));
+            });
+
+      assertEquals(DuplicateFilter.Result.HELD, testFilter.offer(bytes(1, 2), "10.0.0.1", 0));
+      assertEquals(DuplicateFilter.Result.DUPLICATE, testFilter.offer(bytes(1, 2), "10.0.0.2", 10 * MS));
+      assertEquals(DuplicateFilter.Result.DUPLICATE, testFilter.offer(bytes(1, 2), "10.0.0.2", 20 * MS));
+
+      testFilter.flush(99 * MS);
+      assertEquals(0, merged.size());
+
+      testFilter.flush(100 * MS);
+      assertEquals(1, merged.size());
+      assertEquals(Arrays.asList("10.0.0.1", "10.0.0.2"), merged.get(0));
+      assertEquals(0, testFilter.size());
+   }
+
+   @Test
+   public void testOldestEntryLeavesWhenFull() {
+      List<List<String>> merged = new ArrayList<>();
+      DuplicateFilter testFilter = new DuplicateFilter(DuplicateFilter.Mode.MERGE, 100, 2,
+            (payload, senderIps, receivedNanos) -> merged.add(senderIps));
+
+      testFilter.offer(bytes(1), "10.0.0.1", 0);
+      testFilter.offer(bytes(2), "10.0.0.1", 1);
+      testFilter.offer(bytes(3), "10.0.0.1", 2);
+
+      assertEquals(2, testFilter.size());
+      assertEquals(1, merged.size());
+   }
+
+   @Test
+   public void testFingerprintCoversOnlyRemainingBytes() {
+      ByteBuffer framed = bytes(9, 1, 2, 9);
+      framed.position(1).limit(3);
+
+      assertEquals(DuplicateFilter.fingerprint(bytes(1, 2)), DuplicateFilter.fingerprint(framed));
+      assertNotEquals(DuplicateFilter.fingerprint(bytes(1, 2)), DuplicateFilter.fingerprint(bytes(2, 1)));
+   }
+}
@@ -0,0 +1,83 @@
+package us.dot.its.jpo.ode.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.DatagramPacket;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class PacketRingBufferTest {
+
+   @Test
+   public void testCapacityRoundedToPowerOfTwo() {
+      assertEquals(1, new PacketRingBuffer(1, 8, PacketRingBuffer.WaitStrategy.BUSY_SPIN).getCapacity());
+      assertEquals(4, new PacketRingBuffer(3, 8, PacketRingBuffer.WaitStrategy.BUSY_SPIN).getCapacity());
+      assertEquals(8, new PacketRingBuffer(8, 8, PacketRingBuffer.WaitStrategy.BUSY_SPIN).getCapacity());
+   }
+
+   @Test
+   public void testClaimResetsSlotLength() {
+      PacketRingBuffer testRing = new PacketRingBuffer(1, 8, PacketRingBuffer.WaitStrategy.BUSY_SPIN);
+
+      long sequence = testRing.claim();
+      testRing.get(sequence).setLength(2);
+      testRing.publish(sequence);
+      testRing.release(testRing.take());
+
+      assertEquals(8, testRing.get(testRing.claim()).getLength());
+   }
+
+   @Test
+   public void testTakeReturnsHaltedWhenDrained() {
+      PacketRingBuffer testRing = new PacketRingBuffer(2, 8, PacketRingBuffer.WaitStrategy.YIELDING);
+
+      long sequence = testRing.claim();
+      testRing.publish(sequence);
+      testRing.halt();
+
+      assertEquals(sequence, testRing.take());
+      assertEquals(PacketRingBuffer.HALTED, testRing.take());
+   }
+
+   @Test
+   public void testEveryPacketTakenOnceByConcurrentWorkers() throws InterruptedException {
+      int packetCount = 10000;
+      PacketRingBuffer testRing = new PacketRingBuffer(16, 4, PacketRingBuffer.WaitStrategy.SLEEPING);
+      ConcurrentHashMap<Integer, Integer> taken = new ConcurrentHashMap<>();
+      CountDownLatch workersDone = new CountDownLatch(3);
+
+      for (int i = 0; i < 3; i++) {
+         Thread worker = new Thread(() -> {
+            long sequence;
+            while ((sequence = testRing.take()) != PacketRingBuffer.HALTED) {
+               DatagramPacket packet = testRing.get(sequence);
+               byte[] data = packet.getData();
+               int value = ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+               taken.merge(value, 1, Integer::sum);
+               testRing.release(sequence);
+            }
+            workersDone.countDown();
+         });
+         worker.start();
+      }
+
+      for (int i = 0; i < packetCount; i++) {
+         long sequence = testRing.claim();
+         byte[] data = testRing.get(sequence).getData();
+         data[0] = (byte) (i >>> 24);
+         data[1] = (byte) (i >>> 16);
+         data[2] = (byte) (i >>> 8);
+         data[3] = (byte) i;
+         testRing.publish(sequence);
+      }
+      testRing.halt();
+
+      assertTrue(workersDone.await(10, TimeUnit.SECONDS));
+      assertEquals(packetCount, taken.size());
+      assertTrue(taken.values().stream().allMatch(count -> count == 1));
+   }
+}
@@ -0,0 +1,46 @@
+package us.dot.its.jpo.ode.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+public class ReceiveBufferPoolTest {
+
+   @Test
+   public void testReleasedBufferIsReusedCleared() {
+      ReceiveBufferPool testPool = new ReceiveBufferPool(16, 2);
+
+      ByteBuffer first = testPool.acquire();
+      assertTrue(first.isDirect());
+      first.put((byte) 1).flip();
+      testPool.release(first);
+
+      ByteBuffer second = testPool.acquire();
+      assertSame(first, second);
+      assertEquals(0, second.position());
+      assertEquals(16, second.limit());
+      assertEquals(1, testPool.getAllocated());
+   }
+
+   @Test
+   public void testFallsBackToHeapWhenExhausted() {
+      ReceiveBufferPool testPool = new ReceiveBufferPool(16, 1);
+
+      ByteBuffer pooled = testPool.acquire();
+      ByteBuffer overflow = testPool.acquire();
+
+      assertTrue(pooled.isDirect());
+      assertFalse(overflow.isDirect());
+      assertEquals(16, overflow.capacity());
+
+      testPool.release(overflow);
+      testPool.release(pooled);
+      assertSame(pooled, testPool.acquire());
+      assertEquals(1, testPool.getAllocated());
+   }
+}
@@ -0,0 +1,87 @@
+package us.dot.its.jpo.ode.udp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SenderRateLimiterTest {
+
+   private static final long MS = 1_000_000L;
+
+   @Test
+   public void testNoLimitAdmitsEverything() {
+      SenderRateLimiter testLimiter = new SenderRateLimiter(0, 1, 1000);
+
+      assertFalse(testLimiter.isEnabled());
+      for (int i = 0; i < 1000; i++) {
+         assertTrue(testLimiter.tryAcquire("10.0.0.1", 0));
+      }
+      assertEquals(0, testLimiter.size());
+   }
+
+   @Test
+   public void testBurstThenRefillAtRate() {
+      // 10 packets per second, one every 100 ms, bursts of 3
+      SenderRateLimiter testLimiter = new SenderRateLimiter(10, 3, 60000);
+      long now = System.nanoTime();
+
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", now));
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", now));
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", now));
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", now));
+
+      // other senders have their own bucket
+      assertTrue(testLimiter.tryAcquire("10.0.0.2", now));
+
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", now + 50 * MS));
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", now + 100 * MS));
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", now + 150 * MS));
+
+      // a long quiet period refills only up to the burst
+      long later = now + 10_000 * MS;
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", later));
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", later));
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", later));
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", later));
+   }
+
+   @Test
+   public void testSampleCountsEachSenderSeparately() {
+      SenderRateLimiter testLimiter = new SenderRateLimiter(10, 1, 60000);
+      long now = System.nanoTime();
+
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", now, 3));
+      assertTrue(testLimiter.tryAcquire("10.0.0.2", now, 3));
+      // every third packet a sender sends over its rate is admitted
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", now, 3));
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", now, 3));
+      assertFalse(testLimiter.tryAcquire("10.0.0.2", now, 3));
+      assertTrue(testLimiter.tryAcquire("10.0.0.1", now, 3));
+      assertFalse(testLimiter.tryAcquire("10.0.0.2", now, 3));
+      assertTrue(testLimiter.tryAcquire("10.0.0.2", now, 3));
+
+      assertFalse(testLimiter.tryAcquire("10.0.0.1", now, 0));
+   }
+
+   @Test
+   public void testIdleSendersExpire() {
+      SenderRateLimiter testLimiter = new SenderRateLimiter(10, 1, 1000);
+      long now = System.nanoTime();
+
+      testLimiter.tryAcquire("10.0.0.1", now);
+      testLimiter.tryAcquire("10.0.0.2", now);
+      assertEquals(2, testLimiter.size());
+
+      testLimiter.tryAcquire("10.0.0.3", now + 2000 * MS);
+      assertEquals(1, testLimiter.size());
+   }
+
+   @Test
+   public void testUnknownShedPolicyDrops() {
+      assertEquals(SenderRateLimiter.ShedPolicy.OVERFLOW, SenderRateLimiter.ShedPolicy.fromString(" overflow "));
+      assertEquals(SenderRateLimiter.ShedPolicy.DROP, SenderRateLimiter.ShedPolicy.fromString("throttle"));
+      assertEquals(SenderRateLimiter.ShedPolicy.DROP, SenderRateLimiter.ShedPolicy.fromString(null));
+   }
+}
@@ -0,0 +1,85 @@
+package us.dot.its.jpo.ode.udp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+public class UdpIngestMetricsTest {
+
+   @Test
+   public void testCountersByTypeAndSender() {
+      UdpIngestMetrics testMetrics = new UdpIngestMetrics();
+
+      testMetrics.packetReceived(SupportedMessageTypes.BSM, "10.0.0.1", 100);
+      testMetrics.packetReceived(SupportedMessageTypes.BSM, "10.0.0.2", 50);
+      testMetrics.packetReceived(SupportedMessageTypes.MAP, "10.0.0.1", 300);
+      testMetrics.packetRejected(SupportedMessageTypes.BSM);
+      testMetrics.packetPublished(SupportedMessageTypes.BSM, System.nanoTime());
+
+      assertEquals(Long.valueOf(2), testMetrics.getPacketsReceived().get("BSM"));
+      assertEquals(Long.valueOf(150), testMetrics.getBytesReceived().get("BSM"));
+      assertEquals(Long.valueOf(1), testMetrics.getPacketsRejected().get("BSM"));
+      assertEquals(Long.valueOf(0), testMetrics.getPendingPackets().get("BSM"));
+      assertEquals(Long.valueOf(1), testMetrics.getPendingPackets().get("MAP"));
+      assertEquals(Long.valueOf(2), testMetrics.getPacketsReceivedBySender().get("10.0.0.1"));
+      assertEquals(Long.valueOf(400), testMetrics.getBytesReceivedBySender().get("10.0.0.1"));
+   }
+
+   @Test
+   public void testLatencyHistogramBuckets() {
+      UdpIngestMetrics testMetrics = new UdpIngestMetrics();
+
+      testMetrics.packetPublished(SupportedMessageTypes.TIM, System.nanoTime() - 300_000L);
+      testMetrics.packetPublished(SupportedMessageTypes.TIM, System.nanoTime() - 5_000_000_000L);
+
+      Map<String, Long> histogram = testMetrics.getPublishLatencyHistogram(SupportedMessageTypes.TIM);
+      assertEquals(Long.valueOf(0), histogram.get("le100us"));
+      assertEquals(Long.valueOf(1), histogram.get("inf"));
+      assertEquals(Long.valueOf(2), testMetrics.getPublishLatencyHistogram().values().stream().reduce(0L, Long::sum));
+   }
+
+   @Test
+   public void testSendersBeyondLimitCountedTogether() {
+      UdpIngestMetrics testMetrics = new UdpIngestMetrics();
+
+      for (int i = 0; i < UdpIngestMetrics.MAX_TRACKED_SENDERS + 5; i++) {
+         testMetrics.packetReceived(SupportedMessageTypes.SPAT, "sender" + i, 1);
+      }
+
+      Map<String, Long> bySender = testMetrics.getPacketsReceivedBySender();
+      assertEquals(UdpIngestMetrics.MAX_TRACKED_SENDERS + 1, bySender.size());
+      assertEquals(Long.valueOf(5), bySender.get(UdpIngestMetrics.OTHER_SENDERS));
+   }
+
+   @Test
+   public void testResetClearsCounters() {
+      UdpIngestMetrics testMetrics = new UdpIngestMetrics();
+
+      testMetrics.packetReceived(SupportedMessageTypes.SSM, "10.0.0.1", 10);
+      testMetrics.packetFailed(SupportedMessageTypes.SSM);
+      testMetrics.doReset();
+
+      assertEquals(Long.valueOf(0), testMetrics.getPacketsReceived().get("SSM"));
+      assertEquals(Long.valueOf(0), testMetrics.getPacketsFailed().get("SSM"));
+      assertEquals(0, testMetrics.getPacketsReceivedBySender().size());
+   }
+
+   @Test
+   public void testShedPacketsCountedByTypeAndSender() {
+      UdpIngestMetrics testMetrics = new UdpIngestMetrics();
+
+      testMetrics.packetReceived(SupportedMessageTypes.SPAT, "10.0.0.9", 10);
+      testMetrics.packetReceived(SupportedMessageTypes.SPAT, "10.0.0.9", 10);
+      testMetrics.packetShed(SupportedMessageTypes.SPAT, "10.0.0.9");
+      testMetrics.packetDiverted(SupportedMessageTypes.SPAT, "10.0.0.9");
+
+      assertEquals(Long.valueOf(1), testMetrics.getPacketsShed().get("SPAT"));
+      assertEquals(Long.valueOf(1), testMetrics.getPacketsDiverted().get("SPAT"));
+      assertEquals(Long.valueOf(2), testMetrics.getPacketsShedBySender().get("10.0.0.9"));
+      assertEquals(Long.valueOf(0), testMetrics.getPendingPackets().get("SPAT"));
+   }
+}
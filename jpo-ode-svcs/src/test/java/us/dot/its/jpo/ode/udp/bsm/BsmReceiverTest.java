@@ -0,0 +1,245 @@
+package us.dot.its.jpo.ode.udp.bsm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.Test;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.ByteArrayPublisher;
+import us.dot.its.jpo.ode.coder.StringPublisher;
+import us.dot.its.jpo.ode.model.OdeAsn1Payload;
+import us.dot.its.jpo.ode.model.OdeBsmMetadata;
+import us.dot.its.jpo.ode.model.OdeHexByteArray;
+import us.dot.its.jpo.ode.model.OdeMsgMetadata;
+import us.dot.its.jpo.ode.udp.UdpIngestMetrics;
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+public class BsmReceiverTest {
+
+   @Mocked
+   StringPublisher mockStringPublisher;
+
+   @Injectable
+   OdeProperties injectableOdeProperties;
+
+   @Test
+   public void testPayloadIgnoresStaleBytesPastLength() {
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 16);
+
+      // a start flag from an earlier, longer packet is still in the buffer after the received length
+      byte[] buffer = { 0x11, 0x22, 0x33, 0x00, 0x14, 0x05 };
+      DatagramPacket packet = new DatagramPacket(buffer, 3);
+
+      assertNull(testBsmReceiver.getPayloadHexString(packet, SupportedMessageTypes.BSM));
+
+      packet.setLength(buffer.length);
+      OdeAsn1Payload payload = testBsmReceiver.getPayloadHexString(packet, SupportedMessageTypes.BSM);
+      assertEquals("001405", ((OdeHexByteArray) payload.getData()).getBytes());
+   }
+
+   @Test
+   public void testOversizePacketDroppedAndCounted() throws Exception {
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 4);
+      long truncatedBefore = UdpIngestMetrics.getInstance().getPacketsTruncated().get("BSM");
+
+      byte[] buffer = { 0x00, 0x14, 0x01, 0x02, 0x03 };
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length, InetAddress.getLoopbackAddress(), 46800);
+      testBsmReceiver.processPacket(packet);
+
+      assertEquals(truncatedBefore + 1, (long) UdpIngestMetrics.getInstance().getPacketsTruncated().get("BSM"));
+      new Verifications() {
+         {
+            mockStringPublisher.publish(anyString, anyString, (String) any);
+            times = 0;
+         }
+      };
+   }
+
+   @Test
+   public void testMergedBsmListsEveryRsu() throws Exception {
+      new Expectations() {
+         {
+            injectableOdeProperties.getBsmDuplicateSuppression();
+            result = "MERGE";
+            injectableOdeProperties.getBsmDuplicateWindowMs();
+            result = 60000;
+            injectableOdeProperties.getBsmDuplicateMaxEntries();
+            result = 10;
+         }
+      };
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 16);
+      try {
+         byte[] bsm = { 0x00, 0x14, 0x05 };
+         testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, InetAddress.getByName("10.0.0.1"), 46800));
+         testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, InetAddress.getByName("10.0.0.2"), 46800));
+         testBsmReceiver.getDuplicateFilter().flush(System.nanoTime() + 60_000_000_000L);
+      } finally {
+         testBsmReceiver.getDuplicateFilter().stop();
+      }
+
+      new Verifications() {
+         {
+            String published;
+            mockStringPublisher.publish(published = withCapture(), anyString, (String) any);
+            times = 1;
+            assertTrue(published.contains("\"rxSourceIps\":[\"10.0.0.1\",\"10.0.0.2\"]"));
+            assertTrue(published.contains("\"originIp\":\"10.0.0.1\""));
+         }
+      };
+   }
+
+   @Test
+   public void testHeldBsmPublishedOnStop() throws Exception {
+      new Expectations() {
+         {
+            injectableOdeProperties.getBsmDuplicateSuppression();
+            result = "MERGE";
+            injectableOdeProperties.getBsmDuplicateWindowMs();
+            result = 60000;
+            injectableOdeProperties.getBsmDuplicateMaxEntries();
+            result = 10;
+         }
+      };
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 16);
+
+      byte[] bsm = { 0x00, 0x14, 0x05 };
+      testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, InetAddress.getByName("10.0.0.1"), 46800));
+      testBsmReceiver.stop();
+
+      assertTrue(testBsmReceiver.isStopped());
+      assertEquals(0, testBsmReceiver.getDuplicateFilter().size());
+      new Verifications() {
+         {
+            mockStringPublisher.publish(anyString, anyString, (String) any);
+            times = 1;
+         }
+      };
+   }
+
+   @Test
+   public void testSenderOverRateDivertedToOverflowTopic() throws Exception {
+      new Expectations() {
+         {
+            injectableOdeProperties.getUdpShedPolicy();
+            result = "OVERFLOW";
+            injectableOdeProperties.getUdpSenderBurst();
+            result = 1;
+            injectableOdeProperties.getUdpSenderIdleTimeoutMs();
+            result = 60000;
+            injectableOdeProperties.getKafkaTopicOdeRawEncodedBSMJson();
+            result = "bsmTopic";
+            injectableOdeProperties.getKafkaTopicOdeRawEncodedOverflowJson();
+            result = "overflowTopic";
+         }
+      };
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 16);
+      testBsmReceiver.setSenderRateLimit(1);
+      long divertedBefore = UdpIngestMetrics.getInstance().getPacketsDiverted().get("BSM");
+
+      byte[] bsm = { 0x00, 0x14, 0x05 };
+      InetAddress sender = InetAddress.getByName("10.0.0.3");
+      testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, sender, 46800));
+      testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, sender, 46800));
+
+      assertEquals(divertedBefore + 1, (long) UdpIngestMetrics.getInstance().getPacketsDiverted().get("BSM"));
+      new Verifications() {
+         {
+            mockStringPublisher.publish(anyString, "bsmTopic", (String) any);
+            times = 1;
+            mockStringPublisher.publish(anyString, "overflowTopic", (String) any);
+            times = 1;
+         }
+      };
+   }
+
+   @Test
+   public void testPacketDroppedWhileProducerAtInFlightLimit() throws Exception {
+      new Expectations() {
+         {
+            injectableOdeProperties.getKafkaProducerMaxInFlight();
+            result = 100;
+            mockStringPublisher.canPublish();
+            result = false;
+         }
+      };
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 16);
+      long backpressuredBefore = UdpIngestMetrics.getInstance().getPacketsBackpressured().get("BSM");
+
+      byte[] bsm = { 0x00, 0x14, 0x05 };
+      testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, InetAddress.getByName("10.0.0.4"), 46800));
+
+      assertEquals(backpressuredBefore + 1,
+            (long) UdpIngestMetrics.getInstance().getPacketsBackpressured().get("BSM"));
+      new Verifications() {
+         {
+            mockStringPublisher.publish(anyString, anyString, (String) any);
+            times = 0;
+         }
+      };
+   }
+
+   @Test
+   public void testBinaryFormatPublishesUperBytes(@Mocked ByteArrayPublisher mockByteArrayPublisher)
+         throws Exception {
+      new Expectations() {
+         {
+            injectableOdeProperties.isRawEncodedBinary();
+            result = true;
+            injectableOdeProperties.getKafkaTopicOdeRawEncodedBSMJson();
+            result = "bsmTopic";
+         }
+      };
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 16);
+
+      byte[] bsm = { 0x10, 0x20, 0x00, 0x14, 0x05 };
+      testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, InetAddress.getByName("10.0.0.4"), 46800));
+
+      new Verifications() {
+         {
+            OdeMsgMetadata metadata;
+            byte[] published;
+            mockByteArrayPublisher.publishEnvelope(metadata = withCapture(), published = withCapture(), "bsmTopic",
+                  (String) any);
+            times = 1;
+            assertArrayEquals(new byte[] { 0x00, 0x14, 0x05 }, published);
+            assertEquals("10.0.0.4", ((OdeBsmMetadata) metadata).getOriginIp());
+            mockStringPublisher.publish(anyString, anyString, (String) any);
+            times = 0;
+         }
+      };
+   }
+
+   @Test
+   public void testRecordKeyedByBsmId() throws Exception {
+      new Expectations() {
+         {
+            injectableOdeProperties.isKafkaRecordKeysEnabled();
+            result = true;
+            injectableOdeProperties.getKafkaTopicOdeRawEncodedBSMJson();
+            result = "bsmTopic";
+         }
+      };
+      BsmReceiver testBsmReceiver = new BsmReceiver(injectableOdeProperties, 0, 32);
+
+      // coreData with msgCnt 1 and id DEADBEEF, behind a 1609.3 header
+      byte[] bsm = { 0x10, 0x20, 0x00, 0x14, 0x06, 0x00, 0x77, (byte) 0xab, 0x6f, (byte) 0xbb, (byte) 0xc0 };
+      testBsmReceiver.processPacket(new DatagramPacket(bsm, bsm.length, InetAddress.getByName("10.0.0.5"), 46800));
+
+      new Verifications() {
+         {
+            mockStringPublisher.publish(anyString, "bsmTopic", "DEADBEEF");
+            times = 1;
+         }
+      };
+   }
+}
@@ -0,0 +1,168 @@
+package us.dot.its.jpo.ode.udp.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import mockit.Injectable;
+import mockit.Mocked;
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.StringPublisher;
+import us.dot.its.jpo.ode.udp.ReceivedDatagram;
+import us.dot.its.jpo.ode.udp.bsm.BsmReceiver;
+import us.dot.its.jpo.ode.uper.UperUtil;
+
+public class SelectorServiceManagerTest {
+
+   @Mocked
+   StringPublisher mockStringPublisher;
+
+   @Injectable
+   OdeProperties injectableOdeProperties;
+
+   @Test
+   public void shouldHandReceivedPacketsToReceiver() throws Exception {
+      int port;
+      try (DatagramSocket probe = new DatagramSocket(0)) {
+         port = probe.getLocalPort();
+      }
+
+      CountDownLatch latch = new CountDownLatch(2);
+      List<byte[]> received = new CopyOnWriteArrayList<>();
+      BsmReceiver testReceiver = new BsmReceiver(injectableOdeProperties, port, 500) {
+         @Override
+         public void processDatagram(ReceivedDatagram datagram) {
+            received.add(UperUtil.toByteArray(datagram.getData()));
+            latch.countDown();
+         }
+      };
+
+      SelectorServiceManager testSelectorServiceManager = new SelectorServiceManager(1, 1, 10);
+      try {
+         testSelectorServiceManager.submit(testReceiver);
+
+         byte[] first = { 0x00, 0x14, 0x01, 0x02 };
+         byte[] second = { 0x00, 0x14, 0x03 };
+         try (DatagramSocket sender = new DatagramSocket()) {
+            sender.send(new DatagramPacket(first, first.length, InetAddress.getLoopbackAddress(), port));
+            sender.send(new DatagramPacket(second, second.length, InetAddress.getLoopbackAddress(), port));
+         }
+
+         assertTrue(latch.await(5, TimeUnit.SECONDS));
+         assertEquals(2, received.size());
+         assertArrayEquals(first, received.get(0));
+         assertArrayEquals(second, received.get(1));
+      } finally {
+         testSelectorServiceManager.shutdown();
+      }
+   }
+
+   @Test
+   public void shouldBindReusedPortForEachSocket() throws Exception {
+      int port;
+      try (DatagramSocket probe = new DatagramSocket(0)) {
+         port = probe.getLocalPort();
+      }
+
+      CountDownLatch latch = new CountDownLatch(1);
+      BsmReceiver testReceiver = new BsmReceiver(injectableOdeProperties, port, 500) {
+         @Override
+         public void processDatagram(ReceivedDatagram datagram) {
+            latch.countDown();
+         }
+      };
+      testReceiver.setSocketCount(2);
+
+      SelectorServiceManager testSelectorServiceManager = new SelectorServiceManager(2, 1, 10);
+      try {
+         testSelectorServiceManager.submit(testReceiver);
+
+         byte[] message = { 0x00, 0x14, 0x01 };
+         try (DatagramSocket sender = new DatagramSocket()) {
+            sender.send(new DatagramPacket(message, message.length, InetAddress.getLoopbackAddress(), port));
+         }
+
+         assertTrue(latch.await(5, TimeUnit.SECONDS));
+      } finally {
+         testSelectorServiceManager.shutdown();
+      }
+   }
+
+   @Test
+   public void shouldReleasePortOnShutdown() throws Exception {
+      int port;
+      try (DatagramSocket probe = new DatagramSocket(0)) {
+         port = probe.getLocalPort();
+      }
+
+      SelectorServiceManager testSelectorServiceManager = new SelectorServiceManager(1, 1, 10);
+      testSelectorServiceManager.submit(new BsmReceiver(injectableOdeProperties, port, 500));
+      testSelectorServiceManager.shutdown();
+
+      // the selector thread closes its channels on the way out
+      long deadline = System.currentTimeMillis() + 5000;
+      boolean released = false;
+      while (!released && System.currentTimeMillis() < deadline) {
+         try (DatagramSocket rebound = new DatagramSocket(port)) {
+            released = true;
+         } catch (SocketException e) {
+            Thread.sleep(20);
+         }
+      }
+      assertTrue(released);
+   }
+
+   @Test
+   public void shouldHandQueuedPacketsToReceiverAsBatch() throws Exception {
+      int port;
+      try (DatagramSocket probe = new DatagramSocket(0)) {
+         port = probe.getLocalPort();
+      }
+
+      CountDownLatch latch = new CountDownLatch(3);
+      List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+      BsmReceiver testReceiver = new BsmReceiver(injectableOdeProperties, port, 500) {
+         @Override
+         public int getBatchSize() {
+            return 3;
+         }
+
+         @Override
+         public void processBatch(List<ReceivedDatagram> datagrams) {
+            batchSizes.add(datagrams.size());
+            for (int i = 0; i < datagrams.size(); i++) {
+               latch.countDown();
+            }
+         }
+      };
+
+      SelectorServiceManager testSelectorServiceManager = new SelectorServiceManager(1, 1, 10);
+      try {
+         testSelectorServiceManager.submit(testReceiver);
+
+         byte[] message = { 0x00, 0x14, 0x01 };
+         try (DatagramSocket sender = new DatagramSocket()) {
+            for (int i = 0; i < 3; i++) {
+               sender.send(new DatagramPacket(message, message.length, InetAddress.getLoopbackAddress(), port));
+            }
+         }
+
+         assertTrue(latch.await(5, TimeUnit.SECONDS));
+         assertTrue(batchSizes.stream().allMatch(size -> size >= 1 && size <= 3));
+         assertEquals(3, batchSizes.stream().mapToInt(Integer::intValue).sum());
+      } finally {
+         testSelectorServiceManager.shutdown();
+      }
+   }
+}
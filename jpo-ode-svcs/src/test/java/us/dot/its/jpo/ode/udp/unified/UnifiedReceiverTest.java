@@ -0,0 +1,99 @@
+package us.dot.its.jpo.ode.udp.unified;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import us.dot.its.jpo.ode.OdeProperties;
+import us.dot.its.jpo.ode.coder.StringPublisher;
+import us.dot.its.jpo.ode.udp.ReceivedDatagram;
+import us.dot.its.jpo.ode.udp.UdpIngestMetrics;
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+public class UnifiedReceiverTest {
+
+   @Mocked
+   StringPublisher mockStringPublisher;
+
+   @Injectable
+   OdeProperties injectableOdeProperties;
+
+   private static ReceivedDatagram datagram(byte... bytes) {
+      return new ReceivedDatagram(ByteBuffer.wrap(bytes), new InetSocketAddress("10.0.0.7", 44990),
+            System.nanoTime());
+   }
+
+   @Test
+   public void testRoutesEachTypeToItsTopic() {
+      new Expectations() {
+         {
+            injectableOdeProperties.getKafkaTopicOdeRawEncodedBSMJson();
+            result = "bsmTopic";
+            injectableOdeProperties.getKafkaTopicOdeRawEncodedSPATJson();
+            result = "spatTopic";
+         }
+      };
+      UnifiedReceiver testUnifiedReceiver = new UnifiedReceiver(injectableOdeProperties, 0, 64);
+
+      testUnifiedReceiver.processDatagram(datagram((byte) 0x00, (byte) 0x14, (byte) 0x01, (byte) 0x05));
+      testUnifiedReceiver.processBatch(Arrays.asList(
+            datagram((byte) 0x00, (byte) 0x13, (byte) 0x01, (byte) 0x06),
+            datagram((byte) 0x00, (byte) 0x13, (byte) 0x01, (byte) 0x07)));
+
+      new Verifications() {
+         {
+            String bsm;
+            mockStringPublisher.publish(bsm = withCapture(), "bsmTopic", (String) any);
+            times = 1;
+            assertTrue(bsm.contains("\"bytes\":\"00140105\""));
+            assertTrue(bsm.contains("\"recordType\":\"bsmTx\""));
+
+            List<String> spats;
+            mockStringPublisher.publishBatch(spats = withCapture(), "spatTopic", (List<String>) any);
+            times = 1;
+            assertEquals(2, spats.size());
+         }
+      };
+   }
+
+   @Test
+   public void testUnclassifiedPacketsCountedAndDropped() {
+      UnifiedReceiver testUnifiedReceiver = new UnifiedReceiver(injectableOdeProperties, 0, 64);
+      long unclassifiedBefore = UdpIngestMetrics.getInstance().getPacketsUnclassified();
+      long bsmReceivedBefore = UdpIngestMetrics.getInstance().getPacketsReceived().get("BSM");
+
+      ReceivedDatagram unknown = datagram((byte) 0x00, (byte) 0x15, (byte) 0x01, (byte) 0x05);
+      testUnifiedReceiver.countReceived(unknown);
+      testUnifiedReceiver.processDatagram(unknown);
+      ReceivedDatagram bsm = datagram((byte) 0x00, (byte) 0x14, (byte) 0x01, (byte) 0x05);
+      testUnifiedReceiver.countReceived(bsm);
+
+      assertEquals(unclassifiedBefore + 1, UdpIngestMetrics.getInstance().getPacketsUnclassified());
+      assertEquals(bsmReceivedBefore + 1, (long) UdpIngestMetrics.getInstance().getPacketsReceived().get("BSM"));
+      // classified on receipt, processing reads the type from the datagram
+      assertTrue(unknown.isClassified());
+      assertNull(unknown.getMessageType());
+      assertEquals(SupportedMessageTypes.BSM, bsm.getMessageType());
+      // only the types received get a receiver
+      assertNotNull(testUnifiedReceiver.getReceiver(SupportedMessageTypes.BSM));
+      assertNull(testUnifiedReceiver.getReceiver(SupportedMessageTypes.TIM));
+      new Verifications() {
+         {
+            mockStringPublisher.publish(anyString, anyString, (String) any);
+            times = 0;
+         }
+      };
+   }
+}
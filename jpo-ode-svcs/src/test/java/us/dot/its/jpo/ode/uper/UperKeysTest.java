@@ -0,0 +1,54 @@
+package us.dot.its.jpo.ode.uper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.apache.tomcat.util.buf.HexUtils;
+import org.junit.jupiter.api.Test;
+
+import us.dot.its.jpo.ode.uper.UperUtil.SupportedMessageTypes;
+
+public class UperKeysTest {
+
+    // the first bytes of recorded messages, with the open type length cut down to match
+    private static final String BSM = "00140C4644A9EA5442BC26E97C7496";
+    private static final String SPAT = "00130C00081132000000E437070010";
+    private static final String MAP = "00120C38023000205E96094D40DF4C";
+
+    private static ByteBuffer bytes(String hex) {
+        return ByteBuffer.wrap(HexUtils.fromHexString(hex));
+    }
+
+    @Test
+    public void testBsmKeyedByTemporaryId() {
+        assertEquals("12A7A951", UperKeys.keyOf(SupportedMessageTypes.BSM, bytes(BSM), "10.0.0.1"));
+    }
+
+    @Test
+    public void testSpatKeyedByIntersectionId() {
+        assertEquals("8804", UperKeys.keyOf(SupportedMessageTypes.SPAT, bytes(SPAT), "10.0.0.1"));
+        // behind a signed 1609.2 header
+        assertEquals("8804", UperKeys.keyOf(SupportedMessageTypes.SPAT, bytes("0381004003807C" + SPAT), null));
+    }
+
+    @Test
+    public void testMapKeyedByIntersectionId() {
+        assertEquals("12107", UperKeys.keyOf(SupportedMessageTypes.MAP, bytes(MAP), "10.0.0.1"));
+    }
+
+    @Test
+    public void testOtherTypesKeyedBySender() {
+        assertEquals("10.0.0.1", UperKeys.keyOf(SupportedMessageTypes.TIM, bytes("001f0100"), "10.0.0.1"));
+        assertNull(UperKeys.keyOf(SupportedMessageTypes.TIM, bytes("001f0100"), null));
+    }
+
+    @Test
+    public void testShortMessageKeyedBySender() {
+        // a BSM value of 3 bytes ends inside the id
+        assertEquals("10.0.0.1", UperKeys.keyOf(SupportedMessageTypes.BSM, bytes("0014034644A9"), "10.0.0.1"));
+        // length past the end of the packet
+        assertEquals("10.0.0.1", UperKeys.keyOf(SupportedMessageTypes.BSM, bytes("0014204644A9"), "10.0.0.1"));
+    }
+}